@@ -14,10 +14,32 @@ android {
         versionName = "1.0"
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+
+        // Room exports each schema version here; MigrationTest opens the old ones
+        javaCompileOptions {
+            annotationProcessorOptions {
+                arguments["room.schemaLocation"] = "$projectDir/schemas"
+            }
+        }
+    }
+
+    buildFeatures {
+        buildConfig = true
     }
 
     buildTypes {
+        // network diagnostics (NetworkLog): NONE, BASIC, HEADERS or BODY; every Nth request;
+        // at most this many body bytes. Override in debug with -PhttpLog=BODY -PhttpLogSample=1.
+        debug {
+            buildConfigField("String", "HTTP_LOG_LEVEL",
+                "\"${project.findProperty("httpLog") ?: "HEADERS"}\"")
+            buildConfigField("int", "HTTP_LOG_SAMPLE_EVERY", "${project.findProperty("httpLogSample") ?: 10}")
+            buildConfigField("long", "HTTP_LOG_BODY_BYTES", "${project.findProperty("httpLogBodyBytes") ?: 2048}L")
+        }
         release {
+            buildConfigField("String", "HTTP_LOG_LEVEL", "\"NONE\"")
+            buildConfigField("int", "HTTP_LOG_SAMPLE_EVERY", "0")
+            buildConfigField("long", "HTTP_LOG_BODY_BYTES", "0L")
             isMinifyEnabled = false
             proguardFiles(
                 getDefaultProguardFile("proguard-android-optimize.txt"),
@@ -29,23 +51,50 @@ android {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
+
+    // LocalMailServer and SyntheticMailbox serve both instrumented and JVM (Robolectric) tests
+    sourceSets {
+        getByName("test").java.srcDir("src/sharedTest/java")
+        getByName("androidTest").java.srcDir("src/sharedTest/java")
+        getByName("androidTest").assets.srcDir("$projectDir/schemas")
+    }
+
+    testOptions {
+        unitTests.all {
+            it.maxHeapSize = "2g"
+            // SyncBenchmark: ./gradlew :app:testDebugUnitTest --tests '*SyncBenchmark' -PsyncBench.sizes=1000,10000,100000
+            // InterceptorBenchmark: -PinterceptorBench.requests=200000
+            listOf("syncBench.sizes", "syncBench.latencyMs", "syncBench.bytesPerSecond",
+                "interceptorBench.requests").forEach { key ->
+                project.findProperty(key)?.let { value -> it.systemProperty(key, value) }
+            }
+            it.systemProperty("syncBench.out",
+                layout.buildDirectory.file("reports/sync-bench.csv").get().asFile.path)
+        }
+    }
 }
 
 dependencies {
 
+    implementation(project(":core"))
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation(libs.activity)
     implementation(libs.constraintlayout)
     testImplementation(libs.junit)
+    testImplementation(libs.ext.junit)
+    testImplementation("org.robolectric:robolectric:4.14.1")
+    testImplementation("com.squareup.okhttp3:mockwebserver:4.12.0")
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
+    androidTestImplementation("com.squareup.okhttp3:mockwebserver:4.12.0")
 
     // Retrofit + Gson + OkHttp
     implementation("com.squareup.retrofit2:retrofit:2.11.0")
     implementation("com.squareup.retrofit2:converter-gson:2.11.0")
     implementation("com.squareup.okhttp3:okhttp:4.12.0")
-    implementation("com.squareup.okhttp3:logging-interceptor:4.12.0")
+    // InterceptorBenchmark's baseline (the app logs through NetworkLog)
+    testImplementation("com.squareup.okhttp3:logging-interceptor:4.12.0")
 
     // Lifecycle ViewModel + LiveData
     implementation("androidx.lifecycle:lifecycle-viewmodel:2.9.2")
@@ -54,6 +103,7 @@ dependencies {
     // Room
     implementation("androidx.room:room-runtime:2.7.2")
     annotationProcessor("androidx.room:room-compiler:2.7.2")
+    androidTestImplementation("androidx.room:room-testing:2.7.2")
 
     // UI
     implementation ("androidx.recyclerview:recyclerview:1.4.0")
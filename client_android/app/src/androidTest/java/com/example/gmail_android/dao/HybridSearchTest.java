@@ -0,0 +1,88 @@
+package com.example.gmail_android.dao;
+
+import android.content.Context;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.example.gmail_android.dao.SyncFixtures.batch;
+import static com.example.gmail_android.dao.SyncFixtures.ids;
+import static com.example.gmail_android.dao.SyncFixtures.inboxIds;
+import static com.example.gmail_android.dao.SyncFixtures.mail;
+import static com.example.gmail_android.dao.SyncFixtures.searchIds;
+import static org.junit.Assert.*;
+
+// server search hits live in search_results; the mails they bring in stay out of the other
+// lists until a sync delivers them, and leave with their last result.
+@RunWith(AndroidJUnit4.class)
+public class HybridSearchTest {
+    private AppDatabase db;
+
+    @Before
+    public void setUp() {
+        Context ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = AppDatabase.inMemoryBuilder(ctx).allowMainThreadQueries().build();
+        db.syncDao().apply(batch(null, 0, mail("1", "Invoice March", 1_000L)));
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void searchHitsStayOutOfTheInbox() {
+        db.syncDao().apply(batch("invoice", 10, mail("2", "Invoice April", 2_000L)));
+        assertEquals(ids("1"), inbox());
+        assertEquals(ids("2", "1"), search("invoice"));
+        // another search does not see them
+        assertEquals(ids("1"), search("invoice march"));
+        assertEquals(ids(), search("april"));
+    }
+
+    @Test
+    public void serverHitsWithoutALocalMatchAreMergedOnce() {
+        // the server matched mail 3 on something the local index doesn't have
+        db.syncDao().apply(batch("invoice", 10, mail("3", "Receipt", 3_000L), mail("1", "Invoice March", 1_000L)));
+        assertEquals(ids("3", "1"), search("invoice"));
+    }
+
+    @Test
+    public void searchDoesNotDemoteAndSyncPromotes() {
+        db.syncDao().apply(batch("invoice", 10, mail("1", "Invoice March", 1_000L), mail("2", "Invoice April", 2_000L)));
+        assertEquals(ids("1"), inbox()); // 1 was synced before the search
+        db.syncDao().apply(batch(null, 0, mail("2", "Invoice April", 2_000L)));
+        assertEquals(ids("2", "1"), inbox());
+    }
+
+    @Test
+    public void evictionDropsOldResultsAndTheirSearchOnlyMails() {
+        db.syncDao().apply(batch("invoice", 10, mail("1", "Invoice March", 1_000L), mail("2", "Invoice April", 2_000L)));
+        db.syncDao().apply(batch("april", 50, mail("4", "April showers", 4_000L)));
+        db.syncDao().evictSearchResults(20);
+        assertNull(db.mailDao().findById("2"));
+        assertNotNull(db.mailDao().findById("1")); // synced: kept
+        assertNotNull(db.mailDao().findById("4")); // result still fresh
+        assertEquals(ids("1"), search("invoice"));
+    }
+
+    @Test
+    public void fullSnapshotKeepsSearchOnlyMails() {
+        db.syncDao().apply(batch("invoice", 10, mail("2", "Invoice April", 2_000L)));
+        db.syncDao().deleteAllExcept(new HashSet<>(ids("1")));
+        assertEquals(ids("2", "1"), search("invoice"));
+    }
+
+    private List<String> inbox() {
+        return inboxIds(db.mailDao());
+    }
+
+    private List<String> search(String q) {
+        return searchIds(db.mailDao(), q);
+    }
+}
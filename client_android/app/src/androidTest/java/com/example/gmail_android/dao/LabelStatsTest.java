@@ -0,0 +1,120 @@
+package com.example.gmail_android.dao;
+
+import android.content.Context;
+import android.database.Cursor;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.example.gmail_android.entities.LabelCount;
+import com.example.gmail_android.entities.LabelEntity;
+import com.example.gmail_android.entities.MailEntity;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.example.gmail_android.dao.SyncFixtures.batch;
+import static com.example.gmail_android.dao.SyncFixtures.labels;
+import static org.junit.Assert.*;
+
+// label_stats follows every write path (sync batches, deletes, spam flips, search-only mails)
+// and always equals a COUNT(*) over mail_label.
+@RunWith(AndroidJUnit4.class)
+public class LabelStatsTest {
+    private AppDatabase db;
+
+    @Before
+    public void setUp() {
+        Context ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = AppDatabase.inMemoryBuilder(ctx).allowMainThreadQueries().build();
+        db.syncDao().apply(labels("work", "inbox", "spam", "alpha"));
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void syncWritesAreCounted() {
+        db.syncDao().apply(batch(null, mail("1", false), "inbox", "work"));
+        db.syncDao().apply(batch(null, mail("2", true), "spam", "work"));
+        assertCounts("work", 2, 1);
+        assertCounts("inbox", 1, 0);
+
+        // a changed mail: its joins are rewritten
+        db.syncDao().apply(batch(null, mail("1", true), "inbox"));
+        assertCounts("work", 1, 1);
+        assertCounts("inbox", 1, 1);
+        assertMatchesCount();
+    }
+
+    @Test
+    public void deletesAreCounted() {
+        db.syncDao().apply(batch(null, mail("1", false), "inbox", "work"));
+        db.syncDao().apply(batch(null, mail("2", false), "work"));
+        db.mailDao().deleteMail("1");
+        assertCounts("work", 1, 0);
+        assertCounts("inbox", 0, 0);
+        db.syncDao().deleteAllExcept(Collections.emptySet());
+        assertCounts("work", 0, 0);
+        db.labelDao().delete("work");
+        assertNull(counts().get("work"));
+    }
+
+    @Test
+    public void searchOnlyMailsCountOnceSynced() {
+        db.syncDao().apply(batch("invoice", mail("3", false), "work"));
+        assertCounts("work", 0, 0);
+        db.syncDao().apply(batch(null, mail("3", false), "work"));
+        assertCounts("work", 1, 0);
+        assertMatchesCount();
+    }
+
+    @Test
+    public void drawerOrderIsSystemLabelsThenNames() {
+        db.labelDao().insertAllIgnore(Collections.singletonList(new LabelEntity("zed", "Zed")));
+        db.labelDao().rename("alpha", "Beta");
+        List<String> order = new ArrayList<>();
+        for (LabelCount c : db.labelDao().counts()) order.add(c.label.id);
+        assertEquals(Arrays.asList("inbox", "spam", "alpha", "work", "zed"), order);
+    }
+
+    private void assertCounts(String labelId, int total, int spam) {
+        LabelCount c = counts().get(labelId);
+        assertNotNull(labelId, c);
+        assertEquals(labelId + " total", total, c.total);
+        assertEquals(labelId + " spam", spam, c.spam);
+    }
+
+    // label_stats against counting from scratch.
+    private void assertMatchesCount() {
+        Map<String, LabelCount> stats = counts();
+        try (Cursor cur = db.query("SELECT l.id, count(m.id), ifnull(sum(m.isSpam), 0) FROM labels l "
+                + "LEFT JOIN mail_label ml ON ml.labelId = l.id "
+                + "LEFT JOIN mails m ON m.id = ml.mailId AND m.searchOnly = 0 GROUP BY l.id", null)) {
+            while (cur.moveToNext()) {
+                LabelCount c = stats.get(cur.getString(0));
+                assertEquals(cur.getString(0), cur.getInt(1), c.total);
+                assertEquals(cur.getString(0), cur.getInt(2), c.spam);
+            }
+        }
+    }
+
+    private Map<String, LabelCount> counts() {
+        Map<String, LabelCount> out = new HashMap<>();
+        for (LabelCount c : db.labelDao().counts()) out.put(c.label.id, c);
+        return out;
+    }
+
+    private static MailEntity mail(String id, boolean spam) {
+        MailEntity m = SyncFixtures.mail(id, "mail " + id, 0);
+        m.isSpam = spam;
+        return m;
+    }
+}
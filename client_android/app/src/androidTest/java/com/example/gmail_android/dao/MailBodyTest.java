@@ -0,0 +1,71 @@
+package com.example.gmail_android.dao;
+
+import android.content.Context;
+import android.database.Cursor;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.example.gmail_android.entities.MailBodyEntity;
+import com.example.gmail_android.entities.MailEntity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+// bodies live in mail_bodies: list rows carry only a snippet, the body follows its mail.
+@RunWith(AndroidJUnit4.class)
+public class MailBodyTest {
+    private static final String BODY = "Hi team,\n\n  the   quarterly report is attached. "
+            + "Numbers are up across all regions, details below. Thanks to everyone who helped "
+            + "close the books early this time; see the appendix for the full breakdown.";
+
+    private AppDatabase db;
+
+    @Before
+    public void setUp() {
+        Context ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = AppDatabase.inMemoryBuilder(ctx).allowMainThreadQueries().build();
+
+        MailEntity m = new MailEntity("m1");
+        m.subject = "report";
+        m.snippet = MailEntity.snippetOf(BODY);
+        m.dateSentMillis = 1_000L;
+        SyncBatch b = new SyncBatch();
+        b.mails.add(m);
+        b.bodies.add(new MailBodyEntity("m1", BODY));
+        db.syncDao().apply(b);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void listRowsCarryOnlyTheSnippet() {
+        MailEntity m = db.mailDao().findById("m1");
+        assertEquals(MailEntity.SNIPPET_LENGTH, m.snippet.length());
+        assertTrue(m.snippet.startsWith("Hi team, the quarterly report"));
+        try (Cursor c = db.query("SELECT * FROM mails", null)) {
+            assertEquals(-1, c.getColumnIndex("content"));
+        }
+    }
+
+    @Test
+    public void bodyIsLoadedOnDemand() {
+        assertEquals(BODY, db.mailDao().findContent("m1"));
+        assertNull(db.mailDao().findContent("nope"));
+    }
+
+    @Test
+    public void bodyIsDeletedWithItsMail() {
+        SyncBatch del = new SyncBatch();
+        del.deletedMailIds.add("m1");
+        db.syncDao().apply(del);
+        try (Cursor c = db.query("SELECT COUNT(*) FROM mail_bodies", null)) {
+            assertTrue(c.moveToNext());
+            assertEquals(0, c.getInt(0));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.gmail_android.dao;
+
+import android.content.Context;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.example.gmail_android.entities.MailBodyEntity;
+import com.example.gmail_android.entities.MailEntity;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.example.gmail_android.dao.SyncFixtures.ids;
+import static com.example.gmail_android.dao.SyncFixtures.searchIds;
+import static org.junit.Assert.*;
+
+// mails_fts follows writes to `mails` and `mail_bodies` and matches the way FtsQuery builds queries.
+@RunWith(AndroidJUnit4.class)
+public class MailFtsTest {
+    private AppDatabase db;
+
+    @Before
+    public void setUp() {
+        Context ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = AppDatabase.inMemoryBuilder(ctx).allowMainThreadQueries().build();
+        put("1", "Invoice for March", "see attached", 1_000L);
+        put("2", "Réunion de l'équipe", "à demain", 2_000L);
+        put("3", "שלום לכולם", "פגישה מחר בבוקר", 3_000L);
+        put("4", "lunch?", "anyone up for sushi", 4_000L);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void prefixMatchesAnyColumn() {
+        assertEquals(ids("1"), search("inv"));
+        assertEquals(ids("4"), search("sus"));
+        assertEquals(ids("4", "3", "2", "1"), search("bloomly"));  // fromEmail
+    }
+
+    @Test
+    public void diacriticsAndCaseAreFolded() {
+        assertEquals(ids("2"), search("reunion"));
+        assertEquals(ids("2"), search("EQUIPE"));
+        assertEquals(ids("2"), search("a demain"));
+    }
+
+    @Test
+    public void hebrewWordsAndPrefixes() {
+        assertEquals(ids("3"), search("שלום"));
+        assertEquals(ids("3"), search("פגי"));
+        assertEquals(ids("3"), search("שָׁלוֹם"));  // niqqud in the query is ignored
+    }
+
+    @Test
+    public void allWordsMustMatch() {
+        assertEquals(ids("1"), search("invoice march"));
+        assertEquals(ids(), search("invoice sushi"));
+    }
+
+    @Test
+    public void indexFollowsUpdatesAndDeletes() {
+        put("4", "dinner?", "anyone up for ramen", 4_000L);
+        assertEquals(ids(), search("sushi"));
+        assertEquals(ids("4"), search("ramen"));
+        assertEquals(ids("4"), search("dinner"));
+
+        SyncBatch del = new SyncBatch();
+        del.deletedMailIds.add("4");
+        db.syncDao().apply(del);
+        assertEquals(ids(), search("ramen"));
+    }
+
+    private List<String> search(String q) {
+        return searchIds(db.mailDao(), q);
+    }
+
+    private void put(String id, String subject, String content, long date) {
+        MailEntity m = new MailEntity(id);
+        m.fromEmail = "dana@bloomly.com";
+        m.toEmail = "me@bloomly.com";
+        m.subject = subject;
+        m.snippet = MailEntity.snippetOf(content);
+        m.dateSentMillis = date;
+        SyncBatch b = new SyncBatch();
+        b.mails.add(m);
+        b.bodies.add(new MailBodyEntity(id, content));
+        db.syncDao().apply(b);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.gmail_android.dao;
+
+import android.database.Cursor;
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+// Migrations.ALL against the exported schemas (app/schemas): a version 1 database with mails in
+// it is upgraded and Room checks every table, index and foreign key against the next version's
+// schema. Then the data the migrations move or derive is checked by hand.
+@RunWith(AndroidJUnit4.class)
+public class MigrationTest {
+    private static final String DB = "migration-test";
+    private static final int LATEST = 11;
+
+    @Rule
+    public MigrationTestHelper helper = new MigrationTestHelper(
+            InstrumentationRegistry.getInstrumentation(), AppDatabase.class);
+
+    @Test
+    public void populatedVersion1UpgradesToLatest() {
+        createVersion1();
+        SupportSQLiteDatabase db = helper.runMigrationsAndValidate(DB, LATEST, true, Migrations.ALL);
+        assertData(db);
+        db.close();
+    }
+
+    @Test
+    public void everyStepMatchesItsSchema() {
+        createVersion1();
+        for (int v = 2; v <= LATEST; v++) {
+            helper.runMigrationsAndValidate(DB, v, true, Migrations.ALL).close();
+        }
+        SupportSQLiteDatabase db = helper.runMigrationsAndValidate(DB, LATEST, true, Migrations.ALL);
+        assertData(db);
+        db.close();
+    }
+
+    private void createVersion1() {
+        SupportSQLiteDatabase db = helper.createDatabase(DB, 1);
+        // "Work" was stored before label ids were normalized (5 → 6)
+        db.execSQL("INSERT INTO labels (id, name) VALUES ('Work', 'Work'), ('inbox', 'Inbox')");
+        db.execSQL("INSERT INTO mails (id, fromEmail, toEmail, subject, content, dateSentMillis, isSpam) VALUES "
+                + "('m1', 'a@x.com', 'b@x.com', 'Lunch plans', 'Hi\nthere', 1000, 0), "
+                + "('m2', 'b@x.com', 'a@x.com', 'Re: Lunch plans', 'Sure', 2000, 0), "
+                + "('m3', 'c@x.com', 'a@x.com', 'You won', 'Claim it', 3000, 1)");
+        db.execSQL("INSERT INTO mail_label (mailId, labelId) VALUES "
+                + "('m1', 'Work'), ('m2', 'inbox'), ('m3', 'inbox')");
+        db.close();
+    }
+
+    private static void assertData(SupportSQLiteDatabase db) {
+        // 4 → 5: the body moved out, the snippet stayed
+        assertEquals("Hi there", string(db, "SELECT snippet FROM mails WHERE id = 'm1'"));
+        assertEquals("Hi\nthere", string(db, "SELECT content FROM mail_bodies WHERE id = 'm1'"));
+        // 5 → 6: the join follows its normalized label and carries the mail date
+        assertEquals("work 1000", string(db,
+                "SELECT labelId || ' ' || dateSentMillis FROM mail_label WHERE mailId = 'm1'"));
+        // 6 → 7: every synced mail is listed
+        assertEquals(0, count(db, "SELECT count(*) FROM mails WHERE searchOnly <> 0"));
+        // 8 → 9: counts per label
+        assertEquals("1 0", string(db, "SELECT total || ' ' || spam FROM label_stats WHERE labelId = 'work'"));
+        assertEquals("2 1", string(db, "SELECT total || ' ' || spam FROM label_stats WHERE labelId = 'inbox'"));
+        // 9 → 10: the reply joins the first mail's thread
+        assertEquals("m2 2 inbox\u001fwork", string(db, "SELECT latestMailId || ' ' || messageCount || ' ' "
+                + "|| labelIds FROM threads WHERE id = (SELECT threadId FROM mails WHERE id = 'm1')"));
+        assertEquals(2, count(db, "SELECT count(*) FROM threads"));
+        // the search index was rebuilt from the moved bodies
+        assertEquals(1, count(db, "SELECT count(*) FROM mails_fts WHERE mails_fts MATCH 'there'"));
+        // 10 → 11
+        assertEquals(0, count(db, "SELECT count(*) FROM outbox"));
+    }
+
+    private static String string(SupportSQLiteDatabase db, String sql) {
+        try (Cursor c = db.query(sql)) {
+            assertTrue(sql, c.moveToFirst());
+            return c.getString(0);
+        }
+    }
+
+    private static int count(SupportSQLiteDatabase db, String sql) {
+        try (Cursor c = db.query(sql)) {
+            c.moveToFirst();
+            return c.getInt(0);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.gmail_android.dao;
+
+import android.content.Context;
+import android.database.Cursor;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+// EXPLAIN QUERY PLAN for the list queries: each must walk an index in list order,
+// with no separate sort step ("USE TEMP B-TREE FOR ORDER BY"). Search lists are sorted by
+// SearchRanker anyway; for them every operator must be an index lookup, never a table scan.
+@RunWith(AndroidJUnit4.class)
+public class QueryPlanTest {
+    private static final String MAILS_BY_DATE = "index_mails_dateSentMillis_id";
+    private static final String LABEL_BY_DATE = "index_mail_label_labelId_dateSentMillis_mailId";
+
+    private AppDatabase db;
+
+    @Before
+    public void setUp() {
+        Context ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = AppDatabase.inMemoryBuilder(ctx).allowMainThreadQueries().build();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void inboxUsesDateIndex() {
+        for (String sql : new String[] { MailDao.INBOX_WINDOW, MailDao.INBOX_KEYS_BEFORE }) {
+            List<String> plan = plan(sql);
+            assertUses(plan, MAILS_BY_DATE);
+            assertNoSort(plan);
+        }
+    }
+
+    @Test
+    public void labelListsUseLabelIndex() {
+        List<String> plan = plan(MailDao.LABEL_WINDOW);
+        assertUses(plan, LABEL_BY_DATE);
+        assertNoSort(plan);
+        // mails are looked up by primary key, one per join row
+        assertUses(plan, "(id=?)");
+    }
+
+    @Test
+    public void labelIdsAreLookedUpPerRow() {
+        for (String sql : new String[] { MailDao.INBOX_WINDOW, MailDao.LABEL_WINDOW }) {
+            assertUses(plan(sql), "(mailId=?)");
+        }
+    }
+
+    @Test
+    public void labelKeysWalkTheLabelIndex() {
+        // the keys come from the index; the mail lookup only checks searchOnly
+        List<String> plan = plan(MailDao.LABEL_KEYS_BEFORE);
+        assertEquals(plan.toString(), 2, plan.size());
+        assertTrue(plan.get(0), plan.get(0).contains("COVERING INDEX " + LABEL_BY_DATE));
+        assertTrue(plan.get(1), plan.get(1).contains("(id=?)"));
+    }
+
+    @Test
+    public void drawerReadsLabelStatsInSortKeyOrder() {
+        // one row per label, no count and no sort at read time
+        List<String> plan = plan("SELECT labels.*, s.total, s.spam " + LabelDao.DRAWER_ORDER);
+        assertUses(plan, "index_label_stats_sortKey");
+        assertUses(plan, "(id=?)");
+        assertNoSort(plan);
+        for (String row : plan) assertFalse(row, row.contains("mail_label"));
+    }
+
+    @Test
+    public void threadsAreReadInListOrderAndRecomputedByIndex() {
+        for (String sql : new String[] { MailDao.THREAD_WINDOW, MailDao.THREAD_KEYS_BEFORE }) {
+            List<String> plan = plan(sql);
+            assertUses(plan, "index_threads_latestDateSentMillis_latestMailId");
+            assertNoSort(plan);
+        }
+        assertUses(plan(MailDao.THREAD_WINDOW), "(id=?)");
+        // a sync batch recomputes its threads from their mails, never the whole table
+        List<String> refresh = plan(SyncDao.THREAD_ROWS + " AND m.threadId IN ('a', 'b') GROUP BY m.threadId");
+        assertUses(refresh, "index_mails_threadId");
+        for (String row : refresh) assertFalse(row, row.startsWith("SCAN m"));
+    }
+
+    @Test
+    public void searchOperatorsNeverScanATable() {
+        String[] queries = {
+                "invoice", "\"big deal\"", "from:dana", "to:me@bloomly.com", "label:work", "-label:work",
+                "before:2024/01/01", "after:2024/01/01", "is:spam", "-is:spam", "-invoice",
+                "invoice -from:bob label:work after:2023/01/01 -is:spam"
+        };
+        for (String q : queries) {
+            SearchQuery parsed = SearchQuery.parse(q);
+            for (SearchQuery.Compiled c : new SearchQuery.Compiled[] {
+                    parsed.window(q, Long.MIN_VALUE, "", 50), parsed.keysBefore(q, Long.MAX_VALUE, "", 50) }) {
+                // full-text lookups show up as "SCAN <fts table> VIRTUAL TABLE INDEX n"
+                for (String row : plan(c.sql, c.args)) {
+                    assertFalse(q + ": " + row, row.startsWith("SCAN") && !row.contains("VIRTUAL TABLE"));
+                }
+            }
+        }
+    }
+
+    // the "detail" column of each plan row; parameters stay unbound (NULL), which doesn't change the plan.
+    private List<String> plan(String sql) {
+        return plan(sql, new Object[0]);
+    }
+
+    private List<String> plan(String sql, Object[] args) {
+        List<String> out = new ArrayList<>();
+        try (Cursor c = db.query("EXPLAIN QUERY PLAN " + sql, args)) {
+            int detail = c.getColumnIndexOrThrow("detail");
+            while (c.moveToNext()) out.add(c.getString(detail));
+        }
+        return out;
+    }
+
+    private static void assertUses(List<String> plan, String index) {
+        for (String row : plan) if (row.contains(index)) return;
+        fail(index + " not used: " + plan);
+    }
+
+    private static void assertNoSort(List<String> plan) {
+        for (String row : plan) assertFalse(plan.toString(), row.contains("TEMP B-TREE"));
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.gmail_android.dao;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.util.Log;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.example.gmail_android.entities.MailBodyEntity;
+import com.example.gmail_android.entities.MailEntity;
+import com.example.gmail_android.entities.SearchResultEntity;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+// the old LIKE '%q%' search against the mails_fts search, at 10k and 100k mails, and the first
+// page of the hybrid search window (local matches merged with stored server hits).
+// Median wall time of RUNS full result reads per query; results are logged under the "SearchBench" tag.
+@RunWith(AndroidJUnit4.class)
+public class SearchBenchmark {
+    private static final int RUNS = 7;
+    private static final String[] WORDS = {
+            "meeting", "invoice", "report", "schedule", "project", "budget", "review", "update",
+            "client", "deadline", "draft", "summary", "travel", "lunch", "contract", "design",
+            "release", "feedback", "agenda", "quarterly", "payment", "shipping", "support", "team"
+    };
+    // a word in every ~24th mail, and one in a handful
+    private static final String COMMON = "invoice";
+    private static final String RARE = "zeppelin";
+
+    // the pre-FTS MailDao.search (bodies now live in mail_bodies)
+    private static final String LIKE_SQL = "SELECT mails.* FROM mails "
+            + "LEFT JOIN mail_bodies b ON b.id = mails.id WHERE ("
+            + " subject   LIKE '%' || ? || '%' COLLATE NOCASE OR"
+            + " b.content LIKE '%' || ? || '%' COLLATE NOCASE OR"
+            + " fromEmail LIKE '%' || ? || '%' COLLATE NOCASE OR"
+            + " toEmail   LIKE '%' || ? || '%' COLLATE NOCASE"
+            + ") ORDER BY dateSentMillis DESC";
+    private static final String FTS_SQL = "SELECT mails.* FROM mails "
+            + "JOIN mails_fts ON mails_fts.rowid = mails.rowid "
+            + "WHERE mails_fts MATCH ? ORDER BY mails.dateSentMillis DESC";
+
+    // search-only server hits stored per query, none of them matching locally
+    private static final int SERVER_HITS = 100;
+
+    private AppDatabase db;
+
+    @After
+    public void tearDown() {
+        if (db != null) db.close();
+    }
+
+    @Test
+    public void tenThousandMails() {
+        run(10_000);
+    }
+
+    @Test
+    public void hundredThousandMails() {
+        run(100_000);
+    }
+
+    private void run(int mails) {
+        Context ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = AppDatabase.inMemoryBuilder(ctx).build();
+        fill(mails);
+
+        for (String q : new String[] { COMMON, RARE }) {
+            Object[] likeArgs = { q, q, q, q };
+            Object[] ftsArgs = { FtsQuery.match(q) };
+            long[] like = measure(LIKE_SQL, likeArgs);
+            long[] fts = measure(FTS_SQL, ftsArgs);
+            // first render of search-as-you-type: one page, server hits included
+            SearchQuery.Compiled window = SearchQuery.parse(q).window(SearchResultEntity.key(q), Long.MIN_VALUE, "", 50);
+            long[] hybrid = measure(window.sql, window.args);
+            Log.i("SearchBench", "mails=" + mails + " q=" + q
+                    + " like: rows=" + like[0] + " medianMicros=" + like[1]
+                    + " | fts: rows=" + fts[0] + " medianMicros=" + fts[1]
+                    + " | hybrid first page: rows=" + hybrid[0] + " medianMicros=" + hybrid[1]);
+            assertEquals(like[0], fts[0]);
+            assertEquals(Math.min(50, fts[0] + SERVER_HITS), hybrid[0]);
+        }
+    }
+
+    // {rows, median micros}
+    private long[] measure(String sql, Object[] args) {
+        long[] micros = new long[RUNS];
+        long rows = 0;
+        for (int r = 0; r < RUNS; r++) {
+            long t0 = SystemClock.elapsedRealtimeNanos();
+            rows = 0;
+            try (Cursor c = db.query(sql, args)) {
+                while (c.moveToNext()) rows++;
+            }
+            micros[r] = (SystemClock.elapsedRealtimeNanos() - t0) / 1000;
+        }
+        Arrays.sort(micros);
+        return new long[] { rows, micros[RUNS / 2] };
+    }
+
+    // synthetic mailbox: short subjects, ~60-word bodies from a small vocabulary.
+    private void fill(int mails) {
+        Random rnd = new Random(42);
+        SyncBatch b = new SyncBatch();
+        for (int i = 0; i < mails; i++) {
+            MailEntity m = new MailEntity(String.valueOf(i));
+            m.fromEmail = "user" + (i % 200) + "@bloomly.com";
+            m.toEmail = "me@bloomly.com";
+            m.subject = WORDS[rnd.nextInt(WORDS.length)] + " " + WORDS[rnd.nextInt(WORDS.length)];
+            StringBuilder body = new StringBuilder();
+            for (int w = 0; w < 60; w++) {
+                String word = WORDS[rnd.nextInt(WORDS.length)];
+                // keep COMMON out of bodies so both queries count the same rows
+                body.append(word.equals(COMMON) ? "note" : word).append(' ');
+            }
+            if (i % 20_000 == 7) body.append(RARE);
+            b.bodies.add(new MailBodyEntity(m.id, body.toString()));
+            m.dateSentMillis = 1_700_000_000_000L + i * 60_000L;
+            b.mails.add(m);
+            if (b.mails.size() == 5_000) {
+                db.syncDao().apply(b);
+                b = new SyncBatch();
+            }
+        }
+        if (!b.mails.isEmpty()) db.syncDao().apply(b);
+
+        for (String q : new String[] { COMMON, RARE }) {
+            SyncBatch hits = new SyncBatch();
+            hits.searchQuery = SearchResultEntity.key(q);
+            for (int i = 0; i < SERVER_HITS; i++) {
+                MailEntity m = new MailEntity("server-" + q + "-" + i);
+                m.subject = "from the server";
+                m.dateSentMillis = 1_600_000_000_000L + i * 60_000L; // older than the local mails
+                hits.mails.add(m);
+            }
+            db.syncDao().apply(hits);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.gmail_android.dao;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.example.gmail_android.entities.LabelEntity;
+import com.example.gmail_android.entities.MailBodyEntity;
+import com.example.gmail_android.entities.MailEntity;
+import com.example.gmail_android.entities.MailLabelCrossRef;
+import com.example.gmail_android.entities.MailRow;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+// compares the old statement-by-statement refresh with SyncDao.apply:
+// statements executed, wall time and emissions of the first inbox page per sync.
+// Results are logged under the "SyncBench" tag.
+@RunWith(AndroidJUnit4.class)
+public class SyncApplyBenchmark {
+    private static final int MAILS = 2000;
+    private static final int LABELS = 20;
+
+    private final AtomicInteger statements = new AtomicInteger();
+    private final AtomicInteger emissions = new AtomicInteger();
+    private AppDatabase db;
+    private LiveData<List<MailRow>> inbox;
+    private final Observer<List<MailRow>> counter = list -> emissions.incrementAndGet();
+
+    @Before
+    public void setUp() {
+        Context ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = AppDatabase.inMemoryBuilder(ctx)
+                .setQueryCallback((sql, args) -> statements.incrementAndGet(), Runnable::run)
+                .build();
+        inbox = db.mailDao().inboxWindow(0, "", 50);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> inbox.observeForever(counter));
+        settle();
+    }
+
+    @After
+    public void tearDown() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> inbox.removeObserver(counter));
+        db.close();
+    }
+
+    @Test
+    public void separateStatements() {
+        SyncBatch b = batch();
+        LabelDao labelDao = db.labelDao();
+
+        long[] r = measure(() -> {
+            // the pre-SyncDao refreshInbox write sequence; its mail DAO calls are raw statements
+            // here, one per row like the generated code, as the app's MailDao no longer has them
+            SupportSQLiteDatabase w = db.getOpenHelper().getWritableDatabase();
+            w.execSQL("DELETE FROM mail_label");
+            w.execSQL("DELETE FROM mails");
+            labelDao.clear();
+            labelDao.insertAllIgnore(b.labels);
+            for (LabelEntity e : b.labels) labelDao.rename(e.id, e.name);
+            insertMails(b.mails);
+            db.syncDao().upsertBodies(b.bodies);
+            insertJoins(b.joins);
+        });
+        report("separate", r);
+        assertEquals(MAILS, db.mailDao().countMails());
+    }
+
+    @Test
+    public void singleTransaction() {
+        SyncBatch b = batch();
+        b.replaceAll = true;
+
+        long[] r = measure(() -> db.syncDao().apply(b));
+        report("apply", r);
+        assertEquals(MAILS, db.mailDao().countMails());
+        assertEquals(1, r[2]);
+    }
+
+    // each in its own transaction, like a @Upsert list call into empty tables.
+    private void insertMails(List<MailEntity> mails) {
+        db.runInTransaction(() -> {
+            SupportSQLiteStatement s = db.compileStatement("INSERT INTO mails (id, fromEmail, toEmail, subject, "
+                    + "snippet, dateSentMillis, isSpam, searchOnly, threadId, contentHash) VALUES (?,?,?,?,?,?,?,?,?,?)");
+            for (MailEntity m : mails) {
+                s.bindString(1, m.id);
+                s.bindString(2, m.fromEmail);
+                s.bindString(3, m.toEmail);
+                s.bindString(4, m.subject);
+                s.bindString(5, m.snippet);
+                s.bindLong(6, m.dateSentMillis);
+                s.bindLong(7, m.isSpam ? 1 : 0);
+                s.bindLong(8, m.searchOnly ? 1 : 0);
+                if (m.threadId == null) s.bindNull(9); else s.bindString(9, m.threadId);
+                s.bindLong(10, m.contentHash);
+                s.executeInsert();
+            }
+        });
+    }
+
+    private void insertJoins(List<MailLabelCrossRef> joins) {
+        db.runInTransaction(() -> {
+            SupportSQLiteStatement s = db.compileStatement(
+                    "INSERT INTO mail_label (mailId, labelId, dateSentMillis) VALUES (?,?,?)");
+            for (MailLabelCrossRef j : joins) {
+                s.bindString(1, j.mailId);
+                s.bindString(2, j.labelId);
+                s.bindLong(3, j.dateSentMillis);
+                s.executeInsert();
+            }
+        });
+    }
+
+    // runs the write on this (non-main) thread; returns {statements, micros, emissions}.
+    private long[] measure(Runnable write) {
+        statements.set(0);
+        emissions.set(0);
+        long t0 = SystemClock.elapsedRealtimeNanos();
+        write.run();
+        long micros = (SystemClock.elapsedRealtimeNanos() - t0) / 1000;
+        int stmts = statements.get();
+        settle();
+        return new long[] { stmts, micros, emissions.get() };
+    }
+
+    // lets Room's invalidation tracker and LiveData recompute catch up.
+    private static void settle() {
+        SystemClock.sleep(500);
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+    }
+
+    private static void report(String name, long[] r) {
+        Log.i("SyncBench", name + ": mails=" + MAILS + " statements=" + r[0]
+                + " wallMicros=" + r[1] + " emissions=" + r[2]);
+    }
+
+    private static SyncBatch batch() {
+        SyncBatch b = new SyncBatch();
+        for (int l = 0; l < LABELS; l++) b.labels.add(new LabelEntity("l" + l, "Label " + l));
+        for (int i = 0; i < MAILS; i++) {
+            MailEntity m = new MailEntity(String.valueOf(i));
+            m.fromEmail = "user" + (i % 50) + "@bloomly.com";
+            m.toEmail = "me@bloomly.com";
+            m.subject = "Subject " + i;
+            m.dateSentMillis = 1_700_000_000_000L + i * 60_000L;
+            b.mails.add(m);
+            b.bodies.add(new MailBodyEntity(m.id, "Body " + i));
+            b.joins.add(new MailLabelCrossRef(m.id, "l" + (i % LABELS)));
+        }
+        return b;
+    }
+}
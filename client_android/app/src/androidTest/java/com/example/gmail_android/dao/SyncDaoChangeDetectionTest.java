@@ -0,0 +1,140 @@
+package com.example.gmail_android.dao;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.SystemClock;
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.example.gmail_android.entities.LabelEntity;
+import com.example.gmail_android.entities.MailBodyEntity;
+import com.example.gmail_android.entities.MailEntity;
+import com.example.gmail_android.entities.MailLabelCrossRef;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+// re-applying an unchanged sync must not write anything (and so must not wake observers);
+// a changed mail is updated in place and keeps its joins.
+@RunWith(AndroidJUnit4.class)
+public class SyncDaoChangeDetectionTest {
+    private final AtomicInteger writes = new AtomicInteger();
+    private final AtomicInteger invalidations = new AtomicInteger();
+    private AppDatabase db;
+    private final InvalidationTracker.Observer observer =
+            new InvalidationTracker.Observer("mails", "mail_label", "labels") {
+                @Override
+                public void onInvalidated(@NonNull Set<String> tables) {
+                    invalidations.incrementAndGet();
+                }
+            };
+
+    @Before
+    public void setUp() {
+        Context ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = AppDatabase.inMemoryBuilder(ctx)
+                .setQueryCallback((sql, args) -> {
+                    if (isWrite(sql)) writes.incrementAndGet();
+                }, Runnable::run)
+                .build();
+        db.getInvalidationTracker().addObserver(observer);
+    }
+
+    @After
+    public void tearDown() {
+        db.getInvalidationTracker().removeObserver(observer);
+        db.close();
+    }
+
+    @Test
+    public void identicalBatchWritesNothing() {
+        db.syncDao().apply(batch("hello"));
+        settle();
+        writes.set(0);
+        invalidations.set(0);
+
+        db.syncDao().apply(batch("hello"));
+        settle();
+        assertEquals(0, writes.get());
+        assertEquals(0, invalidations.get());
+    }
+
+    @Test
+    public void changedMailIsUpdatedAndKeepsJoins() {
+        db.syncDao().apply(batch("hello"));
+        settle();
+        writes.set(0);
+        invalidations.set(0);
+
+        db.syncDao().apply(batch("hello (edited)"));
+        settle();
+        assertTrue(writes.get() > 0);
+        assertEquals(1, invalidations.get());
+        assertEquals("hello (edited)", db.mailDao().findById("m1").subject);
+        assertEquals("hello", db.mailDao().findById("m2").subject);
+        assertEquals(2, joinCount("m1"));
+        assertEquals(2, joinCount("m2"));
+    }
+
+    @Test
+    public void labelOnlyChangeRewritesJoins() {
+        db.syncDao().apply(batch("hello"));
+
+        SyncBatch b = batch("hello");
+        b.joins.remove(1); // m1 loses "work"
+        db.syncDao().apply(b);
+        assertEquals(1, joinCount("m1"));
+        assertEquals(2, joinCount("m2"));
+    }
+
+    // m1 carries the given subject; m2 never changes. Both are in inbox and work.
+    private static SyncBatch batch(String subject) {
+        SyncBatch b = new SyncBatch();
+        b.labels.add(new LabelEntity("inbox", "Inbox"));
+        b.labels.add(new LabelEntity("work", "Work"));
+        b.mails.add(mail("m1", subject));
+        b.mails.add(mail("m2", "hello"));
+        for (MailEntity m : b.mails) {
+            b.bodies.add(new MailBodyEntity(m.id, "body"));
+            b.joins.add(new MailLabelCrossRef(m.id, "inbox"));
+            b.joins.add(new MailLabelCrossRef(m.id, "work"));
+        }
+        return b;
+    }
+
+    private static MailEntity mail(String id, String subject) {
+        MailEntity m = new MailEntity(id);
+        m.fromEmail = "a@bloomly.com";
+        m.toEmail = "me@bloomly.com";
+        m.subject = subject;
+        m.dateSentMillis = 1_700_000_000_000L;
+        return m;
+    }
+
+    private int joinCount(String mailId) {
+        try (Cursor c = db.query("SELECT COUNT(*) FROM mail_label WHERE mailId = ?", new Object[] { mailId })) {
+            assertTrue(c.moveToNext());
+            return c.getInt(0);
+        }
+    }
+
+    // data writes only; Room's own bookkeeping table is ignored.
+    private static boolean isWrite(String sql) {
+        String s = sql.trim().toUpperCase();
+        if (s.contains("ROOM_TABLE_MODIFICATION_LOG")) return false;
+        return s.startsWith("INSERT") || s.startsWith("UPDATE") || s.startsWith("DELETE")
+                || s.startsWith("REPLACE");
+    }
+
+    // invalidation observers are notified asynchronously after the transaction ends.
+    private static void settle() {
+        SystemClock.sleep(300);
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+    }
+}
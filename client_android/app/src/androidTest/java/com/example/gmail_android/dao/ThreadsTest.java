@@ -0,0 +1,152 @@
+package com.example.gmail_android.dao;
+
+import android.content.Context;
+import android.database.Cursor;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.example.gmail_android.entities.MailEntity;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.example.gmail_android.dao.SyncFixtures.batch;
+import static com.example.gmail_android.dao.SyncFixtures.labels;
+import static com.example.gmail_android.dao.SyncFixtures.threadIds;
+import static org.junit.Assert.*;
+
+// conversations: which mails SyncDao groups into a thread, and its `threads` row after a reply,
+// an edit that moves a mail, a delete, a label delete or a search hit. assertMatchesGrouping
+// checks the maintained rows against grouping the mails again.
+@RunWith(AndroidJUnit4.class)
+public class ThreadsTest {
+    private AppDatabase db;
+
+    @Before
+    public void setUp() {
+        Context ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = AppDatabase.inMemoryBuilder(ctx).allowMainThreadQueries().build();
+        db.syncDao().apply(labels("work", "inbox"));
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void repliesJoinTheirConversation() {
+        db.syncDao().apply(batch(null, mail("1", "Lunch", "a@x.com", "b@x.com", 1_000), "inbox"));
+        db.syncDao().apply(batch(null, mail("2", "RE: lunch", "b@x.com", "a@x.com", 2_000), "work"));
+        db.syncDao().apply(batch(null, mail("3", "Lunch", "c@x.com", "b@x.com", 3_000))); // other people
+        assertEquals(Arrays.asList("3", "2"), latestMails());
+        assertEquals("2 inbox\u001fwork", describe(threadOf("1")));
+        assertMatchesGrouping();
+    }
+
+    @Test
+    public void editsDeletesAndLabelDeletesUpdateTheirThreads() {
+        db.syncDao().apply(batch(null, mail("1", "Plan", "a@x.com", "b@x.com", 1_000), "work"));
+        db.syncDao().apply(batch(null, mail("2", "Re: Plan", "b@x.com", "a@x.com", 2_000)));
+        String plan = threadOf("1");
+
+        // the reply's subject changes: it leaves the thread for one of its own
+        db.syncDao().apply(batch(null, mail("2", "Other", "b@x.com", "a@x.com", 2_000)));
+        assertEquals("1 work", describe(plan));
+        assertMatchesGrouping();
+
+        SyncBatch delete = new SyncBatch();
+        delete.deletedMailIds.add("2");
+        db.syncDao().apply(delete);
+        assertEquals(Collections.singletonList("1"), latestMails());
+
+        db.syncDao().deleteLabel("work");
+        assertEquals("1 ", describe(plan));
+
+        db.syncDao().deleteAllExcept(Collections.emptySet());
+        assertTrue(latestMails().isEmpty());
+    }
+
+    @Test
+    public void searchOnlyMailsJoinOnceSynced() {
+        db.syncDao().apply(batch(null, mail("1", "Invoice", "a@x.com", "b@x.com", 1_000)));
+        db.syncDao().apply(batch("invoice", mail("2", "Re: Invoice", "b@x.com", "a@x.com", 2_000)));
+        assertEquals("1 ", describe(threadOf("1")));
+        db.syncDao().apply(batch(null, mail("2", "Re: Invoice", "b@x.com", "a@x.com", 2_000)));
+        assertEquals("2 ", describe(threadOf("1")));
+        assertEquals(Collections.singletonList("2"), latestMails());
+    }
+
+    @Test
+    public void keysPageThroughThreadsInListOrder() {
+        for (int i = 0; i < 10; i++) {
+            db.syncDao().apply(batch(null, mail("m" + i, "topic " + (i % 4), "a@x.com", "b@x.com", i * 1_000L)));
+        }
+        List<MailDao.PageKey> keys = db.mailDao().threadKeysBefore(Long.MAX_VALUE, "", 10);
+        List<String> ids = new ArrayList<>();
+        for (MailDao.PageKey k : keys) ids.add(k.id);
+        assertEquals(Arrays.asList("m9", "m8", "m7", "m6"), ids);
+        assertEquals(2, db.mailDao().threadKeysBefore(8_000, "m8", 2).size());
+        assertMatchesGrouping();
+    }
+
+    @Test
+    public void conversationListsItsOwnListedMails() {
+        db.syncDao().apply(batch(null, mail("1", "Lunch", "a@x.com", "b@x.com", 1_000), "inbox"));
+        db.syncDao().apply(batch(null, mail("2", "RE: lunch", "b@x.com", "a@x.com", 2_000)));
+        db.syncDao().apply(batch("lunch", mail("3", "Re: Lunch", "a@x.com", "b@x.com", 3_000)));
+        db.syncDao().apply(batch(null, mail("4", "Lunch", "c@x.com", "b@x.com", 4_000)));
+        assertEquals(new HashSet<>(Arrays.asList("1", "2")),
+                new HashSet<>(db.mailDao().threadMailIds(threadOf("1"))));
+    }
+
+    // "<messageCount> <labelIds>" of a thread.
+    private String describe(String threadId) {
+        try (Cursor c = db.query("SELECT messageCount, ifnull(labelIds, '') FROM threads WHERE id = ?",
+                new Object[] { threadId })) {
+            assertTrue(threadId, c.moveToNext());
+            return c.getInt(0) + " " + c.getString(1);
+        }
+    }
+
+    private String threadOf(String mailId) {
+        return db.mailDao().findById(mailId).threadId;
+    }
+
+    private List<String> latestMails() {
+        return threadIds(db.mailDao());
+    }
+
+    // the maintained rows against grouping every listed mail.
+    private void assertMatchesGrouping() {
+        List<String> expected = new ArrayList<>();
+        try (Cursor c = db.query(SyncDao.THREAD_ROWS + " GROUP BY m.threadId", null)) {
+            while (c.moveToNext()) {
+                expected.add(c.getString(0) + " " + c.getLong(1) + " " + c.getString(2) + " " + c.getInt(3)
+                        + " " + c.getString(4));
+            }
+        }
+        List<String> actual = new ArrayList<>();
+        try (Cursor c = db.query("SELECT id, latestDateSentMillis, latestMailId, messageCount, labelIds "
+                + "FROM threads ORDER BY id", null)) {
+            while (c.moveToNext()) {
+                actual.add(c.getString(0) + " " + c.getLong(1) + " " + c.getString(2) + " " + c.getInt(3)
+                        + " " + c.getString(4));
+            }
+        }
+        assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+        assertEquals(expected.size(), actual.size());
+    }
+
+    private static MailEntity mail(String id, String subject, String from, String to, long date) {
+        MailEntity m = SyncFixtures.mail(id, subject, date);
+        m.fromEmail = from;
+        m.toEmail = to;
+        return m;
+    }
+}
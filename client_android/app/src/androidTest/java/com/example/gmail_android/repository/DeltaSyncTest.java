@@ -0,0 +1,102 @@
+package com.example.gmail_android.repository;
+
+import android.content.Context;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.example.gmail_android.auth.TokenStore;
+import com.example.gmail_android.dao.AppDatabase;
+import com.example.gmail_android.dao.MailDao;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+// refreshInbox against the local server: first run is a full snapshot, later runs only apply deltas.
+@RunWith(AndroidJUnit4.class)
+public class DeltaSyncTest {
+    private Context ctx;
+    private LocalMailServer server;
+    private AppDatabase db;
+    private MailRepository repo;
+
+    @Before
+    public void setUp() throws Exception {
+        ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        TokenStore.save(ctx, "token-7");
+        SyncStateStore.clear(ctx);
+
+        server = new LocalMailServer();
+        server.putLabel("inbox", "Inbox");
+        server.putLabel("work", "Work");
+        server.putMail("1", "first", 1_000L, "inbox");
+        server.putMail("2", "second", 2_000L, "inbox", "work");
+        server.putMail("3", "third", 3_000L, "inbox");
+        server.start();
+
+        db = AppDatabase.inMemoryBuilder(ctx).build();
+        // run io work inline so each refresh is complete when the call returns
+        repo = new MailRepository(ctx, server.api(), db, Runnable::run);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        db.close();
+        server.shutdown();
+        SyncStateStore.clear(ctx);
+        TokenStore.clear(ctx);
+    }
+
+    @Test
+    public void firstRefreshIsFullThenOnlyChangesAreFetched() throws Exception {
+        MailDao dao = db.mailDao();
+
+        repo.refreshInbox();
+        RecordedRequest first = server.takeRequest();
+        assertNull(first.getRequestUrl().queryParameter("since"));
+        assertEquals(3, dao.countMails());
+        assertNotNull(SyncStateStore.getCursor(ctx));
+
+        server.editSubject("2", "second (edited)");
+        server.deleteMail("3");
+        server.putMail("4", "fourth", 4_000L, "work");
+
+        repo.refreshInbox();
+        server.takeRequest(); // labels catalog from the first refresh
+        RecordedRequest second = server.takeRequest();
+        assertEquals("/api/mails/changes", second.getRequestUrl().encodedPath());
+        assertNotNull(second.getRequestUrl().queryParameter("since"));
+        assertEquals(3, server.lastChangesSize()); // edited, deleted, added
+
+        assertEquals(3, dao.countMails());
+        assertEquals("first", dao.findById("1").subject);
+        assertEquals("second (edited)", dao.findById("2").subject);
+        assertNull(dao.findById("3"));
+        assertEquals("fourth", dao.findById("4").subject);
+        assertEquals(0, server.hits("/api/mails/1"));
+    }
+
+    @Test
+    public void unchangedMailboxFetchesNothing() {
+        repo.refreshInbox();
+        String cursor = SyncStateStore.getCursor(ctx);
+
+        repo.refreshInbox();
+        assertEquals(0, server.lastChangesSize());
+        assertEquals(cursor, SyncStateStore.getCursor(ctx));
+        assertEquals(3, db.mailDao().countMails());
+        assertEquals(2, server.hits("/api/mails/changes"));
+        assertEquals(0, server.hits("/api/mails/search"));
+    }
+
+    @Test
+    public void otherAccountForcesFullRefresh() {
+        repo.refreshInbox();
+        assertNotNull(SyncStateStore.getCursor(ctx));
+
+        TokenStore.save(ctx, "token-8");
+        assertNull(SyncStateStore.getCursor(ctx));
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.gmail_android.repository;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.example.gmail_android.dao.AppDatabase;
+import com.example.gmail_android.dao.MailDao;
+import com.example.gmail_android.dao.SyncBatch;
+import com.example.gmail_android.entities.LabelEntity;
+import com.example.gmail_android.entities.MailEntity;
+import com.example.gmail_android.entities.MailLabelCrossRef;
+import com.example.gmail_android.entities.MailRow;
+import com.example.gmail_android.entities.MailWithLabels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+// loading a 5k-mail inbox: the @Relation/@Junction form (mails query + IN (...) label query,
+// a LabelEntity per join row) against MailRow + MailLists (one query, shared labels).
+// Median wall time and per-load allocations are logged under the "ListLoadBench" tag.
+// Both are read with raw queries here, mapped the way Room's generated code maps them, so the
+// app's MailDao carries no benchmark-only methods.
+@RunWith(AndroidJUnit4.class)
+public class ListLoadBenchmark {
+    private static final int MAILS = 5_000;
+    private static final int LABELS = 12;
+    private static final int LABELS_PER_MAIL = 3;
+    private static final int RUNS = 7;
+
+    private AppDatabase db;
+
+    @Before
+    public void setUp() {
+        Context ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = AppDatabase.inMemoryBuilder(ctx).build();
+        SyncBatch b = new SyncBatch();
+        for (int l = 0; l < LABELS; l++) b.labels.add(new LabelEntity("label" + l, "Label " + l));
+        for (int i = 0; i < MAILS; i++) {
+            MailEntity m = new MailEntity("m" + i);
+            m.fromEmail = "user" + (i % 100) + "@bloomly.com";
+            m.toEmail = "me@bloomly.com";
+            m.subject = "Subject " + i;
+            m.snippet = "a short preview of mail " + i;
+            m.dateSentMillis = 1_700_000_000_000L + i * 60_000L;
+            b.mails.add(m);
+            for (int l = 0; l < LABELS_PER_MAIL; l++) {
+                b.joins.add(new MailLabelCrossRef(m.id, "label" + ((i + l) % LABELS)));
+            }
+        }
+        db.syncDao().apply(b);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void relationVersusSingleQuery() {
+        Supplier<List<MailWithLabels>> relation = this::inboxWithRelations;
+        Supplier<List<MailWithLabels>> single = () -> MailLists.assemble(
+                inboxRows(), MailLists.index(db.labelDao().all()));
+
+        long[] rel = measure(relation);
+        long[] one = measure(single);
+        Log.i("ListLoadBench", "mails=" + MAILS
+                + " relation: medianMicros=" + rel[0] + " allocs=" + rel[1] + " allocBytes=" + rel[2]
+                + " | single: medianMicros=" + one[0] + " allocs=" + one[1] + " allocBytes=" + one[2]);
+
+        List<MailWithLabels> a = relation.get();
+        List<MailWithLabels> b = single.get();
+        assertEquals(MAILS, b.size());
+        for (int i = 0; i < MAILS; i++) {
+            assertEquals(a.get(i).mail.id, b.get(i).mail.id);
+            assertEquals(a.get(i).labels.size(), b.get(i).labels.size());
+        }
+        assertEquals(MAILS * LABELS_PER_MAIL, distinctLabels(a));
+        assertEquals(LABELS, distinctLabels(b));
+    }
+
+    // the whole inbox as MailRows (the paged lists read a window of it with the same columns).
+    private static final String INBOX = "SELECT mails.*, " + MailDao.LABEL_IDS +
+            " FROM mails WHERE searchOnly = 0 ORDER BY dateSentMillis DESC";
+
+    private List<MailRow> inboxRows() {
+        List<MailRow> out = new ArrayList<>();
+        try (Cursor c = db.query(INBOX, null)) {
+            int labelIds = c.getColumnIndexOrThrow("labelIds");
+            while (c.moveToNext()) {
+                MailRow r = new MailRow();
+                r.mail = mail(c);
+                r.labelIds = c.isNull(labelIds) ? null : c.getString(labelIds);
+                out.add(r);
+            }
+        }
+        return out;
+    }
+
+    // what a @Transaction @Relation/@Junction query does: the mails, then their labels through
+    // mail_label in chunks of 999 ids, a LabelEntity per join row.
+    private List<MailWithLabels> inboxWithRelations() {
+        return db.runInTransaction(() -> {
+            List<MailWithLabels> out = new ArrayList<>();
+            Map<String, List<LabelEntity>> byMail = new HashMap<>();
+            try (Cursor c = db.query("SELECT * FROM mails ORDER BY dateSentMillis DESC", null)) {
+                while (c.moveToNext()) {
+                    MailWithLabels m = new MailWithLabels();
+                    m.mail = mail(c);
+                    m.labels = new ArrayList<>();
+                    byMail.put(m.mail.id, m.labels);
+                    out.add(m);
+                }
+            }
+            List<String> ids = new ArrayList<>(byMail.keySet());
+            for (int from = 0; from < ids.size(); from += 999) {
+                List<String> chunk = ids.subList(from, Math.min(ids.size(), from + 999));
+                StringBuilder sql = new StringBuilder("SELECT labels.id, labels.name, j.mailId "
+                        + "FROM mail_label AS j INNER JOIN labels ON labels.id = j.labelId WHERE j.mailId IN (");
+                for (int i = 0; i < chunk.size(); i++) sql.append(i == 0 ? "?" : ",?");
+                sql.append(')');
+                try (Cursor c = db.query(sql.toString(), chunk.toArray())) {
+                    while (c.moveToNext()) {
+                        byMail.get(c.getString(2)).add(new LabelEntity(c.getString(0), c.getString(1)));
+                    }
+                }
+            }
+            return out;
+        });
+    }
+
+    private static MailEntity mail(Cursor c) {
+        MailEntity m = new MailEntity(c.getString(c.getColumnIndexOrThrow("id")));
+        m.fromEmail = c.getString(c.getColumnIndexOrThrow("fromEmail"));
+        m.toEmail = c.getString(c.getColumnIndexOrThrow("toEmail"));
+        m.subject = c.getString(c.getColumnIndexOrThrow("subject"));
+        m.snippet = c.getString(c.getColumnIndexOrThrow("snippet"));
+        m.dateSentMillis = c.getLong(c.getColumnIndexOrThrow("dateSentMillis"));
+        m.isSpam = c.getInt(c.getColumnIndexOrThrow("isSpam")) != 0;
+        m.searchOnly = c.getInt(c.getColumnIndexOrThrow("searchOnly")) != 0;
+        m.threadId = c.getString(c.getColumnIndexOrThrow("threadId"));
+        m.contentHash = c.getLong(c.getColumnIndexOrThrow("contentHash"));
+        return m;
+    }
+
+    // {median micros, objects allocated, bytes allocated} of one load (counts from the last run)
+    private static long[] measure(Supplier<List<MailWithLabels>> load) {
+        load.get(); // warm-up
+        long[] micros = new long[RUNS];
+        int allocs = 0, bytes = 0;
+        for (int r = 0; r < RUNS; r++) {
+            Debug.resetThreadAllocCount();
+            Debug.resetThreadAllocSize();
+            Debug.startAllocCounting();
+            long t0 = SystemClock.elapsedRealtimeNanos();
+            load.get();
+            micros[r] = (SystemClock.elapsedRealtimeNanos() - t0) / 1000;
+            Debug.stopAllocCounting();
+            allocs = Debug.getThreadAllocCount();
+            bytes = Debug.getThreadAllocSize();
+        }
+        Arrays.sort(micros);
+        return new long[] { micros[RUNS / 2], allocs, bytes };
+    }
+
+    // label objects behind a list, by identity.
+    private static int distinctLabels(List<MailWithLabels> list) {
+        Map<LabelEntity, Boolean> seen = new IdentityHashMap<>();
+        for (MailWithLabels m : list) for (LabelEntity l : m.labels) seen.put(l, true);
+        return seen.size();
+    }
+}
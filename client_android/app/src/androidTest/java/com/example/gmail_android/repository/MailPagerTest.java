@@ -0,0 +1,230 @@
+package com.example.gmail_android.repository;
+
+import android.content.Context;
+import android.os.SystemClock;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.example.gmail_android.auth.TokenStore;
+import com.example.gmail_android.dao.AppDatabase;
+import com.example.gmail_android.dao.SyncBatch;
+import com.example.gmail_android.dao.SyncFixtures;
+import com.example.gmail_android.entities.MailEntity;
+import com.example.gmail_android.entities.MailWithLabels;
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Cache;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+// keyset paging against the local server: one page on first render, older pages via `before=`.
+@RunWith(AndroidJUnit4.class)
+public class MailPagerTest {
+    private static final int SERVER_MAILS = 180;
+
+    private Context ctx;
+    private LocalMailServer server;
+    private AppDatabase db;
+    private ExecutorService io;
+    private MailRepository repo;
+
+    @Before
+    public void setUp() throws Exception {
+        ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        TokenStore.save(ctx, "token-7");
+        SyncStateStore.clear(ctx);
+
+        server = new LocalMailServer();
+        server.putLabel("inbox", "Inbox");
+        server.putLabel("work", "Work");
+        for (int i = 1; i <= SERVER_MAILS; i++) {
+            if (i % 3 == 0) server.putMail(String.valueOf(i), "mail " + i, i * 1_000L, "inbox", "work");
+            else server.putMail(String.valueOf(i), "mail " + i, i * 1_000L, "inbox");
+        }
+        server.start();
+
+        db = AppDatabase.inMemoryBuilder(ctx).build();
+        io = Executors.newSingleThreadExecutor();
+        repo = new MailRepository(ctx, server.api(), db, io);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        io.shutdownNow();
+        db.close();
+        server.shutdown();
+        SyncStateStore.clear(ctx);
+        TokenStore.clear(ctx);
+    }
+
+    @Test
+    public void firstRenderIsOnePageRegardlessOfStoredMails() throws Exception {
+        SyncBatch b = new SyncBatch();
+        for (int i = 0; i < 5_000; i++) {
+            MailEntity m = new MailEntity("local-" + i);
+            m.subject = "stored " + i;
+            m.dateSentMillis = 1_700_000_000_000L + i;
+            b.mails.add(m);
+        }
+        db.syncDao().apply(b);
+
+        MailPager pager = repo.pagedInbox();
+        List<MailWithLabels> first = observeUntil(pager.items, MailPager.PAGE_SIZE);
+        assertEquals(MailPager.PAGE_SIZE, first.size());
+        assertEquals("local-4999", first.get(0).mail.id);
+    }
+
+    @Test
+    public void scrollingFetchesOlderPagesWithBeforeCursor() throws Exception {
+        repo.refreshInbox();
+        drain();
+        server.takeRequest(); // changes (full snapshot)
+        server.takeRequest(); // labels
+
+        MailPager pager = repo.pagedInbox();
+        List<MailWithLabels> page1 = observeUntil(pager.items, 50);
+        assertEquals("180", page1.get(0).mail.id);
+        assertEquals("131", page1.get(49).mail.id);
+
+        loadMore(pager);
+        List<MailWithLabels> page2 = observeUntil(pager.items, 100);
+        RecordedRequest req = server.takeRequest();
+        assertEquals("/api/mails", req.getRequestUrl().encodedPath());
+        assertEquals("131000_131", req.getRequestUrl().queryParameter("before"));
+        assertEquals("81", page2.get(99).mail.id);
+
+        loadMore(pager);
+        observeUntil(pager.items, 150);
+        loadMore(pager);
+        List<MailWithLabels> all = observeUntil(pager.items, SERVER_MAILS);
+        assertEquals("1", all.get(SERVER_MAILS - 1).mail.id);
+
+        assertFalse(pager.isEndReached());
+        loadMore(pager);
+        drain();
+        assertTrue(pager.isEndReached());
+        assertEquals(4, server.hits("/api/mails") - server.hits("/api/mails/changes"));
+    }
+
+    @Test
+    public void labelListPagesThroughThatLabelOnly() throws Exception {
+        repo.refreshInbox();
+        drain();
+
+        MailPager pager = repo.pagedByLabel("work");
+        // the inbox snapshot (131..180) holds 17 "work" mails
+        List<MailWithLabels> first = observeUntil(pager.items, 17);
+        assertEquals(17, first.size());
+
+        loadMore(pager);
+        List<MailWithLabels> all = observeUntil(pager.items, SERVER_MAILS / 3);
+        for (MailWithLabels m : all) assertEquals(0, Integer.parseInt(m.mail.id) % 3);
+        assertEquals(1, server.hits("/api/mails/label/work"));
+    }
+
+    @Test
+    public void labelFiltersComeFromTheIndexAndFollowSyncs() throws Exception {
+        repo.refreshInbox();
+        drain();
+
+        // the inbox snapshot (131..180): 17 "work" mails, all of them also "inbox"
+        MailPager pager = repo.pagedByLabels("inbox NOT work");
+        List<MailWithLabels> first = observeUntil(pager.items, MailPager.PAGE_SIZE - 17);
+        assertEquals("179", first.get(0).mail.id);
+        for (MailWithLabels m : first) assertNotEquals(0, Integer.parseInt(m.mail.id) % 3);
+
+        // a sync that adds a matching mail shows up without a new query
+        server.putMail("200", "mail 200", 200_000L, "inbox");
+        repo.refreshInbox();
+        drain();
+        List<MailWithLabels> after = observeUntil(pager.items, MailPager.PAGE_SIZE - 16);
+        assertEquals("200", after.get(0).mail.id);
+        assertEquals(0, server.hits("/api/mails/label/work"));
+    }
+
+    @Test
+    public void pageComingBack304AfterAFullResyncIsWrittenAgain() throws Exception {
+        Cache cache = new Cache(new File(ctx.getCacheDir(), "pager-test-http"), 1024 * 1024);
+        try {
+            repo = new MailRepository(ctx, server.api(cache), db, io);
+            repo.refreshInbox();
+            drain();
+            MailPager pager = repo.pagedInbox();
+            observeUntil(pager.items, 50);
+            loadMore(pager);
+            observeUntil(pager.items, 100);
+
+            // a full resync keeps the newest 50: the page below them is gone from Room, not from the cache
+            SyncStateStore.clear(ctx);
+            repo.refreshInbox();
+            drain();
+            assertEquals(50, db.mailDao().countMails());
+
+            MailPager again = repo.pagedInbox();
+            observeUntil(again.items, 50);
+            loadMore(again);
+            List<MailWithLabels> page2 = observeUntil(again.items, 100);
+            assertEquals(1, server.notModified());
+            assertEquals("81", page2.get(99).mail.id);
+            assertFalse(again.isEndReached());
+
+            // paging goes on below it
+            loadMore(again);
+            observeUntil(again.items, 150);
+        } finally {
+            cache.delete();
+        }
+    }
+
+    @Test
+    public void serverSearchAppliesTheQueryOperators() throws Exception {
+        // no mail is stored: every hit comes from the server
+        repo.refreshSearch("label:Work mail -is:spam before:1970/01/02");
+        drain();
+
+        List<String> ids = SyncFixtures.searchIds(db.mailDao(), "label:Work mail -is:spam before:1970/01/02");
+        assertEquals(MailPager.PAGE_SIZE, ids.size());
+        assertEquals("180", ids.get(0));
+        for (String id : ids) assertEquals(0, Integer.parseInt(id) % 3);
+        RecordedRequest req = server.takeRequest();
+        while (!req.getPath().startsWith("/api/mails/search/")) req = server.takeRequest();
+        assertNotNull(req.getRequestUrl().queryParameter("tz"));
+    }
+
+    private static void loadMore(MailPager pager) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(pager::loadMore);
+    }
+
+    // waits for queued io work (network + Room writes) to finish.
+    private void drain() throws Exception {
+        io.submit(() -> { }).get(10, TimeUnit.SECONDS);
+    }
+
+    // observes the list until it has n items (or times out), then returns it.
+    private static List<MailWithLabels> observeUntil(LiveData<List<MailWithLabels>> live, int n) {
+        Observer<List<MailWithLabels>> noop = list -> { };
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> live.observeForever(noop));
+        try {
+            long deadline = SystemClock.elapsedRealtime() + 10_000;
+            while (SystemClock.elapsedRealtime() < deadline) {
+                List<MailWithLabels> v = live.getValue();
+                if (v != null && v.size() == n) return v;
+                SystemClock.sleep(20);
+            }
+            List<MailWithLabels> v = live.getValue();
+            fail("expected " + n + " items, got " + (v == null ? "none" : v.size()));
+            return v;
+        } finally {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> live.removeObserver(noop));
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.gmail_android.repository;
+
+import android.content.Context;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.example.gmail_android.auth.TokenStore;
+import com.example.gmail_android.dao.AppDatabase;
+import com.example.gmail_android.dao.MailDao;
+import com.example.gmail_android.dao.OutboxDao;
+import com.example.gmail_android.entities.OutboxEntity;
+import com.example.gmail_android.interfaces.MailApi;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+// changes through the outbox against the local server: shown locally at once, replayed when
+// the server takes them, coalesced while it doesn't, undone when it refuses them.
+@RunWith(AndroidJUnit4.class)
+public class OutboxTest {
+    private Context ctx;
+    private LocalMailServer server;
+    private AppDatabase db;
+    private OutboxDao outbox;
+    private MailDao mails;
+    private MailRepository repo;
+
+    @Before
+    public void setUp() throws Exception {
+        ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        TokenStore.save(ctx, "token-7");
+        SyncStateStore.clear(ctx);
+
+        server = new LocalMailServer();
+        server.putLabel("inbox", "Inbox");
+        server.putLabel("sent", "Sent");
+        server.putLabel("work", "Work");
+        server.putLabel("spam", "Spam");
+        server.putMail("1", "first", 1_000L, "inbox");
+        server.putMail("2", "second", 2_000L, "inbox", "work");
+        server.start();
+
+        db = AppDatabase.inMemoryBuilder(ctx).build();
+        outbox = db.outboxDao();
+        mails = db.mailDao();
+        // run io work inline: a change is written, replayed and followed by its sync when the call returns
+        repo = new MailRepository(ctx, server.api(), db, Runnable::run);
+        repo.refreshInbox();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        db.close();
+        server.shutdown();
+        SyncStateStore.clear(ctx);
+        TokenStore.clear(ctx);
+    }
+
+    private static List<String> labelIds(MailApi.MailDto d) {
+        List<String> out = new ArrayList<>();
+        for (MailApi.LabelDto l : d.labels) out.add(l.id);
+        return out;
+    }
+
+    @Test
+    public void labelChangeCostsOneCallAndNoRefetch() {
+        int syncs = server.hits("/api/mails/changes");
+        repo.addLabel("1", "Work");
+
+        assertTrue(outbox.labelIdsOf("1").contains("work"));
+        assertTrue(labelIds(server.mail("1")).contains("work"));
+        assertTrue(outbox.pending().isEmpty());
+        assertEquals(1, server.idempotencyKeys().size());
+        // the local copy already is what the server did: no delta sync, no GET of the mail
+        assertEquals(syncs, server.hits("/api/mails/changes"));
+        assertEquals(1, server.hits("/api/mails/1"));
+
+        repo.removeLabel("1", "work");
+        assertFalse(outbox.labelIdsOf("1").contains("work"));
+        assertFalse(labelIds(server.mail("1")).contains("work"));
+        assertEquals(2, server.hits("/api/mails/1"));
+        assertEquals(syncs, server.hits("/api/mails/changes"));
+    }
+
+    @Test
+    public void offlineChangesShowAtOnceCoalesceAndReplayLater() {
+        server.failChanges(503);
+
+        repo.addLabel("1", "work");
+        // the add was tried (and failed) already, so the remove can't cancel it out: both wait
+        repo.removeLabel("1", "work");
+        repo.removeLabel("2", "work");
+        assertFalse(outbox.labelIdsOf("2").contains("work"));
+        List<OutboxEntity> waiting = outbox.pending();
+        assertEquals(3, waiting.size());
+        assertEquals(1, waiting.get(0).attempts);
+        assertTrue(waiting.get(0).nextAttemptAt > System.currentTimeMillis());
+
+        // a sync while the changes wait does not bring the label back
+        server.editSubject("2", "second (edited)");
+        repo.refreshInbox();
+        assertEquals("second (edited)", mails.findById("2").subject);
+        assertFalse(outbox.labelIdsOf("2").contains("work"));
+
+        server.failChanges(0);
+        repo.refreshInbox(); // the server answers again: waiting changes go at once
+        assertTrue(outbox.pending().isEmpty());
+        assertFalse(labelIds(server.mail("1")).contains("work"));
+        assertFalse(labelIds(server.mail("2")).contains("work"));
+        assertFalse(outbox.labelIdsOf("2").contains("work"));
+        // every attempt of a change carried the same key
+        assertEquals(3, new HashSet<>(server.idempotencyKeys()).size());
+    }
+
+    @Test
+    public void sentMailIsListedAtOnceThenTakesTheServersId() {
+        server.failChanges(503);
+        repo.send("a@bloomly.com", "hello", "hi there", null);
+        assertEquals(3, mails.countMails());
+        String local = outbox.pending().get(0).target;
+        assertTrue(OutboxEntity.isLocal(local));
+        assertEquals("hello", mails.findById(local).subject);
+        assertTrue(outbox.labelIdsOf(local).contains("sent"));
+
+        // a full snapshot doesn't drop the mail the server doesn't have yet
+        SyncStateStore.clear(ctx);
+        repo.refreshInbox();
+        assertNotNull(mails.findById(local));
+
+        server.failChanges(0);
+        repo.refreshInbox();
+        assertTrue(outbox.pending().isEmpty());
+        assertNull(mails.findById(local));
+        assertEquals(3, server.mailCount());
+        assertEquals(3, mails.countMails());
+    }
+
+    @Test
+    public void draftIsDeletedOnlyAfterItsReplacementWasSent() {
+        server.failChanges(503);
+        String key = repo.send("a@bloomly.com", "from draft", "text", null);
+        repo.delete("1", key);
+        assertNull(mails.findById("1"));
+        // the delete waits for the send: only the send was tried
+        assertEquals(1, server.idempotencyKeys().size());
+        assertNotNull(server.mail("1"));
+
+        server.failChanges(0);
+        repo.refreshInbox();
+        assertTrue(outbox.pending().isEmpty());
+        assertNull(server.mail("1"));
+        assertEquals(2, server.mailCount());
+    }
+
+    @Test
+    public void deletingAThreadDeletesEachOfItsMails() {
+        server.putMail("3", "Re: first", 3_000L, "inbox");
+        repo.refreshInbox();
+        String thread = mails.findById("1").threadId;
+        assertEquals(thread, mails.findById("3").threadId);
+
+        repo.deleteThread(thread);
+        assertNull(mails.findById("1"));
+        assertNull(mails.findById("3"));
+        assertNull(server.mail("1"));
+        assertNull(server.mail("3"));
+        assertNotNull(server.mail("2"));
+    }
+
+    @Test
+    public void refusedLabelChangeIsRolledBackLocally() {
+        server.deleteMail("1"); // elsewhere; not synced here yet
+        repo.addLabel("1", "work");
+
+        // refused: the join is taken back out, without fetching the mail again
+        assertTrue(outbox.pending().isEmpty());
+        assertNotNull(mails.findById("1"));
+        assertFalse(outbox.labelIdsOf("1").contains("work"));
+        assertEquals(1, server.hits("/api/mails/1"));
+    }
+
+    @Test
+    public void spamFlagShowsAtOnceAndSurvivesTheNextSync() {
+        repo.addLabel("1", "spam");
+        assertTrue(mails.findById("1").isSpam);
+        assertTrue(server.mail("1").spam);
+
+        server.editSubject("1", "first (edited)");
+        repo.refreshInbox();
+        assertEquals("first (edited)", mails.findById("1").subject);
+        assertTrue(mails.findById("1").isSpam);
+    }
+
+    @Test
+    public void refusedSpamIsUndoneFromTheServersCopy() {
+        server.failChanges(404);
+        repo.addLabel("1", "spam");
+
+        // isSpam before the change is only known to the server: the mail is fetched again
+        assertTrue(outbox.pending().isEmpty());
+        assertFalse(mails.findById("1").isSpam);
+        assertFalse(outbox.labelIdsOf("1").contains("spam"));
+        assertEquals(2, server.hits("/api/mails/1")); // the refused POST, then the GET
+    }
+
+    @Test
+    public void refusedEditIsUndoneFromTheServersCopy() {
+        server.deleteMail("1");
+        repo.edit("1", null, "changed here", null, null);
+        assertEquals("changed here", mails.findById("1").subject);
+
+        // the server has no such mail: the edit is dropped and the mail fetched again, gone too
+        // (the local server answers PATCH with 405, refused like the web server's 404)
+        assertTrue(outbox.pending().isEmpty());
+        assertNull(mails.findById("1"));
+    }
+}
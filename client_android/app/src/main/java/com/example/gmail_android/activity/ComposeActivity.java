@@ -10,6 +10,7 @@ import android.widget.Toast;
 import androidx.activity.ComponentActivity;
 import androidx.annotation.NonNull;
 import com.example.gmail_android.R;
+import com.example.gmail_android.entities.LabelEntity;
 import com.example.gmail_android.interfaces.ApiClient;
 import com.example.gmail_android.interfaces.MailApi;
 import com.example.gmail_android.repository.MailRepository;
@@ -67,7 +68,7 @@ public class ComposeActivity extends androidx.appcompat.app.AppCompatActivity {
                 if (m == null || m.mail == null) return;
                 etTo.setText(m.mail.toEmail == null ? "" : m.mail.toEmail);
                 etSubject.setText(m.mail.subject == null ? "" : m.mail.subject);
-                etContent.setText(m.mail.content == null ? "" : m.mail.content);
+                etContent.setText(m.content());
                 // Pre-check non-system labels
                 if (m.labels != null) {
                     for (var l : m.labels) {
@@ -121,48 +122,19 @@ public class ComposeActivity extends androidx.appcompat.app.AppCompatActivity {
         }
         List<String> maybeNull = labels.isEmpty() ? null : labels;
 
-        // Common callbacks
-        Callback<MailApi.MailDto> onSendCb = new Callback<>() {
-            @Override public void onResponse(@NonNull Call<MailApi.MailDto> call,
-                                             @NonNull Response<MailApi.MailDto> res) {
-                if (!res.isSuccessful()) {
-                    tvError.setText(getString(R.string.send_failed, res.code()));
-                    tvError.setVisibility(TextView.VISIBLE);
-                    return;
-                }
-                // If we were sending while editing an existing draft, delete that draft now
-                if (!asDraft && editMailId != null) {
-                    // Delete from backend (best effort) and immediately from Room so UI updates
-                    repo.deleteLocal(editMailId);
-                    repo.delete(editMailId, /*cb*/ null);
-                }
-
-                repo.refreshInbox();
-                Toast.makeText(ComposeActivity.this,
-                        asDraft ? R.string.draft_saved : R.string.sent_ok,
-                        Toast.LENGTH_SHORT).show();
-                finish();
-            }
-
-            @Override public void onFailure(@NonNull Call<MailApi.MailDto> call, @NonNull Throwable t) {
-                tvError.setText(getString(R.string.network_error_generic));
-                tvError.setVisibility(TextView.VISIBLE);
-            }
-        };
-
-        // IMPORTANT: When sending, ALWAYS create a NEW mail (POST),
-        // and if we were editing a draft, delete the old draft after success.
+        // Stored and listed at once; the outbox sends it in the background (a change the
+        // server refuses is reported from the inbox screen).
         if (!asDraft) {
-            repo.send(to, sub, msg, maybeNull, onSendCb);
-            return;
-        }
-
-        // Saving a draft: create new if it's a brand new draft, or PATCH the existing one
-        if (editMailId == null) {
-            repo.send(to, sub, msg, maybeNull, onSendCb); // create a draft via POST with "Drafts" label
+            // Always create a NEW mail (POST); an edited draft is deleted once it went out
+            String key = repo.send(to, sub, msg, maybeNull);
+            if (editMailId != null) repo.delete(editMailId, key);
+        } else if (editMailId == null) {
+            repo.send(to, sub, msg, maybeNull); // create a draft via POST with "Drafts" label
         } else {
-            repo.edit(editMailId, to, sub, msg, maybeNull, onSendCb); // update existing draft
+            repo.edit(editMailId, to, sub, msg, maybeNull); // update existing draft
         }
+        Toast.makeText(this, asDraft ? R.string.draft_saved : R.string.sent_ok, Toast.LENGTH_SHORT).show();
+        finish();
     }
 
     private void loadLabels() {
@@ -206,23 +178,14 @@ public class ComposeActivity extends androidx.appcompat.app.AppCompatActivity {
                 .setPositiveButton(R.string.create, (d, w) -> {
                     String name = input.getText().toString().trim();
                     if (name.isEmpty()) return;
-                    api.createLabel(new MailApi.CreateLabelRequest(name))
-                            .enqueue(new Callback<>() {
-                                @Override public void onResponse(@NonNull Call<MailApi.LabelDto> call,
-                                                                 @NonNull Response<MailApi.LabelDto> res) {
-                                    if (res.isSuccessful() && res.body() != null) {
-                                        available.add(res.body());
-                                        renderChips();
-                                    } else {
-                                        Toast.makeText(ComposeActivity.this,
-                                                R.string.create_label_failed, Toast.LENGTH_SHORT).show();
-                                    }
-                                }
-                                @Override public void onFailure(@NonNull Call<MailApi.LabelDto> call, @NonNull Throwable t) {
-                                    Toast.makeText(ComposeActivity.this,
-                                            R.string.network_error_generic, Toast.LENGTH_SHORT).show();
-                                }
-                            });
+                    // usable at once; created on the server before a mail that uses it is sent
+                    LabelEntity created = repo.createLabel(name);
+                    MailApi.LabelDto l = new MailApi.LabelDto();
+                    l.id = created.id;
+                    l.name = created.name;
+                    available.add(l);
+                    selectedNames.add(name);
+                    renderChips();
                 })
                 .setNegativeButton(android.R.string.cancel, null)
                 .show();
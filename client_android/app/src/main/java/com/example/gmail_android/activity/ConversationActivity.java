@@ -0,0 +1,65 @@
+package com.example.gmail_android.activity;
+
+import android.app.AlertDialog;
+import android.content.Intent;
+import android.os.Bundle;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import com.example.gmail_android.R;
+import com.example.gmail_android.entities.MailWithLabels;
+import com.example.gmail_android.repository.MailRepository;
+import com.google.android.material.appbar.MaterialToolbar;
+
+// the mails of one conversation (a threaded inbox row with more than one mail), newest first.
+// Each mail opens, is edited (drafts) and is deleted on its own, like an inbox row.
+public class ConversationActivity extends androidx.appcompat.app.AppCompatActivity {
+
+    @Override protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_conversation);
+
+        MaterialToolbar bar = findViewById(R.id.topAppBar);
+        bar.setNavigationOnClickListener(v -> finish());
+
+        // thread ID passed from the inbox.
+        String threadId = getIntent().getStringExtra("thread_id");
+        MailRepository repo = new MailRepository(getApplicationContext());
+
+        RecyclerView recycler = findViewById(R.id.recycler);
+        recycler.setLayoutManager(new LinearLayoutManager(this));
+        MailAdapter adapter = new MailAdapter(new MailAdapter.Actions() {
+            @Override public void onOpen(MailWithLabels mail) {
+                Intent i = new Intent(ConversationActivity.this, MailDetailsActivity.class);
+                i.putExtra("mail_id", mail.mail.id);
+                startActivity(i);
+            }
+
+            @Override public void onDelete(MailWithLabels mail) {
+                new AlertDialog.Builder(ConversationActivity.this)
+                        .setTitle(R.string.delete)
+                        .setMessage(getString(R.string.delete) + " \"" +
+                                (mail.mail.subject == null ? "" : mail.mail.subject) + "\"?")
+                        .setPositiveButton(android.R.string.ok, (d, w) -> repo.delete(mail.mail.id))
+                        .setNegativeButton(android.R.string.cancel, null)
+                        .show();
+            }
+
+            @Override public void onEdit(MailWithLabels mail) {
+                Intent i = new Intent(ConversationActivity.this, ComposeActivity.class);
+                i.putExtra("edit_mail_id", mail.mail.id);
+                startActivity(i);
+            }
+        });
+        recycler.setAdapter(adapter);
+
+        repo.getThreadLive(threadId).observe(this, mails -> {
+            // every mail of it deleted (here or by a sync): nothing left to show
+            if (mails.isEmpty()) {
+                finish();
+                return;
+            }
+            bar.setTitle(mails.get(0).mail.subject);
+            adapter.submitList(mails);
+        });
+    }
+}
@@ -12,12 +12,14 @@ import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 import com.example.gmail_android.R;
+import com.example.gmail_android.entities.LabelCount;
 import com.example.gmail_android.entities.LabelEntity;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
-public class LabelAdapter extends ListAdapter<LabelEntity, LabelAdapter.VH> {
+// drawer rows: label name, its mail count, and a rename/delete menu for user labels.
+public class LabelAdapter extends ListAdapter<LabelCount, LabelAdapter.VH> {
 
     public interface Actions {
         void onSelect(LabelEntity label);
@@ -37,21 +39,22 @@ public class LabelAdapter extends ListAdapter<LabelEntity, LabelAdapter.VH> {
         this.actions = actions;
     }
 
-    private static final DiffUtil.ItemCallback<LabelEntity> DIFF =
-            new DiffUtil.ItemCallback<LabelEntity>() {
-                @Override public boolean areItemsTheSame(@NonNull LabelEntity a, @NonNull LabelEntity b) {
-                    return a.id.equals(b.id);
+    private static final DiffUtil.ItemCallback<LabelCount> DIFF =
+            new DiffUtil.ItemCallback<LabelCount>() {
+                @Override public boolean areItemsTheSame(@NonNull LabelCount a, @NonNull LabelCount b) {
+                    return LabelCount.sameItem(a, b);
                 }
-                @Override public boolean areContentsTheSame(@NonNull LabelEntity a, @NonNull LabelEntity b) {
-                    return a.name.equals(b.name);
+                @Override public boolean areContentsTheSame(@NonNull LabelCount a, @NonNull LabelCount b) {
+                    return LabelCount.sameContents(a, b);
                 }
             };
 
     static class VH extends RecyclerView.ViewHolder {
-        TextView name; ImageButton more;
+        TextView name; TextView count; ImageButton more;
         VH(@NonNull View v) {
             super(v);
             name = v.findViewById(R.id.txtName);
+            count = v.findViewById(R.id.txtCount);
             more = v.findViewById(R.id.btnMore);
         }
     }
@@ -63,8 +66,10 @@ public class LabelAdapter extends ListAdapter<LabelEntity, LabelAdapter.VH> {
     }
 
     @Override public void onBindViewHolder(@NonNull VH h, int position) {
-        LabelEntity item = getItem(position);
+        LabelCount row = getItem(position);
+        LabelEntity item = row.label;
         h.name.setText(item.name);
+        h.count.setText(row.total > 0 ? String.valueOf(row.total) : "");
 
         // Row tap → select
         h.itemView.setOnClickListener(v -> actions.onSelect(item));
@@ -33,13 +33,11 @@ public class MailAdapter extends ListAdapter<MailWithLabels, MailAdapter.VH> {
             new DiffUtil.ItemCallback<MailWithLabels>() {
                 @Override public boolean areItemsTheSame(@NonNull MailWithLabels a, @NonNull MailWithLabels b) {
                     // check if two items are the same by comparing their unique mail IDs.
-                    return a.mail.id.equals(b.mail.id);
+                    return MailWithLabels.sameItem(a, b);
                 }
                 @Override public boolean areContentsTheSame(@NonNull MailWithLabels a, @NonNull MailWithLabels b) {
                     // check if content has changed.
-                    return a.mail.subject.equals(b.mail.subject)
-                            && a.mail.fromEmail.equals(b.mail.fromEmail)
-                            && a.mail.dateSentMillis == b.mail.dateSentMillis;
+                    return MailWithLabels.sameContents(a, b);
                 }
             };
 
@@ -57,8 +55,13 @@ public class MailAdapter extends ListAdapter<MailWithLabels, MailAdapter.VH> {
 
         // set the subject text.
         h.subject.setText(item.mail.subject);
-        // set the sender email text.
-        h.from.setText(item.mail.fromEmail);
+        // set the sender email text, with the number of mails when the row is a conversation.
+        if (item.messageCount > 1) {
+            h.from.setText(h.itemView.getContext().getString(R.string.thread_from_fmt,
+                    item.mail.fromEmail, item.messageCount));
+        } else {
+            h.from.setText(item.mail.fromEmail);
+        }
 
         // hide the preview text in the main screen.
         h.preview.setVisibility(View.GONE);
@@ -74,7 +77,9 @@ public class MailAdapter extends ListAdapter<MailWithLabels, MailAdapter.VH> {
             final int ID_EDIT = 1;
             final int ID_DELETE = 2;
 
-            boolean isDraft = hasDraftLabel(item);
+            // a conversation row's labels are its mails' labels: its drafts are edited from the
+            // conversation, not from the row
+            boolean isDraft = item.messageCount <= 1 && hasDraftLabel(item);
 
             androidx.appcompat.widget.PopupMenu pm =
                     new androidx.appcompat.widget.PopupMenu(v.getContext(), h.more, android.view.Gravity.END);
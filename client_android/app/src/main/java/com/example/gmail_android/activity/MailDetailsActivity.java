@@ -2,9 +2,9 @@ package com.example.gmail_android.activity;
 import android.os.Bundle;
 import android.widget.TextView;
 import androidx.activity.ComponentActivity;
-import androidx.annotation.NonNull;
 
 import com.example.gmail_android.R;
+import com.example.gmail_android.entities.MailDetails;
 import com.example.gmail_android.entities.MailWithLabels;
 import com.example.gmail_android.repository.MailRepository;
 import com.google.android.material.appbar.MaterialToolbar;
@@ -50,7 +50,7 @@ public class MailDetailsActivity extends androidx.appcompat.app.AppCompatActivit
         repo = new MailRepository(getApplicationContext());
 
         // mail data from Room database.
-        repo.getMailLive(id).observe(this, (MailWithLabels m) -> {
+        repo.getMailLive(id).observe(this, (MailDetails m) -> {
             if (m == null || m.mail == null) return;
             // set subject.
             tvSubject.setText(m.mail.subject);
@@ -66,13 +66,19 @@ public class MailDetailsActivity extends androidx.appcompat.app.AppCompatActivit
             // display the sent date/time.
             tvDate.setText(DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT)
                     .format(new Date(m.mail.dateSentMillis)));
-            // set mail body text, default to empty string if null.
-            tvBody.setText(m.mail.content == null ? "" : m.mail.content);
+            // set mail body text (loaded from mail_bodies), empty until synced.
+            tvBody.setText(m.content());
 
             // remove any existing chips and add new ones for the mail's labels.
             renderChips(m);
         });
 
+        // a label change the server refused (the chip comes back or goes again by itself)
+        repo.outboxFailures().observe(this, e -> {
+            String msg = e.take();
+            if (msg != null) android.widget.Toast.makeText(this, msg, android.widget.Toast.LENGTH_LONG).show();
+        });
+
         // trigger a server refresh to ensure full mail content is loaded.
         repo.refreshMail(id);
     }
@@ -82,36 +88,7 @@ public class MailDetailsActivity extends androidx.appcompat.app.AppCompatActivit
         // existing labels → closable chips (except protected)
         if (mail.labels != null) {
             for (com.example.gmail_android.entities.LabelEntity L : mail.labels) {
-                Chip c = new Chip(this);
-                c.setText(L.name);
-                c.setCheckable(false);
-
-                boolean protect = isProtected(L.name) || isProtected(L.id);
-                c.setCloseIconVisible(!protect);
-                if (!protect) {
-                    c.setOnCloseIconClickListener(v -> new android.app.AlertDialog.Builder(this)
-                            .setMessage("Remove label \"" + L.name + "\"?")
-                            .setPositiveButton(android.R.string.ok, (d, w) -> repo.removeLabel(mail.mail.id, L.id, new retrofit2.Callback<>() {
-                                @Override
-                                public void onResponse(@NonNull retrofit2.Call<okhttp3.ResponseBody> call,
-                                                       @NonNull retrofit2.Response<okhttp3.ResponseBody> res) {
-                                    repo.refreshMail(mail.mail.id); // pull fresh joins
-                                }
-
-                                @Override
-                                public void onFailure(@NonNull retrofit2.Call<okhttp3.ResponseBody> call, @NonNull Throwable t) {
-                                }
-                            }))
-                            .setNegativeButton(android.R.string.cancel, null)
-                            .show());
-                }
-
-                // subtle outlined look (closer to web tags)
-                c.setChipStrokeWidth(1f);
-                c.setChipStrokeColor(
-                        androidx.core.content.ContextCompat.getColorStateList(this, R.color.text_Color)
-                );
-                chips.addView(c);
+                chips.addView(labelChip(mail.mail.id, L));
             }
         }
 
@@ -123,6 +100,35 @@ public class MailDetailsActivity extends androidx.appcompat.app.AppCompatActivit
         add.setOnClickListener(v -> showAddLabelDialog(mail));
         chips.addView(add);
     }
+    // Label changes show here in the same frame; Room has them right after (the outbox writes
+    // mail_label before calling the server once in the background, and rolls the change back
+    // there if the server refuses it), and the next renderChips draws the same chips.
+    private Chip labelChip(String mailId, com.example.gmail_android.entities.LabelEntity L) {
+        Chip c = new Chip(this);
+        c.setText(L.name);
+        c.setCheckable(false);
+
+        boolean protect = isProtected(L.name) || isProtected(L.id);
+        c.setCloseIconVisible(!protect);
+        if (!protect) {
+            c.setOnCloseIconClickListener(v -> new android.app.AlertDialog.Builder(this)
+                    .setMessage("Remove label \"" + L.name + "\"?")
+                    .setPositiveButton(android.R.string.ok, (d, w) -> {
+                        chips.removeView(c);
+                        repo.removeLabel(mailId, L.id);
+                    })
+                    .setNegativeButton(android.R.string.cancel, null)
+                    .show());
+        }
+
+        // subtle outlined look (closer to web tags)
+        c.setChipStrokeWidth(1f);
+        c.setChipStrokeColor(
+                androidx.core.content.ContextCompat.getColorStateList(this, R.color.text_Color)
+        );
+        return c;
+    }
+
     private void showAddLabelDialog(MailWithLabels mail) {
         // ids already attached
         java.util.Set<String> have = new java.util.HashSet<>();
@@ -159,17 +165,9 @@ public class MailDetailsActivity extends androidx.appcompat.app.AppCompatActivit
                                 .setTitle("Add label")
                                 .setItems(names, (d, which) -> {
                                     com.example.gmail_android.entities.LabelEntity chosen = options.get(which);
-                                    repo.addLabel(mail.mail.id, chosen.id, new retrofit2.Callback<>() {
-                                        @Override
-                                        public void onResponse(@NonNull retrofit2.Call<okhttp3.ResponseBody> call,
-                                                               @NonNull retrofit2.Response<okhttp3.ResponseBody> res) {
-                                            repo.refreshMail(mail.mail.id);
-                                        }
-
-                                        @Override
-                                        public void onFailure(@NonNull retrofit2.Call<okhttp3.ResponseBody> call, @NonNull Throwable t) {
-                                        }
-                                    });
+                                    // before the "+" chip, which stays last
+                                    chips.addView(labelChip(mail.mail.id, chosen), Math.max(0, chips.getChildCount() - 1));
+                                    repo.addLabel(mail.mail.id, chosen.id);
                                 })
                                 .setNegativeButton(android.R.string.cancel, null)
                                 .show();
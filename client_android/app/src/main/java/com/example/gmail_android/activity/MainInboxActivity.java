@@ -5,6 +5,8 @@ import androidx.appcompat.app.AppCompatActivity;
 import android.app.AlertDialog;
 import android.content.Intent;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.Menu;
 import android.widget.EditText;
 import android.widget.ImageView;
@@ -19,7 +21,10 @@ import androidx.appcompat.app.ActionBarDrawerToggle;
 import androidx.core.view.GravityCompat;
 import com.example.gmail_android.R;
 import com.example.gmail_android.auth.TokenStore;
+import com.example.gmail_android.entities.LabelCount;
 import com.example.gmail_android.entities.LabelEntity;
+import com.example.gmail_android.interfaces.ApiClient;
+import com.example.gmail_android.repository.LabelExpr;
 import com.example.gmail_android.viewmodel.InboxViewModel;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
@@ -31,6 +36,8 @@ public class MainInboxActivity extends AppCompatActivity {
     private InboxViewModel vm;
     private LabelAdapter labelAdapter;
     private MailRepository repo;
+    // label ids by normalized name, for the label filter the user types by name
+    private final java.util.Map<String, String> labelIds = new java.util.HashMap<>();
 
     // Protected/system labels – case-insensitive match by id or name
     private static final java.util.Set<String> PROTECTED =
@@ -38,6 +45,9 @@ public class MainInboxActivity extends AppCompatActivity {
                     "inbox", "sent", "drafts", "spam", "starred", "important", "trash", "bin", "archive", "all"
             ));
 
+    // rows from the end of the list at which the next page is requested.
+    private static final int PREFETCH_DISTANCE = 10;
+
     private boolean isProtected(LabelEntity l) {
         final String n = l.name.toLowerCase(Locale.ROOT);
         final String id = l.id.toLowerCase(Locale.ROOT);
@@ -102,8 +112,15 @@ public class MainInboxActivity extends AppCompatActivity {
         // Open drawer on nav icon tap
         topAppBar.setNavigationOnClickListener(v -> drawer.openDrawer(GravityCompat.START));
 
-        // Search action
+        // Search as you type; the search action searches at once
         EditText etSearch = findViewById(R.id.etSearch);
+        etSearch.addTextChangedListener(new TextWatcher() {
+            @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) { }
+            @Override public void onTextChanged(CharSequence s, int start, int before, int count) { }
+            @Override public void afterTextChanged(Editable s) {
+                vm.onQueryChanged(s.toString());
+            }
+        });
         etSearch.setOnEditorActionListener((tv, actionId, event) -> {
             String q = tv.getText().toString().trim();
             if (q.isEmpty()) vm.selectAll();
@@ -147,37 +164,31 @@ public class MainInboxActivity extends AppCompatActivity {
         recycler.setLayoutManager(new LinearLayoutManager(this));
         MailAdapter mailAdapter = new MailAdapter(new MailAdapter.Actions() {
             @Override public void onOpen(com.example.gmail_android.entities.MailWithLabels mail) {
-                Intent i = new Intent(MainInboxActivity.this, MailDetailsActivity.class);
-                i.putExtra("mail_id", mail.mail.id);
+                // a conversation row lists its mails; a single mail opens directly
+                Intent i;
+                if (mail.messageCount > 1) {
+                    i = new Intent(MainInboxActivity.this, ConversationActivity.class);
+                    i.putExtra("thread_id", mail.mail.threadId);
+                } else {
+                    i = new Intent(MainInboxActivity.this, MailDetailsActivity.class);
+                    i.putExtra("mail_id", mail.mail.id);
+                }
                 startActivity(i);
             }
 
             @Override public void onDelete(com.example.gmail_android.entities.MailWithLabels mail) {
+                String subject = mail.mail.subject == null ? "" : mail.mail.subject;
+                boolean thread = mail.messageCount > 1;
                 new AlertDialog.Builder(MainInboxActivity.this)
                         .setTitle(R.string.delete)
-                        .setMessage(getString(R.string.delete) + " \"" +
-                                (mail.mail.subject == null ? "" : mail.mail.subject) + "\"?")
+                        .setMessage(thread
+                                ? getString(R.string.delete_thread_fmt, mail.messageCount, subject)
+                                : getString(R.string.delete) + " \"" + subject + "\"?")
                         .setPositiveButton(android.R.string.ok, (d, w) -> {
-                            repo.delete(mail.mail.id, new retrofit2.Callback<>() {
-                                @Override
-                                public void onResponse(@NonNull retrofit2.Call<okhttp3.ResponseBody> call,
-                                                       @NonNull retrofit2.Response<okhttp3.ResponseBody> res) {
-                                    if (!res.isSuccessful()) {
-                                        android.widget.Toast.makeText(MainInboxActivity.this,
-                                                "Delete failed (" + res.code() + ")", android.widget.Toast.LENGTH_SHORT).show();
-                                        return;
-                                    }
-                                    // local Room is already cleaned by repo.deleteLocal()
-                                    vm.refresh(); // sync with backend anyway
-                                }
-
-                                @Override
-                                public void onFailure(
-                                        @NonNull retrofit2.Call<okhttp3.ResponseBody> call, @NonNull Throwable t) {
-                                    android.widget.Toast.makeText(MainInboxActivity.this,
-                                            "Delete failed", android.widget.Toast.LENGTH_SHORT).show();
-                                }
-                            });
+                            // gone from the list at once; the outbox deletes it on the server.
+                            // A conversation row goes with all of its mails.
+                            if (thread) repo.deleteThread(mail.mail.threadId);
+                            else repo.delete(mail.mail.id);
                         })
                         .setNegativeButton(android.R.string.cancel, null)
                         .show();
@@ -192,6 +203,19 @@ public class MainInboxActivity extends AppCompatActivity {
         });
         recycler.setAdapter(mailAdapter);
 
+        // Load older mails when the list is scrolled near its end
+        recycler.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView rv, int dx, int dy) {
+                if (dy <= 0) return;
+                LinearLayoutManager lm = (LinearLayoutManager) rv.getLayoutManager();
+                if (lm == null) return;
+                if (lm.findLastVisibleItemPosition() >= mailAdapter.getItemCount() - PREFETCH_DISTANCE) {
+                    vm.loadMore();
+                }
+            }
+        });
+
         // Labels drawer list
         recyclerLabels.setLayoutManager(new LinearLayoutManager(this));
         labelAdapter = new LabelAdapter(new LabelAdapter.Actions() {
@@ -212,27 +236,7 @@ public class MainInboxActivity extends AppCompatActivity {
                         .setPositiveButton(android.R.string.ok, (d, w) -> {
                             String newName = input.getText().toString().trim();
                             if (!newName.isEmpty() && !newName.equals(label.name)) {
-                                repo.renameLabel(label.id, newName, new retrofit2.Callback<>() {
-                                    @Override
-                                    public void onResponse(
-                                            @NonNull retrofit2.Call<com.example.gmail_android.interfaces.MailApi.LabelDto> call,
-                                            @NonNull retrofit2.Response<com.example.gmail_android.interfaces.MailApi.LabelDto> res) {
-                                        if (!res.isSuccessful()) {
-                                            android.widget.Toast.makeText(MainInboxActivity.this,
-                                                    "Rename failed (" + res.code() + ")", android.widget.Toast.LENGTH_SHORT).show();
-                                            // Optional: force-refresh labels if your backend doesn’t echo the change
-                                            // repo.syncAllLabels();
-                                        }
-                                    }
-
-                                    @Override
-                                    public void onFailure(
-                                            @NonNull retrofit2.Call<com.example.gmail_android.interfaces.MailApi.LabelDto> call, @NonNull Throwable t) {
-                                        android.widget.Toast.makeText(MainInboxActivity.this,
-                                                "Network error", android.widget.Toast.LENGTH_SHORT).show();
-                                        // Optional: repo.syncAllLabels();
-                                    }
-                                });
+                                repo.renameLabel(label.id, newName);
                             }
                         })
                         .setNegativeButton(android.R.string.cancel, null)
@@ -246,7 +250,7 @@ public class MainInboxActivity extends AppCompatActivity {
                         .setTitle(R.string.delete)
                         .setMessage(getString(R.string.delete) + " \"" + label.name + "\"?")
                         .setPositiveButton(android.R.string.ok, (d, w) -> {
-                            repo.deleteLabel(label.id, /*cb*/ null);
+                            repo.deleteLabel(label.id);
                             // vm.selectAll(); // optional if currently filtering by this label
                         })
                         .setNegativeButton(android.R.string.cancel, null)
@@ -264,7 +268,27 @@ public class MainInboxActivity extends AppCompatActivity {
                     .setView(input)
                     .setPositiveButton(android.R.string.ok, (d, w) -> {
                         String name = input.getText().toString().trim();
-                        if (!name.isEmpty()) repo.createLabel(name, null);
+                        if (!name.isEmpty()) repo.createLabel(name);
+                    })
+                    .setNegativeButton(android.R.string.cancel, null)
+                    .show();
+        });
+
+        // “Filter by labels” row: e.g. work AND important -spam
+        findViewById(R.id.rowFilterLabels).setOnClickListener(v -> {
+            final EditText input = new EditText(MainInboxActivity.this);
+            input.setHint(getString(R.string.filter_labels_hint));
+            new AlertDialog.Builder(MainInboxActivity.this)
+                    .setTitle(R.string.filter_labels)
+                    .setView(input)
+                    .setPositiveButton(android.R.string.ok, (d, w) -> {
+                        LabelExpr expr = LabelExpr.parse(input.getText().toString(), labelIds::get);
+                        if (expr == null) {
+                            android.widget.Toast.makeText(this, R.string.filter_labels_empty, android.widget.Toast.LENGTH_SHORT).show();
+                            return;
+                        }
+                        vm.selectLabels(expr.toString());
+                        drawer.closeDrawer(GravityCompat.START);
                     })
                     .setNegativeButton(android.R.string.cancel, null)
                     .show();
@@ -287,7 +311,17 @@ public class MainInboxActivity extends AppCompatActivity {
         });
 
         // Observe labels for the drawer
-        vm.getLabels().observe(this, labels -> labelAdapter.submitList(labels));
+        vm.getLabels().observe(this, labels -> {
+            labelAdapter.submitList(labels);
+            labelIds.clear();
+            for (LabelCount c : labels) labelIds.put(LabelEntity.normId(c.label.name), c.label.id);
+        });
+
+        // Changes the server refused (already undone in the lists)
+        repo.outboxFailures().observe(this, e -> {
+            String msg = e.take(); // once, on whichever screen sees it first
+            if (msg != null) android.widget.Toast.makeText(this, msg, android.widget.Toast.LENGTH_LONG).show();
+        });
 
         // Pull to refresh
         swipe.setOnRefreshListener(() -> vm.refresh());
@@ -322,6 +356,8 @@ public class MainInboxActivity extends AppCompatActivity {
     }
     private void doLogout() {
         TokenStore.clear(getApplicationContext());
+        ApiClient.clearCache();
+        repo.discardOutbox(); // changes of this account not sent yet
         getSharedPreferences("auth", MODE_PRIVATE)
                 .edit().remove("userImage").apply();
         Intent i = new Intent(this, LoginActivity.class);
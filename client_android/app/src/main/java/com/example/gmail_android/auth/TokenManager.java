@@ -0,0 +1,146 @@
+package com.example.gmail_android.auth;
+
+import android.content.SharedPreferences;
+import com.example.gmail_android.entities.AuthResponse;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+// the session token's lifecycle: kept in memory (reloaded when login/logout writes the
+// preferences), renewed in the background once most of its lifetime has passed, and renewed
+// at once when it has run out or the server answers 401.
+// Renewals are single-flight: callers holding the same stale token wait for one refresh call
+// and all get its result, so concurrent 401s cost one round trip, not one login each.
+public final class TokenManager {
+
+    // exchanges a token for a new one (POST /api/tokens/refresh).
+    public interface Refresher {
+        // the new token, or null when the server refuses the old one (revoked, too old);
+        // IOException when it could not be asked.
+        AuthResponse refresh(String token) throws IOException;
+    }
+
+    // renew in the background after this share of the lifetime (18h of a 24h token)...
+    static final double REFRESH_AFTER = 0.75;
+    // ...but no later than this before expiry
+    static final long MIN_MARGIN_MS = 60_000;
+    // after a failed background renewal (offline), wait this long before the next one
+    static final long RETRY_MS = 60_000;
+
+    // what a request needs, swapped as a whole.
+    private static final class Session {
+        final String token;
+        final String header;
+        final long expiresAt;  // 0 = unknown
+        final long refreshAt;  // Long.MAX_VALUE = never proactively
+
+        Session(String token, long issuedAt, long expiresAt) {
+            this.token = token;
+            this.header = "Bearer " + token;
+            this.expiresAt = expiresAt;
+            if (expiresAt <= 0) {
+                refreshAt = Long.MAX_VALUE;
+            } else {
+                long life = Math.max(0, expiresAt - issuedAt);
+                refreshAt = Math.min(issuedAt + (long) (life * REFRESH_AFTER), expiresAt - MIN_MARGIN_MS);
+            }
+        }
+    }
+
+    private final SharedPreferences prefs;
+    private final Refresher refresher;
+    private final Executor background;
+    private final LongSupplier clock;
+    private final Object refreshLock = new Object();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile Session session;
+    private volatile long retryAfter;
+
+    // held here: SharedPreferences only keeps a weak reference to its listeners.
+    private final SharedPreferences.OnSharedPreferenceChangeListener onChange = (p, key) -> {
+        // key is null when the file was cleared (API 30+)
+        if (key == null || TokenStore.KEY_TOKEN.equals(key) || TokenStore.KEY_EXPIRES_AT.equals(key)) load();
+    };
+
+    public TokenManager(SharedPreferences prefs, Refresher refresher, Executor background) {
+        this(prefs, refresher, background, System::currentTimeMillis);
+    }
+
+    public TokenManager(SharedPreferences prefs, Refresher refresher, Executor background, LongSupplier clock) {
+        this.prefs = prefs;
+        this.refresher = refresher;
+        this.background = background;
+        this.clock = clock;
+        load();
+        prefs.registerOnSharedPreferenceChangeListener(onChange);
+    }
+
+    private void load() {
+        String token = prefs.getString(TokenStore.KEY_TOKEN, null);
+        if (token == null || token.isEmpty()) {
+            session = null;
+            return;
+        }
+        Session s = session;
+        long expiresAt = prefs.getLong(TokenStore.KEY_EXPIRES_AT, 0);
+        if (s != null && s.token.equals(token) && s.expiresAt == expiresAt) return;
+        session = new Session(token, prefs.getLong(TokenStore.KEY_ISSUED_AT, clock.getAsLong()), expiresAt);
+    }
+
+    // "Bearer <token>" for the next request, or null when logged out. An expired token is
+    // renewed first (the request would only come back 401); one close to expiry is renewed in
+    // the background while this request still uses it.
+    public String header() {
+        Session s = session;
+        if (s == null) return null;
+        long now = clock.getAsLong();
+        if (s.expiresAt > 0 && now >= s.expiresAt) {
+            String renewed = refresh(s.header);
+            if (renewed != null) return renewed;
+            Session current = session; // offline: try the old one; refused: logged out
+            return current != null ? current.header : null;
+        }
+        if (now >= s.refreshAt && now >= retryAfter && refreshing.compareAndSet(false, true)) {
+            background.execute(() -> {
+                try {
+                    if (refresh(s.header) == null && session != null) retryAfter = clock.getAsLong() + RETRY_MS;
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        }
+        return s.header;
+    }
+
+    // Renews the token a request was sent with (its Authorization header) and returns the
+    // header to retry with, or null when there is none: the server refused the token (the
+    // session is cleared, the user logs in again) or could not be reached (the token is kept).
+    // If another caller already renewed it, returns that result without calling the server.
+    public String refresh(String staleHeader) {
+        synchronized (refreshLock) {
+            Session s = session;
+            if (s == null) return null;
+            if (!s.header.equals(staleHeader)) return s.header;
+
+            AuthResponse res;
+            try {
+                res = refresher.refresh(s.token);
+            } catch (IOException e) {
+                return null;
+            }
+            if (session != s) return null; // logged out (or in again) meanwhile: keep that
+            if (res == null || res.token == null || res.token.isEmpty()) {
+                session = null; // at once; the listener follows when the preference is written
+                TokenStore.clear(prefs);
+                return null;
+            }
+            long now = clock.getAsLong();
+            Session renewed = new Session(res.token, now, TokenStore.expiresAt(res.token, res.expiresIn, now));
+            session = renewed;
+            TokenStore.save(prefs, res.token, res.expiresIn, now);
+            retryAfter = 0;
+            return renewed.header;
+        }
+    }
+}
@@ -1,21 +1,36 @@
 package com.example.gmail_android.auth;
 
 import android.content.Context;
+import android.content.SharedPreferences;
 
 public class TokenStore {
     private static final String PREFS = "auth_prefs";
-    private static final String KEY_TOKEN = "token";
+    // public for listeners (AuthInterceptor keeps the token in memory and watches this key).
+    public static final String KEY_TOKEN = "token";
     private static final String KEY_USER_ID = "user_id";
+    // when the token was stored and when it runs out (epoch ms; 0 = unknown), for TokenManager.
+    static final String KEY_ISSUED_AT = "issued_at";
+    static final String KEY_EXPIRES_AT = "expires_at";
 
     // --- public API ---
 
     // Use when you only have the token (e.g., login response)
     public static void save(Context ctx, String token) {
+        save(ctx, token, null);
+    }
+
+    // token with the login/refresh response's expiresIn ("24h"); the JWT's own "exp" wins.
+    public static void save(Context ctx, String token, String expiresIn) {
+        save(prefs(ctx), token, expiresIn, System.currentTimeMillis());
+    }
+
+    static void save(SharedPreferences prefs, String token, String expiresIn, long now) {
         int parsedId = extractUserIdFromToken(token);
-        ctx.getSharedPreferences(PREFS, Context.MODE_PRIVATE)
-                .edit()
+        prefs.edit()
                 .putString(KEY_TOKEN, token)
                 .putInt(KEY_USER_ID, parsedId)
+                .putLong(KEY_ISSUED_AT, now)
+                .putLong(KEY_EXPIRES_AT, expiresAt(token, expiresIn, now))
                 .apply();
     }
 
@@ -29,21 +44,96 @@ public class TokenStore {
                 .getInt(KEY_USER_ID, -1);
     }
 
+    // Stable id of the signed-in account (the JWT "sub" claim), or null when logged out.
+    public static String getAccount(Context ctx) {
+        String token = get(ctx);
+        if (token == null || token.isEmpty()) return null;
+        String sub = extractSubjectFromToken(token);
+        return sub != null ? sub : String.valueOf(getUserId(ctx));
+    }
+
     public static boolean has(Context ctx) {
         String t = get(ctx);
         return t != null && !t.isEmpty();
     }
 
     public static void clear(Context ctx) {
-        ctx.getSharedPreferences(PREFS, Context.MODE_PRIVATE)
-                .edit()
+        clear(prefs(ctx));
+    }
+
+    public static void clear(SharedPreferences prefs) {
+        prefs.edit()
                 .remove(KEY_TOKEN)
                 .remove(KEY_USER_ID)
+                .remove(KEY_ISSUED_AT)
+                .remove(KEY_EXPIRES_AT)
                 .apply();
     }
 
+    // the preferences file holding the token.
+    public static SharedPreferences prefs(Context ctx) {
+        return ctx.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+
+    // When a token stored at now runs out (epoch ms): the JWT "exp" claim, else now + expiresIn,
+    // else 0 (unknown: the token is used until the server refuses it).
+    static long expiresAt(String token, String expiresIn, long now) {
+        org.json.JSONObject claims = claimsOf(token);
+        if (claims != null && claims.has("exp")) {
+            long exp = claims.optLong("exp", 0);
+            if (exp > 0) return exp * 1000;
+        }
+        long ttl = durationMillis(expiresIn);
+        return ttl > 0 ? now + ttl : 0;
+    }
+
+    // The server's expiresIn, in jsonwebtoken's notation: "24h", "15m", "7d", "2 days";
+    // bare digits are milliseconds. -1 when it can't be read.
+    static long durationMillis(String s) {
+        if (s == null) return -1;
+        java.util.regex.Matcher m = java.util.regex.Pattern
+                .compile("\\s*(\\d+(?:\\.\\d+)?)\\s*([a-zA-Z]*)\\s*").matcher(s);
+        if (!m.matches()) return -1;
+        double n = Double.parseDouble(m.group(1));
+        String unit = m.group(2).toLowerCase(java.util.Locale.ROOT);
+        long scale;
+        if (unit.isEmpty() || unit.startsWith("ms") || unit.startsWith("milli")) scale = 1;
+        else if (unit.startsWith("s")) scale = 1000;
+        else if (unit.startsWith("m")) scale = 60_000;
+        else if (unit.startsWith("h")) scale = 3_600_000;
+        else if (unit.startsWith("d")) scale = 86_400_000;
+        else if (unit.startsWith("w")) scale = 7 * 86_400_000L;
+        else if (unit.startsWith("y")) scale = 31_557_600_000L;
+        else return -1;
+        return (long) (n * scale);
+    }
+
     // --- helper ---
 
+    // Reads the "sub" claim from a JWT payload; returns null if the token is not a JWT.
+    private static String extractSubjectFromToken(String token) {
+        org.json.JSONObject o = claimsOf(token);
+        try {
+            return o != null && o.has("sub") ? o.getString("sub") : null;
+        } catch (Exception ignored) {
+            return null;
+        }
+    }
+
+    // The decoded JWT payload, or null if the token is not a JWT.
+    private static org.json.JSONObject claimsOf(String token) {
+        if (token == null) return null;
+        String[] parts = token.split("\\.");
+        if (parts.length < 2) return null;
+        try {
+            byte[] json = android.util.Base64.decode(parts[1],
+                    android.util.Base64.URL_SAFE | android.util.Base64.NO_PADDING | android.util.Base64.NO_WRAP);
+            return new org.json.JSONObject(new String(json, java.nio.charset.StandardCharsets.UTF_8));
+        } catch (Exception ignored) {
+            return null;
+        }
+    }
+
     // Tries to parse tokens like "token-123" → 123 ; returns -1 if not parsable.
     private static int extractUserIdFromToken(String token) {
         if (token == null) return -1;
@@ -6,12 +6,20 @@ import androidx.room.Room;
 import androidx.room.RoomDatabase;
 
 import com.example.gmail_android.entities.LabelEntity;
+import com.example.gmail_android.entities.LabelStatsEntity;
+import com.example.gmail_android.entities.MailBodyEntity;
+import com.example.gmail_android.entities.MailFts;
 import com.example.gmail_android.entities.MailEntity;
 import com.example.gmail_android.entities.MailLabelCrossRef;
+import com.example.gmail_android.entities.OutboxEntity;
+import com.example.gmail_android.entities.SearchResultEntity;
+import com.example.gmail_android.entities.ThreadEntity;
 
 @Database(
-        entities = { MailEntity.class, LabelEntity.class, MailLabelCrossRef.class },
-        version = 1,          // increase the version number when the schema changes.
+        entities = { MailEntity.class, MailBodyEntity.class, LabelEntity.class, MailLabelCrossRef.class,
+                MailFts.class, SearchResultEntity.class, LabelStatsEntity.class,
+                ThreadEntity.class, OutboxEntity.class },
+        version = 11,         // increase the version number when the schema changes.
         exportSchema = true   // true so Room can validate the schema.
 )
 public abstract class AppDatabase extends RoomDatabase {
@@ -21,6 +29,8 @@ public abstract class AppDatabase extends RoomDatabase {
     // abstract DAO accessor.
     public abstract MailDao mailDao();
     public abstract LabelDao labelDao();
+    public abstract SyncDao syncDao();
+    public abstract OutboxDao outboxDao();
 
     // returns the singleton instance of the database.
     public static AppDatabase get(Context ctx) {
@@ -33,10 +43,20 @@ public abstract class AppDatabase extends RoomDatabase {
                                     AppDatabase.class,
                                     "bloomly.db" // database file name.
                             )
+                            .addMigrations(Migrations.ALL)
+                            .addCallback(SearchIndex.CALLBACK)
+                            .addCallback(LabelStats.CALLBACK)
                             .build();
                 }
             }
         }
         return INSTANCE;
     }
+
+    // in-memory database with the same setup as get(); used by tests and benchmarks.
+    public static Builder<AppDatabase> inMemoryBuilder(Context ctx) {
+        return Room.inMemoryDatabaseBuilder(ctx, AppDatabase.class)
+                .addCallback(SearchIndex.CALLBACK)
+                .addCallback(LabelStats.CALLBACK);
+    }
 }
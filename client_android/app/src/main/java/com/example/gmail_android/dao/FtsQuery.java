@@ -0,0 +1,72 @@
+package com.example.gmail_android.dao;
+
+import androidx.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// turns what the user typed into an FTS4 MATCH expression for mails_fts.
+// Every word becomes a quoted prefix term ("inv" matches "invoice"); all words must match.
+// Quoting keeps FTS operators (AND/OR/NOT/NEAR, -, :, parentheses) typed by the user literal.
+// Precomposed accents ("é") are folded by the unicode61 tokenizer itself.
+public final class FtsQuery {
+    private FtsQuery() { }
+
+    // returns null when nothing searchable is left (e.g. only punctuation).
+    @Nullable
+    public static String match(@Nullable String userInput) {
+        List<String> words = words(userInput);
+        if (words.isEmpty()) return null;
+        StringBuilder out = new StringBuilder();
+        for (String w : words) {
+            if (out.length() > 0) out.append(' ');
+            out.append('"').append(w).append("*\"");
+        }
+        return out.toString();
+    }
+
+    // the words as one exact phrase ("big deal" doesn't match "deal big"), or null.
+    @Nullable
+    public static String phrase(@Nullable String userInput) {
+        List<String> words = words(userInput);
+        if (words.isEmpty()) return null;
+        return '"' + String.join(" ", words) + '"';
+    }
+
+    // every word as a prefix term limited to one mails_fts column, or null. Column filters
+    // can't be quoted, but words are lowercase letters and digits, so none is an FTS operator.
+    @Nullable
+    public static String inColumn(String column, @Nullable String userInput) {
+        List<String> words = words(userInput);
+        if (words.isEmpty()) return null;
+        StringBuilder out = new StringBuilder();
+        for (String w : words) {
+            if (out.length() > 0) out.append(' ');
+            out.append(column).append(':').append(w).append('*');
+        }
+        return out.toString();
+    }
+
+    // lowercased words, split the way the unicode61 tokenizer splits text.
+    static List<String> words(@Nullable String userInput) {
+        List<String> out = new ArrayList<>();
+        if (userInput == null) return out;
+        StringBuilder word = new StringBuilder();
+        String s = userInput.toLowerCase(Locale.ROOT);
+        for (int i = 0; i <= s.length(); i++) {
+            char c = i < s.length() ? s.charAt(i) : ' ';
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                // combining accents and Hebrew niqqud: dropped, so "שָׁלוֹם" finds "שלום", "é" finds "e"
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (word.length() > 0) {
+                // separators end a word
+                out.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        return out;
+    }
+}
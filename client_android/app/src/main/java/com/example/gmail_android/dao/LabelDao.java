@@ -7,6 +7,7 @@ import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 import androidx.room.Transaction;
 
+import com.example.gmail_android.entities.LabelCount;
 import com.example.gmail_android.entities.LabelEntity;
 
 import java.util.List;
@@ -14,28 +15,30 @@ import java.util.List;
 @Dao
 public interface LabelDao {
 
-    // System labels first (fixed order), then user labels alphabetically
-    @Query(
-            "SELECT * FROM labels " +
-                    "ORDER BY " +
-                    "CASE lower(name) " +
-                    "  WHEN 'inbox'     THEN 0 " +
-                    "  WHEN 'starred'   THEN 1 " +
-                    "  WHEN 'important' THEN 2 " +
-                    "  WHEN 'sent'      THEN 3 " +
-                    "  WHEN 'drafts'    THEN 4 " +
-                    "  WHEN 'spam'      THEN 5 " +
-                    "  WHEN 'trash'     THEN 6 " +
-                    "  WHEN 'bin'       THEN 6 " +
-                    "  WHEN 'archive'   THEN 7 " +
-                    "  WHEN 'all'       THEN 8 " +
-                    "  WHEN 'all mail'  THEN 8 " +
-                    "  ELSE 100 " +
-                    "END, " +
-                    "name COLLATE NOCASE"
-    )
+    // System labels first (fixed order), then user labels alphabetically: label_stats.sortKey,
+    // precomputed by the LabelStats triggers, read in index order.
+    String DRAWER_ORDER = "FROM label_stats s CROSS JOIN labels ON labels.id = s.labelId ORDER BY s.sortKey";
+
+    @Query("SELECT labels.* " + DRAWER_ORDER)
     androidx.lifecycle.LiveData<java.util.List<com.example.gmail_android.entities.LabelEntity>> observeAll();
 
+    // the drawer: each label with its counts, one row per label.
+    @Query("SELECT labels.*, s.total, s.spam " + DRAWER_ORDER)
+    LiveData<List<LabelCount>> observeCounts();
+
+    // Synchronous read of the drawer rows (call from a background thread).
+    @Query("SELECT labels.*, s.total, s.spam " + DRAWER_ORDER)
+    List<LabelCount> counts();
+
+    // every label, unordered and without counts, so count changes don't re-emit it
+    // (the id -> label table of the mail lists).
+    @Query("SELECT * FROM labels")
+    LiveData<List<LabelEntity>> observeTable();
+
+    // Synchronous read of all labels, unordered (call from a background thread).
+    @Query("SELECT * FROM labels")
+    List<LabelEntity> all();
+
     // Bulk upsert
     @Insert(onConflict = OnConflictStrategy.IGNORE)
     void insertAllIgnore(List<LabelEntity> items);
@@ -0,0 +1,96 @@
+package com.example.gmail_android.dao;
+
+import androidx.annotation.NonNull;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+// triggers that keep label_stats (LabelStatsEntity) in step with `labels`, `mail_label` and
+// `mails`: each write adjusts the counts of the labels it touches by one, so the drawer never
+// counts. Created on first open (CALLBACK) and by the migration that introduced them.
+// A mail counts while it is listed (searchOnly = 0). When a mail is deleted its joins cascade
+// after the row is gone, so the mail's delete trigger does the counting, and the join trigger
+// only counts joins removed while the mail is still there (a sync replacing a mail's labels).
+public final class LabelStats {
+    private LabelStats() { }
+
+    // the drawer order of the label `name` (a column or NEW./OLD. reference): system labels first
+    // in a fixed order, then the rest case-insensitively. Precomputed instead of evaluated by
+    // the drawer query on every emission.
+    static String sortKey(String name) {
+        return "printf('%03d', CASE lower(" + name + ") "
+                + "WHEN 'inbox' THEN 0 "
+                + "WHEN 'starred' THEN 1 "
+                + "WHEN 'important' THEN 2 "
+                + "WHEN 'sent' THEN 3 "
+                + "WHEN 'drafts' THEN 4 "
+                + "WHEN 'spam' THEN 5 "
+                + "WHEN 'trash' THEN 6 "
+                + "WHEN 'bin' THEN 6 "
+                + "WHEN 'archive' THEN 7 "
+                + "WHEN 'all' THEN 8 "
+                + "WHEN 'all mail' THEN 8 "
+                + "ELSE 100 END) || lower(" + name + ")";
+    }
+
+    // counts of one label from scratch (a label index range; only for new labels and rebuild).
+    private static String counted(String labelId, String what) {
+        return "(SELECT " + what + " FROM `mail_label` ml JOIN `mails` m ON m.`id` = ml.`mailId` "
+                + "WHERE ml.`labelId` = " + labelId + " AND m.`searchOnly` = 0)";
+    }
+
+    private static final String[] TRIGGERS = {
+            // a stored label starts with its current counts (zero unless it replaced a row)
+            "CREATE TRIGGER IF NOT EXISTS label_stats_after_label_insert AFTER INSERT ON `labels` BEGIN "
+                    + "INSERT OR REPLACE INTO `label_stats`(`labelId`, `total`, `spam`, `sortKey`) "
+                    + "VALUES (NEW.`id`, " + counted("NEW.`id`", "count(*)") + ", "
+                    + counted("NEW.`id`", "ifnull(sum(m.`isSpam`), 0)") + ", " + sortKey("NEW.`name`") + "); END",
+            "CREATE TRIGGER IF NOT EXISTS label_stats_after_label_rename AFTER UPDATE OF `name` ON `labels` "
+                    + "WHEN OLD.`name` IS NOT NEW.`name` BEGIN "
+                    + "UPDATE `label_stats` SET `sortKey` = " + sortKey("NEW.`name`")
+                    + " WHERE `labelId` = NEW.`id`; END",
+            // (a deleted label takes its row along: FK cascade)
+            "CREATE TRIGGER IF NOT EXISTS label_stats_after_join_insert AFTER INSERT ON `mail_label` BEGIN "
+                    + "UPDATE `label_stats` SET `total` = `total` + 1, "
+                    + "`spam` = `spam` + (SELECT `isSpam` FROM `mails` WHERE `id` = NEW.`mailId`) "
+                    + "WHERE `labelId` = NEW.`labelId` "
+                    + "AND (SELECT `searchOnly` FROM `mails` WHERE `id` = NEW.`mailId`) = 0; END",
+            // no mail row (a cascade from the mail's delete): already counted by the mail trigger
+            "CREATE TRIGGER IF NOT EXISTS label_stats_after_join_delete AFTER DELETE ON `mail_label` BEGIN "
+                    + "UPDATE `label_stats` SET `total` = `total` - 1, "
+                    + "`spam` = `spam` - (SELECT `isSpam` FROM `mails` WHERE `id` = OLD.`mailId`) "
+                    + "WHERE `labelId` = OLD.`labelId` "
+                    + "AND (SELECT `searchOnly` FROM `mails` WHERE `id` = OLD.`mailId`) = 0; END",
+            "CREATE TRIGGER IF NOT EXISTS label_stats_before_mail_delete BEFORE DELETE ON `mails` "
+                    + "WHEN OLD.`searchOnly` = 0 BEGIN "
+                    + "UPDATE `label_stats` SET `total` = `total` - 1, `spam` = `spam` - OLD.`isSpam` "
+                    + "WHERE `labelId` IN (SELECT `labelId` FROM `mail_label` WHERE `mailId` = OLD.`id`); END",
+            // spam or listed flag flipped: move the mail's contribution for each of its labels
+            "CREATE TRIGGER IF NOT EXISTS label_stats_after_mail_update AFTER UPDATE OF `isSpam`, `searchOnly` "
+                    + "ON `mails` WHEN OLD.`isSpam` IS NOT NEW.`isSpam` OR OLD.`searchOnly` IS NOT NEW.`searchOnly` BEGIN "
+                    + "UPDATE `label_stats` SET "
+                    + "`total` = `total` - (OLD.`searchOnly` = 0) + (NEW.`searchOnly` = 0), "
+                    + "`spam` = `spam` - (OLD.`searchOnly` = 0 AND OLD.`isSpam`) + (NEW.`searchOnly` = 0 AND NEW.`isSpam`) "
+                    + "WHERE `labelId` IN (SELECT `labelId` FROM `mail_label` WHERE `mailId` = NEW.`id`); END"
+    };
+
+    public static void createTriggers(@NonNull SupportSQLiteDatabase db) {
+        for (String sql : TRIGGERS) db.execSQL(sql);
+    }
+
+    // counts every label from scratch.
+    public static void rebuild(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("DELETE FROM `label_stats`");
+        db.execSQL("INSERT INTO `label_stats`(`labelId`, `total`, `spam`, `sortKey`) "
+                + "SELECT l.`id`, " + counted("l.`id`", "count(*)") + ", "
+                + counted("l.`id`", "ifnull(sum(m.`isSpam`), 0)") + ", " + sortKey("l.`name`")
+                + " FROM `labels` l");
+    }
+
+    // creates the triggers on a fresh database; register on every AppDatabase builder.
+    public static final RoomDatabase.Callback CALLBACK = new RoomDatabase.Callback() {
+        @Override
+        public void onCreate(@NonNull SupportSQLiteDatabase db) {
+            createTriggers(db);
+        }
+    };
+}
@@ -2,71 +2,151 @@ package com.example.gmail_android.dao;
 
 import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
-import androidx.room.Insert;
-import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.RawQuery;
 import androidx.room.Transaction;
-import com.example.gmail_android.entities.LabelEntity;
+import androidx.sqlite.db.SupportSQLiteQuery;
+import com.example.gmail_android.entities.MailDetails;
 import com.example.gmail_android.entities.MailEntity;
+import com.example.gmail_android.entities.MailFts;
 import com.example.gmail_android.entities.MailLabelCrossRef;
-import com.example.gmail_android.entities.MailWithLabels;
+import com.example.gmail_android.entities.MailRow;
+import com.example.gmail_android.entities.MailSearchHit;
+import com.example.gmail_android.entities.SearchResultEntity;
+import com.example.gmail_android.entities.ThreadRow;
 import java.util.List;
 
 @Dao
 public interface MailDao {
 
-    // retrieves all mails with their labels, ordered by sent date (newest first).
-    @Transaction
-    @Query("SELECT * FROM mails ORDER BY dateSentMillis DESC")
-    LiveData<List<MailWithLabels>> getInbox();
+    // position of a mail in list order (dateSentMillis DESC, id DESC); used as a page cursor.
+    class PageKey {
+        public long dateSentMillis;
+        public String id;
 
-    // retrieves mails with their labels filtered by a specific label ID.
-    @Transaction
-    @Query("SELECT * FROM mails " +
-            " WHERE EXISTS ( " +
-            "SELECT 1 FROM mail_label ml " +
-            "WHERE ml.mailId = mails.id " +
-            "AND lower(ml.labelId) = lower(:labelId)) ORDER BY dateSentMillis DESC")
-    LiveData<List<MailWithLabels>> getByLabel(String labelId);
+        // server form of the cursor: "<dateSentMillis>_<id>".
+        public String toCursor() {
+            return dateSentMillis + "_" + id;
+        }
+    }
+
+    // list queries return MailRow: the mail plus its label ids from this correlated subquery
+    // (one primary-key lookup per row), so a list is one query instead of Room's @Relation pair.
+    String LABEL_IDS = "(SELECT group_concat(j.labelId, char(31)) FROM mail_label j " +
+            "WHERE j.mailId = mails.id) AS labelIds";
+
+    // ----- keyset-paged lists -----
+    // A window is every row at or above the floor key, newest first, capped at :limit (-1 = no cap).
+    // keysBefore returns the next n keys strictly below a key. Both forms put a range on
+    // dateSentMillis so SQLite seeks the (dateSentMillis, id) index instead of skipping rows.
+    // Lists other than search skip search-only mails (MailEntity.searchOnly).
+
+    @Query(INBOX_WINDOW)
+    LiveData<List<MailRow>> inboxWindow(long floorDate, String floorId, int limit);
+
+    @Query(INBOX_KEYS_BEFORE)
+    List<PageKey> inboxKeysBefore(long date, String id, int n);
+
+    String INBOX_WINDOW = "SELECT mails.*, " + LABEL_IDS + " FROM mails " +
+            "WHERE dateSentMillis >= :floorDate AND (dateSentMillis > :floorDate OR id >= :floorId) " +
+            "AND searchOnly = 0 ORDER BY dateSentMillis DESC, id DESC LIMIT :limit";
+    String INBOX_KEYS_BEFORE = "SELECT dateSentMillis, id FROM mails " +
+            "WHERE dateSentMillis <= :date AND (dateSentMillis < :date OR id < :id) AND searchOnly = 0 " +
+            "ORDER BY dateSentMillis DESC, id DESC LIMIT :n";
+
+    // label lists walk the (labelId, dateSentMillis, mailId) index of mail_label in list order
+    // and look each mail up by id. CROSS JOIN keeps mail_label as the outer loop.
+    // :labelId must be normalized (LabelEntity.normId), like the stored ids.
+    @Query(LABEL_WINDOW)
+    LiveData<List<MailRow>> labelWindow(String labelId, long floorDate, String floorId, int limit);
+
+    // walks the label index, with one mail lookup per key for the search-only check.
+    @Query(LABEL_KEYS_BEFORE)
+    List<PageKey> labelKeysBefore(String labelId, long date, String id, int n);
+
+    String LABEL_WINDOW = "SELECT mails.*, " + LABEL_IDS + " FROM mail_label ml CROSS JOIN mails ON mails.id = ml.mailId " +
+            "WHERE ml.labelId = :labelId " +
+            "AND ml.dateSentMillis >= :floorDate AND (ml.dateSentMillis > :floorDate OR ml.mailId >= :floorId) " +
+            "AND mails.searchOnly = 0 ORDER BY ml.dateSentMillis DESC, ml.mailId DESC LIMIT :limit";
+    String LABEL_KEYS_BEFORE = "SELECT ml.dateSentMillis AS dateSentMillis, ml.mailId AS id " +
+            "FROM mail_label ml CROSS JOIN mails ON mails.id = ml.mailId " +
+            "WHERE ml.labelId = :labelId " +
+            "AND ml.dateSentMillis <= :date AND (ml.dateSentMillis < :date OR ml.mailId < :id) " +
+            "AND mails.searchOnly = 0 " +
+            "ORDER BY ml.dateSentMillis DESC, ml.mailId DESC LIMIT :n";
 
-    // inserts or updates a list of mail entities.
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
-    void upsertMails(List<MailEntity> mails);
+    // the threaded inbox: one row per conversation (`threads`), newest first, showing its latest
+    // mail with the thread's labels and message count. Walks the threads' list-order index.
+    @Query(THREAD_WINDOW)
+    LiveData<List<ThreadRow>> threadWindow(long floorDate, String floorId, int limit);
 
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
-    void upsertLabels(List<LabelEntity> labels);
+    @Query(THREAD_KEYS_BEFORE)
+    List<PageKey> threadKeysBefore(long date, String id, int n);
 
-    // inserts or updates the join table entries between mails and labels.
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
-    void upsertMailLabel(List<MailLabelCrossRef> refs);
+    String THREAD_WINDOW = "SELECT mails.*, t.labelIds AS labelIds, t.messageCount AS messageCount " +
+            "FROM threads t CROSS JOIN mails ON mails.id = t.latestMailId " +
+            "WHERE t.latestDateSentMillis >= :floorDate " +
+            "AND (t.latestDateSentMillis > :floorDate OR t.latestMailId >= :floorId) " +
+            "ORDER BY t.latestDateSentMillis DESC, t.latestMailId DESC LIMIT :limit";
+    String THREAD_KEYS_BEFORE = "SELECT latestDateSentMillis AS dateSentMillis, latestMailId AS id FROM threads " +
+            "WHERE latestDateSentMillis <= :date AND (latestDateSentMillis < :date OR latestMailId < :id) " +
+            "ORDER BY latestDateSentMillis DESC, latestMailId DESC LIMIT :n";
 
-    // deletes all mails from the database.
-    @Query("DELETE FROM mails")
-    void clearMails();
+    // one conversation's mails, newest first (ConversationActivity). Seeks the threadId index.
+    @Query(THREAD_MAILS)
+    LiveData<List<MailRow>> threadMails(String threadId);
 
-    // deletes all relationships between mails and labels.
-    @Query("DELETE FROM mail_label")
-    void clearJoins();
+    // ids of one conversation's mails (background thread), to delete the whole thread.
+    @Query("SELECT id FROM mails WHERE threadId = :threadId AND searchOnly = 0")
+    List<String> threadMailIds(String threadId);
 
-    // Deletes relationships for a specific mail ID.
-    @Query("DELETE FROM mail_label WHERE mailId = :mailId")
-    void clearJoinsForMail(String mailId);
+    String THREAD_MAILS = "SELECT mails.*, " + LABEL_IDS + " FROM mails " +
+            "WHERE threadId = :threadId AND searchOnly = 0 ORDER BY dateSentMillis DESC, id DESC";
 
-    // Retrieves a single mail with its labels by ID.
+    // search list queries, compiled from the parsed search (SearchQuery.window / keysBefore):
+    // local matches merged with the query's server hits, picked by date here and ordered by
+    // SearchRanker, so the page boundary is the same as for the other lists.
+    @RawQuery(observedEntities = { MailEntity.class, MailLabelCrossRef.class, MailFts.class,
+            SearchResultEntity.class })
+    LiveData<List<MailSearchHit>> searchWindow(SupportSQLiteQuery query);
+
+    @RawQuery
+    List<PageKey> searchKeysBefore(SupportSQLiteQuery query);
+
+    // ----- label filters (LabelIndex): the index is built from these rows, and pages read by id -----
+
+    // one row per (mail, label) of every listed mail, or (mail, null) for a mail without labels;
+    // in list order, oldest first, so the index gets its ordinals in order.
+    class IndexRow {
+        public String id;
+        public long dateSentMillis;
+        public String labelId;
+    }
+
+    @Query("SELECT mails.id AS id, mails.dateSentMillis AS dateSentMillis, ml.labelId AS labelId " +
+            "FROM mails LEFT JOIN mail_label ml ON ml.mailId = mails.id WHERE mails.searchOnly = 0 " +
+            "ORDER BY mails.dateSentMillis, mails.id")
+    List<IndexRow> labelIndexRows();
+
+    // primary-key lookups, in no particular order; at most SyncDao.CHUNK ids per call.
+    @Query("SELECT mails.*, " + LABEL_IDS + " FROM mails WHERE id IN (:ids)")
+    List<MailRow> rowsByIds(List<String> ids);
+
+    // Retrieves a single mail with its labels and body by ID.
     @Transaction
     @Query("SELECT * FROM mails WHERE id = :id LIMIT 1")
-    LiveData<MailWithLabels> getById(String id);
+    LiveData<MailDetails> getById(String id);
+    // Synchronous body read (call from a background thread).
+    @Query("SELECT content FROM mail_bodies WHERE id = :id")
+    String findContent(String id);
+    // Synchronous single-mail read (call from a background thread).
+    @Query("SELECT * FROM mails WHERE id = :id LIMIT 1")
+    MailEntity findById(String id);
+
+    // Number of mails stored locally.
+    @Query("SELECT COUNT(*) FROM mails")
+    int countMails();
+
     @androidx.room.Query("DELETE FROM mails WHERE id = :id")
     void deleteMail(String id);
-    @Transaction
-    @Query(
-            "SELECT * FROM mails " +
-                    "WHERE (" +
-                    "  subject   LIKE '%' || :q || '%' COLLATE NOCASE OR " +
-                    "  content   LIKE '%' || :q || '%' COLLATE NOCASE OR " +
-                    "  fromEmail LIKE '%' || :q || '%' COLLATE NOCASE OR " +
-                    "  toEmail   LIKE '%' || :q || '%' COLLATE NOCASE" +
-                    ") ORDER BY dateSentMillis DESC"
-    )
-    LiveData<java.util.List<com.example.gmail_android.entities.MailWithLabels>> search(String q);
 }
@@ -0,0 +1,202 @@
+package com.example.gmail_android.dao;
+
+import android.database.Cursor;
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import com.example.gmail_android.entities.MailEntity;
+import java.util.ArrayList;
+import java.util.List;
+
+// schema migrations, registered in AppDatabase. Add one per version bump.
+public final class Migrations {
+    private Migrations() { }
+
+    // 1 → 2: per-mail content hash for change detection on re-sync.
+    public static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE mails ADD COLUMN contentHash INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    // 2 → 3: (dateSentMillis, id) index for keyset-paged lists.
+    public static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_mails_dateSentMillis_id "
+                    + "ON mails (dateSentMillis, id)");
+        }
+    };
+
+    // 3 → 4: mails_fts full-text index, its sync triggers (as Room generates them) and a rebuild
+    // so mails stored before the upgrade are searchable.
+    public static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `mails_fts` USING FTS4("
+                    + "`subject` TEXT, `fromEmail` TEXT, `toEmail` TEXT, `content` TEXT, "
+                    + "tokenize=unicode61 `remove_diacritics=1`, content=`mails`)");
+            String cols = "`subject`, `fromEmail`, `toEmail`, `content`";
+            String newCols = "NEW.`subject`, NEW.`fromEmail`, NEW.`toEmail`, NEW.`content`";
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_mails_fts_BEFORE_UPDATE "
+                    + "BEFORE UPDATE ON `mails` BEGIN DELETE FROM `mails_fts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_mails_fts_BEFORE_DELETE "
+                    + "BEFORE DELETE ON `mails` BEGIN DELETE FROM `mails_fts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_mails_fts_AFTER_UPDATE "
+                    + "AFTER UPDATE ON `mails` BEGIN INSERT INTO `mails_fts`(`docid`, " + cols + ") "
+                    + "VALUES (NEW.`rowid`, " + newCols + "); END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_mails_fts_AFTER_INSERT "
+                    + "AFTER INSERT ON `mails` BEGIN INSERT INTO `mails_fts`(`docid`, " + cols + ") "
+                    + "VALUES (NEW.`rowid`, " + newCols + "); END");
+            db.execSQL("INSERT INTO `mails_fts`(`mails_fts`) VALUES('rebuild')");
+        }
+    };
+
+    // 4 → 5: bodies move from `mails` to `mail_bodies`; `mails` keeps a short snippet instead.
+    // SQLite can't drop a column on older devices, so `mails` is rebuilt. mails_fts now spans
+    // both tables and is maintained by SearchIndex triggers instead of Room's content sync.
+    public static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `mail_bodies` (`id` TEXT NOT NULL, `content` TEXT, "
+                    + "PRIMARY KEY(`id`), FOREIGN KEY(`id`) REFERENCES `mails`(`id`) "
+                    + "ON UPDATE NO ACTION ON DELETE CASCADE )");
+            db.execSQL("INSERT INTO `mail_bodies` (`id`, `content`) SELECT `id`, `content` FROM `mails`");
+
+            // dropping `mails` drops its Room content-sync triggers with it
+            db.execSQL("DROP TABLE IF EXISTS `mails_fts`");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `mails_new` (`id` TEXT NOT NULL, `fromEmail` TEXT, "
+                    + "`toEmail` TEXT, `subject` TEXT, `snippet` TEXT, `dateSentMillis` INTEGER NOT NULL, "
+                    + "`isSpam` INTEGER NOT NULL, `contentHash` INTEGER NOT NULL DEFAULT 0, PRIMARY KEY(`id`))");
+            // close to MailEntity.snippetOf (line breaks become spaces, runs are not collapsed);
+            // rows get the exact snippet the next time they change
+            db.execSQL("INSERT INTO `mails_new` (`id`, `fromEmail`, `toEmail`, `subject`, `snippet`, "
+                    + "`dateSentMillis`, `isSpam`, `contentHash`) "
+                    + "SELECT `id`, `fromEmail`, `toEmail`, `subject`, "
+                    + "substr(trim(replace(replace(replace(ifnull(`content`, ''), char(13), ' '), "
+                    + "char(10), ' '), char(9), ' ')), 1, " + MailEntity.SNIPPET_LENGTH + "), "
+                    + "`dateSentMillis`, `isSpam`, `contentHash` FROM `mails`");
+            db.execSQL("DROP TABLE `mails`");
+            db.execSQL("ALTER TABLE `mails_new` RENAME TO `mails`");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_mails_dateSentMillis_id` "
+                    + "ON `mails` (`dateSentMillis`, `id`)");
+
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `mails_fts` USING FTS4("
+                    + "`subject` TEXT, `fromEmail` TEXT, `toEmail` TEXT, `content` TEXT, "
+                    + "tokenize=unicode61 `remove_diacritics=1`)");
+            SearchIndex.createTriggers(db);
+            SearchIndex.rebuild(db);
+        }
+    };
+
+    // 5 → 6: mail_label gets a copy of the mail date and a (labelId, dateSentMillis, mailId) index
+    // so label lists are index ranges. Label ids are normalized the way LabelEntity.normId does
+    // (ids are ASCII, so SQLite's lower() matches it); joins that lose their label are dropped.
+    public static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("UPDATE OR IGNORE `labels` SET `id` = lower(trim(`id`)) WHERE `id` <> lower(trim(`id`))");
+            db.execSQL("DELETE FROM `labels` WHERE `id` <> lower(trim(`id`))");
+
+            db.execSQL("CREATE TABLE IF NOT EXISTS `mail_label_new` (`mailId` TEXT NOT NULL, "
+                    + "`labelId` TEXT NOT NULL, `dateSentMillis` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`mailId`, `labelId`), "
+                    + "FOREIGN KEY(`mailId`) REFERENCES `mails`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE , "
+                    + "FOREIGN KEY(`labelId`) REFERENCES `labels`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            db.execSQL("INSERT OR IGNORE INTO `mail_label_new` (`mailId`, `labelId`, `dateSentMillis`) "
+                    + "SELECT ml.`mailId`, lower(trim(ml.`labelId`)), m.`dateSentMillis` "
+                    + "FROM `mail_label` ml JOIN `mails` m ON m.`id` = ml.`mailId` "
+                    + "WHERE lower(trim(ml.`labelId`)) IN (SELECT `id` FROM `labels`)");
+            db.execSQL("DROP TABLE `mail_label`");
+            db.execSQL("ALTER TABLE `mail_label_new` RENAME TO `mail_label`");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_mail_label_mailId` ON `mail_label` (`mailId`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_mail_label_labelId_dateSentMillis_mailId` "
+                    + "ON `mail_label` (`labelId`, `dateSentMillis`, `mailId`)");
+        }
+    };
+
+    // 6 → 7: server search hits get their own table; mails they brought in are flagged
+    // search-only so the other lists skip them. Every mail stored so far came from a sync.
+    public static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `mails` ADD COLUMN `searchOnly` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `search_results` (`query` TEXT NOT NULL, "
+                    + "`mailId` TEXT NOT NULL, `fetchedAt` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`query`, `mailId`), "
+                    + "FOREIGN KEY(`mailId`) REFERENCES `mails`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_search_results_mailId` ON `search_results` (`mailId`)");
+        }
+    };
+
+    // 7 → 8: an index for is:spam searches, in list order.
+    public static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_mails_isSpam_dateSentMillis_id` "
+                    + "ON `mails` (`isSpam`, `dateSentMillis`, `id`)");
+        }
+    };
+
+    // 8 → 9: per-label counts and drawer order in label_stats, kept by the LabelStats triggers
+    // and counted once here for the mails already stored.
+    public static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `label_stats` (`labelId` TEXT NOT NULL, "
+                    + "`total` INTEGER NOT NULL, `spam` INTEGER NOT NULL, `sortKey` TEXT NOT NULL, "
+                    + "PRIMARY KEY(`labelId`), "
+                    + "FOREIGN KEY(`labelId`) REFERENCES `labels`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_label_stats_sortKey` ON `label_stats` (`sortKey`)");
+            LabelStats.createTriggers(db);
+            LabelStats.rebuild(db);
+        }
+    };
+
+    // 9 → 10: conversations. Every stored mail gets its thread key (computed in Java, like at
+    // ingest), then the `threads` table is built once from them; syncs keep it up to date.
+    public static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `mails` ADD COLUMN `threadId` TEXT");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_mails_threadId` ON `mails` (`threadId`)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `threads` (`id` TEXT NOT NULL, "
+                    + "`latestDateSentMillis` INTEGER NOT NULL, `latestMailId` TEXT NOT NULL, "
+                    + "`messageCount` INTEGER NOT NULL, `labelIds` TEXT, PRIMARY KEY(`id`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_threads_latestDateSentMillis_latestMailId` "
+                    + "ON `threads` (`latestDateSentMillis`, `latestMailId`)");
+
+            List<String[]> keys = new ArrayList<>();
+            try (Cursor c = db.query("SELECT `id`, `subject`, `fromEmail`, `toEmail` FROM `mails`")) {
+                while (c.moveToNext()) {
+                    String id = c.getString(0);
+                    keys.add(new String[] { MailEntity.threadIdOf(id, c.getString(1), c.getString(2),
+                            c.getString(3)), id });
+                }
+            }
+            for (String[] k : keys) db.execSQL("UPDATE `mails` SET `threadId` = ? WHERE `id` = ?", k);
+            db.execSQL("INSERT INTO `threads` (`id`, `latestDateSentMillis`, `latestMailId`, `messageCount`, "
+                    + "`labelIds`) " + SyncDao.THREAD_ROWS + " GROUP BY m.threadId");
+        }
+    };
+
+    // 10 → 11: the outbox, changes made on the device until the server confirms them.
+    public static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `outbox` (`seq` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`idempotencyKey` TEXT NOT NULL, `kind` TEXT NOT NULL, `target` TEXT NOT NULL, "
+                    + "`arg` TEXT, `body` TEXT, `after` TEXT, `createdAt` INTEGER NOT NULL, "
+                    + "`attempts` INTEGER NOT NULL, `nextAttemptAt` INTEGER NOT NULL, "
+                    + "`sending` INTEGER NOT NULL, `lastError` TEXT)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_outbox_idempotencyKey` "
+                    + "ON `outbox` (`idempotencyKey`)");
+        }
+    };
+
+    public static final Migration[] ALL = {
+            MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7,
+            MIGRATION_7_8, MIGRATION_8_9, MIGRATION_9_10, MIGRATION_10_11
+    };
+}
@@ -0,0 +1,58 @@
+package com.example.gmail_android.dao;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+import androidx.room.Update;
+import com.example.gmail_android.entities.LabelEntity;
+import com.example.gmail_android.entities.OutboxEntity;
+import java.util.List;
+
+// the outbox table (OutboxEntity) and the few local reads its optimistic writes need.
+// Every write runs on the db lane, like SyncDao's.
+@Dao
+public interface OutboxDao {
+
+    @Insert
+    long insert(OutboxEntity op);
+
+    @Update
+    void update(List<OutboxEntity> ops);
+
+    @Query("DELETE FROM outbox WHERE seq IN (:seqs)")
+    void delete(List<Long> seqs);
+
+    @Query("DELETE FROM outbox")
+    void clear();
+
+    // everything not confirmed yet, in replay order.
+    @Query("SELECT * FROM outbox ORDER BY seq")
+    List<OutboxEntity> pending();
+
+    @Query("SELECT COUNT(*) FROM outbox")
+    LiveData<Integer> observeCount();
+
+    // once the server created a mail or label: later changes go to its real id.
+    @Query("UPDATE outbox SET target = :to WHERE target = :from")
+    void retarget(String from, String to);
+
+    @Query("UPDATE outbox SET arg = :to WHERE arg = :from AND kind IN ('add_label', 'remove_label')")
+    void retargetLabel(String from, String to);
+
+    // a replay that died with the process left its change marked as on the wire.
+    @Query("UPDATE outbox SET sending = 0 WHERE sending = 1")
+    void resetSending();
+
+    @Query("SELECT labelId FROM mail_label WHERE mailId = :mailId")
+    List<String> labelIdsOf(String mailId);
+
+    @Query("SELECT mailId FROM mail_label WHERE labelId = :labelId")
+    List<String> mailIdsWithLabel(String labelId);
+
+    @Query("SELECT * FROM labels WHERE lower(name) = lower(:name) LIMIT 1")
+    LabelEntity labelNamed(String name);
+
+    @Query("SELECT id FROM labels WHERE id IN (:ids)")
+    List<String> existingLabels(List<String> ids);
+}
@@ -0,0 +1,55 @@
+package com.example.gmail_android.dao;
+
+import androidx.annotation.NonNull;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+// triggers that keep mails_fts in step with `mails` and `mail_bodies`.
+// Room only generates sync triggers for single-table external content, so these are created
+// on first open (CALLBACK) and by the migration that introduced them.
+public final class SearchIndex {
+    private SearchIndex() { }
+
+    private static final String[] TRIGGERS = {
+            // header columns follow the mail row; the body is picked up if it is already there
+            "CREATE TRIGGER IF NOT EXISTS mails_fts_after_insert AFTER INSERT ON `mails` BEGIN "
+                    + "INSERT INTO `mails_fts`(`docid`, `subject`, `fromEmail`, `toEmail`, `content`) "
+                    + "VALUES (NEW.`rowid`, NEW.`subject`, NEW.`fromEmail`, NEW.`toEmail`, "
+                    + "(SELECT `content` FROM `mail_bodies` WHERE `id` = NEW.`id`)); END",
+            "CREATE TRIGGER IF NOT EXISTS mails_fts_after_update AFTER UPDATE ON `mails` BEGIN "
+                    + "UPDATE `mails_fts` SET `subject` = NEW.`subject`, `fromEmail` = NEW.`fromEmail`, "
+                    + "`toEmail` = NEW.`toEmail` WHERE `docid` = NEW.`rowid`; END",
+            "CREATE TRIGGER IF NOT EXISTS mails_fts_after_delete AFTER DELETE ON `mails` BEGIN "
+                    + "DELETE FROM `mails_fts` WHERE `docid` = OLD.`rowid`; END",
+            // bodies are written after their mail row (FK), so they update the existing entry
+            "CREATE TRIGGER IF NOT EXISTS mail_bodies_fts_after_insert AFTER INSERT ON `mail_bodies` BEGIN "
+                    + "UPDATE `mails_fts` SET `content` = NEW.`content` "
+                    + "WHERE `docid` = (SELECT `rowid` FROM `mails` WHERE `id` = NEW.`id`); END",
+            "CREATE TRIGGER IF NOT EXISTS mail_bodies_fts_after_update AFTER UPDATE ON `mail_bodies` BEGIN "
+                    + "UPDATE `mails_fts` SET `content` = NEW.`content` "
+                    + "WHERE `docid` = (SELECT `rowid` FROM `mails` WHERE `id` = NEW.`id`); END",
+            "CREATE TRIGGER IF NOT EXISTS mail_bodies_fts_after_delete AFTER DELETE ON `mail_bodies` BEGIN "
+                    + "UPDATE `mails_fts` SET `content` = NULL "
+                    + "WHERE `docid` = (SELECT `rowid` FROM `mails` WHERE `id` = OLD.`id`); END"
+    };
+
+    public static void createTriggers(@NonNull SupportSQLiteDatabase db) {
+        for (String sql : TRIGGERS) db.execSQL(sql);
+    }
+
+    // indexes every stored mail from scratch.
+    public static void rebuild(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("DELETE FROM `mails_fts`");
+        db.execSQL("INSERT INTO `mails_fts`(`docid`, `subject`, `fromEmail`, `toEmail`, `content`) "
+                + "SELECT m.`rowid`, m.`subject`, m.`fromEmail`, m.`toEmail`, b.`content` "
+                + "FROM `mails` m LEFT JOIN `mail_bodies` b ON b.`id` = m.`id`");
+    }
+
+    // creates the triggers on a fresh database; register on every AppDatabase builder.
+    public static final RoomDatabase.Callback CALLBACK = new RoomDatabase.Callback() {
+        @Override
+        public void onCreate(@NonNull SupportSQLiteDatabase db) {
+            createTriggers(db);
+        }
+    };
+}
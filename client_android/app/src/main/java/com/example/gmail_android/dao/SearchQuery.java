@@ -0,0 +1,358 @@
+package com.example.gmail_android.dao;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteQuery;
+import com.example.gmail_android.entities.LabelEntity;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+// a parsed search box query. Terms are ANDed; "-" negates one:
+//   invoice  "big deal"            words (prefix match) and exact phrases, any column
+//   from:dana  to:me@bloomly.com   words in the sender / recipient address
+//   label:work                     a label (by id, normalized like LabelEntity.normId)
+//   after:2024/03/01 before:2024-04-01   sent on or after / before the start of a day (local time)
+//   is:spam
+// Anything else ("foo:bar", "before:soon") is searched as words.
+// toString() is the canonical form sent to the server; window() and keysBefore() compile the
+// local side to parameterized SQL for the search list (see MailDao.searchWindow).
+public final class SearchQuery {
+    public enum Field { TEXT, PHRASE, FROM, TO, LABEL, BEFORE, AFTER, IS_SPAM }
+
+    public static final class Term {
+        public final Field field;
+        // as typed (TEXT, PHRASE, FROM, TO), the normalized label id, or the day (yyyy/mm/dd)
+        public final String value;
+        public final boolean negated;
+        // BEFORE / AFTER: start of the day in millis
+        final long millis;
+
+        Term(Field field, String value, boolean negated, long millis) {
+            this.field = field;
+            this.value = value;
+            this.negated = negated;
+            this.millis = millis;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            String v = value.indexOf(' ') >= 0 || field == Field.PHRASE ? '"' + value + '"' : value;
+            String prefix;
+            switch (field) {
+                case FROM:    prefix = "from:"; break;
+                case TO:      prefix = "to:"; break;
+                case LABEL:   prefix = "label:"; break;
+                case BEFORE:  prefix = "before:"; break;
+                case AFTER:   prefix = "after:"; break;
+                case IS_SPAM: prefix = "is:"; v = "spam"; break;
+                default:      prefix = "";
+            }
+            return (negated ? "-" : "") + prefix + v;
+        }
+    }
+
+    public final List<Term> terms;
+
+    private SearchQuery(List<Term> terms) {
+        this.terms = Collections.unmodifiableList(terms);
+    }
+
+    public static SearchQuery parse(@Nullable String input) {
+        return parse(input, TimeZone.getDefault());
+    }
+
+    static SearchQuery parse(@Nullable String input, TimeZone zone) {
+        List<Term> terms = new ArrayList<>();
+        String s = input == null ? "" : input;
+        int i = 0;
+        int n = s.length();
+        while (i < n) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            boolean negated = false;
+            if (c == '-' && i + 1 < n && !Character.isWhitespace(s.charAt(i + 1))) {
+                negated = true;
+                i++;
+            }
+            if (s.charAt(i) == '"') {
+                int end = closingQuote(s, i + 1);
+                addText(terms, Field.PHRASE, s.substring(i + 1, end), negated);
+                i = Math.min(n, end + 1);
+                continue;
+            }
+            int start = i;
+            while (i < n && !Character.isWhitespace(s.charAt(i)) && s.charAt(i) != ':') i++;
+            Field field = i < n && s.charAt(i) == ':' ? field(s.substring(start, i)) : null;
+            if (field == null) {
+                // a plain word, or an unknown "x:y" read as words
+                while (i < n && !Character.isWhitespace(s.charAt(i))) i++;
+                addText(terms, Field.TEXT, s.substring(start, i), negated);
+                continue;
+            }
+            String value;
+            if (i + 1 < n && s.charAt(i + 1) == '"') {
+                int end = closingQuote(s, i + 2);
+                value = s.substring(i + 2, end);
+                i = Math.min(n, end + 1);
+            } else {
+                int from = ++i;
+                while (i < n && !Character.isWhitespace(s.charAt(i))) i++;
+                value = s.substring(from, i);
+            }
+            if (!addOperator(terms, field, value.trim(), negated, zone)) {
+                addText(terms, Field.TEXT, s.substring(start, i), negated);
+            }
+        }
+        return new SearchQuery(terms);
+    }
+
+    private static int closingQuote(String s, int from) {
+        int end = s.indexOf('"', from);
+        return end < 0 ? s.length() : end;
+    }
+
+    // the operator named before ':', or null.
+    @Nullable
+    private static Field field(String key) {
+        switch (key.toLowerCase(Locale.ROOT)) {
+            case "from":   return Field.FROM;
+            case "to":     return Field.TO;
+            case "label":  return Field.LABEL;
+            case "before": return Field.BEFORE;
+            case "after":  return Field.AFTER;
+            case "is":     return Field.IS_SPAM;
+            default:       return null;
+        }
+    }
+
+    // false if the value doesn't fit the operator.
+    private static boolean addOperator(List<Term> terms, Field field, String value, boolean negated,
+                                       TimeZone zone) {
+        switch (field) {
+            case FROM:
+            case TO:
+                if (FtsQuery.words(value).isEmpty()) return false;
+                terms.add(new Term(field, value, negated, 0));
+                return true;
+            case LABEL:
+                if (value.isEmpty()) return false;
+                terms.add(new Term(field, LabelEntity.normId(value), negated, 0));
+                return true;
+            case BEFORE:
+            case AFTER:
+                long day = startOfDay(value, zone);
+                if (day == Long.MIN_VALUE) return false;
+                Calendar c = Calendar.getInstance(zone, Locale.ROOT);
+                c.setTimeInMillis(day);
+                String v = String.format(Locale.ROOT, "%04d/%02d/%02d",
+                        c.get(Calendar.YEAR), c.get(Calendar.MONTH) + 1, c.get(Calendar.DAY_OF_MONTH));
+                terms.add(new Term(field, v, negated, day));
+                return true;
+            case IS_SPAM:
+                if (!value.equalsIgnoreCase("spam")) return false;
+                terms.add(new Term(field, "spam", negated, 0));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void addText(List<Term> terms, Field field, String value, boolean negated) {
+        String v = value.trim();
+        if (FtsQuery.words(v).isEmpty()) return; // nothing searchable: punctuation, a lone quote
+        terms.add(new Term(field, v, negated, 0));
+    }
+
+    // yyyy/mm/dd or yyyy-mm-dd at 00:00 in zone, or Long.MIN_VALUE.
+    private static long startOfDay(String value, TimeZone zone) {
+        String[] p = value.split("[/-]");
+        if (p.length != 3) return Long.MIN_VALUE;
+        try {
+            int y = Integer.parseInt(p[0]);
+            int m = Integer.parseInt(p[1]);
+            int d = Integer.parseInt(p[2]);
+            if (p[0].length() != 4 || m < 1 || m > 12 || d < 1 || d > 31) return Long.MIN_VALUE;
+            Calendar c = Calendar.getInstance(zone, Locale.ROOT);
+            c.clear();
+            c.set(y, m - 1, d);
+            return c.getTimeInMillis();
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    public boolean isEmpty() {
+        return terms.isEmpty();
+    }
+
+    // canonical form: terms separated by single spaces, operators lowercase.
+    @NonNull
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Term t : terms) {
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(t);
+        }
+        return sb.toString();
+    }
+
+    // ----- SQL -----
+
+    // SQL text and its arguments, in order.
+    public static final class Compiled {
+        public final String sql;
+        public final Object[] args;
+
+        Compiled(String sql, List<Object> args) {
+            this.sql = sql;
+            this.args = args.toArray();
+        }
+
+        public SupportSQLiteQuery query() {
+            return new SimpleSQLiteQuery(sql, args);
+        }
+    }
+
+    // the search list window (rows at or above the floor key, newest first, -1 = no cap),
+    // merging two sources, each mail once:
+    //   local hits: mails matching every term, among the synced mails and these server results
+    //   server hits the local terms don't match (search_results under resultsKey, no matchInfo)
+    // Every term is an index lookup: words, phrases, from: and to: are one MATCH on mails_fts,
+    // label: reads the label index, dates and is:spam are ranges on mails' indexes, and
+    // negations are NOT IN lists built the same ways.
+    public Compiled window(String resultsKey, long floorDate, String floorId, int limit) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder();
+        String floor = "AND mails.dateSentMillis >= ? AND (mails.dateSentMillis > ? OR mails.id >= ?) ";
+        Object[] floorArgs = { floorDate, floorDate, floorId };
+
+        String match = positiveMatch();
+        sql.append("SELECT mails.*, ").append(MailDao.LABEL_IDS).append(", ")
+                .append(match != null ? "matchinfo(mails_fts, 'pcnalx')" : "NULL").append(" AS matchInfo ");
+        localHits(sql, args, match, resultsKey);
+        sql.append(floor);
+        Collections.addAll(args, floorArgs);
+        sql.append("UNION ALL SELECT mails.*, ").append(MailDao.LABEL_IDS).append(", NULL AS matchInfo ");
+        serverOnlyHits(sql, args, match, resultsKey);
+        sql.append(floor);
+        Collections.addAll(args, floorArgs);
+        sql.append("ORDER BY dateSentMillis DESC, id DESC LIMIT ?");
+        args.add(limit);
+        return new Compiled(sql.toString(), args);
+    }
+
+    // the next n keys of the search list strictly below (date, id).
+    public Compiled keysBefore(String resultsKey, long date, String id, int n) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder();
+        String below = "AND mails.dateSentMillis <= ? AND (mails.dateSentMillis < ? OR mails.id < ?) ";
+        Object[] belowArgs = { date, date, id };
+
+        String match = positiveMatch();
+        sql.append("SELECT mails.dateSentMillis AS dateSentMillis, mails.id AS id ");
+        localHits(sql, args, match, resultsKey);
+        sql.append(below);
+        Collections.addAll(args, belowArgs);
+        sql.append("UNION ALL SELECT mails.dateSentMillis, mails.id ");
+        serverOnlyHits(sql, args, match, resultsKey);
+        sql.append(below);
+        Collections.addAll(args, belowArgs);
+        sql.append("ORDER BY dateSentMillis DESC, id DESC LIMIT ?");
+        args.add(n);
+        return new Compiled(sql.toString(), args);
+    }
+
+    // FROM ... WHERE for mails matching every term; ends with a space.
+    private void localHits(StringBuilder sql, List<Object> args, @Nullable String match, String resultsKey) {
+        if (match != null) {
+            // the full-text index drives the query, and matchinfo is available for ranking
+            sql.append("FROM mails JOIN mails_fts ON mails_fts.rowid = mails.rowid WHERE mails_fts MATCH ? ");
+            args.add(match);
+        } else {
+            // an empty query matches nothing
+            sql.append(terms.isEmpty() ? "FROM mails WHERE 0 " : "FROM mails WHERE 1 ");
+        }
+        sql.append("AND (mails.searchOnly = 0 OR mails.id IN (SELECT mailId FROM search_results WHERE query = ?)) ");
+        args.add(resultsKey);
+        operators(sql, args);
+    }
+
+    // FROM ... WHERE for this query's server results that fail some local term.
+    private void serverOnlyHits(StringBuilder sql, List<Object> args, @Nullable String match, String resultsKey) {
+        sql.append("FROM search_results s CROSS JOIN mails ON mails.id = s.mailId WHERE s.query = ? AND NOT (1 ");
+        args.add(resultsKey);
+        if (match != null) {
+            sql.append("AND mails.rowid IN (SELECT rowid FROM mails_fts WHERE mails_fts MATCH ?) ");
+            args.add(match);
+        }
+        operators(sql, args);
+        sql.append(") ");
+    }
+
+    // one "AND ..." per term the positive MATCH doesn't cover.
+    private void operators(StringBuilder sql, List<Object> args) {
+        for (Term t : terms) {
+            switch (t.field) {
+                case LABEL:
+                    sql.append(t.negated ? "AND mails.id NOT IN " : "AND mails.id IN ")
+                            .append("(SELECT mailId FROM mail_label WHERE labelId = ?) ");
+                    args.add(t.value);
+                    break;
+                case BEFORE:
+                    // -before:d is on or after d
+                    sql.append(t.negated ? "AND mails.dateSentMillis >= ? " : "AND mails.dateSentMillis < ? ");
+                    args.add(t.millis);
+                    break;
+                case AFTER:
+                    sql.append(t.negated ? "AND mails.dateSentMillis < ? " : "AND mails.dateSentMillis >= ? ");
+                    args.add(t.millis);
+                    break;
+                case IS_SPAM:
+                    sql.append("AND mails.isSpam = ? ");
+                    args.add(t.negated ? 0 : 1);
+                    break;
+                default:
+                    // text, phrase, from, to
+                    if (!t.negated) break; // in the positive MATCH
+                    sql.append("AND mails.rowid NOT IN (SELECT rowid FROM mails_fts WHERE mails_fts MATCH ?) ");
+                    args.add(match(t));
+            }
+        }
+    }
+
+    // the non-negated full-text terms as one MATCH expression, or null if there are none.
+    @Nullable
+    String positiveMatch() {
+        StringBuilder out = new StringBuilder();
+        for (Term t : terms) {
+            if (t.negated) continue;
+            String m = match(t);
+            if (m == null) continue;
+            if (out.length() > 0) out.append(' ');
+            out.append(m);
+        }
+        return out.length() == 0 ? null : out.toString();
+    }
+
+    // a full-text term's MATCH expression; null for the other operators.
+    @Nullable
+    private static String match(Term t) {
+        switch (t.field) {
+            case TEXT:   return FtsQuery.match(t.value);
+            case PHRASE: return FtsQuery.phrase(t.value);
+            case FROM:   return FtsQuery.inColumn("fromEmail", t.value);
+            case TO:     return FtsQuery.inColumn("toEmail", t.value);
+            default:     return null;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.example.gmail_android.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+import androidx.room.Update;
+import androidx.room.Upsert;
+import com.example.gmail_android.entities.LabelEntity;
+import com.example.gmail_android.entities.MailBodyEntity;
+import com.example.gmail_android.entities.MailEntity;
+import com.example.gmail_android.entities.MailLabelCrossRef;
+import com.example.gmail_android.entities.SearchResultEntity;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// write path for sync results: a whole SyncBatch is applied in one transaction,
+// so observers see one invalidation per sync instead of one per statement.
+// Rows whose content did not change are not written at all (no REPLACE, no cascade),
+// so re-syncing an unchanged mailbox causes no writes and no invalidation.
+// The `threads` rows of the conversations a batch touched are recomputed in the same
+// transaction (refreshThreads); the others are left alone.
+@Dao
+public interface SyncDao {
+
+    // max ids per IN (...) list (SQLite's default bound-variable limit is 999).
+    int CHUNK = 500;
+
+    // stored content hash of a mail, whether it is known only from search results, and its thread.
+    class MailHash {
+        public String id;
+        public long contentHash;
+        public boolean searchOnly;
+        public String threadId;
+    }
+
+    @Query("SELECT id, contentHash, searchOnly, threadId FROM mails WHERE id IN (:ids)")
+    List<MailHash> findHashes(List<String> ids);
+
+    @Query("SELECT DISTINCT threadId FROM mails WHERE id IN (:ids) AND threadId IS NOT NULL")
+    List<String> threadIdsOf(List<String> ids);
+
+    // ----- threads: the aggregate of each listed conversation, one thread looked up by index -----
+
+    // thread rows for the mails matched by the WHERE clause appended to it (GROUP BY m.threadId):
+    // the newest mail (ties by id, as in list order), the count, and the sorted distinct labels.
+    String THREAD_ROWS = "SELECT m.threadId AS id, max(m.dateSentMillis) AS latestDateSentMillis, " +
+            "(SELECT l.id FROM mails l WHERE l.threadId = m.threadId AND l.searchOnly = 0 " +
+            "ORDER BY l.dateSentMillis DESC, l.id DESC LIMIT 1) AS latestMailId, " +
+            "count(*) AS messageCount, " +
+            "(SELECT group_concat(x.labelId, char(31)) FROM (SELECT DISTINCT ml.labelId AS labelId " +
+            "FROM mails j JOIN mail_label ml ON ml.mailId = j.id " +
+            "WHERE j.threadId = m.threadId AND j.searchOnly = 0 ORDER BY ml.labelId) x) AS labelIds " +
+            "FROM mails m WHERE m.searchOnly = 0 AND m.threadId IS NOT NULL";
+
+    @Query("DELETE FROM threads WHERE id IN (:ids)")
+    void deleteThreads(List<String> ids);
+
+    @Query("INSERT INTO threads (id, latestDateSentMillis, latestMailId, messageCount, labelIds) " +
+            THREAD_ROWS + " AND m.threadId IN (:ids) GROUP BY m.threadId")
+    void insertThreads(List<String> ids);
+
+    // threads showing the label; an id in labelIds is delimited by separators or the ends.
+    @Query("SELECT id FROM threads WHERE instr(char(31) || labelIds || char(31), " +
+            "char(31) || :labelId || char(31)) > 0")
+    List<String> threadsWithLabel(String labelId);
+
+    // the synced mails; search-only ones are not part of any snapshot.
+    @Query("SELECT id FROM mails WHERE searchOnly = 0")
+    List<String> allMailIds();
+
+    @Query("SELECT * FROM labels WHERE id IN (:ids)")
+    List<LabelEntity> findLabels(List<String> ids);
+
+    @Query("SELECT id FROM labels")
+    List<String> allLabelIds();
+
+    // ON DELETE CASCADE removes their joins too.
+    @Query("DELETE FROM mails WHERE id IN (:ids)")
+    void deleteMails(List<String> ids);
+
+    @Query("DELETE FROM labels WHERE id IN (:ids)")
+    void deleteLabels(List<String> ids);
+
+    @Query("DELETE FROM mail_label WHERE mailId IN (:mailIds)")
+    void clearJoinsForMails(List<String> mailIds);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void insertLabels(List<LabelEntity> labels);
+
+    @Query("UPDATE labels SET name = :name WHERE id = :id")
+    void renameLabel(String id, String name);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void insertMails(List<MailEntity> mails);
+
+    // plain UPDATE: the row stays, so its joins are not cascaded away.
+    @Update
+    void updateMails(List<MailEntity> mails);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void insertJoins(List<MailLabelCrossRef> joins);
+
+    @Upsert
+    void upsertBodies(List<MailBodyEntity> bodies);
+
+    @Upsert
+    void upsertSearchResults(List<SearchResultEntity> results);
+
+    @Query("DELETE FROM search_results WHERE fetchedAt < :cutoff")
+    int deleteSearchResultsBefore(long cutoff);
+
+    // search-only mails no result row refers to any more (joins and bodies cascade).
+    @Query("DELETE FROM mails WHERE searchOnly = 1 AND id NOT IN (SELECT mailId FROM search_results)")
+    int deleteUnreferencedSearchMails();
+
+    // applies the batch atomically: deletes, then labels (FK targets), then mails, bodies and joins.
+    @Transaction
+    default void apply(SyncBatch b) {
+        // label ids per incoming mail, part of its content hash
+        Map<String, List<String>> labelsByMail = new HashMap<>();
+        for (MailLabelCrossRef j : b.joins) {
+            List<String> l = labelsByMail.get(j.mailId);
+            if (l == null) labelsByMail.put(j.mailId, l = new ArrayList<>());
+            l.add(j.labelId);
+        }
+        Set<String> incoming = new HashSet<>();
+        for (MailEntity m : b.mails) incoming.add(m.id);
+        Map<String, MailBodyEntity> bodies = new HashMap<>();
+        for (MailBodyEntity body : b.bodies) bodies.put(body.id, body);
+        // conversations whose aggregate must be recomputed
+        Set<String> threads = new HashSet<>();
+
+        // ----- deletes -----
+        if (b.replaceAll) deleteAllExcept(incoming);
+        else for (List<String> c : chunks(b.deletedMailIds)) {
+            threads.addAll(threadIdsOf(c));
+            deleteMails(c);
+        }
+
+        // ----- labels: insert missing, rename changed, prune when the batch is the whole catalog -----
+        if (!b.labels.isEmpty() || b.replaceLabels) {
+            Map<String, LabelEntity> wanted = new HashMap<>();
+            for (LabelEntity e : b.labels) wanted.put(e.id, e);
+
+            Map<String, String> stored = new HashMap<>();
+            for (List<String> c : chunks(new ArrayList<>(wanted.keySet()))) {
+                for (LabelEntity e : findLabels(c)) stored.put(e.id, e.name);
+            }
+            List<LabelEntity> missing = new ArrayList<>();
+            for (LabelEntity e : wanted.values()) {
+                if (!stored.containsKey(e.id)) missing.add(e);
+                else if (!e.name.equals(stored.get(e.id))) renameLabel(e.id, e.name);
+            }
+            if (!missing.isEmpty()) insertLabels(missing);
+
+            if (b.replaceLabels) {
+                List<String> stale = new ArrayList<>();
+                for (String id : allLabelIds()) if (!wanted.containsKey(id)) stale.add(id);
+                for (String id : stale) threads.addAll(threadsWithLabel(id));
+                for (List<String> c : chunks(stale)) deleteLabels(c);
+            }
+        }
+
+        if (!b.mails.isEmpty()) writeMails(b, labelsByMail, incoming, bodies, threads);
+        refreshThreads(threads);
+
+        // ----- search hits, after the mails they reference (FK) -----
+        if (b.searchQuery != null && !b.mails.isEmpty()) {
+            List<SearchResultEntity> results = new ArrayList<>();
+            for (MailEntity m : b.mails) results.add(new SearchResultEntity(b.searchQuery, m.id, b.searchedAt));
+            upsertSearchResults(results);
+        }
+    }
+
+    // mails of apply(): insert new, update changed, skip unchanged. A search batch stores new
+    // mails as search-only and leaves stored ones as they are; any other batch promotes them.
+    // Adds the old and new threads of every written mail to `threads`.
+    default void writeMails(SyncBatch b, Map<String, List<String>> labelsByMail, Set<String> incoming,
+                            Map<String, MailBodyEntity> bodies, Set<String> threads) {
+        Map<String, MailHash> stored = new HashMap<>();
+        for (List<String> c : chunks(new ArrayList<>(incoming))) {
+            for (MailHash h : findHashes(c)) stored.put(h.id, h);
+        }
+
+        List<MailEntity> inserts = new ArrayList<>();
+        List<MailEntity> updates = new ArrayList<>();
+        Set<String> written = new HashSet<>();
+        for (MailEntity m : b.mails) {
+            List<String> lids = labelsByMail.get(m.id);
+            MailBodyEntity body = bodies.get(m.id);
+            m.contentHash = m.computeContentHash(body != null ? body.content : null,
+                    lids != null ? lids : Collections.emptyList());
+            if (m.threadId == null) m.threadId = MailEntity.threadIdOf(m.id, m.subject, m.fromEmail, m.toEmail);
+            MailHash old = stored.get(m.id);
+            m.searchOnly = b.searchQuery != null && (old == null || old.searchOnly);
+            if (old == null) inserts.add(m);
+            else if (old.contentHash != m.contentHash || old.searchOnly != m.searchOnly) updates.add(m);
+            else continue;
+            written.add(m.id);
+            if (m.searchOnly) continue; // in no thread, and was in none before (promotion is one-way)
+            threads.add(m.threadId);
+            if (old != null && old.threadId != null) threads.add(old.threadId);
+        }
+        if (written.isEmpty()) return;
+
+        List<String> rejoin = new ArrayList<>();
+        for (MailEntity m : updates) rejoin.add(m.id);
+        for (List<String> c : chunks(rejoin)) clearJoinsForMails(c);
+
+        if (!inserts.isEmpty()) insertMails(inserts);
+        if (!updates.isEmpty()) updateMails(updates);
+
+        List<MailBodyEntity> changedBodies = new ArrayList<>();
+        for (MailBodyEntity body : b.bodies) if (written.contains(body.id)) changedBodies.add(body);
+        if (!changedBodies.isEmpty()) upsertBodies(changedBodies);
+
+        // joins carry their mail's date so the label index is in list order
+        Map<String, Long> dates = new HashMap<>();
+        for (MailEntity m : b.mails) dates.put(m.id, m.dateSentMillis);
+        List<MailLabelCrossRef> joins = new ArrayList<>();
+        for (MailLabelCrossRef j : b.joins) {
+            if (!written.contains(j.mailId)) continue;
+            j.dateSentMillis = dates.get(j.mailId);
+            joins.add(j);
+        }
+        if (!joins.isEmpty()) insertJoins(joins);
+    }
+
+    // deletes every synced mail whose id is not in `keep`; ends a full snapshot
+    // that was written in several batches. Search-only mails are left to evictSearchResults.
+    // The threads the deleted mails were in are refreshed.
+    @Transaction
+    default void deleteAllExcept(Set<String> keep) {
+        List<String> gone = new ArrayList<>();
+        for (String id : allMailIds()) if (!keep.contains(id)) gone.add(id);
+        Set<String> threads = new HashSet<>();
+        for (List<String> c : chunks(gone)) {
+            threads.addAll(threadIdsOf(c));
+            deleteMails(c);
+        }
+        refreshThreads(threads);
+    }
+
+    // deletes a label (its joins cascade) and takes it off the threads that showed it.
+    @Transaction
+    default void deleteLabel(String id) {
+        List<String> threads = threadsWithLabel(id);
+        deleteLabels(Collections.singletonList(id));
+        refreshThreads(new HashSet<>(threads));
+    }
+
+    // recomputes the given threads from their mails; a thread without listed mails is removed.
+    default void refreshThreads(Set<String> threadIds) {
+        if (threadIds.isEmpty()) return;
+        for (List<String> c : chunks(new ArrayList<>(threadIds))) {
+            deleteThreads(c);
+            insertThreads(c);
+        }
+    }
+
+    // drops search results fetched before `cutoff` and the search-only mails left without one.
+    @Transaction
+    default void evictSearchResults(long cutoff) {
+        deleteSearchResultsBefore(cutoff);
+        deleteUnreferencedSearchMails();
+    }
+
+    // splits ids into IN (...) sized pieces.
+    static List<List<String>> chunks(List<String> ids) {
+        List<List<String>> out = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += CHUNK) {
+            out.add(ids.subList(i, Math.min(i + CHUNK, ids.size())));
+        }
+        return out;
+    }
+}
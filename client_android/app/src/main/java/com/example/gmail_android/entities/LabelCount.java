@@ -0,0 +1,36 @@
+package com.example.gmail_android.entities;
+
+import androidx.room.Embedded;
+import java.util.Objects;
+
+// a drawer row: the label and its counts (label_stats).
+public class LabelCount {
+    @Embedded
+    public LabelEntity label;
+    public int total;
+    public int spam;
+
+    // value equality, so an unchanged drawer list can be told from a changed one.
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LabelCount)) return false;
+        LabelCount c = (LabelCount) o;
+        return total == c.total && spam == c.spam
+                && LabelEntity.sameItem(label, c.label) && LabelEntity.sameContents(label, c.label);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(label.id, label.name, total, spam);
+    }
+
+    // list diffing (LabelAdapter's DiffUtil callback).
+    public static boolean sameItem(LabelCount a, LabelCount b) {
+        return LabelEntity.sameItem(a.label, b.label);
+    }
+
+    public static boolean sameContents(LabelCount a, LabelCount b) {
+        return a.equals(b);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.gmail_android.entities;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+// per-label counts for the drawer, one row per label, kept up to date by the LabelStats
+// triggers as mails and joins change, so reading them is one row per label instead of a
+// COUNT(*) over mail_label. Search-only mails are not counted (they are in no list).
+@Entity(
+        tableName = "label_stats",
+        // the row goes with its label.
+        foreignKeys = @ForeignKey(entity = LabelEntity.class, parentColumns = "id",
+                childColumns = "labelId", onDelete = ForeignKey.CASCADE),
+        // drawer order, read straight from the index.
+        indices = {@Index("sortKey")}
+)
+public class LabelStatsEntity {
+    @PrimaryKey @NonNull
+    public String labelId = "";
+    // listed mails with the label, and how many of them are spam.
+    public int total;
+    public int spam;
+    // drawer position: system labels first in a fixed order, then the rest by name
+    // (LabelStats.sortKey(String), computed when the label is stored or renamed).
+    @NonNull
+    public String sortKey = "";
+}
@@ -0,0 +1,14 @@
+package com.example.gmail_android.entities;
+
+import androidx.room.Relation;
+
+// a mail with its labels and its body, for the screens that show one whole mail.
+public class MailDetails extends MailWithLabels {
+    @Relation(parentColumn = "id", entityColumn = "id")
+    public MailBodyEntity body;
+
+    // body text, or "" until it has been synced.
+    public String content() {
+        return body != null && body.content != null ? body.content : "";
+    }
+}
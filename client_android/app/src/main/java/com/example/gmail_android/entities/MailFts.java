@@ -0,0 +1,21 @@
+package com.example.gmail_android.entities;
+
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+
+// full-text index over a mail's header columns (`mails`) and its body (`mail_bodies`).
+// The text spans two tables, so it cannot be an external-content index; it is kept in sync
+// by the triggers in SearchIndex instead. rowid is the mail row's rowid.
+// unicode61 folds case for all scripts (Hebrew included) and strips Latin diacritics,
+// both in the indexed text and in the query.
+@Fts4(tokenizer = FtsOptions.TOKENIZER_UNICODE61,
+        tokenizerArgs = { "remove_diacritics=1" })
+@Entity(tableName = "mails_fts")
+public class MailFts {
+    // column order matters: SearchRanker weights matchinfo columns in this order.
+    public String subject;
+    public String fromEmail;
+    public String toEmail;
+    public String content;
+}
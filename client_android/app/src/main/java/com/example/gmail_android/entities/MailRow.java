@@ -0,0 +1,16 @@
+package com.example.gmail_android.entities;
+
+import androidx.room.Embedded;
+
+// one list row: the mail plus its label ids, read in the same query (see MailDao.LABEL_IDS).
+// Lists turn rows into MailWithLabels against one shared label table.
+public class MailRow {
+    // separator in labelIds (ASCII unit separator, never part of an id); char(31) in SQL.
+    public static final char LABEL_ID_SEPARATOR = '\u001f';
+
+    @Embedded
+    public MailEntity mail;
+
+    // the mail's label ids joined by LABEL_ID_SEPARATOR, or null when it has none.
+    public String labelIds;
+}
@@ -0,0 +1,7 @@
+package com.example.gmail_android.entities;
+
+// a full-text search result: the mail row plus FTS matchinfo(mails_fts, 'pcnalx'),
+// which SearchRanker turns into a relevance score.
+public class MailSearchHit extends MailRow {
+    public byte[] matchInfo;
+}
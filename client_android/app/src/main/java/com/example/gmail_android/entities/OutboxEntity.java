@@ -0,0 +1,67 @@
+package com.example.gmail_android.entities;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+// one change made on the device that the server has not confirmed yet (the outbox).
+// The local tables show it from the moment it is made; the outbox replays it in `seq` order,
+// sending idempotencyKey with each attempt so a retry of a request that did reach the server
+// is not applied twice.
+@Entity(tableName = "outbox", indices = {@Index(value = {"idempotencyKey"}, unique = true)})
+public class OutboxEntity {
+    // kinds
+    public static final String SEND = "send";                  // target: local mail id, body: ComposeRequest
+    public static final String EDIT = "edit";                  // target: mail, body: EditRequest
+    public static final String DELETE = "delete";              // target: mail
+    public static final String ADD_LABEL = "add_label";        // target: mail, arg: label id
+    public static final String REMOVE_LABEL = "remove_label";  // target: mail, arg: label id
+    public static final String CREATE_LABEL = "create_label";  // target: local label id, arg: name
+    public static final String RENAME_LABEL = "rename_label";  // target: label, arg: name
+    public static final String DELETE_LABEL = "delete_label";  // target: label
+
+    // ids of mails and labels created here, until the server has given them theirs.
+    public static final String LOCAL_PREFIX = "local:";
+
+    // replay order.
+    @PrimaryKey(autoGenerate = true)
+    public long seq;
+    @NonNull
+    public String idempotencyKey = "";
+    @NonNull
+    public String kind = "";
+    // the mail or label the change is for.
+    @NonNull
+    public String target = "";
+    public String arg;
+    // request body as JSON (SEND, EDIT).
+    public String body;
+    // idempotencyKey of an earlier change this one only makes sense after (sending an edited
+    // draft, then deleting the draft); dropped with it if the server refuses that one.
+    public String after;
+    public long createdAt;
+    // failed attempts so far, and when the next one may start (System.currentTimeMillis()).
+    public int attempts;
+    public long nextAttemptAt;
+    // true while a replay has it on the wire.
+    public boolean sending;
+    public String lastError;
+
+    // no argument constructor required by Room.
+    public OutboxEntity() { }
+
+    public static boolean isLocal(String id) {
+        return id != null && id.startsWith(LOCAL_PREFIX);
+    }
+
+    public boolean isMailChange() {
+        return !kind.endsWith("_label") || ADD_LABEL.equals(kind) || REMOVE_LABEL.equals(kind);
+    }
+
+    // not tried yet, so it can still be merged into or cancelled out: nothing of it can have
+    // reached the server.
+    public boolean untouched() {
+        return !sending && attempts == 0;
+    }
+}
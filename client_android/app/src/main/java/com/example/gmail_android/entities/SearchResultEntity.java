@@ -0,0 +1,43 @@
+package com.example.gmail_android.entities;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import java.util.Locale;
+
+// one server search hit: `mailId` matched `query` when the server was last asked.
+// Search windows show these next to the local full-text matches; mails that arrived only
+// this way (MailEntity.searchOnly) stay out of the other lists and are evicted with their
+// last result row.
+@Entity(
+        tableName = "search_results",
+        primaryKeys = {"query", "mailId"},
+        // the row goes with its mail.
+        foreignKeys = @ForeignKey(entity = MailEntity.class, parentColumns = "id",
+                childColumns = "mailId", onDelete = ForeignKey.CASCADE),
+        indices = {@Index("mailId")}
+)
+public class SearchResultEntity {
+    // the search as typed, normalized by key().
+    @NonNull public String query = "";
+    @NonNull public String mailId = "";
+    // when the server returned it (System.currentTimeMillis()).
+    public long fetchedAt;
+
+    // no argument constructor required by Room.
+    public SearchResultEntity() { }
+
+    public SearchResultEntity(@NonNull String query, @NonNull String mailId, long fetchedAt) {
+        this.query = query;
+        this.mailId = mailId;
+        this.fetchedAt = fetchedAt;
+    }
+
+    // the stored form of a search: the server matches case-insensitively, so "Invoice" and
+    // "invoice " share their results.
+    @NonNull
+    public static String key(String q) {
+        return q == null ? "" : q.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.gmail_android.entities;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+// one conversation (MailEntity.threadIdOf): its latest mail, how many listed mails it has and
+// the union of their labels. Rewritten for the threads a sync batch touched (SyncDao), so the
+// threaded inbox reads one row per conversation instead of grouping mails on every query.
+// Search-only mails are not part of a thread.
+@Entity(
+        tableName = "threads",
+        // list order (latest mail first), like mails' (dateSentMillis, id) index.
+        indices = {@Index(value = {"latestDateSentMillis", "latestMailId"})}
+)
+public class ThreadEntity {
+    @PrimaryKey @NonNull
+    public String id = "";
+    // the newest mail of the thread; the list row shows it.
+    public long latestDateSentMillis;
+    @NonNull
+    public String latestMailId = "";
+    public int messageCount;
+    // ids of the labels on any of the thread's mails, sorted, joined by MailRow.LABEL_ID_SEPARATOR;
+    // null when none has a label.
+    public String labelIds;
+}
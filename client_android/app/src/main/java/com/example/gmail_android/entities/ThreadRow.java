@@ -0,0 +1,6 @@
+package com.example.gmail_android.entities;
+
+// a threaded list row: the thread's latest mail, with the thread's labels in labelIds.
+public class ThreadRow extends MailRow {
+    public int messageCount;
+}
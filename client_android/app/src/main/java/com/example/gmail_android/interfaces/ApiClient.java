@@ -1,44 +1,90 @@
 package com.example.gmail_android.interfaces;
 
 import android.content.Context;
+import com.example.gmail_android.BuildConfig;
 import com.example.gmail_android.R;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.example.gmail_android.auth.TokenManager;
+import com.example.gmail_android.auth.TokenStore;
+import com.example.gmail_android.entities.AuthResponse;
 import com.example.gmail_android.network.AuthInterceptor;
+import com.example.gmail_android.network.NetworkLog;
+import com.example.gmail_android.network.TokenAuthenticator;
+import com.example.gmail_android.network.TransferStats;
+import java.io.File;
+import java.io.IOException;
+import okhttp3.Cache;
 import okhttp3.OkHttpClient;
-import okhttp3.logging.HttpLoggingInterceptor;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
-// configures HTTP logging, authentication interceptor.
+// configures the HTTP cache, authentication (interceptor + 401 authenticator) and (debug builds)
+// request logging.
 public class ApiClient {
     // singleton instance of retrofit.
     private static Retrofit retrofit;
+    // disk cache for GET responses. The server sends an ETag with each of them, so a cached
+    // response is revalidated with If-None-Match and a 304 replaces the download.
+    private static Cache cache;
+    static final long CACHE_SIZE = 10L * 1024 * 1024;
 
     // returns the singleton retrofit instance, creating it if necessary.
     public static Retrofit get(Context ctx) {
         if (retrofit == null) {
-            // logs HTTP requests and responses.
-            HttpLoggingInterceptor log = new HttpLoggingInterceptor();
-            log.setLevel(HttpLoggingInterceptor.Level.BODY);
-
-            // OkHttpClient with authentication and logging interceptors.
-            OkHttpClient client = new OkHttpClient.Builder()
-                    .addInterceptor(new AuthInterceptor(ctx))
-                    .addInterceptor(log)
-                    .build();
-
+            cache = new Cache(new File(ctx.getApplicationContext().getCacheDir(), "http"), CACHE_SIZE);
+            String baseUrl = ctx.getString(R.string.base_url);
             Gson gson = new GsonBuilder().create();
 
+            // the session token, renewed through its own client (no auth, no cache: a refresh call
+            // must not go through the interceptor and authenticator that are waiting for it).
+            OkHttpClient plain = new OkHttpClient();
+            AuthApi auth = new Retrofit.Builder()
+                    .baseUrl(baseUrl)
+                    .addConverterFactory(GsonConverterFactory.create(gson))
+                    .client(plain)
+                    .build()
+                    .create(AuthApi.class);
+            TokenManager tokens = new TokenManager(TokenStore.prefs(ctx.getApplicationContext()),
+                    token -> refresh(auth, token), plain.dispatcher().executorService());
+
+            // OkHttpClient with authentication and transfer counting; request logging only when the
+            // build type asks for it (NONE in release: no logging interceptor at all).
+            OkHttpClient.Builder http = new OkHttpClient.Builder()
+                    .cache(cache)
+                    .addInterceptor(new AuthInterceptor(tokens))
+                    .authenticator(new TokenAuthenticator(tokens))
+                    .addInterceptor(TransferStats.SESSION);
+            NetworkLog.Level level = NetworkLog.level(BuildConfig.HTTP_LOG_LEVEL);
+            if (level != NetworkLog.Level.NONE) {
+                http.addInterceptor(new NetworkLog(level, BuildConfig.HTTP_LOG_SAMPLE_EVERY,
+                        BuildConfig.HTTP_LOG_BODY_BYTES));
+            }
+            OkHttpClient client = http.build();
+
             // retrofit configuration.
             retrofit = new Retrofit.Builder()
-                    .baseUrl(ctx.getString(R.string.base_url))
+                    .baseUrl(baseUrl)
                     .addConverterFactory(GsonConverterFactory.create(gson))
                     .client(client)
                     .build();
         }
         return retrofit;
     }
-}
 
+    // POST /api/tokens/refresh; null when the server refuses the token.
+    static AuthResponse refresh(AuthApi auth, String token) throws IOException {
+        retrofit2.Response<AuthResponse> res = auth.refresh("Bearer " + token).execute();
+        if (res.isSuccessful() && res.body() != null) return res.body();
+        if (res.code() == 401 || res.code() == 403) return null;
+        throw new IOException("token refresh: HTTP " + res.code());
+    }
 
+    // drops every cached response, e.g. on logout (they belong to the account).
+    public static void clearCache() {
+        if (cache == null) return;
+        try {
+            cache.evictAll();
+        } catch (IOException ignored) { }
+    }
+}
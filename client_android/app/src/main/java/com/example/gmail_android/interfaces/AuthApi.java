@@ -3,6 +3,7 @@ package com.example.gmail_android.interfaces;
 import com.example.gmail_android.entities.AuthResponse;
 import retrofit2.Call;
 import retrofit2.http.Body;
+import retrofit2.http.Header;
 import retrofit2.http.POST;
 
 // defines endpoints and request/response models for login.
@@ -18,5 +19,10 @@ public interface AuthApi {
     // POST /api/tokens.
     @POST("tokens")
     Call<AuthResponse> login(@Body LoginRequest request);
+
+    // exchanges a token (also one that expired recently) for a new one.
+    // POST /api/tokens/refresh. 401/403 when the token is refused.
+    @POST("tokens/refresh")
+    Call<AuthResponse> refresh(@Header("Authorization") String bearer);
 }
 
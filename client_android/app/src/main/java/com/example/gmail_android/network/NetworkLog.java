@@ -0,0 +1,102 @@
+package com.example.gmail_android.network;
+
+import android.util.Log;
+import androidx.annotation.NonNull;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+// network diagnostics for debug builds, in place of HttpLoggingInterceptor at BODY (which
+// buffered and logged every response whole: inbox pages, base64 avatars).
+// The level and sampling come from BuildConfig (see app/build.gradle.kts); release builds use
+// NONE and ApiClient does not install the interceptor at all.
+//   BASIC    request line, status and time
+//   HEADERS  plus headers (Authorization redacted)
+//   BODY     plus the first bodyBytes of the response, peeked: the caller still streams it
+// Only every sampleEvery-th request is logged; the others pass through untouched.
+public final class NetworkLog implements Interceptor {
+
+    public enum Level { NONE, BASIC, HEADERS, BODY }
+
+    // where lines go; Log.d in the app, a list in tests.
+    public interface Sink {
+        void log(String line);
+    }
+
+    private static final String TAG = "Http";
+
+    private final Level level;
+    private final int sampleEvery;
+    private final long bodyBytes;
+    private final Sink sink;
+    private final AtomicLong requests = new AtomicLong();
+
+    public NetworkLog(Level level, int sampleEvery, long bodyBytes) {
+        this(level, sampleEvery, bodyBytes, line -> Log.d(TAG, line));
+    }
+
+    NetworkLog(Level level, int sampleEvery, long bodyBytes, Sink sink) {
+        this.level = level;
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.bodyBytes = Math.max(0, bodyBytes);
+        this.sink = sink;
+    }
+
+    // the level named in BuildConfig; an unknown name turns logging off.
+    public static Level level(String name) {
+        try {
+            return Level.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (RuntimeException e) {
+            return Level.NONE;
+        }
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request req = chain.request();
+        if (level == Level.NONE || requests.getAndIncrement() % sampleEvery != 0) {
+            return chain.proceed(req);
+        }
+
+        sink.log("--> " + req.method() + " " + req.url());
+        if (level != Level.BASIC) logHeaders(req.headers());
+
+        long start = System.nanoTime();
+        Response resp;
+        try {
+            resp = chain.proceed(req);
+        } catch (IOException e) {
+            sink.log("<-- HTTP FAILED: " + e);
+            throw e;
+        }
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        Response network = resp.networkResponse();
+        sink.log("<-- " + resp.code() + " " + req.url() + " (" + ms + " ms"
+                + (network == null ? ", cache" : network.code() == 304 ? ", revalidated" : "") + ")");
+        if (level == Level.BASIC) return resp;
+
+        logHeaders(resp.headers());
+        if (level == Level.BODY && bodyBytes > 0 && resp.body() != null) {
+            ResponseBody peek = resp.peekBody(bodyBytes);
+            long length = resp.body().contentLength();
+            String text = peek.string();
+            boolean cut = length > peek.contentLength() || (length < 0 && peek.contentLength() == bodyBytes);
+            sink.log(cut ? text + "… (" + (length < 0 ? "?" : String.valueOf(length)) + " bytes)" : text);
+        }
+        return resp;
+    }
+
+    private void logHeaders(Headers headers) {
+        for (int i = 0; i < headers.size(); i++) {
+            String name = headers.name(i);
+            boolean secret = "Authorization".equalsIgnoreCase(name) || "Cookie".equalsIgnoreCase(name);
+            sink.log(name + ": " + (secret ? "██" : headers.value(i)));
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.gmail_android.network;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.example.gmail_android.auth.TokenManager;
+import okhttp3.Authenticator;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.Route;
+
+// answers a 401 by renewing the token once and retrying the request with the new one.
+// OkHttp calls this on each failing call's own thread; TokenManager makes the renewal
+// single-flight, so when several requests hit the same expired token, one refresh call is made
+// and the others wait for it, then retry with its result.
+public final class TokenAuthenticator implements Authenticator {
+    private final TokenManager tokens;
+
+    public TokenAuthenticator(TokenManager tokens) {
+        this.tokens = tokens;
+    }
+
+    @Nullable
+    @Override
+    public Request authenticate(@Nullable Route route, @NonNull Response response) {
+        String sent = response.request().header("Authorization");
+        // not signed in, or the renewed token was refused too: give the 401 to the caller
+        if (sent == null || response.priorResponse() != null) return null;
+
+        String renewed = tokens.refresh(sent);
+        if (renewed == null) return null;
+        return response.request().newBuilder().header("Authorization", renewed).build();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.gmail_android.network;
+
+import androidx.annotation.NonNull;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+// counts what the HTTP cache saves in this process (one session). Added as an application
+// interceptor, so it sees responses after the cache: a revalidated one (304 from the server)
+// arrives as the cached 200, and its body size is bytes that were not downloaded again.
+// The repository adds the parse-and-write time a 304 let it skip (skipped()).
+public final class TransferStats implements Interceptor {
+    // the app's counters; ApiClient installs this instance.
+    public static final TransferStats SESSION = new TransferStats();
+
+    private final AtomicLong responses = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+    private final AtomicLong nanosSaved = new AtomicLong();
+    // last parse-and-write time per endpoint, the estimate for a skipped one.
+    private final Map<String, Long> lastWorkNanos = new ConcurrentHashMap<>();
+
+    TransferStats() { }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Response resp = chain.proceed(chain.request());
+        long length = resp.body() != null ? resp.body().contentLength() : -1;
+        responses.incrementAndGet();
+        if (notModified(resp)) {
+            notModified.incrementAndGet();
+            if (length > 0) bytesSaved.addAndGet(length);
+        } else if (resp.networkResponse() != null && length > 0) {
+            bytesReceived.addAndGet(length);
+        }
+        return resp;
+    }
+
+    // true when the server answered 304 and the body is the cached copy: nothing changed since
+    // the response that was stored (and written to Room) last time.
+    public static boolean notModified(Response raw) {
+        Response network = raw.networkResponse();
+        return network != null && network.code() == 304;
+    }
+
+    // `what` was parsed and written, taking `nanos`.
+    public void worked(String what, long nanos) {
+        lastWorkNanos.put(what, nanos);
+    }
+
+    // `what` came back unchanged and was not parsed or written again.
+    public void skipped(String what) {
+        Long nanos = lastWorkNanos.get(what);
+        if (nanos != null) nanosSaved.addAndGet(nanos);
+    }
+
+    public long bytesReceived() { return bytesReceived.get(); }
+    public long bytesSaved()    { return bytesSaved.get(); }
+    public long notModifiedCount() { return notModified.get(); }
+
+    // one line for the log.
+    public String summary() {
+        return String.format(Locale.ROOT,
+                "responses=%d, 304=%d, received=%d B, saved=%d B, sync time saved=%d ms",
+                responses.get(), notModified.get(), bytesReceived.get(), bytesSaved.get(),
+                nanosSaved.get() / 1_000_000);
+    }
+}
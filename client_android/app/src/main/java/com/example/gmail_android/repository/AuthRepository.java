@@ -42,7 +42,7 @@ public class AuthRepository {
                                    @NonNull Response<AuthResponse> res) {
                 if (res.isSuccessful() && res.body() != null && res.body().token != null) {
                     // save JWT token to SharedPreferences.
-                    TokenStore.save(appContext, res.body().token);
+                    TokenStore.save(appContext, res.body().token, res.body().expiresIn);
                     data.setValue(Result.success(res.body().token));
                 } else {
                     data.setValue(Result.error("Invalid credentials"));
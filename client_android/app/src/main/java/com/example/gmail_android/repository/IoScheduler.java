@@ -0,0 +1,115 @@
+package com.example.gmail_android.repository;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// the app's background threads, shared by every MailRepository. Work is split into lanes so a
+// slow download doesn't hold up a Room write and the reverse:
+//   network  HTTP calls and JSON parsing (a few threads: calls mostly wait on the socket)
+//   cpu      DTO -> entity mapping
+//   db       Room writes (one thread: SQLite has a single writer anyway)
+// Within a lane queued tasks run by priority, then in submission order, so what the user is
+// looking at (USER) goes before catalog syncs (BACKGROUND). Idle threads exit after a while.
+final class IoScheduler {
+    static final int USER = 0;
+    static final int BACKGROUND = 10;
+
+    // a lane's executor for one priority.
+    interface Lane {
+        Executor at(int priority);
+    }
+
+    final Lane network;
+    final Lane cpu;
+    final Lane db;
+
+    private static IoScheduler shared;
+
+    static synchronized IoScheduler shared() {
+        if (shared == null) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            shared = new IoScheduler(
+                    new PriorityLane("mail-net", 3),
+                    new PriorityLane("mail-cpu", Math.max(1, Math.min(2, cores - 1))),
+                    new PriorityLane("mail-db", 1));
+        }
+        return shared;
+    }
+
+    // tests: every lane queues on the given executor, so no work runs on the caller's thread
+    // (the main thread, for a LiveData source). Mapping and writes handed over by a task already
+    // on it run inline (network tasks wait for them), so waiting for that executor waits for
+    // everything.
+    static IoScheduler direct(Executor e) {
+        ThreadLocal<Boolean> onLane = new ThreadLocal<>();
+        Executor queued = task -> e.execute(() -> {
+            Boolean was = onLane.get();
+            onLane.set(true);
+            try {
+                task.run();
+            } finally {
+                onLane.set(was);
+            }
+        });
+        Executor joined = task -> {
+            if (Boolean.TRUE.equals(onLane.get())) task.run();
+            else queued.execute(task);
+        };
+        return new IoScheduler(priority -> queued, priority -> joined, priority -> joined);
+    }
+
+    IoScheduler(Lane network, Lane cpu, Lane db) {
+        this.network = network;
+        this.cpu = cpu;
+        this.db = db;
+    }
+
+    // fixed-size pool over a priority queue.
+    static final class PriorityLane implements Lane {
+        private final ThreadPoolExecutor pool;
+        private final AtomicLong seq = new AtomicLong();
+
+        PriorityLane(String name, int threads) {
+            AtomicInteger n = new AtomicInteger();
+            pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                    new PriorityBlockingQueue<>(), r -> {
+                        Thread t = new Thread(r, name + "-" + n.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        public Executor at(int priority) {
+            return task -> pool.execute(new Queued(task, priority, seq.getAndIncrement()));
+        }
+    }
+
+    private static final class Queued implements Runnable, Comparable<Queued> {
+        private final Runnable task;
+        private final int priority;
+        private final long seq;
+
+        Queued(Runnable task, int priority, long seq) {
+            this.task = task;
+            this.priority = priority;
+            this.seq = seq;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        @Override
+        public int compareTo(Queued o) {
+            if (priority != o.priority) return Integer.compare(priority, o.priority);
+            return Long.compare(seq, o.seq);
+        }
+    }
+}
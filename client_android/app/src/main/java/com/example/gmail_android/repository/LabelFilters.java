@@ -0,0 +1,77 @@
+package com.example.gmail_android.repository;
+
+import android.util.Log;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import com.example.gmail_android.dao.MailDao;
+import com.example.gmail_android.dao.SyncBatch;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+// the app's LabelIndex and its upkeep: built from Room on first use, then kept in step with
+// every sync write. All calls except changes() run on the db lane, after the Room write they
+// mirror, so the index never sees a write the database hasn't (one thread, in order).
+final class LabelFilters {
+    final LabelIndex index = new LabelIndex();
+    // the index version, for lists to re-read their page.
+    private final MutableLiveData<Long> changes = new MutableLiveData<>(0L);
+    private boolean built;
+
+    LiveData<Long> changes() {
+        return changes;
+    }
+
+    // reads mail_label once; later writes only update the index.
+    void ensureBuilt(MailDao dao) {
+        if (built) return;
+        long start = System.nanoTime();
+        String id = null;
+        long date = 0;
+        List<String> labels = new ArrayList<>();
+        for (MailDao.IndexRow r : dao.labelIndexRows()) {
+            if (!r.id.equals(id)) {
+                if (id != null) index.put(id, date, labels);
+                id = r.id;
+                date = r.dateSentMillis;
+                labels = new ArrayList<>(4);
+            }
+            if (r.labelId != null) labels.add(r.labelId);
+        }
+        if (id != null) index.put(id, date, labels);
+        built = true;
+        Log.d("LabelFilters", "index built: " + index.size() + " mails in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        changed();
+    }
+
+    // after SyncDao.apply(b).
+    void apply(SyncBatch b) {
+        if (!built) return;
+        index.apply(b);
+        changed();
+    }
+
+    // after SyncDao.deleteAllExcept(keep).
+    void retainOnly(Set<String> keep) {
+        if (!built) return;
+        index.retainOnly(keep);
+        changed();
+    }
+
+    void removeMail(String mailId) {
+        if (!built) return;
+        index.remove(mailId);
+        changed();
+    }
+
+    void removeLabel(String labelId) {
+        if (!built) return;
+        index.removeLabel(labelId);
+        changed();
+    }
+
+    private void changed() {
+        changes.postValue(index.version());
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.gmail_android.repository;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
+import com.example.gmail_android.entities.LabelEntity;
+import com.example.gmail_android.entities.MailRow;
+import com.example.gmail_android.entities.MailWithLabels;
+import com.example.gmail_android.entities.ThreadRow;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// builds list items from MailRow (one query: mails plus their label ids) and one shared
+// id -> label table. Unlike @Relation with a @Junction there is no second IN (...) query,
+// and each label object exists once per emission instead of once per join row.
+final class MailLists {
+    private MailLists() { }
+
+    static Map<String, LabelEntity> index(List<LabelEntity> labels) {
+        Map<String, LabelEntity> out = new HashMap<>();
+        if (labels != null) for (LabelEntity l : labels) out.put(l.id, l);
+        return out;
+    }
+
+    // rows joined with the current label table; re-emits when either changes.
+    static <R extends MailRow> LiveData<List<MailWithLabels>> withLabels(
+            LiveData<List<R>> rows, LiveData<Map<String, LabelEntity>> labels) {
+        MediatorLiveData<List<MailWithLabels>> out = new MediatorLiveData<>();
+        Runnable emit = () -> {
+            List<R> r = rows.getValue();
+            Map<String, LabelEntity> l = labels.getValue();
+            if (r != null && l != null) out.setValue(assemble(r, l));
+        };
+        out.addSource(rows, v -> emit.run());
+        out.addSource(labels, v -> emit.run());
+        return out;
+    }
+
+    static List<MailWithLabels> assemble(List<? extends MailRow> rows, Map<String, LabelEntity> labels) {
+        List<MailWithLabels> out = new ArrayList<>(rows.size());
+        for (MailRow r : rows) {
+            MailWithLabels m = new MailWithLabels();
+            m.mail = r.mail;
+            m.labels = resolve(r.labelIds, labels);
+            if (r instanceof ThreadRow) m.messageCount = ((ThreadRow) r).messageCount;
+            out.add(m);
+        }
+        return out;
+    }
+
+    // splits labelIds without a regex; ids missing from the table are skipped.
+    static List<LabelEntity> resolve(String ids, Map<String, LabelEntity> labels) {
+        if (ids == null || ids.isEmpty()) return Collections.emptyList();
+        List<LabelEntity> out = new ArrayList<>(4);
+        int start = 0;
+        while (start <= ids.length()) {
+            int end = ids.indexOf(MailRow.LABEL_ID_SEPARATOR, start);
+            if (end < 0) end = ids.length();
+            LabelEntity l = labels.get(ids.substring(start, end));
+            if (l != null) out.add(l);
+            start = end + 1;
+        }
+        return out;
+    }
+}
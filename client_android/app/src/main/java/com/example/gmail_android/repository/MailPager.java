@@ -0,0 +1,108 @@
+package com.example.gmail_android.repository;
+
+import android.util.Log;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
+import com.example.gmail_android.dao.MailDao;
+import com.example.gmail_android.entities.MailEntity;
+import com.example.gmail_android.entities.MailWithLabels;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// keyset-paged view of one mail list (inbox, a label, a search), newest first.
+// The UI observes `items`: a Room window that starts as the newest page and grows one page
+// per loadMore(). The window is bounded by a floor key, never by OFFSET, so first render
+// costs one page however many mails are stored, and Room re-queries only the loaded range.
+public class MailPager {
+    public static final int PAGE_SIZE = 50;
+
+    // one list's queries and its server page endpoint.
+    interface Source {
+        LiveData<List<MailWithLabels>> window(long floorDate, String floorId, int limit);
+        List<MailDao.PageKey> keysBefore(long date, String id, int n);
+        // fetches the server page below the key into Room; returns the number of mails received,
+        // or a negative number when nothing was written (failed, or unchanged since it was cached).
+        int fetchBefore(MailDao.PageKey key) throws IOException;
+    }
+
+    // rows at or above (floorDate, floorId), capped at limit (-1 = no cap).
+    private static final class Window {
+        final long floorDate;
+        final String floorId;
+        final int limit;
+        Window(long floorDate, String floorId, int limit) {
+            this.floorDate = floorDate;
+            this.floorId = floorId;
+            this.limit = limit;
+        }
+    }
+
+    private static final Window FIRST_PAGE = new Window(Long.MIN_VALUE, "", PAGE_SIZE);
+
+    private final Source source;
+    private final Executor io;
+    private final MutableLiveData<Window> window = new MutableLiveData<>(FIRST_PAGE);
+    private final AtomicBoolean loading = new AtomicBoolean();
+    private volatile boolean endReached;
+
+    public final LiveData<List<MailWithLabels>> items;
+
+    MailPager(Source source, Executor io) {
+        this.source = source;
+        this.io = io;
+        this.items = Transformations.switchMap(window,
+                w -> source.window(w.floorDate, w.floorId, w.limit));
+    }
+
+    // loads the page below the oldest shown mail: asks the server for it, then lowers the
+    // window floor by up to one page of local rows. Offline, it pages through what is cached.
+    // Call from the main thread (e.g. when the list is scrolled near its end).
+    public void loadMore() {
+        List<MailWithLabels> shown = items.getValue();
+        if (endReached || shown == null || shown.isEmpty()) return;
+        if (!loading.compareAndSet(false, true)) return;
+
+        // the oldest row is the last one, unless the source reorders its window (search ranking)
+        MailEntity oldest = shown.get(0).mail;
+        for (MailWithLabels m : shown) {
+            if (m.mail.dateSentMillis < oldest.dateSentMillis
+                    || (m.mail.dateSentMillis == oldest.dateSentMillis && m.mail.id.compareTo(oldest.id) < 0)) {
+                oldest = m.mail;
+            }
+        }
+        MailDao.PageKey after = new MailDao.PageKey();
+        after.dateSentMillis = oldest.dateSentMillis;
+        after.id = oldest.id;
+
+        io.execute(() -> {
+            try {
+                int fetched = -1;
+                try {
+                    fetched = source.fetchBefore(after);
+                } catch (IOException e) {
+                    Log.w("MailPager", "page fetch failed, using cached mails", e);
+                }
+                List<MailDao.PageKey> keys =
+                        source.keysBefore(after.dateSentMillis, after.id, PAGE_SIZE);
+                if (keys.isEmpty()) {
+                    if (fetched == 0) endReached = true;
+                    return;
+                }
+                MailDao.PageKey floor = keys.get(keys.size() - 1);
+                window.postValue(new Window(floor.dateSentMillis, floor.id, -1));
+            } catch (Exception e) {
+                Log.e("MailPager", "loadMore error", e);
+            } finally {
+                loading.set(false);
+            }
+        });
+    }
+
+    // true once the server had nothing older than the last shown mail.
+    public boolean isEndReached() {
+        return endReached;
+    }
+}
@@ -2,28 +2,42 @@ package com.example.gmail_android.repository;
 
 import android.content.Context;
 
-import androidx.annotation.NonNull;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
 import android.util.Log;
 import com.example.gmail_android.dao.AppDatabase;
 import com.example.gmail_android.dao.MailDao;
+import com.example.gmail_android.dao.SearchQuery;
 import com.example.gmail_android.dao.LabelDao;
+import com.example.gmail_android.dao.SyncBatch;
+import com.example.gmail_android.dao.SyncDao;
+import com.example.gmail_android.entities.LabelCount;
 import com.example.gmail_android.entities.LabelEntity;
-import com.example.gmail_android.entities.MailEntity;
-import com.example.gmail_android.entities.MailLabelCrossRef;
+import com.example.gmail_android.entities.MailDetails;
+import com.example.gmail_android.entities.MailRow;
 import com.example.gmail_android.entities.MailWithLabels;
+import com.example.gmail_android.entities.OutboxEntity;
+import com.example.gmail_android.entities.SearchResultEntity;
 import com.example.gmail_android.interfaces.MailApi;
 import com.example.gmail_android.interfaces.ApiClient;
+import com.example.gmail_android.network.TransferStats;
+import com.example.gmail_android.utils.Event;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 import okhttp3.ResponseBody;
-import retrofit2.Callback;
+import retrofit2.Call;
 import retrofit2.Response;
 
 public class MailRepository {
@@ -33,14 +47,33 @@ public class MailRepository {
     // data Access Object for Room database.
     private final MailDao dao;
     private final LabelDao labelDao;
-    // background executor for IO tasks.
-    private final Executor io = Executors.newSingleThreadExecutor();
+    // single-transaction write path for sync results.
+    private final SyncDao syncDao;
+    // shared background lanes: network, cpu (mapping), db writes (see IoScheduler).
+    private final IoScheduler lanes;
+    // DTO -> entity mapping for every sync path.
+    private final MailMapper mapper = new MailMapper();
+    // id -> label, shared by every list this repository builds (see MailLists).
+    private final LiveData<Map<String, LabelEntity>> labelTable;
+    // refreshes in flight, keyed by what they fetch. Shared by the app's repositories (each
+    // screen has its own), so the inbox screen and compose don't both sync the inbox.
+    private static final SingleFlight REFRESHES = new SingleFlight();
+    private final SingleFlight flights;
+    // keys of this repository's last label and search refresh; a refresh for another key
+    // cancels them (switching labels drops the stale fetch).
+    private String currentLabel;
+    private String currentSearch;
+    // in-memory label index for boolean label filters, shared like the database.
+    private static final LabelFilters LABEL_FILTERS = new LabelFilters();
+    private final LabelFilters labelFilters;
+    // syncs the inbox after an outbox pass; one for the process like the outbox, made on the
+    // first pass that needs it (making it here would recurse into Outbox.shared).
+    private static MailRepository outboxRefresher;
+    // changes made here until the server has them; every sync result is written through it.
+    private final Outbox outbox;
 
     private static String normId(String s) {
-        return s == null ? null : s.trim().toLowerCase(java.util.Locale.ROOT);
-    }
-    private static String normName(String s) {
-        return s == null ? null : s.trim();
+        return LabelEntity.normId(s);
     }
 
     public MailRepository(Context ctx) {
@@ -49,412 +82,609 @@ public class MailRepository {
         this.api = retrofit.create(MailApi.class);
         this.dao = AppDatabase.get(ctx).mailDao();
         this.labelDao = AppDatabase.get(ctx).labelDao();
+        this.syncDao = AppDatabase.get(ctx).syncDao();
         this.ctx = ctx;
+        this.lanes = IoScheduler.shared();
+        this.labelTable = Transformations.map(labelDao.observeTable(), MailLists::index);
+        this.flights = REFRESHES;
+        this.labelFilters = LABEL_FILTERS;
+        Context app = ctx.getApplicationContext();
+        this.outbox = Outbox.shared(AppDatabase.get(ctx), api, LABEL_FILTERS, lanes,
+                () -> outboxRefresher(app).refreshInbox());
     }
 
-    // LiveData for UI.
-    public LiveData<List<MailWithLabels>> getInboxLive() {
-        AppDatabase db = AppDatabase.get(ctx);
-        MailDao dao = db.mailDao();
-        return dao.getInbox();
+    private static synchronized MailRepository outboxRefresher(Context app) {
+        if (outboxRefresher == null) outboxRefresher = new MailRepository(app);
+        return outboxRefresher;
     }
 
-    // LiveData bound to Room search results
-    public LiveData<java.util.List<com.example.gmail_android.entities.MailWithLabels>> searchLive(String q) {
-        return dao.search(q);
+    // used by tests to run against a local server and an in-memory database.
+    MailRepository(Context ctx, MailApi api, AppDatabase db, Executor io) {
+        this.api = api;
+        this.dao = db.mailDao();
+        this.labelDao = db.labelDao();
+        this.syncDao = db.syncDao();
+        this.ctx = ctx;
+        this.lanes = IoScheduler.direct(io);
+        this.labelTable = Transformations.map(labelDao.observeTable(), MailLists::index);
+        this.flights = new SingleFlight();
+        this.labelFilters = new LabelFilters();
+        // no timed retries: a test replays waiting changes with refreshInbox
+        this.outbox = new Outbox(db, api, labelFilters, lanes.db.at(IoScheduler.USER),
+                lanes.network.at(IoScheduler.BACKGROUND), (task, delayMs) -> { }, System::currentTimeMillis,
+                this::refreshInbox);
     }
 
-    // Call backend /mails/search/{q}, upsert into Room, so searchLive() updates
-    public void refreshSearch(String q) {
-        io.execute(() -> {
-            try {
-                retrofit2.Response<java.util.List<com.example.gmail_android.interfaces.MailApi.MailDto>> res =
-                        api.search(q).execute();
-                if (!res.isSuccessful() || res.body() == null) return;
+    // runs a refresh on the network lane, or joins the identical one already queued or running.
+    private void single(String key, int priority, SingleFlight.Job job) {
+        if (!flights.run(key, lanes.network.at(priority), job)) {
+            Log.d("MailRepo", "refresh " + key + " joined the one in flight ("
+                    + flights.coalesced() + " coalesced, " + flights.started() + " run)");
+        }
+    }
+
+    // refresh requests run vs. joined to one in flight (process-wide for the app's repositories).
+    public long refreshesStarted() {
+        return flights.started();
+    }
+
+    public long refreshesCoalesced() {
+        return flights.coalesced();
+    }
+
+    // cancels the previous refresh of a list kind when the new one is for another key.
+    private void cancelIfOther(String previous, String key) {
+        if (previous != null && !previous.equals(key)) flights.cancel(previous);
+    }
+
+    // runs the call on this thread; cancelling the flight aborts it.
+    private static <T> Response<T> execute(SingleFlight.Flight flight, Call<T> call) throws IOException {
+        flight.onCancel(call::cancel);
+        return call.execute();
+    }
+
+    // maps on the cpu lane, then writes on the db lane; returns once written.
+    private void apply(int priority, Supplier<SyncBatch> batch) {
+        CompletableFuture.supplyAsync(batch, lanes.cpu.at(priority))
+                .thenAcceptAsync(outbox::write, lanes.db.at(priority))
+                .join();
+    }
+
+    // ----- paged lists: the newest page from Room, older pages on demand (server `before=` cursor) -----
 
-                java.util.List<com.example.gmail_android.entities.MailEntity> mails = new java.util.ArrayList<>();
-                java.util.Map<String, com.example.gmail_android.entities.LabelEntity> labelMap = new java.util.LinkedHashMap<>();
-                java.util.List<com.example.gmail_android.entities.MailLabelCrossRef> joins = new java.util.ArrayList<>();
-
-                for (com.example.gmail_android.interfaces.MailApi.MailDto d : res.body()) {
-                    com.example.gmail_android.entities.MailEntity m = new com.example.gmail_android.entities.MailEntity();
-                    m.id = d.id; m.fromEmail = d.from; m.toEmail = d.to;
-                    m.subject = d.subject; m.content = d.content;
-                    m.isSpam = d.spam; m.dateSentMillis = parseMillis(d.dateSent);
-                    mails.add(m);
-
-                    if (d.labels != null) {
-                        for (com.example.gmail_android.interfaces.MailApi.LabelDto L : d.labels) {
-                            if (L == null || L.id == null) continue;
-                            String lid = normId(L.id);       // <-- normalize
-
-                            LabelEntity e = labelMap.get(lid);
-                            if (e == null) {
-                                e = new LabelEntity();
-                                e.id = lid;
-                                e.name = (L.name != null) ? normName(L.name) : lid;
-                                labelMap.put(lid, e);
-                            }
-                            MailLabelCrossRef ref = new MailLabelCrossRef();
-                            ref.mailId = m.id;
-                            ref.labelId = lid;               // <-- normalized
-                            joins.add(ref);
-                        }
-                    }
+    public MailPager pagedInbox() {
+        return new MailPager(new MailPager.Source() {
+            @Override public LiveData<List<MailWithLabels>> window(long floorDate, String floorId, int limit) {
+                return MailLists.withLabels(dao.inboxWindow(floorDate, floorId, limit), labelTable);
+            }
+            @Override public List<MailDao.PageKey> keysBefore(long date, String id, int n) {
+                return dao.inboxKeysBefore(date, id, n);
+            }
+            @Override public int fetchBefore(MailDao.PageKey key) throws IOException {
+                return savePage("getInbox", api.getInbox(key.toCursor()).execute(),
+                        () -> !keysBefore(key.dateSentMillis, key.id, 1).isEmpty());
+            }
+        }, lanes.network.at(IoScheduler.USER));
+    }
+
+    // the inbox one row per conversation (`threads`, kept by SyncDao). Older pages come from
+    // the inbox endpoint; a page that only added replies to threads already shown is followed
+    // by the next one, so loadMore always reaches an older thread or the end.
+    public MailPager pagedThreads() {
+        return new MailPager(new MailPager.Source() {
+            @Override public LiveData<List<MailWithLabels>> window(long floorDate, String floorId, int limit) {
+                return MailLists.withLabels(dao.threadWindow(floorDate, floorId, limit), labelTable);
+            }
+            @Override public List<MailDao.PageKey> keysBefore(long date, String id, int n) {
+                return dao.threadKeysBefore(date, id, n);
+            }
+            @Override public int fetchBefore(MailDao.PageKey key) throws IOException {
+                int total = 0;
+                boolean unchanged = false;
+                MailDao.PageKey cursor = key;
+                for (int i = 0; i < MAX_THREAD_PAGE_FETCHES; i++) {
+                    MailDao.PageKey below = cursor;
+                    int n = savePage("getInbox", api.getInbox(below.toCursor()).execute(),
+                            () -> !dao.inboxKeysBefore(below.dateSentMillis, below.id, 1).isEmpty());
+                    if (n == 0 || n == -1) return i == 0 ? n : total;
+                    if (n > 0) total += n;
+                    else unchanged = true; // PAGE_UNCHANGED: its mails are stored already
+                    if (!dao.threadKeysBefore(key.dateSentMillis, key.id, 1).isEmpty()) break;
+                    List<MailDao.PageKey> older = dao.inboxKeysBefore(below.dateSentMillis, below.id,
+                            MailPager.PAGE_SIZE);
+                    if (older.isEmpty()) break;
+                    cursor = older.get(older.size() - 1);
                 }
+                // only replies, some of them stored already: not the end of the list
+                return total == 0 && unchanged ? PAGE_UNCHANGED : total;
+            }
+        }, lanes.network.at(IoScheduler.USER));
+    }
 
-                // upsert (no full clear)
-                labelDao.insertAllIgnore(new java.util.ArrayList<>(labelMap.values()));
-                for (LabelEntity e : labelMap.values()) {
-                    labelDao.rename(e.id, e.name);
+    // server pages one pagedThreads().loadMore may read while looking for an older thread.
+    static final int MAX_THREAD_PAGE_FETCHES = 5;
+
+    public MailPager pagedByLabel(String labelId) {
+        String lid = normId(labelId);
+        return new MailPager(new MailPager.Source() {
+            @Override public LiveData<List<MailWithLabels>> window(long floorDate, String floorId, int limit) {
+                return MailLists.withLabels(dao.labelWindow(lid, floorDate, floorId, limit), labelTable);
+            }
+            @Override public List<MailDao.PageKey> keysBefore(long date, String id, int n) {
+                return dao.labelKeysBefore(lid, date, id, n);
+            }
+            @Override public int fetchBefore(MailDao.PageKey key) throws IOException {
+                return savePage("getByLabel", api.getByLabel(labelId, key.toCursor()).execute(),
+                        () -> !keysBefore(key.dateSentMillis, key.id, 1).isEmpty());
+            }
+        }, lanes.network.at(IoScheduler.USER));
+    }
+
+    // mails matching a boolean label filter ("work AND important NOT spam", see LabelExpr),
+    // resolved by the in-memory LabelIndex and read from Room by id. Local only: the server
+    // has no endpoint for label combinations, so older pages come from what sync stored.
+    public MailPager pagedByLabels(String expression) {
+        LabelExpr expr = LabelExpr.parse(expression);
+        return new MailPager(new MailPager.Source() {
+            @Override public LiveData<List<MailWithLabels>> window(long floorDate, String floorId, int limit) {
+                if (expr == null) return new MutableLiveData<>(new ArrayList<>());
+                return MailLists.withLabels(Transformations.switchMap(labelFilters.changes(),
+                        v -> filteredRows(expr, floorDate, floorId, limit)), labelTable);
+            }
+            @Override public List<MailDao.PageKey> keysBefore(long date, String id, int n) {
+                List<MailDao.PageKey> out = new ArrayList<>();
+                if (expr == null) return out;
+                for (LabelIndex.Key k : labelFilters.index.page(expr, date, id, n)) {
+                    MailDao.PageKey key = new MailDao.PageKey();
+                    key.dateSentMillis = k.date;
+                    key.id = k.id;
+                    out.add(key);
                 }
-                dao.upsertMails(mails);
-                dao.upsertMailLabel(joins);
+                return out;
+            }
+            @Override public int fetchBefore(MailDao.PageKey key) {
+                return 0;
+            }
+        }, lanes.network.at(IoScheduler.USER));
+    }
+
+    // the window's rows in list order: ids from the index, rows by primary key. Read on the db
+    // lane, where the index is built and updated.
+    private LiveData<List<MailRow>> filteredRows(LabelExpr expr, long floorDate, String floorId, int limit) {
+        MutableLiveData<List<MailRow>> out = new MutableLiveData<>();
+        lanes.db.at(IoScheduler.USER).execute(() -> {
+            labelFilters.ensureBuilt(dao);
+            List<String> ids = new ArrayList<>();
+            for (LabelIndex.Key k : labelFilters.index.pageFrom(expr, floorDate, floorId, limit)) ids.add(k.id);
+            Map<String, MailRow> byId = new HashMap<>();
+            for (List<String> c : SyncDao.chunks(ids)) {
+                for (MailRow r : dao.rowsByIds(c)) byId.put(r.mail.id, r);
+            }
+            List<MailRow> rows = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                MailRow r = byId.get(id);
+                if (r != null) rows.add(r);
+            }
+            out.postValue(rows);
+        });
+        return out;
+    }
+
+    // hybrid search: local matches show at once, the server's hits for the query
+    // (refreshSearch) merge in when they arrive, each mail once. q may use the search
+    // operators (SearchQuery). Each loaded window is ordered by relevance and recency (SearchRanker).
+    public MailPager pagedSearch(String q) {
+        SearchQuery parsed = SearchQuery.parse(q);
+        String query = SearchResultEntity.key(parsed.toString());
+        return new MailPager(new MailPager.Source() {
+            @Override public LiveData<List<MailWithLabels>> window(long floorDate, String floorId, int limit) {
+                if (parsed.isEmpty()) return new MutableLiveData<>(new ArrayList<>());
+                return MailLists.withLabels(Transformations.map(dao.searchWindow(
+                        parsed.window(query, floorDate, floorId, limit).query()), SearchRanker::rank), labelTable);
+            }
+            @Override public List<MailDao.PageKey> keysBefore(long date, String id, int n) {
+                if (parsed.isEmpty()) return new ArrayList<>();
+                return dao.searchKeysBefore(parsed.keysBefore(query, date, id, n).query());
+            }
+            @Override public int fetchBefore(MailDao.PageKey key) throws IOException {
+                if (parsed.isEmpty()) return 0;
+                return savePage("search", api.search(parsed.toString(), key.toCursor(), utcOffsetMinutes()).execute(), query,
+                        () -> !keysBefore(key.dateSentMillis, key.id, 1).isEmpty());
+            }
+        }, lanes.network.at(IoScheduler.USER));
+    }
+
+    private int savePage(String what, Response<ResponseBody> res, BooleanSupplier stored) throws IOException {
+        return savePage(what, res, null, stored);
+    }
+
+    // streams an older page into Room (nothing is deleted); returns its size, -1 on failure, or
+    // PAGE_UNCHANGED when the server answered 304 and `stored` says the list has rows below the
+    // cursor (the page was written when it was cached). searchQuery: the page holds that search's hits.
+    private int savePage(String what, Response<ResponseBody> res, String searchQuery,
+                         BooleanSupplier stored) throws IOException {
+        if (!res.isSuccessful() || res.body() == null) {
+            logFailure(what, res);
+            return -1;
+        }
+        if (unchanged(what + ":page", res, stored)) return PAGE_UNCHANGED;
+        long start = System.nanoTime();
+        int n = new BatchWriter(null, null, IoScheduler.USER).forSearch(searchQuery).readList(res.body()).mails;
+        TransferStats.SESSION.worked(what + ":page", System.nanoTime() - start);
+        return n;
+    }
+
+    static final int PAGE_UNCHANGED = -2;
+
+    // true when the server answered 304 Not Modified: the body is the cached copy of a response
+    // that was already parsed and written, so the caller skips both. Closes the body.
+    private static boolean unchanged(String what, Response<?> res) {
+        return unchanged(what, res, () -> true);
+    }
+
+    // as above, but only while `stored` says Room still holds what the cached response wrote. A
+    // full resync keeps only the newest mails, so an older page may come back 304 after its rows
+    // were dropped: then the cached body is read like a fresh one.
+    private static boolean unchanged(String what, Response<?> res, BooleanSupplier stored) {
+        if (!TransferStats.notModified(res.raw())) return false;
+        if (!stored.getAsBoolean()) return false;
+        if (res.body() instanceof ResponseBody) ((ResponseBody) res.body()).close();
+        TransferStats.SESSION.skipped(what);
+        Log.d("MailRepo", what + " not modified; " + TransferStats.SESSION.summary());
+        return true;
+    }
+
+    // the device's offset from UTC in minutes: the server reads the days of after: and before:
+    // in this zone, as SearchQuery does locally.
+    private static int utcOffsetMinutes() {
+        return TimeZone.getDefault().getOffset(System.currentTimeMillis()) / 60_000;
+    }
+
+    // search results older than this are dropped, with the mails only they kept.
+    static final long SEARCH_RESULTS_TTL_MS = 24 * 60 * 60 * 1000L;
+
+    // Call backend /mails/search/{q} and store its hits as the query's search results, so
+    // pagedSearch(q) merges them in; mails not stored yet stay out of the other lists.
+    // The server gets the parsed query in canonical form (SearchQuery.toString()) and applies
+    // the same operators (services/mails.js searchMails).
+    public void refreshSearch(String q) {
+        SearchQuery parsed = SearchQuery.parse(q);
+        if (parsed.isEmpty()) return;
+        String canonical = parsed.toString();
+        String key = "search:" + canonical;
+        synchronized (this) {
+            cancelIfOther(currentSearch, key);
+            currentSearch = key;
+        }
+        single(key, IoScheduler.USER, f -> {
+            try {
+                Response<ResponseBody> res = execute(f, api.search(canonical, null, utcOffsetMinutes()));
+                if (!res.isSuccessful() || res.body() == null) return;
+                // upsert (no full clear), one transaction per streamed batch
+                new BatchWriter(f, null, IoScheduler.USER).forSearch(SearchResultEntity.key(canonical))
+                        .readList(res.body());
             } catch (Exception ignore) {}
+            // age out old results after the new ones, so a repeated search keeps its mails
+            lanes.db.at(IoScheduler.BACKGROUND).execute(() -> syncDao.evictSearchResults(
+                    System.currentTimeMillis() - SEARCH_RESULTS_TTL_MS));
         });
     }
 
+    // stops the last search refresh, e.g. because the query changed: its call is cancelled and
+    // nothing more of its response is written.
+    public void cancelSearch() {
+        String key;
+        synchronized (this) {
+            key = currentSearch;
+            currentSearch = null;
+        }
+        if (key != null) flights.cancel(key);
+    }
+
     // refresh inbox data from the server and update Room database.
+    // With a sync cursor only the mails changed since the last refresh are fetched and applied;
+    // without one (first run, other account, old server) the local copy is replaced.
     public void refreshInbox() {
-        io.execute(() -> {
+        single("inbox", IoScheduler.USER, f -> {
             try {
-                Response<List<MailApi.MailDto>> res = api.getInbox().execute();
-                if (!res.isSuccessful() || res.body() == null) {
-                    Log.e("MailRepo",
-                            "getInbox failed: code=" + res.code() + ", msg=" + res.message());
-                    ResponseBody eb = res.errorBody();
-                    if (eb != null) {
-                        try (ResponseBody ignored = eb) {
-                            Log.e("MailRepo", "errorBody=" + eb.string());
-                        } catch (IOException io) {
-                            Log.e("MailRepo", "errorBody read failed", io);
-                        }
-                    }
-
+                String cursor = SyncStateStore.getCursor(ctx);
+                Response<ResponseBody> res = execute(f, api.getChanges(cursor));
+                if (res.code() == 404) {
+                    // server without /mails/changes → full snapshot like before
+                    refreshInboxFull(f);
                     return;
                 }
-
-                List<MailApi.MailDto> body = res.body();
-                Log.d("MailRepo", "getInbox OK, items=" + body.size());
-
-                List<MailEntity> mails = new ArrayList<>();
-                Map<String, LabelEntity> labelMap = new LinkedHashMap<>();
-                List<MailLabelCrossRef> joins = new ArrayList<>();
-
-                // convert API dto to database entities.
-                for (MailApi.MailDto d : body) {
-                    MailEntity m = new MailEntity();
-                    m.id = d.id;
-                    m.fromEmail = d.from;
-                    m.toEmail = d.to;
-                    m.subject = d.subject;
-                    m.content = d.content;
-                    m.isSpam = d.spam;
-                    m.dateSentMillis = parseMillis(d.dateSent);
-                    mails.add(m);
-
-                    // process labels for each mail.
-                    if (d.labels != null) {
-                        for (com.example.gmail_android.interfaces.MailApi.LabelDto L : d.labels) {
-                            if (L == null || L.id == null) continue;
-                            String lid = normId(L.id);     // <-- normalize
-
-                            LabelEntity e = labelMap.get(lid);
-                            if (e == null) {
-                                e = new LabelEntity();
-                                e.id = lid;
-                                e.name = (L.name != null) ? normName(L.name) : lid; // tidy name
-                                labelMap.put(lid, e);
-                            }
-                            MailLabelCrossRef ref = new MailLabelCrossRef();
-                            ref.mailId = m.id;
-                            ref.labelId = lid;             // <-- normalized id in joins
-                            joins.add(ref);
-                        }
-                    }
+                if (!res.isSuccessful() || res.body() == null) {
+                    logFailure("getChanges", res);
+                    return;
                 }
 
-                // update database, clear old data and insert new.
-                dao.clearJoins();
-                dao.clearMails();
-                labelDao.clear(); // no FK joins exist right now, so it's safe
-
-                // Upsert only the labels referenced by these mails (for FK integrity)
-                labelDao.insertAllIgnore(new ArrayList<>(labelMap.values()));
-                for (LabelEntity e : labelMap.values()) {
-                    labelDao.rename(e.id, e.name); // safe no-op if unchanged
-                }
-                dao.upsertMails(mails);
-                dao.upsertMailLabel(joins);
+                // changed mails are written batch by batch while the body downloads;
+                // deletes and the new cursor only once it has been read completely
+                MailStream.Result changes =
+                        new BatchWriter(f, null, IoScheduler.USER).readChanges(res.body());
+                boolean full = changes.full || cursor == null;
+                finishStream(changes, full);
+                SyncStateStore.saveCursor(ctx, changes.cursor);
+                Log.d("MailRepo", "getChanges OK, full=" + full
+                        + ", changed=" + changes.mails + ", deleted=" + changes.deleted.size());
 
                 // Fetch the FULL label catalog so the sidebar shows everything
-                // (no table clearing here to avoid cascading deletes)
                 syncAllLabels();
-
-                Log.d("MailRepo", "saved to Room: mails=" + mails.size()
-                        + ", labels=" + labelMap.size()
-                        + ", joins=" + joins.size());
+                // the server is reachable: changes waiting out a backoff can go now
+                outbox.retryNow();
             } catch (Exception e) {
                 Log.e("MailRepo", "refreshInbox error", e);
             }
         });
     }
 
-    // LiveData for a single mail by id.
-    public LiveData<MailWithLabels> getMailLive(String id) {
+    // GET /mails (latest 50) and replace the local copy; runs on the network lane.
+    private void refreshInboxFull(SingleFlight.Flight f) throws IOException {
+        Response<ResponseBody> res = execute(f, api.getInbox(null));
+        if (!res.isSuccessful() || res.body() == null) {
+            logFailure("getInbox", res);
+            return;
+        }
+        // 304: the local copy is the snapshot written when the response was cached, unless it is gone
+        if (!unchanged("getInbox", res, () -> !dao.inboxKeysBefore(Long.MAX_VALUE, "", 1).isEmpty())) {
+            long start = System.nanoTime();
+            MailStream.Result r = new BatchWriter(f, null, IoScheduler.USER).readList(res.body());
+            Log.d("MailRepo", "getInbox OK, items=" + r.mails);
+            finishStream(r, true);
+            TransferStats.SESSION.worked("getInbox", System.nanoTime() - start);
+        }
+        SyncStateStore.clear(ctx);
+        syncAllLabels();
+    }
+
+    private static void logFailure(String what, Response<?> res) {
+        Log.e("MailRepo",
+                what + " failed: code=" + res.code() + ", msg=" + res.message());
+        ResponseBody eb = res.errorBody();
+        if (eb != null) {
+            try (ResponseBody ignored = eb) {
+                Log.e("MailRepo", "errorBody=" + eb.string());
+            } catch (IOException io) {
+                Log.e("MailRepo", "errorBody read failed", io);
+            }
+        }
+    }
+
+    // sink for a streamed response: each batch is mapped on the cpu lane and written on the db
+    // lane (one transaction) while the next one is read, with at most one batch in flight.
+    // A cancelled flight stops the read at the next batch and drops batches not yet written.
+    // fallbackLabel (normalized) is attached to mails the server sent without labels.
+    private final class BatchWriter implements MailStream.Sink {
+        private final SingleFlight.Flight flight;
+        private final String fallbackLabel;
+        private final int priority;
+        private String searchQuery;
+        private CompletableFuture<Void> pending = CompletableFuture.completedFuture(null);
+
+        BatchWriter(SingleFlight.Flight flight, String fallbackLabel, int priority) {
+            this.flight = flight;
+            this.fallbackLabel = fallbackLabel;
+            this.priority = priority;
+        }
+
+        // the response is this search's hits (a SearchResultEntity key; null: not a search).
+        BatchWriter forSearch(String query) {
+            searchQuery = query;
+            return this;
+        }
+
+        @Override
+        public void write(List<MailApi.MailDto> dtos) {
+            pending.join();
+            if (flight != null && flight.isCancelled()) throw new CancellationException();
+            pending = CompletableFuture
+                    .supplyAsync(() -> {
+                        SyncBatch batch = mapper.toBatch(dtos, fallbackLabel);
+                        batch.searchQuery = searchQuery;
+                        batch.searchedAt = System.currentTimeMillis();
+                        return batch;
+                    }, lanes.cpu.at(priority))
+                    .thenAcceptAsync(batch -> {
+                        // cancelled while mapping or queued: a superseded search writes nothing more
+                        if (flight != null && flight.isCancelled()) return;
+                        outbox.write(batch);
+                    }, lanes.db.at(priority));
+        }
+
+        MailStream.Result readList(ResponseBody body) throws IOException {
+            return read(body, false);
+        }
+
+        MailStream.Result readChanges(ResponseBody body) throws IOException {
+            return read(body, true);
+        }
+
+        private MailStream.Result read(ResponseBody body, boolean changes) throws IOException {
+            MailStream.Result r;
+            try (ResponseBody b = body) {
+                MailStream stream = new MailStream(this);
+                r = changes ? stream.readChanges(b) : stream.readList(b);
+            } finally {
+                // no write outlives the read, even a failed one
+                try {
+                    pending.join();
+                } catch (RuntimeException ignore) { }
+            }
+            pending.join(); // a failed write fails the sync
+            return r;
+        }
+    }
+
+    // end of a streamed sync, on the db lane. full → drop local mails missing from the snapshot
+    // (but not the ones sent from here the server doesn't have yet); otherwise drop the
+    // tombstones (a mail the same response re-sent is kept).
+    private void finishStream(MailStream.Result r, boolean full) {
+        CompletableFuture.runAsync(() -> {
+            if (full) {
+                Set<String> keep = new HashSet<>(r.seen);
+                keep.addAll(outbox.localMailIds());
+                syncDao.deleteAllExcept(keep);
+                labelFilters.retainOnly(keep);
+                return;
+            }
+            SyncBatch batch = new SyncBatch();
+            for (String id : r.deleted) if (!r.seen.contains(id)) batch.deletedMailIds.add(id);
+            if (batch.isEmpty()) return;
+            outbox.write(batch);
+        }, lanes.db.at(IoScheduler.USER)).join();
+    }
+
+    // the mails of one conversation (a threaded inbox row), newest first.
+    public LiveData<List<MailWithLabels>> getThreadLive(String threadId) {
+        return MailLists.withLabels(dao.threadMails(threadId), labelTable);
+    }
+
+    // LiveData for a single mail by id, with its labels and body.
+    public LiveData<MailDetails> getMailLive(String id) {
         return dao.getById(id);
     }
 
     // refresh a single mail from the server and update Room (including its labels).
     public void refreshMail(String id) {
-        io.execute(() -> {
+        if (OutboxEntity.isLocal(id)) return; // sent from here, not on the server yet
+        single("mail:" + id, IoScheduler.USER, f -> {
             try {
-                Response<MailApi.MailDto> res = api.getMail(id).execute();
+                Response<MailApi.MailDto> res = execute(f, api.getMail(id));
                 if (!res.isSuccessful() || res.body() == null) return;
-
-                MailApi.MailDto d = res.body();
-
-                MailEntity m = new MailEntity();
-                m.id = d.id;
-                m.fromEmail = d.from;
-                m.toEmail = d.to;
-                m.subject = d.subject;
-                m.content = d.content;
-                m.isSpam = d.spam;
-                m.dateSentMillis = parseMillis(d.dateSent);
-
-                Map<String, LabelEntity> labelMap = new LinkedHashMap<>();
-                List<MailLabelCrossRef> joins = new ArrayList<>();
-
-                // process labels.
-                if (d.labels != null) {
-                    for (com.example.gmail_android.interfaces.MailApi.LabelDto L : d.labels) {
-                        if (L == null || L.id == null) continue;
-                        String lid = normId(L.id);     // <-- normalize
-                        if (!labelMap.containsKey(lid)) {
-                            LabelEntity e = new LabelEntity();
-                            e.id = lid;
-                            e.name = (L.name != null) ? normName(L.name) : lid;
-                            labelMap.put(lid, e);
-                        }
-                        MailLabelCrossRef ref = new MailLabelCrossRef();
-                        ref.mailId = m.id;
-                        ref.labelId = lid;             // <-- normalized
-                        joins.add(ref);
-                    }
-                }
+                if (unchanged("getMail", res, () -> dao.findById(id) != null)) return;
 
                 // update only the specific mail and its label relationships.
-                dao.clearJoinsForMail(id);
-                dao.upsertMailLabel(joins);
-
+                MailApi.MailDto dto = res.body();
+                long start = System.nanoTime();
+                apply(IoScheduler.USER, () -> mapper.toBatch(dto));
+                TransferStats.SESSION.worked("getMail", System.nanoTime() - start);
             } catch (Exception ignore) {}
         });
     }
 
-    // Fetch mails for a specific label and upsert into Room
-    // Fetch mails for a specific label via search("label:{id}") and upsert into Room
+    // Fetch the newest page of a label (GET /mails/label/{id}) and upsert into Room
     public void refreshByLabel(String labelId) {
-        io.execute(() -> {
+        String key = "label:" + normId(labelId);
+        synchronized (this) {
+            cancelIfOther(currentLabel, key);
+            currentLabel = key;
+        }
+        single(key, IoScheduler.USER, f -> {
             try {
                 // Normalize id defensively (helps if server treats ids case-insensitively)
                 String lidQuery = (labelId == null ? "" : labelId.trim());
                 String lidLocal = normId(labelId);
-                Response<List<MailApi.MailDto>> res = api.search("label:" + lidQuery).execute();
+                Response<ResponseBody> res = execute(f, api.getByLabel(lidQuery, null));
                 if (!res.isSuccessful() || res.body() == null) return;
-
-                List<MailEntity> mails = new ArrayList<>();
-                Map<String, LabelEntity> labelMap = new LinkedHashMap<>();
-                List<MailLabelCrossRef> joins = new ArrayList<>();
-
-                for (MailApi.MailDto d : res.body()) {
-                    MailEntity m = new MailEntity();
-                    m.id = d.id; m.fromEmail = d.from; m.toEmail = d.to;
-                    m.subject = d.subject; m.content = d.content;
-                    m.isSpam = d.spam; m.dateSentMillis = parseMillis(d.dateSent);
-                    mails.add(m);
-
-                    if (d.labels != null) {
-                        for (com.example.gmail_android.interfaces.MailApi.LabelDto L : d.labels) {
-                            if (L == null || L.id == null) continue;
-                            String lid = normId(L.id);   // <-- normalize
-                            LabelEntity e = labelMap.get(lid);
-                            if (e == null) {
-                                e = new LabelEntity();
-                                e.id = lid;
-                                e.name = (L.name != null) ? normName(L.name) : lid;
-                                labelMap.put(lid, e);
-                            }
-                            MailLabelCrossRef ref = new MailLabelCrossRef();
-                            ref.mailId = m.id;
-                            ref.labelId = lid;           // <-- normalized
-                            joins.add(ref);
-                        }
-                    } else {
-                        // Backend didn’t include labels; attach the one we filtered by
-                        if (lidLocal != null && !labelMap.containsKey(lidLocal)) {
-                            LabelEntity e = new LabelEntity();
-                            e.id = lidLocal;
-                            e.name = lidLocal;
-                            labelMap.put(lidLocal, e);
-                        }
-                        MailLabelCrossRef ref = new MailLabelCrossRef();
-                        ref.mailId = m.id;
-                        assert lidLocal != null;
-                        ref.labelId = lidLocal;          // <-- normalized
-                        joins.add(ref);
-                    }
-                }
+                // a 304 is skipped only while the label has rows (a full resync may have dropped them)
+                if (unchanged("getByLabel", res,
+                        () -> !dao.labelKeysBefore(lidLocal, Long.MAX_VALUE, "", 1).isEmpty())) return;
 
                 // Upsert ONLY; do not clear whole tables
-                labelDao.insertAllIgnore(new ArrayList<>(labelMap.values()));
-                for (LabelEntity e : labelMap.values()) labelDao.rename(e.id, e.name);
-
-                dao.upsertMails(mails);
-                dao.upsertMailLabel(joins);
-
+                long start = System.nanoTime();
+                new BatchWriter(f, lidLocal, IoScheduler.USER).readList(res.body());
+                TransferStats.SESSION.worked("getByLabel", System.nanoTime() - start);
             } catch (Exception ignore) {}
         });
     }
 
-    // send a new mail.
-    public void send(String toEmail, String subject, String content, List<String> labels,
-                     Callback<MailApi.MailDto> cb) {
+    // ----- changes: shown in Room at once, sent by the outbox in the background (see Outbox) -----
+
+    // send a new mail (or save a new draft: labels include "Drafts"). It is listed at once
+    // under a local id, replaced by the server's mail once sent. Returns the change's key, for
+    // a change that must only go out after it (see delete(mailId, after)).
+    public String send(String toEmail, String subject, String content, List<String> labels) {
         MailApi.ComposeRequest req = new MailApi.ComposeRequest();
         req.toEmail = toEmail;
         req.subject = subject;
         req.content = content;
         req.labels  = labels;
-        api.send(req).enqueue(cb);
+        return outbox.enqueue(OutboxEntity.SEND, Outbox.localId(), null, req, null);
     }
 
     // edit an existing mail (for draft).
     public void edit(String mailId, String toEmail, String subject, String content,
-                     List<String> labels,
-                     Callback<MailApi.MailDto> cb) {
+                     List<String> labels) {
         MailApi.EditRequest req = new MailApi.EditRequest();
         req.toEmail = toEmail;
         req.subject = subject;
         req.content = content;
         req.labels  = labels;
-        api.edit(mailId, req).enqueue(cb);
+        outbox.enqueue(OutboxEntity.EDIT, mailId, null, req);
     }
 
-    public void deleteLocal(String mailId) {
-        io.execute(() -> {
-            dao.clearJoinsForMail(mailId);
-            dao.deleteMail(mailId);
-        });
+    // delete a mail
+    public void delete(String mailId) {
+        delete(mailId, null);
     }
 
-    // delete a mail
-    public void delete(String mailId, retrofit2.Callback<okhttp3.ResponseBody> cb) {
-        api.delete(mailId).enqueue(new retrofit2.Callback<okhttp3.ResponseBody>() {
-            @Override
-            public void onResponse(@NonNull retrofit2.Call<okhttp3.ResponseBody> call,
-                                   @NonNull retrofit2.Response<okhttp3.ResponseBody> res) {
-                if (res.isSuccessful()) {
-                    deleteLocal(mailId);   // <-- hide immediately in Room
-                }
-                if (cb != null) cb.onResponse(call, res);
-            }
+    // delete a mail once the change with key `after` went through, and not if the server
+    // refused it (sending an edited draft, then deleting the draft).
+    public void delete(String mailId, String after) {
+        outbox.enqueue(OutboxEntity.DELETE, mailId, null, null, after);
+    }
 
-            @Override
-            public void onFailure(@NonNull retrofit2.Call<okhttp3.ResponseBody> call, @NonNull Throwable t) {
-                if (cb != null) cb.onFailure(call, t);
-            }
+    // delete every mail of a conversation: the threaded inbox row goes with them.
+    public void deleteThread(String threadId) {
+        lanes.db.at(IoScheduler.USER).execute(() -> {
+            for (String id : dao.threadMailIds(threadId)) delete(id);
         });
     }
 
     // add a label to a mail.
-    public void addLabel(String mailId, String labelId, Callback<ResponseBody> cb) {
-        api.addLabel(mailId, labelId).enqueue(cb);
+    public void addLabel(String mailId, String labelId) {
+        outbox.enqueue(OutboxEntity.ADD_LABEL, mailId, normId(labelId), null);
     }
 
     // remove a label from a mail.
-    public void removeLabel(String mailId, String labelId, Callback<ResponseBody> cb) {
-        api.removeLabel(mailId, labelId).enqueue(cb);
+    public void removeLabel(String mailId, String labelId) {
+        outbox.enqueue(OutboxEntity.REMOVE_LABEL, mailId, normId(labelId), null);
     }
 
-    // Create label
-    public void createLabel(String name, retrofit2.Callback<MailApi.LabelDto> cb) {
-        api.createLabel(new MailApi.CreateLabelRequest(name)).enqueue(new retrofit2.Callback<>() {
-            @Override
-            public void onResponse(@NonNull retrofit2.Call<MailApi.LabelDto> call,
-                                   @NonNull retrofit2.Response<MailApi.LabelDto> res) {
-                if (res.isSuccessful() && res.body() != null) {
-                    io.execute(() -> {
-                        LabelEntity e = new LabelEntity();
-                        e.id = res.body().id;
-                        e.name = res.body().name != null ? res.body().name : res.body().id;
-                        labelDao.insertAllIgnore(java.util.Collections.singletonList(e));
-                        labelDao.rename(e.id, e.name);
-                    });
-                }
-                if (cb != null) cb.onResponse(call, res);
-            }
+    // Create label; usable at once under a local id (mails can be labelled with it), which
+    // moves to the server's id once created.
+    public LabelEntity createLabel(String name) {
+        LabelEntity e = new LabelEntity(Outbox.localId(), name);
+        outbox.enqueue(OutboxEntity.CREATE_LABEL, e.id, name, null);
+        return e;
+    }
 
-            @Override
-            public void onFailure(@NonNull retrofit2.Call<MailApi.LabelDto> call, @NonNull Throwable t) {
-                if (cb != null) cb.onFailure(call, t);
-            }
-        });
+    // Rename label
+    public void renameLabel(String id, String newName) {
+        outbox.enqueue(OutboxEntity.RENAME_LABEL, normId(id), newName, null);
     }
 
-    // Rename label (handles 200 with body OR 204 without)
-    public void renameLabel(String id, String newName, retrofit2.Callback<MailApi.LabelDto> cb) {
-        api.renameLabel(id, new MailApi.RenameLabelRequest(newName))
-                .enqueue(new retrofit2.Callback<MailApi.LabelDto>() {
-                    @Override
-                    public void onResponse(retrofit2.Call<MailApi.LabelDto> call,
-                                           retrofit2.Response<MailApi.LabelDto> res) {
-                        if (res.isSuccessful()) {
-                            final String nameToPersist =
-                                    (res.body() != null && res.body().name != null && !res.body().name.isEmpty())
-                                            ? res.body().name
-                                            : newName; // 204 or empty body → use the input
-
-                            io.execute(() -> labelDao.rename(id, nameToPersist));
-                        }
-                        if (cb != null) cb.onResponse(call, res);
-                    }
-
-                    @Override
-                    public void onFailure(@NonNull retrofit2.Call<MailApi.LabelDto> call, @NonNull Throwable t) {
-                        if (cb != null) cb.onFailure(call, t);
-                    }
-                });
+    // Delete label; its joins cascade and threads drop it.
+    public void deleteLabel(String id) {
+        outbox.enqueue(OutboxEntity.DELETE_LABEL, normId(id), null, null);
     }
 
-    // Delete label
-    public void deleteLabel(String id, retrofit2.Callback<okhttp3.ResponseBody> cb) {
-        api.deleteLabel(id).enqueue(new retrofit2.Callback<>() {
-            @Override
-            public void onResponse(@NonNull retrofit2.Call<okhttp3.ResponseBody> call,
-                                   @NonNull retrofit2.Response<okhttp3.ResponseBody> res) {
-                if (res.isSuccessful()) {
-                    io.execute(() -> labelDao.delete(id));  // ON DELETE CASCADE will clean joins
-                }
-                if (cb != null) cb.onResponse(call, res);
-            }
+    // messages for changes the server refused (they were undone locally).
+    public LiveData<Event<String>> outboxFailures() {
+        return Outbox.failures();
+    }
 
-            @Override
-            public void onFailure(@NonNull retrofit2.Call<okhttp3.ResponseBody> call, @NonNull Throwable t) {
-                if (cb != null) cb.onFailure(call, t);
-            }
-        });
+    // changes not confirmed by the server yet.
+    public LiveData<Integer> outboxCount() {
+        return outbox.pendingCount();
     }
 
-    public LiveData<List<MailWithLabels>> getByLabelLive(String labelId) {
-        AppDatabase db = AppDatabase.get(ctx);
-        MailDao dao = db.mailDao();
-        return dao.getByLabel(labelId);
+    // drops the changes not sent yet, e.g. on logout: they were made by that account.
+    public void discardOutbox() {
+        outbox.clear();
     }
 
     public LiveData<List<LabelEntity>> getLabelsLive() {
         return labelDao.observeAll();
     }
 
+    // drawer rows: labels in drawer order with their counts (label_stats). Re-emits only when a
+    // label or a count changed; a sync that rewrites joins to the same labels is not shown.
+    public LiveData<List<LabelCount>> getLabelCountsLive() {
+        return Transformations.distinctUntilChanged(labelDao.observeCounts());
+    }
+
     // Fetch a user by id so we can display the profile image
     public androidx.lifecycle.LiveData<com.example.gmail_android.entities.User> getUser(int id) {
         final androidx.lifecycle.MutableLiveData<com.example.gmail_android.entities.User> live =
@@ -480,7 +710,8 @@ public class MailRepository {
         api.getMe().enqueue(new retrofit2.Callback<com.example.gmail_android.entities.User>() {
             @Override public void onResponse(retrofit2.Call<com.example.gmail_android.entities.User> call,
                                              retrofit2.Response<com.example.gmail_android.entities.User> res) {
-                if (res.isSuccessful() && res.body() != null) {
+                // 304: the profile (and its avatar) is the one shown last time, still cached in prefs
+                if (res.isSuccessful() && res.body() != null && !unchanged("getMe", res)) {
                     live.postValue(res.body());
                 }
             }
@@ -492,53 +723,26 @@ public class MailRepository {
     }
 
 
-    // parse a date string.
-    private static long parseMillis(String dateSent) {
-        if (dateSent == null || dateSent.isEmpty()) return 0L;
-        String s = dateSent.trim();
-
-        // epoch millis or seconds
-        if (s.matches("^-?\\d+$")) {
-            try {
-                long v = Long.parseLong(s);
-                return (v > 9_999_999_999L) ? v : v * 1000L; // handle seconds too
-            } catch (NumberFormatException ignore) {}
-        }
-        // last-resort fixed pattern (UTC)
-        try {
-            java.text.SimpleDateFormat f =
-                    new java.text.SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", java.util.Locale.US);
-            f.setTimeZone(java.util.TimeZone.getTimeZone("UTC"));
-            return Objects.requireNonNull(f.parse(s)).getTime();
-        } catch (Exception ignore) {}
-
-        return 0L; // deterministic fallback (avoids “now” jumping)
-    }
-
     // Pull the full label catalog and upsert (no table clearing) so nothing disappears from the sidebar
     public void syncAllLabels() {
-        io.execute(() -> {
+        single("labels", IoScheduler.BACKGROUND, f -> {
             try {
-                Response<List<MailApi.LabelDto>> res = api.getLabels().execute();
+                Response<List<MailApi.LabelDto>> res = execute(f, api.getLabels());
                 if (!res.isSuccessful() || res.body() == null) {
                     Log.e("MailRepo", "getLabels failed: code=" + res.code());
                     return;
                 }
-                List<LabelEntity> items = new ArrayList<>();
-                for (MailApi.LabelDto L : res.body()) {
-                    if (L == null || L.id == null) continue;
-                    String lid = normId(L.id);         // <-- normalize
-
-                    LabelEntity e = new LabelEntity();
-                    e.id = lid;
-                    e.name = (L.name != null) ? normName(L.name) : lid;
-                    items.add(e);
-                }
-                labelDao.insertAllIgnore(items);
-                for (LabelEntity e : items) {
-                    labelDao.rename(e.id, e.name);
-                }
-                Log.d("MailRepo", "syncAllLabels OK, items=" + items.size());
+                if (unchanged("getLabels", res)) return;
+                List<MailApi.LabelDto> dtos = res.body();
+                long start = System.nanoTime();
+                apply(IoScheduler.BACKGROUND, () -> {
+                    SyncBatch batch = new SyncBatch();
+                    batch.replaceLabels = true; // the catalog is authoritative; drops labels deleted elsewhere
+                    batch.labels.addAll(mapper.labels(dtos));
+                    return batch;
+                });
+                TransferStats.SESSION.worked("getLabels", System.nanoTime() - start);
+                Log.d("MailRepo", "syncAllLabels OK, items=" + dtos.size() + "; " + TransferStats.SESSION.summary());
             } catch (Exception e) {
                 Log.e("MailRepo", "syncAllLabels error", e);
             }
@@ -0,0 +1,637 @@
+package com.example.gmail_android.repository;
+
+import android.util.Log;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import com.example.gmail_android.dao.AppDatabase;
+import com.example.gmail_android.dao.MailDao;
+import com.example.gmail_android.dao.OutboxDao;
+import com.example.gmail_android.dao.SyncBatch;
+import com.example.gmail_android.dao.SyncDao;
+import com.example.gmail_android.entities.LabelEntity;
+import com.example.gmail_android.entities.MailBodyEntity;
+import com.example.gmail_android.entities.MailEntity;
+import com.example.gmail_android.entities.MailLabelCrossRef;
+import com.example.gmail_android.entities.OutboxEntity;
+import com.example.gmail_android.interfaces.MailApi;
+import com.example.gmail_android.utils.Event;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+// the changes made on the device (send, draft edits, deletes, labels on mails, label CRUD),
+// stored in the outbox table and replayed to the server in the background, so they survive
+// being offline, a flaky network and the app being killed.
+//   enqueue  stores the change (merged with the ones still waiting, see OutboxPlan.coalesce)
+//            and shows it in the local tables in the same transaction
+//   write    the repository's write path for server data: waiting changes are laid over each
+//            batch first (OutboxPlan.overlay), so a sync doesn't bring back what was changed here
+//   pass     one replay: the waiting changes in order, up to BATCH of them on one connection,
+//            then one delta sync for all of them if any needs it (OutboxPlan.needsSync), instead
+//            of a refetch per change
+// A change that fails for a transient reason is retried with exponential backoff and jitter;
+// one the server refuses (4xx) is dropped: a label toggle is rolled back locally, anything else
+// (adding Spam too: it also flags the mail) is fetched again (the server wins).
+// Changes to the same mail or label go out in order; a change to a mail or label created here
+// waits until the server has created it, then goes to its real id.
+// One instance per process (shared by the repositories); the database calls run on the db
+// lane, the replay on the network lane.
+final class Outbox {
+    static final String TAG = "Outbox";
+    // changes per pass; the rest go in the next one
+    static final int BATCH = 50;
+
+    // delayed retries.
+    interface Timer {
+        void schedule(Runnable task, long delayMs);
+    }
+
+    private static Outbox shared;
+    // refused changes, as messages for the user; process-wide like the outbox itself.
+    private static final MutableLiveData<Event<String>> FAILURES = new MutableLiveData<>();
+
+    private final AppDatabase db;
+    private final OutboxDao dao;
+    private final MailDao mailDao;
+    private final SyncDao syncDao;
+    private final LabelFilters labelFilters;
+    private final MailApi api;
+    private final MailMapper mapper = new MailMapper();
+    private final Executor dbLane;
+    private final Executor passLane;
+    private final Timer timer;
+    private final LongSupplier clock;
+    private final Random random = new Random();
+    // a pass is queued and hasn't started reading the table yet
+    private final AtomicBoolean queued = new AtomicBoolean();
+    // the server confirmed changes since the last afterPass
+    private volatile boolean unsynced;
+    // run after a pass that confirmed changes needing one: a delta sync picks up what they did
+    private final Runnable afterPass;
+
+    Outbox(AppDatabase db, MailApi api, LabelFilters labelFilters, Executor dbLane, Executor passLane,
+           Timer timer, LongSupplier clock, Runnable afterPass) {
+        this.db = db;
+        this.dao = db.outboxDao();
+        this.mailDao = db.mailDao();
+        this.syncDao = db.syncDao();
+        this.labelFilters = labelFilters;
+        this.api = api;
+        this.dbLane = dbLane;
+        this.passLane = passLane;
+        this.timer = timer;
+        this.clock = clock;
+        this.afterPass = afterPass;
+    }
+
+    // the process's outbox; the first call resumes what an earlier run left waiting.
+    static synchronized Outbox shared(AppDatabase db, MailApi api, LabelFilters labelFilters, IoScheduler lanes,
+                                      Runnable afterPass) {
+        if (shared == null) {
+            shared = new Outbox(db, api, labelFilters, lanes.db.at(IoScheduler.USER),
+                    lanes.network.at(IoScheduler.BACKGROUND), retryTimer(), System::currentTimeMillis,
+                    afterPass);
+            shared.resume();
+        }
+        return shared;
+    }
+
+    // delayed retries on one daemon thread (it only kicks a pass onto the network lane).
+    static Timer retryTimer() {
+        ScheduledExecutorService retries = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "outbox-retry");
+            t.setDaemon(true);
+            return t;
+        });
+        return (task, delayMs) -> retries.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    static LiveData<Event<String>> failures() {
+        return FAILURES;
+    }
+
+    LiveData<Integer> pendingCount() {
+        return dao.observeCount();
+    }
+
+    // a replay that died with the process left its change marked as on the wire.
+    void resume() {
+        dbLane.execute(() -> {
+            dao.resetSending();
+            kick();
+        });
+    }
+
+    // e.g. a sync just worked: the network is back, so changes waiting out a backoff go now.
+    void retryNow() {
+        dbLane.execute(() -> {
+            List<OutboxEntity> waiting = new ArrayList<>();
+            for (OutboxEntity op : dao.pending()) {
+                if (!op.sending && op.nextAttemptAt > 0) {
+                    op.nextAttemptAt = 0;
+                    waiting.add(op);
+                }
+            }
+            if (waiting.isEmpty()) return;
+            dao.update(waiting);
+            kick();
+        });
+    }
+
+    // drops every waiting change, e.g. on logout (they were made by that account).
+    void clear() {
+        dbLane.execute(dao::clear);
+    }
+
+    // ----- changes -----
+
+    void enqueue(String kind, String target, String arg, Object body) {
+        enqueue(kind, target, arg, body, null);
+    }
+
+    // returns the change's idempotency key, for a later change to go `after` it.
+    String enqueue(String kind, String target, String arg, Object body, String after) {
+        OutboxEntity op = new OutboxEntity();
+        op.idempotencyKey = UUID.randomUUID().toString();
+        op.kind = kind;
+        op.target = target;
+        op.arg = arg;
+        op.body = body != null ? OutboxPlan.GSON.toJson(body) : null;
+        op.after = after;
+        op.createdAt = clock.getAsLong();
+        dbLane.execute(() -> {
+            db.runInTransaction(() -> {
+                OutboxPlan.Merge m = OutboxPlan.coalesce(dao.pending(), op);
+                if (!m.removed.isEmpty()) dao.delete(seqs(m.removed));
+                if (!m.updated.isEmpty()) dao.update(m.updated);
+                if (m.insert) op.seq = dao.insert(op);
+                showLocally(op);
+            });
+            kick();
+        });
+        return op.idempotencyKey;
+    }
+
+    // a new id for a mail or label made here.
+    static String localId() {
+        return OutboxEntity.LOCAL_PREFIX + UUID.randomUUID();
+    }
+
+    // the change in the local tables, at once (on the db lane, in enqueue's transaction).
+    private void showLocally(OutboxEntity op) {
+        switch (op.kind) {
+            case OutboxEntity.SEND:
+                writeDirect(OutboxPlan.placeholder(op, this::labelIdByName));
+                break;
+            case OutboxEntity.CREATE_LABEL:
+            case OutboxEntity.RENAME_LABEL: {
+                SyncBatch b = new SyncBatch();
+                b.labels.add(new LabelEntity(op.target, op.arg));
+                writeDirect(b);
+                break;
+            }
+            case OutboxEntity.DELETE_LABEL:
+                syncDao.deleteLabel(op.target);
+                labelFilters.removeLabel(op.target);
+                break;
+            default: {
+                SyncBatch b = stored(op.target);
+                if (b.mails.isEmpty()) return;
+                OutboxPlan.overlay(Collections.singletonList(op), b, this::labelIdByName);
+                dropDanglingJoins(b); // a label deleted meanwhile: the server will refuse it
+                writeDirect(b);
+            }
+        }
+    }
+
+    // ----- the write path for server data -----
+
+    // writes a batch from the server with the waiting changes laid over it (on the db lane).
+    void write(SyncBatch b) {
+        List<OutboxEntity> pending = dao.pending();
+        if (!pending.isEmpty()) {
+            OutboxPlan.overlay(pending, b, this::labelIdByName);
+            dropDanglingJoins(b);
+        }
+        writeDirect(b);
+    }
+
+    // mails that exist only here so far; a full snapshot from the server must not delete them.
+    Set<String> localMailIds() {
+        Set<String> ids = new HashSet<>();
+        for (OutboxEntity op : dao.pending()) {
+            if (OutboxEntity.SEND.equals(op.kind) && OutboxEntity.isLocal(op.target)) ids.add(op.target);
+        }
+        return ids;
+    }
+
+    private void writeDirect(SyncBatch b) {
+        if (b.isEmpty()) return;
+        syncDao.apply(b);
+        labelFilters.apply(b);
+    }
+
+    // a mail as stored: row, body and joins.
+    private SyncBatch stored(String mailId) {
+        SyncBatch b = new SyncBatch();
+        MailEntity m = mailDao.findById(mailId);
+        if (m == null) return b;
+        b.mails.add(m);
+        String content = mailDao.findContent(mailId);
+        b.bodies.add(new MailBodyEntity(mailId, content != null ? content : ""));
+        for (String labelId : dao.labelIdsOf(mailId)) b.joins.add(new MailLabelCrossRef(mailId, labelId));
+        return b;
+    }
+
+    // the change adds the Spam label.
+    private boolean isSpamLabel(OutboxEntity op) {
+        return OutboxEntity.ADD_LABEL.equals(op.kind) && op.arg.equals(labelIdByName("spam"));
+    }
+
+    private String labelIdByName(String name) {
+        LabelEntity e = dao.labelNamed(name.trim());
+        return e != null ? e.id : null;
+    }
+
+    // joins to labels that neither the batch nor the table has (a label added here that was
+    // since deleted on the server): written, they would fail the whole batch (foreign key).
+    private void dropDanglingJoins(SyncBatch b) {
+        Set<String> known = new HashSet<>();
+        for (LabelEntity e : b.labels) known.add(e.id);
+        List<String> unknown = new ArrayList<>();
+        for (MailLabelCrossRef j : b.joins) {
+            if (!known.contains(j.labelId) && !unknown.contains(j.labelId)) unknown.add(j.labelId);
+        }
+        if (unknown.isEmpty()) return;
+        known.addAll(dao.existingLabels(unknown));
+        for (Iterator<MailLabelCrossRef> it = b.joins.iterator(); it.hasNext(); ) {
+            if (!known.contains(it.next().labelId)) it.remove();
+        }
+    }
+
+    // ----- replay -----
+
+    // queues a pass unless one is queued and hasn't read the table yet.
+    void kick() {
+        if (queued.compareAndSet(false, true)) passLane.execute(this::pass);
+    }
+
+    // one at a time (the network lane has several threads): a kick during a pass queues at most
+    // one more, which waits here and then reads what this one left.
+    private synchronized void pass() {
+        queued.set(false);
+        List<OutboxEntity> ops = onDb(dao::pending);
+        long now = clock.getAsLong();
+        // mails and labels with an earlier change still waiting, and keys of waiting changes:
+        // later changes to them wait too, to keep the order
+        Set<String> held = new HashSet<>();
+        Set<String> heldKeys = new HashSet<>();
+        boolean labelCreating = false;
+        long nextRetry = Long.MAX_VALUE;
+        int sent = 0;
+        boolean more = false;
+
+        for (OutboxEntity op : ops) {
+            boolean wait = op.sending || held.contains(op.target) || (op.arg != null && held.contains(op.arg))
+                    || (op.after != null && heldKeys.contains(op.after))
+                    // a mail may be sent with a label created just before (by name)
+                    || (OutboxEntity.SEND.equals(op.kind) && labelCreating);
+            if (!wait && op.nextAttemptAt > now) {
+                nextRetry = Math.min(nextRetry, op.nextAttemptAt);
+                wait = true;
+            }
+            if (!wait && sent >= BATCH) {
+                more = true;
+                wait = true;
+            }
+            if (wait) {
+                hold(op, held, heldKeys);
+                if (OutboxEntity.CREATE_LABEL.equals(op.kind)) labelCreating = true;
+                continue;
+            }
+
+            sent++;
+            Result r = send(op);
+            if (r.outcome == OutboxPlan.Outcome.DONE) {
+                if (OutboxPlan.needsSync(op.kind)) unsynced = true;
+                if (OutboxEntity.isLocal(op.target)) {
+                    // changes after it were moved to the server's id: read them again
+                    more = true;
+                    break;
+                }
+                continue;
+            }
+            hold(op, held, heldKeys);
+            if (OutboxEntity.CREATE_LABEL.equals(op.kind)) labelCreating = true;
+            if (r.outcome == OutboxPlan.Outcome.RETRY) {
+                nextRetry = Math.min(nextRetry, r.retryAt);
+                if (r.offline) break; // the rest would fail the same way
+            }
+        }
+
+        if (more) {
+            kick();
+            return;
+        }
+        if (unsynced) {
+            unsynced = false;
+            afterPass.run();
+        }
+        if (nextRetry != Long.MAX_VALUE) {
+            timer.schedule(this::kick, Math.max(0, nextRetry - clock.getAsLong()));
+        }
+    }
+
+    private static void hold(OutboxEntity op, Set<String> held, Set<String> heldKeys) {
+        held.add(op.target);
+        heldKeys.add(op.idempotencyKey);
+    }
+
+    private static final class Result {
+        final OutboxPlan.Outcome outcome;
+        final long retryAt;
+        final boolean offline;
+
+        Result(OutboxPlan.Outcome outcome, long retryAt, boolean offline) {
+            this.outcome = outcome;
+            this.retryAt = retryAt;
+            this.offline = offline;
+        }
+    }
+
+    // one change to the server and its outcome written back.
+    private Result send(OutboxEntity op) {
+        op.sending = true;
+        op.attempts++; // counted before the call: once started, it may reach the server
+        onDb(() -> {
+            dao.update(Collections.singletonList(op));
+            return null;
+        });
+
+        Response<?> res;
+        try {
+            res = call(op);
+        } catch (IOException | RuntimeException e) {
+            return retry(op, String.valueOf(e), true);
+        }
+        OutboxPlan.Outcome outcome = OutboxPlan.outcome(op.kind, res.code());
+        if (outcome == OutboxPlan.Outcome.RETRY) {
+            return retry(op, "HTTP " + res.code(), false);
+        }
+        if (outcome == OutboxPlan.Outcome.DONE) {
+            Object body = res.body();
+            if (body instanceof ResponseBody) ((ResponseBody) body).close();
+            onDb(() -> {
+                db.runInTransaction(() -> confirmed(op, body));
+                return null;
+            });
+            return new Result(outcome, 0, false);
+        }
+        String error = errorOf(res);
+        onDb(() -> {
+            db.runInTransaction(() -> refused(op));
+            return null;
+        });
+        Log.w(TAG, op.kind + " " + op.target + " refused: " + res.code() + " " + error);
+        FAILURES.postValue(new Event<>(describe(op) + ": " + error));
+        return new Result(outcome, 0, false);
+    }
+
+    private Result retry(OutboxEntity op, String error, boolean offline) {
+        op.sending = false;
+        op.lastError = error;
+        op.nextAttemptAt = clock.getAsLong() + OutboxPlan.backoff(op.attempts, random);
+        onDb(() -> {
+            dao.update(Collections.singletonList(op));
+            return null;
+        });
+        Log.d(TAG, op.kind + " " + op.target + " failed (" + error + "), attempt " + op.attempts
+                + ", next in " + (op.nextAttemptAt - clock.getAsLong()) + " ms");
+        return new Result(OutboxPlan.Outcome.RETRY, op.nextAttemptAt, offline);
+    }
+
+    private Response<?> call(OutboxEntity op) throws IOException {
+        String key = op.idempotencyKey;
+        switch (op.kind) {
+            case OutboxEntity.SEND:
+                return api.send(key, OutboxPlan.GSON.fromJson(op.body, MailApi.ComposeRequest.class)).execute();
+            case OutboxEntity.EDIT:
+                return api.edit(key, op.target, OutboxPlan.GSON.fromJson(op.body, MailApi.EditRequest.class)).execute();
+            case OutboxEntity.DELETE:
+                return api.delete(key, op.target).execute();
+            case OutboxEntity.ADD_LABEL:
+                return api.addLabel(key, op.target, op.arg).execute();
+            case OutboxEntity.REMOVE_LABEL:
+                return api.removeLabel(key, op.target, op.arg).execute();
+            case OutboxEntity.CREATE_LABEL:
+                return api.createLabel(key, new MailApi.CreateLabelRequest(op.arg)).execute();
+            case OutboxEntity.RENAME_LABEL:
+                return api.renameLabel(key, op.target, new MailApi.RenameLabelRequest(op.arg)).execute();
+            case OutboxEntity.DELETE_LABEL:
+                return api.deleteLabel(key, op.target).execute();
+            default:
+                throw new IllegalStateException("unknown change " + op.kind);
+        }
+    }
+
+    // the server has the change (db lane, one transaction). A mail or label created here moves
+    // to the id the server gave it, with the changes still waiting for it.
+    private void confirmed(OutboxEntity op, Object body) {
+        dao.delete(Collections.singletonList(op.seq));
+        if (OutboxEntity.SEND.equals(op.kind) && body instanceof MailApi.MailDto
+                && ((MailApi.MailDto) body).id != null) {
+            String id = ((MailApi.MailDto) body).id;
+            SyncBatch b = stored(op.target);
+            b.deletedMailIds.add(op.target);
+            rekeyMail(b, op.target, id);
+            writeDirect(b);
+            dao.retarget(op.target, id);
+        } else if (OutboxEntity.CREATE_LABEL.equals(op.kind) && body instanceof MailApi.LabelDto
+                && ((MailApi.LabelDto) body).id != null) {
+            String id = LabelEntity.normId(((MailApi.LabelDto) body).id);
+            SyncBatch b = new SyncBatch();
+            b.labels.add(new LabelEntity(id, op.arg));
+            for (String mailId : dao.mailIdsWithLabel(op.target)) {
+                SyncBatch mail = stored(mailId);
+                for (MailLabelCrossRef j : mail.joins) if (j.labelId.equals(op.target)) j.labelId = id;
+                b.mails.addAll(mail.mails);
+                b.bodies.addAll(mail.bodies);
+                b.joins.addAll(mail.joins);
+            }
+            writeDirect(b);
+            syncDao.deleteLabel(op.target);
+            labelFilters.removeLabel(op.target);
+            dao.retarget(op.target, id);
+            dao.retargetLabel(op.target, id);
+        }
+    }
+
+    private static void rekeyMail(SyncBatch b, String from, String to) {
+        for (MailEntity m : b.mails) {
+            m.id = to;
+            m.threadId = MailEntity.threadIdOf(to, m.subject, m.fromEmail, m.toEmail);
+        }
+        for (MailBodyEntity body : b.bodies) body.id = to;
+        for (MailLabelCrossRef j : b.joins) j.mailId = to;
+    }
+
+    // the server won't take the change (db lane, one transaction): it is dropped with the
+    // changes that depend on it. A label toggle is rolled back locally; for anything else what
+    // they touched is fetched again and shown as the server has it.
+    private void refused(OutboxEntity op) {
+        List<OutboxEntity> pending = dao.pending();
+        List<OutboxEntity> dropped = new ArrayList<>();
+        dropped.add(op);
+        // changes after it, and changes to a mail or label that will now never be created
+        boolean grew = true;
+        while (grew) {
+            grew = false;
+            for (OutboxEntity p : pending) {
+                if (dropped.contains(p) || p.sending) continue;
+                for (OutboxEntity d : new ArrayList<>(dropped)) {
+                    boolean created = OutboxEntity.isLocal(d.target)
+                            && (OutboxEntity.SEND.equals(d.kind) || OutboxEntity.CREATE_LABEL.equals(d.kind));
+                    if (d.idempotencyKey.equals(p.after)
+                            || (created && (d.target.equals(p.target) || d.target.equals(p.arg)))) {
+                        dropped.add(p);
+                        grew = true;
+                        break;
+                    }
+                }
+            }
+        }
+        List<Long> seqs = new ArrayList<>();
+        for (OutboxEntity d : dropped) if (d.seq != 0) seqs.add(d.seq);
+        dao.delete(seqs);
+
+        Set<String> mails = new HashSet<>();
+        boolean labels = false;
+        for (OutboxEntity d : dropped) {
+            // (adding Spam also set isSpam, and what it was before is only known to the server:
+            // that mail is fetched again instead)
+            if (OutboxPlan.isLabelToggle(d) && !OutboxEntity.isLocal(d.target) && !isSpamLabel(d)) {
+                rollBack(d);
+                continue;
+            }
+            if (OutboxEntity.SEND.equals(d.kind) && OutboxEntity.isLocal(d.target)) {
+                SyncBatch b = new SyncBatch();
+                b.deletedMailIds.add(d.target);
+                writeDirect(b);
+            } else if (OutboxEntity.CREATE_LABEL.equals(d.kind) && OutboxEntity.isLocal(d.target)) {
+                syncDao.deleteLabel(d.target);
+                labelFilters.removeLabel(d.target);
+            } else if (d.isMailChange()) {
+                if (!OutboxEntity.isLocal(d.target)) mails.add(d.target);
+            } else {
+                labels = true;
+            }
+        }
+        if (mails.isEmpty() && !labels) return;
+        boolean refetchLabels = labels;
+        passLane.execute(() -> resync(mails, refetchLabels));
+    }
+
+    // undoes a label toggle on the stored mail (the changes still waiting stay on top), without
+    // asking the server: the toggle is all that changed here.
+    private void rollBack(OutboxEntity toggle) {
+        SyncBatch b = stored(toggle.target);
+        if (b.mails.isEmpty()) return;
+        b.joins.removeIf(j -> j.labelId.equals(toggle.arg));
+        if (OutboxEntity.REMOVE_LABEL.equals(toggle.kind)) b.joins.add(new MailLabelCrossRef(toggle.target, toggle.arg));
+        dropDanglingJoins(b);
+        write(b);
+    }
+
+    // fetches mails and the label catalog again and writes them as the server has them
+    // (with the changes still waiting on top). Unlike a normal refresh it writes a 304's
+    // cached copy too: the local rows were changed since that copy was stored.
+    private void resync(Set<String> mailIds, boolean labels) {
+        try {
+            for (String id : mailIds) {
+                Response<MailApi.MailDto> res = api.getMail(id).execute();
+                if (res.code() == 404) {
+                    onDb(() -> {
+                        SyncBatch b = new SyncBatch();
+                        b.deletedMailIds.add(id);
+                        write(b);
+                        return null;
+                    });
+                } else if (res.isSuccessful() && res.body() != null) {
+                    SyncBatch b = mapper.toBatch(res.body());
+                    onDb(() -> {
+                        write(b);
+                        return null;
+                    });
+                }
+            }
+            if (labels) {
+                Response<List<MailApi.LabelDto>> res = api.getLabels().execute();
+                if (res.isSuccessful() && res.body() != null) {
+                    SyncBatch b = new SyncBatch();
+                    b.replaceLabels = true;
+                    b.labels.addAll(mapper.labels(res.body()));
+                    onDb(() -> {
+                        write(b);
+                        return null;
+                    });
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "resync after a refused change failed", e);
+        }
+    }
+
+    // the server's {"error": "..."} message, or the status line.
+    private static String errorOf(Response<?> res) {
+        String fallback = res.code() + " " + res.message();
+        try (ResponseBody eb = res.errorBody()) {
+            if (eb == null) return fallback;
+            Map<?, ?> json = OutboxPlan.GSON.fromJson(eb.string(), Map.class);
+            Object error = json != null ? json.get("error") : null;
+            return error != null ? error + " (" + res.code() + ")" : fallback;
+        } catch (IOException | RuntimeException e) {
+            return fallback;
+        }
+    }
+
+    private static String describe(OutboxEntity op) {
+        switch (op.kind) {
+            case OutboxEntity.SEND: return "Couldn't send mail";
+            case OutboxEntity.EDIT: return "Couldn't save draft";
+            case OutboxEntity.DELETE: return "Couldn't delete mail";
+            case OutboxEntity.ADD_LABEL: return "Couldn't add label";
+            case OutboxEntity.REMOVE_LABEL: return "Couldn't remove label";
+            case OutboxEntity.CREATE_LABEL: return "Couldn't create label \"" + op.arg + "\"";
+            case OutboxEntity.RENAME_LABEL: return "Couldn't rename label";
+            default: return "Couldn't delete label";
+        }
+    }
+
+    private static List<Long> seqs(List<OutboxEntity> ops) {
+        List<Long> out = new ArrayList<>(ops.size());
+        for (OutboxEntity op : ops) out.add(op.seq);
+        return out;
+    }
+
+    // runs on the db lane and waits for it.
+    private <T> T onDb(Supplier<T> work) {
+        return CompletableFuture.supplyAsync(work, dbLane).join();
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.gmail_android.repository;
+
+import com.example.gmail_android.dao.SyncBatch;
+import com.example.gmail_android.entities.LabelEntity;
+import com.example.gmail_android.entities.MailBodyEntity;
+import com.example.gmail_android.entities.MailEntity;
+import com.example.gmail_android.entities.MailLabelCrossRef;
+import com.example.gmail_android.entities.OutboxEntity;
+import com.example.gmail_android.interfaces.MailApi;
+import com.google.gson.Gson;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.Function;
+
+// the outbox's rules as plain functions over its rows (no Room, no network), used by Outbox:
+//   coalesce  what a new change does to the changes still waiting: an add and a remove of the
+//             same label cancel out, repeated draft edits and label renames collapse into one
+//   overlay   how the waiting changes show in a batch about to be written, so a sync that
+//             predates them does not undo them on screen
+//   outcome   what a server answer means for a change; backoff: when a failed one is retried
+// Only untouched changes (OutboxEntity.untouched) are merged or cancelled: one that was tried
+// may have reached the server, so it is replayed as it is.
+final class OutboxPlan {
+    private OutboxPlan() { }
+
+    static final Gson GSON = new Gson();
+
+    // first retry after about this long, doubling per failure up to MAX_BACKOFF_MS.
+    static final long BASE_BACKOFF_MS = 2_000;
+    static final long MAX_BACKOFF_MS = 5 * 60_000;
+
+    // what coalesce() did: rows to delete, rows changed in place, and whether the new change
+    // is stored (false when it was merged into a waiting one or cancelled one out).
+    static final class Merge {
+        final List<OutboxEntity> removed = new ArrayList<>();
+        final List<OutboxEntity> updated = new ArrayList<>();
+        boolean insert = true;
+    }
+
+    static Merge coalesce(List<OutboxEntity> pending, OutboxEntity op) {
+        Merge m = new Merge();
+        switch (op.kind) {
+            case OutboxEntity.ADD_LABEL:
+            case OutboxEntity.REMOVE_LABEL: {
+                OutboxEntity last = null;
+                for (OutboxEntity p : pending) {
+                    if (isLabelToggle(p) && p.target.equals(op.target) && Objects.equals(p.arg, op.arg)) last = p;
+                }
+                if (last == null) break;
+                if (last.kind.equals(op.kind)) {
+                    m.insert = false; // already on its way
+                } else if (last.untouched()) {
+                    m.insert = false; // add then remove (or the reverse): nothing to send
+                    m.removed.add(last);
+                }
+                break;
+            }
+            case OutboxEntity.EDIT: {
+                OutboxEntity into = null;
+                for (OutboxEntity p : pending) {
+                    if (!p.target.equals(op.target) || !p.untouched()) continue;
+                    // a draft not created yet takes the edit into its POST; else the last edit
+                    if (OutboxEntity.SEND.equals(p.kind) || OutboxEntity.EDIT.equals(p.kind)) into = p;
+                }
+                if (into != null) {
+                    into.body = mergeBodies(into.body, op.body);
+                    m.updated.add(into);
+                    m.insert = false;
+                }
+                break;
+            }
+            case OutboxEntity.DELETE: {
+                OutboxEntity send = null;
+                for (OutboxEntity p : pending) {
+                    if (!p.target.equals(op.target) || !p.untouched() || !p.isMailChange()) continue;
+                    m.removed.add(p); // edits and labels of a mail about to go
+                    if (OutboxEntity.SEND.equals(p.kind)) send = p;
+                }
+                if (send != null) {
+                    m.insert = false; // never reached the server: nothing to delete there
+                    for (OutboxEntity p : pending) {
+                        if (send.idempotencyKey.equals(p.after) && !m.removed.contains(p)) {
+                            p.after = null;
+                            m.updated.add(p);
+                        }
+                    }
+                }
+                break;
+            }
+            case OutboxEntity.RENAME_LABEL: {
+                OutboxEntity into = null;
+                for (OutboxEntity p : pending) {
+                    if (!p.target.equals(op.target) || !p.untouched()) continue;
+                    if (OutboxEntity.CREATE_LABEL.equals(p.kind) || OutboxEntity.RENAME_LABEL.equals(p.kind)) into = p;
+                }
+                if (into != null) {
+                    into.arg = op.arg;
+                    m.updated.add(into);
+                    m.insert = false;
+                }
+                break;
+            }
+            case OutboxEntity.DELETE_LABEL: {
+                for (OutboxEntity p : pending) {
+                    if (!p.untouched()) continue;
+                    if (p.target.equals(op.target) && !p.isMailChange()) {
+                        m.removed.add(p);
+                        if (OutboxEntity.CREATE_LABEL.equals(p.kind)) m.insert = false;
+                    } else if (isLabelToggle(p) && op.target.equals(p.arg)) {
+                        m.removed.add(p);
+                    }
+                }
+                break;
+            }
+            default:
+                break; // SEND, CREATE_LABEL: always new
+        }
+        return m;
+    }
+
+    static boolean isLabelToggle(OutboxEntity p) {
+        return OutboxEntity.ADD_LABEL.equals(p.kind) || OutboxEntity.REMOVE_LABEL.equals(p.kind);
+    }
+
+    // the later request's fields over the earlier one's (both ComposeRequest-shaped JSON).
+    static String mergeBodies(String earlier, String later) {
+        MailApi.ComposeRequest a = GSON.fromJson(earlier, MailApi.ComposeRequest.class);
+        MailApi.ComposeRequest b = GSON.fromJson(later, MailApi.ComposeRequest.class);
+        if (b.toEmail != null) a.toEmail = b.toEmail;
+        if (b.subject != null) a.subject = b.subject;
+        if (b.content != null) a.content = b.content;
+        if (b.labels != null) a.labels = b.labels;
+        return GSON.toJson(a);
+    }
+
+    // applies the waiting changes to a batch before it is written. labelIdByName resolves the
+    // label names of draft edits (null when unknown: the mail's labels are left as they are).
+    static void overlay(List<OutboxEntity> pending, SyncBatch b, Function<String, String> labelIdByName) {
+        for (OutboxEntity op : pending) {
+            switch (op.kind) {
+                case OutboxEntity.EDIT: {
+                    MailEntity m = find(b.mails, op.target);
+                    if (m == null) break;
+                    MailApi.ComposeRequest req = GSON.fromJson(op.body, MailApi.ComposeRequest.class);
+                    applyFields(m, req);
+                    for (MailBodyEntity body : b.bodies) {
+                        if (body.id.equals(m.id) && req.content != null) body.content = req.content;
+                    }
+                    List<String> ids = resolve(req.labels, labelIdByName);
+                    if (ids != null) {
+                        removeJoins(b.joins, m.id, null);
+                        for (String id : ids) b.joins.add(new MailLabelCrossRef(m.id, id));
+                    }
+                    break;
+                }
+                case OutboxEntity.DELETE: {
+                    for (Iterator<MailEntity> it = b.mails.iterator(); it.hasNext(); ) {
+                        if (it.next().id.equals(op.target)) it.remove();
+                    }
+                    for (Iterator<MailBodyEntity> it = b.bodies.iterator(); it.hasNext(); ) {
+                        if (it.next().id.equals(op.target)) it.remove();
+                    }
+                    removeJoins(b.joins, op.target, null);
+                    if (!b.deletedMailIds.contains(op.target)) b.deletedMailIds.add(op.target);
+                    break;
+                }
+                case OutboxEntity.ADD_LABEL: {
+                    MailEntity m = find(b.mails, op.target);
+                    if (m == null) break;
+                    // the server marks a mail spam when it gets the Spam label (and never unmarks it)
+                    if (op.arg.equals(labelIdByName.apply("spam"))) m.isSpam = true;
+                    boolean has = false;
+                    for (MailLabelCrossRef j : b.joins) {
+                        if (j.mailId.equals(op.target) && j.labelId.equals(op.arg)) has = true;
+                    }
+                    if (!has) b.joins.add(new MailLabelCrossRef(op.target, op.arg));
+                    break;
+                }
+                case OutboxEntity.REMOVE_LABEL:
+                    removeJoins(b.joins, op.target, op.arg);
+                    break;
+                case OutboxEntity.CREATE_LABEL:
+                    // a full catalog would delete the label the server doesn't know yet
+                    if (b.replaceLabels && findLabel(b.labels, op.target) == null) {
+                        b.labels.add(new LabelEntity(op.target, op.arg));
+                    }
+                    break;
+                case OutboxEntity.RENAME_LABEL: {
+                    LabelEntity e = findLabel(b.labels, op.target);
+                    if (e != null) e.name = op.arg;
+                    break;
+                }
+                case OutboxEntity.DELETE_LABEL: {
+                    for (Iterator<LabelEntity> it = b.labels.iterator(); it.hasNext(); ) {
+                        if (it.next().id.equals(op.target)) it.remove();
+                    }
+                    for (Iterator<MailLabelCrossRef> it = b.joins.iterator(); it.hasNext(); ) {
+                        if (it.next().labelId.equals(op.target)) it.remove();
+                    }
+                    break;
+                }
+                default:
+                    break; // SEND: the local mail is not in any server batch
+            }
+        }
+    }
+
+    // the local stand-in for a mail being sent (or a draft being created), shown until the
+    // server has it: today's date, the labels it was sent with, Sent unless it is a draft.
+    static SyncBatch placeholder(OutboxEntity op, Function<String, String> labelIdByName) {
+        MailApi.ComposeRequest req = GSON.fromJson(op.body, MailApi.ComposeRequest.class);
+        SyncBatch b = new SyncBatch();
+        MailEntity m = new MailEntity(op.target);
+        m.dateSentMillis = op.createdAt;
+        applyFields(m, req);
+        b.mails.add(m);
+        b.bodies.add(new MailBodyEntity(m.id, req.content != null ? req.content : ""));
+
+        List<String> names = req.labels != null ? new ArrayList<>(req.labels) : new ArrayList<>();
+        boolean draft = false;
+        for (String n : names) if ("drafts".equalsIgnoreCase(n)) draft = true;
+        if (!draft) names.add("Sent");
+        for (String n : names) {
+            String id = labelIdByName.apply(n);
+            if (id != null && findJoin(b.joins, m.id, id) == null) b.joins.add(new MailLabelCrossRef(m.id, id));
+        }
+        return b;
+    }
+
+    private static void applyFields(MailEntity m, MailApi.ComposeRequest req) {
+        if (req.toEmail != null) m.toEmail = req.toEmail;
+        if (req.subject != null) m.subject = req.subject;
+        if (req.content != null) m.snippet = MailEntity.snippetOf(req.content);
+        m.threadId = MailEntity.threadIdOf(m.id, m.subject, m.fromEmail, m.toEmail);
+    }
+
+    // label ids for names, or null if any of them is unknown.
+    private static List<String> resolve(List<String> names, Function<String, String> labelIdByName) {
+        if (names == null) return null;
+        List<String> ids = new ArrayList<>();
+        for (String n : names) {
+            String id = labelIdByName.apply(n);
+            if (id == null) return null;
+            if (!ids.contains(id)) ids.add(id);
+        }
+        return ids;
+    }
+
+    // labelId null: every join of the mail.
+    private static void removeJoins(List<MailLabelCrossRef> joins, String mailId, String labelId) {
+        for (Iterator<MailLabelCrossRef> it = joins.iterator(); it.hasNext(); ) {
+            MailLabelCrossRef j = it.next();
+            if (j.mailId.equals(mailId) && (labelId == null || j.labelId.equals(labelId))) it.remove();
+        }
+    }
+
+    private static MailEntity find(List<MailEntity> mails, String id) {
+        for (MailEntity m : mails) if (m.id.equals(id)) return m;
+        return null;
+    }
+
+    private static LabelEntity findLabel(List<LabelEntity> labels, String id) {
+        for (LabelEntity e : labels) if (e.id.equals(id)) return e;
+        return null;
+    }
+
+    private static MailLabelCrossRef findJoin(List<MailLabelCrossRef> joins, String mailId, String labelId) {
+        for (MailLabelCrossRef j : joins) if (j.mailId.equals(mailId) && j.labelId.equals(labelId)) return j;
+        return null;
+    }
+
+    // whether a confirmed change leaves something only the server knows (the sent mail's
+    // sender, date and spam verdict; the labels a draft edit names), fetched by one delta sync
+    // after the pass. The others are shown locally exactly as the server applied them (a new
+    // label's id comes back in the answer), so they cost their one call and nothing more.
+    static boolean needsSync(String kind) {
+        return OutboxEntity.SEND.equals(kind) || OutboxEntity.EDIT.equals(kind);
+    }
+
+    // what an answer means for a change.
+    enum Outcome { DONE, RETRY, REFUSED }
+
+    static Outcome outcome(String kind, int code) {
+        if (code >= 200 && code < 300) return Outcome.DONE;
+        // deleting what is already gone
+        if (code == 404 && (OutboxEntity.DELETE.equals(kind) || OutboxEntity.DELETE_LABEL.equals(kind)
+                || OutboxEntity.REMOVE_LABEL.equals(kind))) return Outcome.DONE;
+        // not signed in (yet), overloaded, or down: the change itself is fine
+        if (code == 401 || code == 408 || code == 429 || code >= 500) return Outcome.RETRY;
+        return Outcome.REFUSED;
+    }
+
+    // delay before the next attempt after `attempts` failures: exponential, capped, with
+    // "equal jitter" (half fixed, half random) so clients that went offline together don't
+    // come back in lockstep.
+    static long backoff(int attempts, Random random) {
+        long cap = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(Math.max(attempts, 1) - 1, 20));
+        return cap / 2 + (long) (random.nextDouble() * (cap / 2));
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.gmail_android.repository;
+
+import com.example.gmail_android.entities.MailSearchHit;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// orders full-text hits by relevance and recency.
+// Relevance is BM25 over matchinfo 'pcnalx', with a weight per MailFts column;
+// recency multiplies it by up to (1 + RECENCY_BOOST), halving every HALF_LIFE_DAYS of age.
+// Server hits the local index doesn't match have no matchinfo: they score 0 and follow the
+// local matches, newest first.
+public final class SearchRanker {
+    private SearchRanker() { }
+
+    // MailFts column order: subject, fromEmail, toEmail, content.
+    private static final double[] COLUMN_WEIGHTS = { 3.0, 2.0, 1.0, 1.0 };
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    static final double RECENCY_BOOST = 1.0;
+    static final double HALF_LIFE_DAYS = 30.0;
+    private static final double DAY_MS = 24 * 60 * 60 * 1000.0;
+
+    public static List<MailSearchHit> rank(List<MailSearchHit> hits) {
+        return rank(hits, System.currentTimeMillis());
+    }
+
+    static List<MailSearchHit> rank(List<MailSearchHit> hits, long now) {
+        if (hits == null) return Collections.emptyList();
+        final int n = hits.size();
+        final double[] scores = new double[n];
+        List<Integer> order = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            MailSearchHit h = hits.get(i);
+            scores[i] = bm25(h.matchInfo) * recency(h.mail.dateSentMillis, now);
+            order.add(i);
+        }
+        Collections.sort(order, (a, b) -> {
+            int c = Double.compare(scores[b], scores[a]);
+            if (c != 0) return c;
+            return Long.compare(hits.get(b).mail.dateSentMillis, hits.get(a).mail.dateSentMillis);
+        });
+        List<MailSearchHit> out = new ArrayList<>(n);
+        for (int i : order) out.add(hits.get(i));
+        return out;
+    }
+
+    // 1 + RECENCY_BOOST for mail sent now, approaching 1 for old mail.
+    static double recency(long dateSentMillis, long now) {
+        double ageDays = Math.max(0, now - dateSentMillis) / DAY_MS;
+        return 1.0 + RECENCY_BOOST * Math.pow(0.5, ageDays / HALF_LIFE_DAYS);
+    }
+
+    // matchinfo 'pcnalx' = p, c, n, a[c], l[c], x[3 * p * c]; 32-bit ints in native byte order.
+    static double bm25(byte[] matchInfo) {
+        if (matchInfo == null || matchInfo.length < 12) return 0;
+        IntBuffer mi = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int phrases = mi.get(0);
+        int cols = mi.get(1);
+        double docs = mi.get(2);
+        int avgAt = 3;
+        int lenAt = avgAt + cols;
+        int xAt = lenAt + cols;
+
+        double score = 0;
+        for (int p = 0; p < phrases; p++) {
+            for (int c = 0; c < cols; c++) {
+                int x = xAt + 3 * (p * cols + c);
+                int tf = mi.get(x);
+                if (tf == 0) continue;
+                int df = mi.get(x + 2);
+                double idf = Math.log((docs - df + 0.5) / (df + 0.5) + 1.0);
+                double avg = Math.max(1, mi.get(avgAt + c));
+                double len = mi.get(lenAt + c);
+                double norm = tf * (K1 + 1) / (tf + K1 * (1 - B + B * len / avg));
+                double w = c < COLUMN_WEIGHTS.length ? COLUMN_WEIGHTS[c] : 1.0;
+                score += w * idf * norm;
+            }
+        }
+        return score;
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.gmail_android.repository;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+// single-flight for fire-and-forget io work, keyed by what it fetches ("inbox", "label:work").
+// A request for a key that is queued joins that run: it hasn't fetched anything yet, so its
+// result is as fresh as the caller wants. A request for a key that is already running may need
+// data the running fetch has missed (a mail just sent), so the first such request schedules
+// one follow-up run and later ones join it. However many requests arrive, at most one run
+// per key is queued at a time. Results reach the UI through Room, so a caller whose request
+// was joined sees them the same way.
+// cancel(key) drops a run that is no longer wanted (a label the user has left): if queued it
+// never starts, if running its registered onCancel action aborts the network call.
+final class SingleFlight {
+    interface Job {
+        void run(Flight flight);
+    }
+
+    // one run of a key.
+    static final class Flight {
+        // guarded by the SingleFlight
+        private boolean running;
+        private boolean again;
+        // guarded by this
+        private boolean cancelled;
+        private Runnable onCancel;
+
+        synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        // what aborts the run's current step, e.g. the Retrofit call; runs now if already cancelled.
+        void onCancel(Runnable action) {
+            boolean now;
+            synchronized (this) {
+                onCancel = action;
+                now = cancelled;
+            }
+            if (now) action.run();
+        }
+
+        void cancel() {
+            Runnable action;
+            synchronized (this) {
+                if (cancelled) return;
+                cancelled = true;
+                action = onCancel;
+            }
+            if (action != null) action.run();
+        }
+    }
+
+    private final Map<String, Flight> inFlight = new HashMap<>();
+    private long started;
+    private long coalesced;
+    private long cancelled;
+
+    // false if the request joined a run already in flight.
+    boolean run(String key, Executor io, Job job) {
+        Flight f;
+        synchronized (this) {
+            f = inFlight.get(key);
+            if (f != null && f.running && !f.again) {
+                f.again = true;
+                return true;
+            }
+            if (f != null) {
+                coalesced++;
+                return false;
+            }
+            f = new Flight();
+            inFlight.put(key, f);
+        }
+        submit(key, f, io, job);
+        return true;
+    }
+
+    // cancels the key's run, if any; a later request starts a new one.
+    void cancel(String key) {
+        Flight f;
+        synchronized (this) {
+            f = inFlight.remove(key);
+            if (f == null) return;
+            cancelled++;
+        }
+        f.cancel();
+    }
+
+    private void submit(String key, Flight f, Executor io, Job job) {
+        try {
+            io.execute(() -> execute(key, f, io, job));
+        } catch (RuntimeException e) {
+            release(key, f); // rejected by the executor: nothing is in flight
+            throw e;
+        }
+    }
+
+    private void execute(String key, Flight f, Executor io, Job job) {
+        synchronized (this) {
+            if (f.isCancelled()) return; // dropped before it started
+            f.running = true;
+            started++;
+        }
+        Flight next = null;
+        try {
+            job.run(f);
+        } finally {
+            synchronized (this) {
+                if (inFlight.get(key) == f) {
+                    if (f.again) inFlight.put(key, next = new Flight());
+                    else inFlight.remove(key);
+                }
+            }
+        }
+        if (next != null) submit(key, next, io, job);
+    }
+
+    private synchronized void release(String key, Flight f) {
+        if (inFlight.get(key) == f) inFlight.remove(key);
+    }
+
+    synchronized boolean isInFlight(String key) {
+        return inFlight.containsKey(key);
+    }
+
+    // runs actually executed, requests that joined one instead, and runs cancelled.
+    synchronized long started() {
+        return started;
+    }
+
+    synchronized long coalesced() {
+        return coalesced;
+    }
+
+    synchronized long cancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.gmail_android.repository;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import com.example.gmail_android.auth.TokenStore;
+
+// keeps the delta sync cursor of the account whose mails are currently in Room.
+public class SyncStateStore {
+    private static final String PREFS = "sync_prefs";
+    private static final String KEY_ACCOUNT = "account";
+    private static final String KEY_CURSOR = "cursor";
+
+    // cursor to send as ?since=, or null when Room holds nothing usable for this account.
+    public static String getCursor(Context ctx) {
+        SharedPreferences p = prefs(ctx);
+        String account = TokenStore.getAccount(ctx);
+        if (account == null || !account.equals(p.getString(KEY_ACCOUNT, null))) return null;
+        return p.getString(KEY_CURSOR, null);
+    }
+
+    // called after a sync batch has been written to Room.
+    public static void saveCursor(Context ctx, String cursor) {
+        prefs(ctx).edit()
+                .putString(KEY_ACCOUNT, TokenStore.getAccount(ctx))
+                .putString(KEY_CURSOR, cursor)
+                .apply();
+    }
+
+    // forces the next refresh to be a full one.
+    public static void clear(Context ctx) {
+        prefs(ctx).edit()
+                .remove(KEY_ACCOUNT)
+                .remove(KEY_CURSOR)
+                .apply();
+    }
+
+    private static SharedPreferences prefs(Context ctx) {
+        return ctx.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+}
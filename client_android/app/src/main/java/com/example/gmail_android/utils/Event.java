@@ -0,0 +1,17 @@
+package com.example.gmail_android.utils;
+
+// a value for LiveData that should be handled once (a toast, a navigation), not again when an
+// observer re-subscribes, e.g. after a rotation or on another screen.
+public class Event<T> {
+    private final T value;
+    private boolean handled;
+
+    public Event(T value) { this.value = value; }
+
+    // the value the first time, null after that.
+    public synchronized T take() {
+        if (handled) return null;
+        handled = true;
+        return value;
+    }
+}
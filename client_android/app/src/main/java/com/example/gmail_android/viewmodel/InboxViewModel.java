@@ -1,12 +1,17 @@
 package com.example.gmail_android.viewmodel;
 
 import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
-import com.example.gmail_android.entities.LabelEntity;
+import com.example.gmail_android.entities.LabelCount;
+import com.example.gmail_android.repository.MailPager;
 import com.example.gmail_android.repository.MailRepository;
 
 import java.util.List;
@@ -15,30 +20,78 @@ public class InboxViewModel extends AndroidViewModel {
 
     private final com.example.gmail_android.repository.MailRepository repo;
     public final androidx.lifecycle.LiveData<java.util.List<com.example.gmail_android.entities.MailWithLabels>> mails;
-    private enum Mode { ALL, LABEL, SEARCH }
+    private enum Mode { ALL, LABEL, LABELS, SEARCH }
     private static final class Filter {
         final Mode mode;
-        final String arg; // labelId for LABEL, query for SEARCH
+        final String arg; // labelId for LABEL, a label filter for LABELS, query for SEARCH
         private Filter(Mode m, String a) { mode = m; arg = a; }
         static Filter all()             { return new Filter(Mode.ALL,   null); }
         static Filter label(String id)  { return new Filter(Mode.LABEL, id); }
+        static Filter labels(String e)  { return new Filter(Mode.LABELS, e); }
         static Filter search(String q)  { return new Filter(Mode.SEARCH,q); }
     }
     private final MutableLiveData<Filter> filter = new MutableLiveData<>(Filter.all());
+    // pager behind the current filter; replaced whenever the filter changes.
+    private MailPager pager;
+    // search-as-you-type: local results per pause in typing, server calls per longer pause.
+    private final SearchDebouncer searchInput;
     public InboxViewModel(@NonNull Application app) {
         super(app);
         repo = new MailRepository(app.getApplicationContext());
+        searchInput = new SearchDebouncer(new MainTimer(), new SearchDebouncer.Target() {
+            @Override public void showLocal(String q) {
+                filter.setValue(q.isEmpty() ? Filter.all() : Filter.search(q));
+            }
+            @Override public void searchServer(String q) { repo.refreshSearch(q); }
+            @Override public void cancelServer()       { repo.cancelSearch(); }
+        });
         mails = androidx.lifecycle.Transformations.switchMap(filter, f -> {
-            if (f.mode == Mode.LABEL)  return repo.getByLabelLive(f.arg);
-            if (f.mode == Mode.SEARCH) return repo.searchLive(f.arg);
-            return repo.getInboxLive(); // ALL
+            if (f.mode == Mode.LABEL)       pager = repo.pagedByLabel(f.arg);
+            else if (f.mode == Mode.LABELS) pager = repo.pagedByLabels(f.arg);
+            else if (f.mode == Mode.SEARCH) return searchResults(f.arg);
+            else                            pager = repo.pagedThreads(); // ALL, one row per conversation
+            return pager.items;
         });
     }
 
+    private LiveData<List<com.example.gmail_android.entities.MailWithLabels>> searchResults(String q) {
+        pager = repo.pagedSearch(q);
+        return androidx.lifecycle.Transformations.map(pager.items, list -> {
+            long ms = searchInput.resultsShown(q);
+            if (ms >= 0) {
+                Log.d("Search", "'" + q + "': " + list.size() + " results " + ms + " ms after typing, "
+                        + searchInput.keystrokes() + " keystrokes, "
+                        + searchInput.serverCalls() + " server calls");
+            }
+            return list;
+        });
+    }
+
+    // debounce delays on the main looper.
+    private static final class MainTimer implements SearchDebouncer.Timer {
+        private final Handler main = new Handler(Looper.getMainLooper());
+
+        @Override
+        public Runnable schedule(Runnable task, long delayMs) {
+            main.postDelayed(task, delayMs);
+            return () -> main.removeCallbacks(task);
+        }
+
+        @Override
+        public long now() {
+            return SystemClock.uptimeMillis();
+        }
+    }
+
     public androidx.lifecycle.LiveData<java.util.List<com.example.gmail_android.entities.MailWithLabels>> getMails() { return mails; }
 
-    // Expose labels list for the drawer
-    public LiveData<List<LabelEntity>> getLabels() { return repo.getLabelsLive(); }
+    // the list was scrolled near its end: load the next older page.
+    public void loadMore() {
+        if (pager != null) pager.loadMore();
+    }
+
+    // Expose labels list for the drawer, with their counts
+    public LiveData<List<LabelCount>> getLabels() { return repo.getLabelCountsLive(); }
 
     public androidx.lifecycle.LiveData<com.example.gmail_android.entities.User> getUser(int id) {
         return repo.getUser(id);
@@ -50,22 +103,35 @@ public class InboxViewModel extends AndroidViewModel {
     }
 
     public void selectAll() {
+        searchInput.cancel();
         filter.setValue(Filter.all());
         refresh();
     }
     public void selectLabel(String labelId) {
+        searchInput.cancel();
         filter.setValue(Filter.label(labelId));
         refresh();
     }
+    // a combination of labels, e.g. "work AND important NOT spam" (see LabelExpr).
+    public void selectLabels(String expression) {
+        searchInput.cancel();
+        filter.setValue(Filter.labels(expression));
+        refresh();
+    }
+    // the search box text changed: local results after a short pause, the server after a longer one.
+    public void onQueryChanged(String q) {
+        searchInput.onQueryChanged(q);
+    }
+    // the search was submitted: search now.
     public void search(String q) {
         String qq = q == null ? "" : q.trim();
         if (qq.isEmpty()) { selectAll(); return; }
-        repo.refreshSearch(qq);       // backend -> Room
-        filter.setValue(Filter.search(qq));
+        searchInput.submit(qq);
     }
     public void refresh() {
         Filter f = filter.getValue();
-        if (f == null || f.mode == Mode.ALL) {
+        if (f == null || f.mode == Mode.ALL || f.mode == Mode.LABELS) {
+            // label filters list what sync stored
             repo.refreshInbox();
         } else if (f.mode == Mode.LABEL) {
             repo.refreshByLabel(f.arg);   // fetch that label’s mails
@@ -73,4 +139,9 @@ public class InboxViewModel extends AndroidViewModel {
             repo.refreshSearch(f.arg);
         }
     }
+
+    @Override
+    protected void onCleared() {
+        searchInput.cancel();
+    }
 }
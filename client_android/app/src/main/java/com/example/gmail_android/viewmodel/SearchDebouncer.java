@@ -0,0 +1,122 @@
+package com.example.gmail_android.viewmodel;
+
+// search-as-you-type timing, main thread only. Each change of the query at once cancels the
+// server search of the previous one; local results (Room full-text) follow once typing pauses
+// for LOCAL_DELAY_MS, the server search once it pauses for REMOTE_DELAY_MS. A word typed at
+// normal speed thus costs one server call instead of one per keystroke.
+// Also measures keystroke-to-results latency and server calls per typed query.
+final class SearchDebouncer {
+    static final long LOCAL_DELAY_MS = 150;
+    static final long REMOTE_DELAY_MS = 500;
+
+    interface Timer {
+        // runs task after delayMs; the returned action unschedules it.
+        Runnable schedule(Runnable task, long delayMs);
+        long now();
+    }
+
+    // what the debounced query drives; "" means the search was cleared.
+    interface Target {
+        void showLocal(String q);
+        void searchServer(String q);
+        void cancelServer();
+    }
+
+    private final Timer timer;
+    private final Target target;
+    private String query = "";
+    // unschedule the pending local / server search, null once run
+    private Runnable cancelLocal;
+    private Runnable cancelRemote;
+    // when the query last changed, until its results are shown (-1 = nothing pending)
+    private long changedAt = -1;
+    private long lastLatencyMs = -1;
+    // since the search box was last cleared
+    private int keystrokes;
+    private int serverCalls;
+
+    SearchDebouncer(Timer timer, Target target) {
+        this.timer = timer;
+        this.target = target;
+    }
+
+    // the text in the search box changed.
+    void onQueryChanged(String text) {
+        String q = text == null ? "" : text.trim();
+        if (q.equals(query)) return;
+        query = q;
+        unschedule();
+        target.cancelServer();
+        if (q.isEmpty()) {
+            changedAt = -1;
+            keystrokes = 0;
+            serverCalls = 0;
+            target.showLocal(q);
+            return;
+        }
+        keystrokes++;
+        changedAt = timer.now();
+        cancelLocal = timer.schedule(() -> {
+            cancelLocal = null;
+            target.showLocal(q);
+        }, LOCAL_DELAY_MS);
+        cancelRemote = timer.schedule(() -> {
+            cancelRemote = null;
+            serverCalls++;
+            target.searchServer(q);
+        }, REMOTE_DELAY_MS);
+    }
+
+    // the search was submitted (editor action): runs what is still scheduled now.
+    void submit(String text) {
+        onQueryChanged(text);
+        boolean local = cancelLocal != null;
+        boolean remote = cancelRemote != null;
+        unschedule();
+        if (local) target.showLocal(query);
+        if (remote) {
+            serverCalls++;
+            target.searchServer(query);
+        }
+    }
+
+    // results for q reached the list; returns the latency since the query changed, or -1 if
+    // q is not the current query or its results were already counted.
+    long resultsShown(String q) {
+        if (changedAt < 0 || !q.equals(query)) return -1;
+        lastLatencyMs = timer.now() - changedAt;
+        changedAt = -1;
+        return lastLatencyMs;
+    }
+
+    // drops the search and whatever it has scheduled (another list was chosen, the screen went away).
+    void cancel() {
+        query = "";
+        changedAt = -1;
+        unschedule();
+        target.cancelServer();
+    }
+
+    private void unschedule() {
+        if (cancelLocal != null) cancelLocal.run();
+        if (cancelRemote != null) cancelRemote.run();
+        cancelLocal = null;
+        cancelRemote = null;
+    }
+
+    String query() {
+        return query;
+    }
+
+    long lastLatencyMs() {
+        return lastLatencyMs;
+    }
+
+    int keystrokes() {
+        return keystrokes;
+    }
+
+    int serverCalls() {
+        return serverCalls;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.gmail_android.dao;
+
+import com.example.gmail_android.entities.LabelEntity;
+import com.example.gmail_android.entities.MailBodyEntity;
+import com.example.gmail_android.entities.MailEntity;
+import com.example.gmail_android.entities.MailLabelCrossRef;
+import com.example.gmail_android.entities.SearchResultEntity;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+// what the Room tests write and read: mails as a sync or a search delivers them (SyncBatch),
+// and the ids of a list in list order, read through its paging keys.
+public final class SyncFixtures {
+    private SyncFixtures() { }
+
+    // labels named after their ids, capitalized ("work" -> "Work").
+    public static SyncBatch labels(String... ids) {
+        SyncBatch b = new SyncBatch();
+        for (String id : ids) {
+            b.labels.add(new LabelEntity(id, id.substring(0, 1).toUpperCase(Locale.ROOT) + id.substring(1)));
+        }
+        return b;
+    }
+
+    // one mail with an empty body, filed under labelIds. searchQuery null: a sync delivered it;
+    // otherwise it is a hit of that search.
+    public static SyncBatch batch(String searchQuery, MailEntity m, String... labelIds) {
+        SyncBatch b = batch(searchQuery, 0, m);
+        for (String l : labelIds) b.joins.add(new MailLabelCrossRef(m.id, l));
+        return b;
+    }
+
+    // mails with empty bodies and no labels, as hits of searchQuery answered at searchedAt
+    // (searchQuery null: a sync).
+    public static SyncBatch batch(String searchQuery, long searchedAt, MailEntity... mails) {
+        SyncBatch b = new SyncBatch();
+        b.searchQuery = searchQuery;
+        b.searchedAt = searchedAt;
+        for (MailEntity m : mails) {
+            b.mails.add(m);
+            b.bodies.add(new MailBodyEntity(m.id, ""));
+        }
+        return b;
+    }
+
+    public static MailEntity mail(String id, String subject, long date) {
+        MailEntity m = new MailEntity(id);
+        m.subject = subject;
+        m.dateSentMillis = date;
+        return m;
+    }
+
+    // the first 100 of each list, newest first.
+
+    public static List<String> inboxIds(MailDao dao) {
+        return idsOf(dao.inboxKeysBefore(Long.MAX_VALUE, "", 100));
+    }
+
+    // the latest mail of each conversation.
+    public static List<String> threadIds(MailDao dao) {
+        return idsOf(dao.threadKeysBefore(Long.MAX_VALUE, "", 100));
+    }
+
+    // local matches and stored server hits of q, as pagedSearch pages them.
+    public static List<String> searchIds(MailDao dao, String q) {
+        SearchQuery parsed = SearchQuery.parse(q);
+        String query = SearchResultEntity.key(parsed.toString());
+        return idsOf(dao.searchKeysBefore(parsed.keysBefore(query, Long.MAX_VALUE, "", 100).query()));
+    }
+
+    public static List<String> ids(String... ids) {
+        return Arrays.asList(ids);
+    }
+
+    private static List<String> idsOf(List<MailDao.PageKey> keys) {
+        List<String> out = new ArrayList<>();
+        for (MailDao.PageKey k : keys) out.add(k.id);
+        return out;
+    }
+}
@@ -0,0 +1,450 @@
+package com.example.gmail_android.repository;
+
+import androidx.annotation.NonNull;
+import com.example.gmail_android.dao.SearchQuery;
+import com.example.gmail_android.interfaces.MailApi;
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.Cache;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+// in-memory stand-in for the web server's /api/mails and /api/labels endpoints,
+// so sync code can be exercised offline. Every write bumps a change sequence,
+// which is what /mails/changes uses as its cursor.
+// Shared by the instrumented tests and the JVM (Robolectric) sync benchmark; mail ids must be
+// numeric and dateSent epoch millis, as the page cursor is "<dateSent>_<id>".
+public class LocalMailServer {
+
+    private static final class Row {
+        final MailApi.MailDto dto;
+        long seq;
+        Row(MailApi.MailDto dto, long seq) { this.dto = dto; this.seq = seq; }
+    }
+
+    private final Gson gson = new Gson();
+    private final MockWebServer server = new MockWebServer();
+    private final Map<String, Row> mails = new LinkedHashMap<>();
+    private final Map<String, Long> tombstones = new LinkedHashMap<>();
+    private final Map<String, MailApi.LabelDto> labels = new LinkedHashMap<>();
+    private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+    private long seq = 0;
+    private int lastChangesSize = -1;
+    private long lastResponseBytes = -1;
+    // simulated network: delay before the headers, body bandwidth (0 = unthrottled)
+    private long latencyMs = 0;
+    private long bytesPerSecond = 0;
+    // status every change request gets while set (0 = handled normally), e.g. 503 for an outage
+    private int failChanges = 0;
+    // answers to change requests by Idempotency-Key, replayed for a repeated key like the web server
+    private final Map<String, MockResponse> answered = new LinkedHashMap<>();
+    private final List<String> idempotencyKeys = new ArrayList<>();
+    private long nextMailId = 1_000_000;
+    private int notModified = 0;
+
+    public void start() throws IOException {
+        server.setDispatcher(new Dispatcher() {
+            @NonNull
+            @Override
+            public MockResponse dispatch(@NonNull RecordedRequest request) {
+                return handle(request);
+            }
+        });
+        server.start();
+    }
+
+    public void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    public MailApi api() {
+        return api(new OkHttpClient());
+    }
+
+    // a client with an HTTP cache, like ApiClient's: cached GETs are revalidated by ETag.
+    public MailApi api(Cache cache) {
+        return api(new OkHttpClient.Builder().cache(cache).build());
+    }
+
+    private MailApi api(OkHttpClient client) {
+        return new Retrofit.Builder()
+                .baseUrl(server.url("/api/"))
+                .addConverterFactory(GsonConverterFactory.create(gson))
+                .client(client)
+                .build()
+                .create(MailApi.class);
+    }
+
+    // ----- mailbox setup -----
+
+    public synchronized void putLabel(String id, String name) {
+        MailApi.LabelDto l = new MailApi.LabelDto();
+        l.id = id;
+        l.name = name;
+        labels.put(id, l);
+    }
+
+    public synchronized void putMail(String id, String subject, long dateSent, String... labelIds) {
+        MailApi.MailDto d = new MailApi.MailDto();
+        d.id = id;
+        d.from = "sender@bloomly.com";
+        d.to = "me@bloomly.com";
+        d.subject = subject;
+        d.content = "body of " + id;
+        d.dateSent = String.valueOf(dateSent);
+        d.labels = new ArrayList<>();
+        for (String lid : labelIds) d.labels.add(labels.get(lid));
+        tombstones.remove(id);
+        mails.put(id, new Row(d, ++seq));
+    }
+
+    // adds a prepared mail (labels must already be registered with putLabel).
+    public synchronized void putMail(MailApi.MailDto d) {
+        tombstones.remove(d.id);
+        mails.put(d.id, new Row(d, ++seq));
+    }
+
+    public synchronized void setNetwork(long latencyMs, long bytesPerSecond) {
+        this.latencyMs = latencyMs;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public synchronized void editSubject(String id, String subject) {
+        Row r = mails.get(id);
+        r.dto.subject = subject;
+        r.seq = ++seq;
+    }
+
+    public synchronized void deleteMail(String id) {
+        mails.remove(id);
+        tombstones.put(id, ++seq);
+    }
+
+    public synchronized void failChanges(int code) {
+        failChanges = code;
+    }
+
+    // Idempotency-Key of every change request received, repeats included.
+    public synchronized List<String> idempotencyKeys() {
+        return new ArrayList<>(idempotencyKeys);
+    }
+
+    public synchronized MailApi.MailDto mail(String id) {
+        Row r = mails.get(id);
+        return r == null ? null : r.dto;
+    }
+
+    public synchronized int mailCount() {
+        return mails.size();
+    }
+
+    // number of requests whose path starts with the prefix, e.g. "/api/mails/changes".
+    public int hits(String pathPrefix) {
+        int n = 0;
+        for (Map.Entry<String, AtomicInteger> e : hits.entrySet()) {
+            if (e.getKey().startsWith(pathPrefix)) n += e.getValue().get();
+        }
+        return n;
+    }
+
+    // mails + deleted ids in the last /mails/changes response.
+    public synchronized int lastChangesSize() {
+        return lastChangesSize;
+    }
+
+    // body size of the last response, in bytes.
+    public synchronized long lastResponseBytes() {
+        return lastResponseBytes;
+    }
+
+    // GETs answered 304 Not Modified.
+    public synchronized int notModified() {
+        return notModified;
+    }
+
+    public RecordedRequest takeRequest() throws InterruptedException {
+        return server.takeRequest();
+    }
+
+    // ----- request handling -----
+
+    private synchronized MockResponse handle(RecordedRequest request) {
+        HttpUrl url = request.getRequestUrl();
+        if (url == null) return new MockResponse().setResponseCode(400);
+        String path = url.encodedPath();
+        hits.computeIfAbsent(path, k -> new AtomicInteger()).incrementAndGet();
+
+        if (!"GET".equals(request.getMethod())) return change(request, path);
+
+        // like the web server: every JSON GET carries an ETag, and a matching If-None-Match gets a 304
+        MockResponse res = get(url, path);
+        String etag = res.getHeaders().get("ETag");
+        if (etag != null && etag.equals(request.getHeader("If-None-Match"))) {
+            notModified++;
+            return new MockResponse().setResponseCode(304).setHeader("ETag", etag);
+        }
+        return res;
+    }
+
+    private MockResponse get(HttpUrl url, String path) {
+        if (path.equals("/api/labels")) {
+            return json(new ArrayList<>(labels.values()));
+        }
+        if (path.equals("/api/mails")) {
+            return json(page(null, url.queryParameter("before")));
+        }
+        if (path.equals("/api/mails/changes")) {
+            return json(changes(url.queryParameter("since")));
+        }
+        if (path.startsWith("/api/mails/label/")) {
+            String labelId = path.substring("/api/mails/label/".length());
+            return json(page(labelId, url.queryParameter("before")));
+        }
+        if (path.startsWith("/api/mails/search/")) {
+            String q = url.pathSegments().get(url.pathSize() - 1);
+            String tz = url.queryParameter("tz");
+            return json(search(q, url.queryParameter("before"), tz == null ? 0 : Integer.parseInt(tz)));
+        }
+        if (path.startsWith("/api/mails/")) {
+            Row r = mails.get(path.substring("/api/mails/".length()));
+            return r == null ? new MockResponse().setResponseCode(404) : json(r.dto);
+        }
+        return new MockResponse().setResponseCode(404);
+    }
+
+    // POST/DELETE of mails, their labels and labels, like the web server's controllers.
+    private MockResponse change(RecordedRequest request, String path) {
+        String key = request.getHeader("Idempotency-Key");
+        if (key != null) idempotencyKeys.add(key);
+        if (failChanges != 0) return new MockResponse().setResponseCode(failChanges);
+        if (key != null && answered.containsKey(key)) return answered.get(key);
+        MockResponse res = applyChange(request.getMethod(), path, request.getBody().readUtf8());
+        if (key != null) answered.put(key, res);
+        return res;
+    }
+
+    private MockResponse applyChange(String method, String path, String body) {
+        String[] seg = path.substring("/api/".length()).split("/");
+        if ("POST".equals(method) && path.equals("/api/mails")) {
+            MailApi.ComposeRequest req = gson.fromJson(body, MailApi.ComposeRequest.class);
+            MailApi.MailDto d = new MailApi.MailDto();
+            d.id = String.valueOf(nextMailId++);
+            d.from = "me@bloomly.com";
+            d.to = req.toEmail;
+            d.subject = req.subject;
+            d.content = req.content;
+            d.dateSent = String.valueOf(System.currentTimeMillis());
+            d.labels = new ArrayList<>();
+            List<String> names = req.labels != null ? new ArrayList<>(req.labels) : new ArrayList<>();
+            names.add("Sent");
+            for (MailApi.LabelDto l : labels.values()) {
+                for (String n : names) if (n.equalsIgnoreCase(l.name)) d.labels.add(l);
+            }
+            putMail(d);
+            return json(d).setResponseCode(201);
+        }
+        if ("POST".equals(method) && path.equals("/api/labels")) {
+            MailApi.CreateLabelRequest req = gson.fromJson(body, MailApi.CreateLabelRequest.class);
+            for (MailApi.LabelDto l : labels.values()) {
+                if (l.name.equalsIgnoreCase(req.name)) return new MockResponse().setResponseCode(409);
+            }
+            String id = "l" + (labels.size() + 1);
+            putLabel(id, req.name);
+            return json(labels.get(id)).setResponseCode(201);
+        }
+        if (seg.length == 2 && seg[0].equals("mails") && "DELETE".equals(method)) {
+            if (!mails.containsKey(seg[1])) return new MockResponse().setResponseCode(404);
+            deleteMail(seg[1]);
+            return new MockResponse().setResponseCode(204);
+        }
+        if (seg.length == 4 && seg[0].equals("mails") && seg[2].equals("labels")) {
+            Row r = mails.get(seg[1]);
+            MailApi.LabelDto l = labels.get(seg[3]);
+            if (r == null || l == null) return new MockResponse().setResponseCode(404);
+            r.dto.labels.removeIf(x -> x.id.equals(l.id));
+            if ("POST".equals(method)) r.dto.labels.add(l);
+            if ("POST".equals(method) && l.name.equalsIgnoreCase("spam")) r.dto.spam = true;
+            r.seq = ++seq;
+            return json(r.dto);
+        }
+        return new MockResponse().setResponseCode(405);
+    }
+
+    private List<MailApi.MailDto> latest(int limit) {
+        List<MailApi.MailDto> out = new ArrayList<>();
+        for (Row r : mails.values()) out.add(r.dto);
+        Collections.sort(out, NEWEST_FIRST);
+        return out.size() > limit ? new ArrayList<>(out.subList(0, limit)) : out;
+    }
+
+    // one page of 50 below the "<dateSent>_<id>" cursor, like the web server; optionally one label only.
+    private List<MailApi.MailDto> page(String labelId, String before) {
+        return page(labelId, null, before);
+    }
+
+    // like the web server's search (utils/searchQuery.js): every term of the client's query
+    // syntax must hold; words and phrases are case-insensitive substrings. Pages of 50.
+    // tz: minutes east of UTC for the days of after: and before:.
+    private List<MailApi.MailDto> search(String q, String before, int tz) {
+        SearchQuery parsed = SearchQuery.parse(q);
+        if (parsed.isEmpty()) return new ArrayList<>();
+        return page(null, d -> {
+            for (SearchQuery.Term t : parsed.terms) if (matches(t, d, tz) == t.negated) return false;
+            return true;
+        }, before);
+    }
+
+    private boolean matches(SearchQuery.Term t, MailApi.MailDto d, int tz) {
+        switch (t.field) {
+            case TEXT:
+                for (String w : words(t.value)) {
+                    if (!contains(d.subject, w) && !contains(d.content, w)
+                            && !contains(d.from, w) && !contains(d.to, w)) return false;
+                }
+                return true;
+            case PHRASE: {
+                StringBuilder re = new StringBuilder();
+                for (String w : words(t.value)) {
+                    if (re.length() > 0) re.append("[^\\p{L}\\p{N}]+");
+                    re.append(java.util.regex.Pattern.quote(w));
+                }
+                java.util.regex.Pattern p = java.util.regex.Pattern.compile(re.toString(),
+                        java.util.regex.Pattern.CASE_INSENSITIVE | java.util.regex.Pattern.UNICODE_CASE);
+                for (String f : new String[] { d.subject, d.content, d.from, d.to }) {
+                    if (f != null && p.matcher(f).find()) return true;
+                }
+                return false;
+            }
+            case FROM:
+            case TO:
+                for (String w : words(t.value)) {
+                    if (!contains(t.field == SearchQuery.Field.FROM ? d.from : d.to, w)) return false;
+                }
+                return true;
+            case LABEL:
+                for (MailApi.LabelDto l : d.labels) {
+                    if (l.id.equalsIgnoreCase(t.value) || (l.name != null && l.name.equalsIgnoreCase(t.value))) return true;
+                }
+                return false;
+            case BEFORE:
+            case AFTER: {
+                String[] p = t.value.split("/");
+                long day = java.time.LocalDate.of(Integer.parseInt(p[0]), Integer.parseInt(p[1]), Integer.parseInt(p[2]))
+                        .toEpochDay() * 86_400_000L - tz * 60_000L;
+                long date = Long.parseLong(d.dateSent);
+                return t.field == SearchQuery.Field.AFTER ? date >= day : date < day;
+            }
+            case IS_SPAM:
+                return d.spam;
+            default:
+                return false;
+        }
+    }
+
+    // runs of letters and digits, lower-cased (the server's words()).
+    private static List<String> words(String s) {
+        List<String> out = new ArrayList<>();
+        for (String w : s.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) if (!w.isEmpty()) out.add(w);
+        return out;
+    }
+
+    private List<MailApi.MailDto> page(String labelId, java.util.function.Predicate<MailApi.MailDto> match,
+                                       String before) {
+        List<MailApi.MailDto> out = new ArrayList<>();
+        long beforeDate = Long.MAX_VALUE;
+        long beforeId = Long.MAX_VALUE;
+        if (before != null) {
+            String[] parts = before.split("_");
+            beforeDate = Long.parseLong(parts[0]);
+            beforeId = Long.parseLong(parts[1]);
+        }
+        for (Row r : mails.values()) {
+            long date = Long.parseLong(r.dto.dateSent);
+            long id = Long.parseLong(r.dto.id);
+            if (date > beforeDate || (date == beforeDate && id >= beforeId)) continue;
+            if (labelId != null && !hasLabel(r.dto, labelId)) continue;
+            if (match != null && !match.test(r.dto)) continue;
+            out.add(r.dto);
+        }
+        Collections.sort(out, NEWEST_FIRST);
+        return out.size() > 50 ? new ArrayList<>(out.subList(0, 50)) : out;
+    }
+
+    private static boolean hasLabel(MailApi.MailDto d, String labelId) {
+        for (MailApi.LabelDto l : d.labels) if (l.id.equals(labelId)) return true;
+        return false;
+    }
+
+    // case-insensitive, without copying the text (the benchmark measures the client's heap).
+    private static boolean contains(String text, String needle) {
+        if (text == null) return false;
+        for (int i = 0, last = text.length() - needle.length(); i <= last; i++) {
+            if (text.regionMatches(true, i, needle, 0, needle.length())) return true;
+        }
+        return false;
+    }
+
+    private static final java.util.Comparator<MailApi.MailDto> NEWEST_FIRST = (a, b) -> {
+        int c = Long.compare(Long.parseLong(b.dateSent), Long.parseLong(a.dateSent));
+        return c != 0 ? c : Long.compare(Long.parseLong(b.id), Long.parseLong(a.id));
+    };
+
+    private MailApi.ChangesDto changes(String since) {
+        MailApi.ChangesDto c = new MailApi.ChangesDto();
+        c.cursor = String.valueOf(seq);
+        c.mails = new ArrayList<>();
+        c.deleted = new ArrayList<>();
+        if (since == null) {
+            c.full = true;
+            c.mails = latest(50);
+            lastChangesSize = c.mails.size();
+            return c;
+        }
+        long from = Long.parseLong(since);
+        for (Row r : mails.values()) if (r.seq > from) c.mails.add(r.dto);
+        for (Map.Entry<String, Long> t : tombstones.entrySet()) {
+            if (t.getValue() > from) c.deleted.add(t.getKey());
+        }
+        lastChangesSize = c.mails.size() + c.deleted.size();
+        return c;
+    }
+
+    // serialized straight into the response buffer (no intermediate String), then delivered
+    // with the configured latency and bandwidth.
+    private MockResponse json(Object body) {
+        Buffer buffer = new Buffer();
+        try (Writer w = new OutputStreamWriter(buffer.outputStream(), StandardCharsets.UTF_8)) {
+            gson.toJson(body, w);
+        } catch (IOException e) {
+            return new MockResponse().setResponseCode(500);
+        }
+        lastResponseBytes = buffer.size();
+        MockResponse r = new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setHeader("ETag", "W/\"" + buffer.md5().hex() + "\"")
+                .setBody(buffer);
+        if (latencyMs > 0) r.setHeadersDelay(latencyMs, TimeUnit.MILLISECONDS);
+        // in 100 ms slices, so the body arrives as a steady stream
+        if (bytesPerSecond > 0) r.throttleBody(Math.max(1, bytesPerSecond / 10), 100, TimeUnit.MILLISECONDS);
+        return r;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.gmail_android.repository;
+
+import com.example.gmail_android.interfaces.MailApi;
+import java.util.ArrayList;
+import java.util.Random;
+
+// deterministic synthetic mailbox for LocalMailServer: N mails over M labels and a few hundred
+// senders, both Zipf-distributed (label 0, "inbox", on most mails; the tail on a handful),
+// 1-3 labels per mail, and log-normal body sizes (median ~700 chars, long tail up to 64 KB)
+// made of plain words. The same (mails, labels, seed) always produces the same mailbox.
+public final class SyntheticMailbox {
+    public static final int SENDERS = 400;
+    // every subject has a fair chance of containing it, so a search always fills a page.
+    public static final String SEARCH_TERM = "invoice";
+
+    private static final double ZIPF_EXPONENT = 1.1;
+    private static final double BODY_MEDIAN = 700;
+    private static final double BODY_SIGMA = 0.9;
+    private static final int BODY_MIN = 40;
+    private static final int BODY_MAX = 64_000;
+    private static final long START_MILLIS = 1_700_000_000_000L;
+    private static final long YEAR_MILLIS = 365L * 86_400_000L;
+
+    private static final String[] WORDS = {
+            "the", "meeting", "project", "invoice", "report", "update", "team", "review", "please",
+            "attached", "schedule", "thanks", "budget", "client", "deadline", "draft", "notes",
+            "tomorrow", "weekly", "design", "release", "question", "order", "shipping", "account",
+            "and", "for", "with", "about", "next", "call", "plan", "agenda", "feedback", "summary"
+    };
+
+    public final int mails;
+    public final int labels;
+    private final long seed;
+
+    public SyntheticMailbox(int mails, int labels, long seed) {
+        this.mails = mails;
+        this.labels = labels;
+        this.seed = seed;
+    }
+
+    // labels are ranked by popularity: 0 is "inbox", then "label1", "label2", ...
+    public static String labelId(int rank) {
+        return rank == 0 ? "inbox" : "label" + rank;
+    }
+
+    public void fill(LocalMailServer server) {
+        Random rnd = new Random(seed);
+        for (int l = 0; l < labels; l++) server.putLabel(labelId(l), labelName(l));
+        double[] labelCdf = zipfCdf(labels);
+        double[] senderCdf = zipfCdf(SENDERS);
+        long spacing = Math.max(1, YEAR_MILLIS / Math.max(1, mails));
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < mails; i++) {
+            MailApi.MailDto d = new MailApi.MailDto();
+            d.id = String.valueOf(i + 1);
+            d.from = "sender" + sample(senderCdf, rnd) + "@bloomly.com";
+            d.to = "me@bloomly.com";
+            d.subject = words(sb, rnd, 3 + rnd.nextInt(6), false);
+            d.content = words(sb, rnd, bodyChars(rnd) / 6, true);
+            d.dateSent = String.valueOf(START_MILLIS + i * spacing + rnd.nextInt((int) Math.min(spacing, 60_000)));
+            d.labels = new ArrayList<>(3);
+            int count = Math.min(labels, 1 + (rnd.nextInt(10) < 6 ? 0 : rnd.nextInt(10) < 7 ? 1 : 2));
+            while (d.labels.size() < count) {
+                int rank = sample(labelCdf, rnd);
+                if (!hasLabel(d, rank)) d.labels.add(label(rank));
+            }
+            server.putMail(d);
+        }
+    }
+
+    private static String labelName(int l) {
+        return l == 0 ? "Inbox" : "Label " + l;
+    }
+
+    private static MailApi.LabelDto label(int rank) {
+        MailApi.LabelDto l = new MailApi.LabelDto();
+        l.id = labelId(rank);
+        l.name = labelName(rank);
+        return l;
+    }
+
+    private static boolean hasLabel(MailApi.MailDto d, int rank) {
+        String id = labelId(rank);
+        for (MailApi.LabelDto l : d.labels) if (l.id.equals(id)) return true;
+        return false;
+    }
+
+    private static int bodyChars(Random rnd) {
+        double len = Math.exp(Math.log(BODY_MEDIAN) + BODY_SIGMA * rnd.nextGaussian());
+        return (int) Math.max(BODY_MIN, Math.min(BODY_MAX, len));
+    }
+
+    // n words; bodies get sentences and a paragraph break every ~60 words.
+    private static String words(StringBuilder sb, Random rnd, int n, boolean body) {
+        sb.setLength(0);
+        for (int w = 0; w < Math.max(1, n); w++) {
+            if (w > 0) sb.append(body && w % 60 == 0 ? "\n\n" : body && w % 12 == 0 ? ". " : " ");
+            sb.append(WORDS[rnd.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+
+    private static double[] zipfCdf(int n) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) cdf[k] = sum += 1.0 / Math.pow(k + 1, ZIPF_EXPONENT);
+        for (int k = 0; k < n; k++) cdf[k] /= sum;
+        return cdf;
+    }
+
+    private static int sample(double[] cdf, Random rnd) {
+        double u = rnd.nextDouble();
+        int lo = 0, hi = cdf.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cdf[mid] < u) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.gmail_android.auth;
+
+import com.example.gmail_android.entities.AuthResponse;
+import com.example.gmail_android.network.MemoryPrefs;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+// tokens here are not JWTs, so their lifetime comes from expiresIn.
+public class TokenManagerTest {
+    private static final long HOUR = 3_600_000;
+
+    private final MemoryPrefs prefs = new MemoryPrefs();
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicInteger refreshes = new AtomicInteger();
+
+    @Test
+    public void readsTheServersDurations() {
+        assertEquals(24 * HOUR, TokenStore.durationMillis("24h"));
+        assertEquals(15 * 60_000, TokenStore.durationMillis("15m"));
+        assertEquals(7 * 24 * HOUR, TokenStore.durationMillis("7 days"));
+        assertEquals(120, TokenStore.durationMillis("120"));
+        assertEquals(-1, TokenStore.durationMillis("soon"));
+        assertEquals(0, TokenStore.expiresAt("t1", null, 5));
+        assertEquals(5 + HOUR, TokenStore.expiresAt("t1", "1h", 5));
+    }
+
+    @Test
+    public void renewsInTheBackgroundNearExpiry() {
+        TokenStore.save(prefs, "t1", "1h", 0);
+        List<Runnable> queued = new ArrayList<>();
+        TokenManager tokens = new TokenManager(prefs, renewTo("t2", "1h"), queued::add, now::get);
+
+        now.set(30 * 60_000);
+        assertEquals("Bearer t1", tokens.header());
+        assertTrue(queued.isEmpty());
+
+        now.set(50 * 60_000); // past three quarters of the hour
+        assertEquals("Bearer t1", tokens.header()); // this request still goes out with t1
+        assertEquals("one renewal queued", 1, queued.size());
+        tokens.header();
+        assertEquals("not twice", 1, queued.size());
+
+        queued.get(0).run();
+        assertEquals("Bearer t2", tokens.header());
+        assertEquals("t2", prefs.getString(TokenStore.KEY_TOKEN, null));
+        assertEquals(1, refreshes.get());
+    }
+
+    @Test
+    public void expiredTokenIsRenewedBeforeTheRequest() {
+        TokenStore.save(prefs, "t1", "1h", 0);
+        TokenManager tokens = new TokenManager(prefs, renewTo("t2", "1h"), Runnable::run, now::get);
+        now.set(2 * HOUR);
+        assertEquals("Bearer t2", tokens.header());
+        assertEquals(1, refreshes.get());
+    }
+
+    @Test
+    public void concurrentRenewalsCallTheServerOnce() throws Exception {
+        prefs.edit().putString(TokenStore.KEY_TOKEN, "t1").apply();
+        TokenManager tokens = new TokenManager(prefs, token -> {
+            refreshes.incrementAndGet();
+            sleep(100); // the others arrive while this one is out
+            return response("t2", "24h");
+        }, Runnable::run, now::get);
+
+        int callers = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return tokens.refresh("Bearer t1");
+            }));
+        }
+        start.countDown();
+        for (Future<String> r : results) assertEquals("Bearer t2", r.get());
+        pool.shutdown();
+        assertEquals(1, refreshes.get());
+    }
+
+    @Test
+    public void refusedTokenEndsTheSession() {
+        prefs.edit().putString(TokenStore.KEY_TOKEN, "t1").apply();
+        TokenManager tokens = new TokenManager(prefs, token -> null, Runnable::run, now::get);
+        assertNull(tokens.refresh("Bearer t1"));
+        assertNull(tokens.header());
+        assertNull(prefs.getString(TokenStore.KEY_TOKEN, null));
+    }
+
+    @Test
+    public void unreachableServerKeepsTheToken() {
+        TokenStore.save(prefs, "t1", "1h", 0);
+        List<Runnable> queued = new ArrayList<>();
+        TokenManager tokens = new TokenManager(prefs, token -> {
+            refreshes.incrementAndGet();
+            throw new IOException("offline");
+        }, queued::add, now::get);
+
+        assertNull(tokens.refresh("Bearer t1"));
+        assertEquals("Bearer t1", tokens.header());
+
+        now.set(50 * 60_000);
+        tokens.header();
+        queued.remove(0).run(); // fails
+        tokens.header();
+        assertTrue("waits before the next try", queued.isEmpty());
+        now.addAndGet(TokenManager.RETRY_MS);
+        tokens.header();
+        assertEquals(1, queued.size());
+    }
+
+    @Test
+    public void followsLoginAndLogout() {
+        TokenManager tokens = new TokenManager(prefs, token -> null, Runnable::run, now::get);
+        assertNull(tokens.header());
+        TokenStore.save(prefs, "t1", "24h", 0);
+        assertEquals("Bearer t1", tokens.header());
+        TokenStore.clear(prefs);
+        assertNull(tokens.header());
+    }
+
+    private TokenManager.Refresher renewTo(String token, String expiresIn) {
+        return old -> {
+            refreshes.incrementAndGet();
+            return response(token, expiresIn);
+        };
+    }
+
+    private static AuthResponse response(String token, String expiresIn) {
+        AuthResponse r = new AuthResponse();
+        r.token = token;
+        r.expiresIn = expiresIn;
+        return r;
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
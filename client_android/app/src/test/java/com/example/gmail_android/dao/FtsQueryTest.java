@@ -0,0 +1,36 @@
+package com.example.gmail_android.dao;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FtsQueryTest {
+
+    @Test
+    public void wordsBecomeQuotedPrefixTerms() {
+        assertEquals("\"inv*\" \"march*\"", FtsQuery.match("  Inv   MARCH "));
+    }
+
+    @Test
+    public void operatorsAndPunctuationAreNotPassedThrough() {
+        assertEquals("\"a*\" \"or*\" \"b*\"", FtsQuery.match("a OR b"));
+        assertEquals("\"from*\" \"bob*\" \"x*\"", FtsQuery.match("from:bob -\"x\"*"));
+        assertEquals("\"dana*\" \"bloomly*\" \"com*\"", FtsQuery.match("dana@bloomly.com"));
+    }
+
+    @Test
+    public void combiningMarksAreDropped() {
+        // Hebrew with niqqud, and a decomposed "é"
+        assertEquals("\"שלום*\"", FtsQuery.match("שָׁלוֹם"));
+        assertEquals("\"cafe*\"", FtsQuery.match("cafe\u0301"));
+        // precomposed letters are kept; the tokenizer folds them
+        assertEquals("\"caf\u00e9*\"", FtsQuery.match("Caf\u00e9"));
+    }
+
+    @Test
+    public void nothingSearchableGivesNull() {
+        assertNull(FtsQuery.match(null));
+        assertNull(FtsQuery.match(""));
+        assertNull(FtsQuery.match(" \"*-() "));
+    }
+}
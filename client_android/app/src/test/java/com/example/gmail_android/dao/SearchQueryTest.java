@@ -0,0 +1,100 @@
+package com.example.gmail_android.dao;
+
+import java.util.TimeZone;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SearchQueryTest {
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    @Test
+    public void operatorsAreParsed() {
+        SearchQuery q = parse("invoice from:dana to:me@bloomly.com label:Work is:spam");
+        assertEquals(5, q.terms.size());
+        assertTerm(q.terms.get(0), SearchQuery.Field.TEXT, "invoice", false);
+        assertTerm(q.terms.get(1), SearchQuery.Field.FROM, "dana", false);
+        assertTerm(q.terms.get(2), SearchQuery.Field.TO, "me@bloomly.com", false);
+        assertTerm(q.terms.get(3), SearchQuery.Field.LABEL, "work", false); // normalized id
+        assertTerm(q.terms.get(4), SearchQuery.Field.IS_SPAM, "spam", false);
+    }
+
+    @Test
+    public void phrasesAndNegation() {
+        SearchQuery q = parse("\"big deal\" -lunch -label:\"side project\" -\"out of office\"");
+        assertTerm(q.terms.get(0), SearchQuery.Field.PHRASE, "big deal", false);
+        assertTerm(q.terms.get(1), SearchQuery.Field.TEXT, "lunch", true);
+        assertTerm(q.terms.get(2), SearchQuery.Field.LABEL, "side project", true);
+        assertTerm(q.terms.get(3), SearchQuery.Field.PHRASE, "out of office", true);
+    }
+
+    @Test
+    public void datesAreDaysInTheGivenZone() {
+        SearchQuery q = parse("after:2024-03-01 before:2024/04/01");
+        assertTerm(q.terms.get(0), SearchQuery.Field.AFTER, "2024/03/01", false);
+        assertEquals(1_709_251_200_000L, q.terms.get(0).millis);
+        assertEquals(1_711_929_600_000L, q.terms.get(1).millis);
+        SearchQuery jerusalem = SearchQuery.parse("after:2024/03/01", TimeZone.getTimeZone("Asia/Jerusalem"));
+        assertEquals(1_709_251_200_000L - 2 * 3_600_000L, jerusalem.terms.get(0).millis);
+    }
+
+    @Test
+    public void invalidOperatorsAreSearchedAsWords() {
+        assertTerm(parse("before:soon").terms.get(0), SearchQuery.Field.TEXT, "before:soon", false);
+        assertTerm(parse("is:starred").terms.get(0), SearchQuery.Field.TEXT, "is:starred", false);
+        assertTerm(parse("subject:hi").terms.get(0), SearchQuery.Field.TEXT, "subject:hi", false);
+        assertTerm(parse("after:2024/13/01").terms.get(0), SearchQuery.Field.TEXT, "after:2024/13/01", false);
+        assertTerm(parse("from:").terms.get(0), SearchQuery.Field.TEXT, "from:", false);
+    }
+
+    @Test
+    public void nothingSearchableIsEmpty() {
+        assertTrue(parse(null).isEmpty());
+        assertTrue(parse("  - \" \" ()").isEmpty());
+    }
+
+    @Test
+    public void canonicalFormRoundTrips() {
+        String typed = "  Invoice   FROM:dana  -label:\"Side Project\" after:2024-3-1 \"big  deal\" IS:SPAM";
+        String canonical = parse(typed).toString();
+        assertEquals("Invoice from:dana -label:\"side project\" after:2024/03/01 \"big  deal\" is:spam", canonical);
+        assertEquals(canonical, parse(canonical).toString());
+    }
+
+    @Test
+    public void fullTextTermsBecomeOneMatch() {
+        assertEquals("\"inv*\" \"big deal\" fromEmail:dana* toEmail:me* toEmail:bloomly* toEmail:com*",
+                parse("inv \"big deal\" from:dana -lunch to:me@bloomly.com").positiveMatch());
+        assertNull(parse("label:work -invoice").positiveMatch());
+    }
+
+    @Test
+    public void userTextOnlyReachesSqlAsArguments() {
+        SearchQuery q = parse("x'); DROP TABLE mails; -- label:\"a' OR 1=1\" from:\"'\"");
+        SearchQuery.Compiled c = q.window("key", Long.MIN_VALUE, "", 50);
+        assertFalse(c.sql, c.sql.contains("DROP"));
+        assertFalse(c.sql, c.sql.contains("1=1"));
+        int placeholders = c.sql.length() - c.sql.replace("?", "").length();
+        assertEquals(placeholders, c.args.length);
+    }
+
+    @Test
+    public void eachTermAddsItsIndexedCondition() {
+        SearchQuery.Compiled c = parse("invoice label:work -is:spam before:2024/01/01")
+                .keysBefore("key", Long.MAX_VALUE, "", 50);
+        assertTrue(c.sql, c.sql.contains("mails_fts MATCH ?"));
+        assertTrue(c.sql, c.sql.contains("mails.id IN (SELECT mailId FROM mail_label WHERE labelId = ?)"));
+        assertTrue(c.sql, c.sql.contains("mails.isSpam = ?"));
+        assertTrue(c.sql, c.sql.contains("mails.dateSentMillis < ?"));
+    }
+
+    private static SearchQuery parse(String s) {
+        return SearchQuery.parse(s, UTC);
+    }
+
+    private static void assertTerm(SearchQuery.Term t, SearchQuery.Field field, String value, boolean negated) {
+        assertEquals(field, t.field);
+        assertEquals(value, t.value);
+        assertEquals(negated, t.negated);
+    }
+}
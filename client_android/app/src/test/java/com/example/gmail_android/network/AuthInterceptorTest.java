@@ -0,0 +1,49 @@
+package com.example.gmail_android.network;
+
+import com.example.gmail_android.auth.TokenManager;
+import com.example.gmail_android.auth.TokenStore;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AuthInterceptorTest {
+    private final MockWebServer server = new MockWebServer();
+    private final MemoryPrefs prefs = new MemoryPrefs();
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server.start();
+        prefs.edit().putString(TokenStore.KEY_TOKEN, "t1").apply();
+        TokenManager tokens = new TokenManager(prefs, token -> null, Runnable::run);
+        client = new OkHttpClient.Builder().addInterceptor(new AuthInterceptor(tokens)).build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void headerFollowsTheStoredToken() throws Exception {
+        assertEquals("Bearer t1", authorizationOfNextRequest());
+
+        prefs.edit().putString(TokenStore.KEY_TOKEN, "t2").apply(); // e.g. a new login
+        assertEquals("Bearer t2", authorizationOfNextRequest());
+
+        TokenStore.clear(prefs); // logout
+        assertNull(authorizationOfNextRequest());
+    }
+
+    private String authorizationOfNextRequest() throws Exception {
+        server.enqueue(new MockResponse());
+        client.newCall(new Request.Builder().url(server.url("/api/mails")).build()).execute().close();
+        return server.takeRequest().getHeader("Authorization");
+    }
+}
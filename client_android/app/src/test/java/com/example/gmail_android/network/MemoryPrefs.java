@@ -0,0 +1,90 @@
+package com.example.gmail_android.network;
+
+import android.content.SharedPreferences;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// in-memory SharedPreferences for plain JVM tests: a synchronized map (like the platform's),
+// listeners called on commit/apply for each changed key.
+public final class MemoryPrefs implements SharedPreferences {
+    private final Map<String, Object> values = new HashMap<>();
+    private final List<OnSharedPreferenceChangeListener> listeners = new ArrayList<>();
+
+    @Override public synchronized String getString(String key, String def) {
+        Object v = values.get(key);
+        return v != null ? (String) v : def;
+    }
+    @Override public synchronized int getInt(String key, int def) {
+        Object v = values.get(key);
+        return v != null ? (Integer) v : def;
+    }
+    @Override public synchronized long getLong(String key, long def) {
+        Object v = values.get(key);
+        return v != null ? (Long) v : def;
+    }
+    @Override public synchronized boolean getBoolean(String key, boolean def) {
+        Object v = values.get(key);
+        return v != null ? (Boolean) v : def;
+    }
+    public synchronized float getFloat(String key, float def) {
+        Object v = values.get(key);
+        return v != null ? (Float) v : def;
+    }
+    @SuppressWarnings("unchecked")
+    public synchronized Set<String> getStringSet(String key, Set<String> def) {
+        Object v = values.get(key);
+        return v != null ? (Set<String>) v : def;
+    }
+    public synchronized Map<String, ?> getAll() {
+        return new HashMap<>(values);
+    }
+    @Override public synchronized boolean contains(String key) {
+        return values.containsKey(key);
+    }
+    @Override public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener l) {
+        listeners.add(l);
+    }
+    @Override public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener l) {
+        listeners.remove(l);
+    }
+
+    @Override public Editor edit() {
+        return new Editor() {
+            private final Map<String, Object> puts = new HashMap<>();
+            private final Set<String> removes = new HashSet<>();
+
+            @Override public Editor putString(String key, String value) { puts.put(key, value); return this; }
+            @Override public Editor putInt(String key, int value) { puts.put(key, value); return this; }
+            @Override public Editor putLong(String key, long value) { puts.put(key, value); return this; }
+            @Override public Editor putBoolean(String key, boolean value) { puts.put(key, value); return this; }
+            public Editor putFloat(String key, float value) { puts.put(key, value); return this; }
+            public Editor putStringSet(String key, Set<String> value) { puts.put(key, value); return this; }
+            @Override public Editor remove(String key) { removes.add(key); return this; }
+            @Override public Editor clear() {
+                synchronized (MemoryPrefs.this) { removes.addAll(values.keySet()); }
+                return this;
+            }
+            @Override public boolean commit() {
+                Set<String> changed = new HashSet<>();
+                synchronized (MemoryPrefs.this) {
+                    for (String key : removes) if (values.remove(key) != null) changed.add(key);
+                    for (Map.Entry<String, Object> e : puts.entrySet()) {
+                        values.put(e.getKey(), e.getValue());
+                        changed.add(e.getKey());
+                    }
+                }
+                for (String key : changed) {
+                    for (OnSharedPreferenceChangeListener l : listeners) l.onSharedPreferenceChanged(MemoryPrefs.this, key);
+                }
+                return true;
+            }
+            @Override public void apply() {
+                commit();
+            }
+        };
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.gmail_android.network;
+
+import com.example.gmail_android.auth.TokenManager;
+import com.example.gmail_android.auth.TokenStore;
+import com.example.gmail_android.entities.AuthResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+// ApiClient's auth setup against a server that only accepts the current token.
+public class TokenAuthenticatorTest {
+    private final MockWebServer server = new MockWebServer();
+    private final MemoryPrefs prefs = new MemoryPrefs();
+    private final AtomicInteger refreshes = new AtomicInteger();
+    private volatile String accepted = "Bearer t2";
+    private volatile String renewed = "t2";
+
+    @Before
+    public void setUp() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest req) {
+                return accepted.equals(req.getHeader("Authorization"))
+                        ? new MockResponse().setBody("[]")
+                        : new MockResponse().setResponseCode(401);
+            }
+        });
+        server.start();
+        prefs.edit().putString(TokenStore.KEY_TOKEN, "t1").apply(); // expired on the server
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void concurrent401sRenewOnceAndRetry() throws Exception {
+        OkHttpClient client = client(token -> {
+            refreshes.incrementAndGet();
+            pause(); // the other calls get their 401 meanwhile
+            AuthResponse r = new AuthResponse();
+            r.token = renewed;
+            r.expiresIn = "24h";
+            return r;
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        List<Future<Integer>> codes = new ArrayList<>();
+        for (int i = 0; i < 6; i++) codes.add(pool.submit(() -> get(client)));
+        for (Future<Integer> c : codes) assertEquals(200, (int) c.get());
+        pool.shutdown();
+
+        assertEquals(1, refreshes.get());
+        assertEquals("t2", prefs.getString(TokenStore.KEY_TOKEN, null));
+    }
+
+    @Test
+    public void refusedRenewalEndsTheSession() throws Exception {
+        OkHttpClient client = client(token -> {
+            refreshes.incrementAndGet();
+            return null;
+        });
+        assertEquals(401, get(client));
+        assertEquals(1, server.getRequestCount());
+        assertNull(prefs.getString(TokenStore.KEY_TOKEN, null));
+
+        assertEquals(401, get(client)); // logged out: no header, nothing to renew
+        assertEquals("Bearer t1", server.takeRequest().getHeader("Authorization"));
+        assertNull(server.takeRequest().getHeader("Authorization"));
+        assertEquals(1, refreshes.get());
+    }
+
+    @Test
+    public void renewedTokenRefusedToo() throws Exception {
+        accepted = "Bearer never";
+        OkHttpClient client = client(token -> {
+            refreshes.incrementAndGet();
+            AuthResponse r = new AuthResponse();
+            r.token = "t" + (refreshes.get() + 1);
+            return r;
+        });
+        assertEquals(401, get(client));
+        assertEquals("one retry, no loop", 2, server.getRequestCount());
+        assertEquals(1, refreshes.get());
+    }
+
+    private OkHttpClient client(TokenManager.Refresher refresher) {
+        TokenManager tokens = new TokenManager(prefs, refresher, Runnable::run);
+        return new OkHttpClient.Builder()
+                .addInterceptor(new AuthInterceptor(tokens))
+                .authenticator(new TokenAuthenticator(tokens))
+                .build();
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int get(OkHttpClient client) throws Exception {
+        try (Response r = client.newCall(new Request.Builder().url(server.url("/api/mails")).build()).execute()) {
+            return r.code();
+        }
+    }
+}
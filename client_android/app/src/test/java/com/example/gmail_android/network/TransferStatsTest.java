@@ -0,0 +1,88 @@
+package com.example.gmail_android.network;
+
+import java.io.File;
+import java.nio.file.Files;
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+// the client setup of ApiClient (disk cache + TransferStats) against a server that sends ETags.
+public class TransferStatsTest {
+    private final MockWebServer server = new MockWebServer();
+    private final TransferStats stats = new TransferStats();
+    private Cache cache;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server.start();
+        File dir = Files.createTempDirectory("http-cache").toFile();
+        cache = new Cache(dir, 1024 * 1024);
+        client = new OkHttpClient.Builder().cache(cache).addInterceptor(stats).build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+        cache.delete();
+    }
+
+    @Test
+    public void revalidatedResponsesComeFromTheCache() throws Exception {
+        String body = "[{\"id\":\"m1\"}]";
+        server.enqueue(new MockResponse().setHeader("ETag", "W/\"v1\"").setBody(body));
+        server.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "W/\"v1\""));
+
+        try (Response first = get("/api/mails")) {
+            assertFalse(TransferStats.notModified(first));
+            assertEquals(body, first.body().string());
+        }
+        try (Response second = get("/api/mails")) {
+            assertTrue(TransferStats.notModified(second));
+            assertEquals(200, second.code());
+            assertEquals(body, second.body().string());
+        }
+
+        server.takeRequest();
+        RecordedRequest conditional = server.takeRequest();
+        assertEquals("W/\"v1\"", conditional.getHeader("If-None-Match"));
+        assertEquals(body.length(), stats.bytesReceived());
+        assertEquals(body.length(), stats.bytesSaved());
+        assertEquals(1, stats.notModifiedCount());
+    }
+
+    @Test
+    public void changedResponsesAreDownloaded() throws Exception {
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v1\"").setBody("[]"));
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v2\"").setBody("[1]"));
+        get("/api/labels").close();
+        try (Response changed = get("/api/labels")) {
+            assertFalse(TransferStats.notModified(changed));
+            assertEquals("[1]", changed.body().string());
+        }
+        assertEquals(5, stats.bytesReceived());
+        assertEquals(0, stats.notModifiedCount());
+    }
+
+    @Test
+    public void skippedWorkIsEstimatedFromTheLastRun() {
+        stats.skipped("getInbox"); // never measured: nothing to count
+        stats.worked("getInbox", 40_000_000L);
+        stats.skipped("getInbox");
+        stats.skipped("getInbox");
+        assertTrue(stats.summary(), stats.summary().endsWith("sync time saved=80 ms"));
+    }
+
+    private Response get(String path) throws Exception {
+        return client.newCall(new Request.Builder().url(server.url(path)).build()).execute();
+    }
+}
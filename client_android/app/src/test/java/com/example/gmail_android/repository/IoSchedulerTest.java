@@ -0,0 +1,68 @@
+package com.example.gmail_android.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class IoSchedulerTest {
+    @Test
+    public void userWorkRunsBeforeQueuedBackgroundWork() throws Exception {
+        IoScheduler.PriorityLane lane = new IoScheduler.PriorityLane("test", 1);
+        CountDownLatch busy = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(4);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        lane.at(IoScheduler.USER).execute(() -> {
+            try {
+                busy.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ignore) { }
+            done.countDown();
+        });
+        for (String name : new String[] { "labels", "catalog" }) {
+            lane.at(IoScheduler.BACKGROUND).execute(() -> { order.add(name); done.countDown(); });
+        }
+        lane.at(IoScheduler.USER).execute(() -> { order.add("open mail"); done.countDown(); });
+        busy.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("open mail", "labels", "catalog"), order);
+    }
+
+    @Test
+    public void directQueuesOnTheGivenExecutorAndRunsHandOversInline() {
+        List<Runnable> queued = new ArrayList<>();
+        List<String> ran = new ArrayList<>();
+        IoScheduler s = IoScheduler.direct(queued::add);
+        s.network.at(IoScheduler.BACKGROUND).execute(() -> {
+            ran.add("net");
+            s.db.at(IoScheduler.USER).execute(() -> ran.add("db"));
+        });
+        assertTrue(ran.isEmpty());
+        queued.get(0).run();
+        assertEquals(Arrays.asList("net", "db"), ran);
+        assertEquals(1, queued.size());
+    }
+
+    @Test
+    public void directNeverRunsDbWorkOnTheCallersThread() {
+        List<Runnable> queued = new ArrayList<>();
+        List<String> ran = new ArrayList<>();
+        IoScheduler s = IoScheduler.direct(queued::add);
+        s.db.at(IoScheduler.USER).execute(() -> {
+            ran.add("read");
+            s.cpu.at(IoScheduler.USER).execute(() -> ran.add("map"));
+        });
+        assertTrue(ran.isEmpty());
+        queued.get(0).run();
+        assertEquals(Arrays.asList("read", "map"), ran);
+        // outside a lane task again: queued
+        s.db.at(IoScheduler.USER).execute(() -> ran.add("write"));
+        assertEquals(2, queued.size());
+    }
+}
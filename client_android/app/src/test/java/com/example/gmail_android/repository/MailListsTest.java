@@ -0,0 +1,52 @@
+package com.example.gmail_android.repository;
+
+import com.example.gmail_android.entities.LabelEntity;
+import com.example.gmail_android.entities.MailEntity;
+import com.example.gmail_android.entities.MailRow;
+import com.example.gmail_android.entities.MailWithLabels;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MailListsTest {
+    private static final Map<String, LabelEntity> LABELS = MailLists.index(Arrays.asList(
+            new LabelEntity("inbox", "Inbox"), new LabelEntity("work", "Work")));
+
+    @Test
+    public void resolvesSeparatedIds() {
+        List<LabelEntity> l = MailLists.resolve("inbox\u001fwork", LABELS);
+        assertEquals(2, l.size());
+        assertSame(LABELS.get("inbox"), l.get(0));
+        assertSame(LABELS.get("work"), l.get(1));
+    }
+
+    @Test
+    public void noIdsIsEmpty() {
+        assertTrue(MailLists.resolve(null, LABELS).isEmpty());
+        assertTrue(MailLists.resolve("", LABELS).isEmpty());
+    }
+
+    @Test
+    public void unknownIdsAreSkipped() {
+        List<LabelEntity> l = MailLists.resolve("gone\u001fwork\u001f", LABELS);
+        assertEquals(1, l.size());
+        assertSame(LABELS.get("work"), l.get(0));
+    }
+
+    @Test
+    public void rowsShareLabelObjects() {
+        List<MailWithLabels> out = MailLists.assemble(Arrays.asList(row("1", "inbox"), row("2", "inbox")), LABELS);
+        assertEquals("1", out.get(0).mail.id);
+        assertSame(out.get(0).labels.get(0), out.get(1).labels.get(0));
+    }
+
+    private static MailRow row(String id, String labelIds) {
+        MailRow r = new MailRow();
+        r.mail = new MailEntity(id);
+        r.labelIds = labelIds;
+        return r;
+    }
+}
@@ -0,0 +1,301 @@
+package com.example.gmail_android.repository;
+
+import com.example.gmail_android.dao.SyncBatch;
+import com.example.gmail_android.entities.LabelEntity;
+import com.example.gmail_android.entities.MailBodyEntity;
+import com.example.gmail_android.entities.MailEntity;
+import com.example.gmail_android.entities.MailLabelCrossRef;
+import com.example.gmail_android.entities.OutboxEntity;
+import com.example.gmail_android.interfaces.MailApi;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OutboxPlanTest {
+    private final List<OutboxEntity> pending = new ArrayList<>();
+    private final Map<String, String> labelIds = new HashMap<>();
+    private int seq;
+
+    private OutboxEntity op(String kind, String target, String arg, Object body) {
+        OutboxEntity op = new OutboxEntity();
+        op.seq = ++seq;
+        op.idempotencyKey = "k" + seq;
+        op.kind = kind;
+        op.target = target;
+        op.arg = arg;
+        op.body = body != null ? OutboxPlan.GSON.toJson(body) : null;
+        return op;
+    }
+
+    // coalesces `op` into `pending` and applies the result, like Outbox.enqueue.
+    private OutboxPlan.Merge enqueue(OutboxEntity op) {
+        OutboxPlan.Merge m = OutboxPlan.coalesce(pending, op);
+        pending.removeAll(m.removed);
+        if (m.insert) pending.add(op);
+        return m;
+    }
+
+    private static MailApi.ComposeRequest compose(String to, String subject, String content, String... labels) {
+        MailApi.ComposeRequest req = new MailApi.ComposeRequest();
+        req.toEmail = to;
+        req.subject = subject;
+        req.content = content;
+        req.labels = labels.length == 0 ? null : Arrays.asList(labels);
+        return req;
+    }
+
+    private static SyncBatch mail(String id, String... labels) {
+        SyncBatch b = new SyncBatch();
+        MailEntity m = new MailEntity(id);
+        m.subject = "server subject";
+        b.mails.add(m);
+        b.bodies.add(new MailBodyEntity(id, "server content"));
+        for (String l : labels) b.joins.add(new MailLabelCrossRef(id, l));
+        return b;
+    }
+
+    private static Set<String> joins(SyncBatch b) {
+        Set<String> out = new TreeSet<>();
+        for (MailLabelCrossRef j : b.joins) out.add(j.mailId + ">" + j.labelId);
+        return out;
+    }
+
+    // ----- coalesce -----
+
+    @Test
+    public void addThenRemoveOfTheSameLabelCancelsOut() {
+        enqueue(op(OutboxEntity.ADD_LABEL, "1", "work", null));
+        OutboxPlan.Merge m = enqueue(op(OutboxEntity.REMOVE_LABEL, "1", "work", null));
+        assertFalse(m.insert);
+        assertTrue(pending.isEmpty());
+    }
+
+    @Test
+    public void repeatedToggleIsStoredOnce() {
+        enqueue(op(OutboxEntity.ADD_LABEL, "1", "work", null));
+        assertFalse(enqueue(op(OutboxEntity.ADD_LABEL, "1", "work", null)).insert);
+        assertTrue(enqueue(op(OutboxEntity.ADD_LABEL, "1", "home", null)).insert);
+        assertTrue(enqueue(op(OutboxEntity.ADD_LABEL, "2", "work", null)).insert);
+        assertEquals(3, pending.size());
+    }
+
+    @Test
+    public void changesThatWereTriedAreNotMergedInto() {
+        OutboxEntity add = op(OutboxEntity.ADD_LABEL, "1", "work", null);
+        enqueue(add);
+        add.attempts = 1; // may have reached the server
+        OutboxPlan.Merge m = enqueue(op(OutboxEntity.REMOVE_LABEL, "1", "work", null));
+        assertTrue(m.insert);
+        assertTrue(m.removed.isEmpty());
+        assertEquals(2, pending.size());
+    }
+
+    @Test
+    public void draftEditsCollapseIntoOne() {
+        enqueue(op(OutboxEntity.EDIT, "7", null, compose("a@x", "first", "one")));
+        OutboxPlan.Merge m = enqueue(op(OutboxEntity.EDIT, "7", null, compose(null, "second", "two")));
+        assertFalse(m.insert);
+        assertEquals(1, pending.size());
+        MailApi.ComposeRequest merged = OutboxPlan.GSON.fromJson(pending.get(0).body, MailApi.ComposeRequest.class);
+        assertEquals("a@x", merged.toEmail);
+        assertEquals("second", merged.subject);
+        assertEquals("two", merged.content);
+    }
+
+    @Test
+    public void editOfADraftNotCreatedYetGoesIntoItsPost() {
+        OutboxEntity send = op(OutboxEntity.SEND, "local:1", null, compose("a@x", "draft", "one", "Drafts"));
+        enqueue(send);
+        OutboxPlan.Merge m = enqueue(op(OutboxEntity.EDIT, "local:1", null, compose(null, null, "two")));
+        assertFalse(m.insert);
+        assertEquals(Collections.singletonList(send), m.updated);
+        MailApi.ComposeRequest merged = OutboxPlan.GSON.fromJson(send.body, MailApi.ComposeRequest.class);
+        assertEquals("two", merged.content);
+        assertEquals(Collections.singletonList("Drafts"), merged.labels);
+    }
+
+    @Test
+    public void deletingAMailNotSentYetDropsEverythingForIt() {
+        OutboxEntity send = op(OutboxEntity.SEND, "local:1", null, compose("a@x", "s", "c"));
+        enqueue(send);
+        enqueue(op(OutboxEntity.ADD_LABEL, "local:1", "work", null));
+        OutboxEntity later = op(OutboxEntity.DELETE, "9", null, null);
+        later.after = send.idempotencyKey;
+        enqueue(later);
+
+        OutboxPlan.Merge m = enqueue(op(OutboxEntity.DELETE, "local:1", null, null));
+        assertFalse(m.insert);
+        assertEquals(Collections.singletonList(later), pending);
+        assertNull(later.after); // its prerequisite will never run
+        assertTrue(m.updated.contains(later));
+    }
+
+    @Test
+    public void deletingASyncedMailDropsItsWaitingEdits() {
+        enqueue(op(OutboxEntity.EDIT, "5", null, compose(null, "s", null)));
+        enqueue(op(OutboxEntity.ADD_LABEL, "5", "work", null));
+        OutboxEntity delete = op(OutboxEntity.DELETE, "5", null, null);
+        assertTrue(enqueue(delete).insert);
+        assertEquals(Collections.singletonList(delete), pending);
+    }
+
+    @Test
+    public void renamesCollapseIntoTheCreate() {
+        OutboxEntity create = op(OutboxEntity.CREATE_LABEL, "local:l", "Wrok", null);
+        enqueue(create);
+        assertFalse(enqueue(op(OutboxEntity.RENAME_LABEL, "local:l", "Work", null)).insert);
+        assertEquals("Work", create.arg);
+        assertEquals(1, pending.size());
+    }
+
+    @Test
+    public void deletingALabelNotCreatedYetDropsItsChanges() {
+        enqueue(op(OutboxEntity.CREATE_LABEL, "local:l", "Work", null));
+        enqueue(op(OutboxEntity.ADD_LABEL, "1", "local:l", null));
+        enqueue(op(OutboxEntity.ADD_LABEL, "1", "home", null));
+        OutboxPlan.Merge m = enqueue(op(OutboxEntity.DELETE_LABEL, "local:l", null, null));
+        assertFalse(m.insert);
+        assertEquals(1, pending.size());
+        assertEquals("home", pending.get(0).arg);
+    }
+
+    // ----- overlay -----
+
+    @Test
+    public void waitingChangesShowInAnOlderSyncBatch() {
+        labelIds.put("drafts", "drafts");
+        enqueue(op(OutboxEntity.EDIT, "1", null, compose(null, "edited", "new body", "Drafts")));
+        enqueue(op(OutboxEntity.ADD_LABEL, "2", "work", null));
+        enqueue(op(OutboxEntity.REMOVE_LABEL, "2", "inbox", null));
+        enqueue(op(OutboxEntity.DELETE, "3", null, null));
+
+        SyncBatch b = mail("1", "inbox");
+        SyncBatch two = mail("2", "inbox");
+        SyncBatch three = mail("3", "inbox");
+        b.mails.addAll(two.mails);
+        b.mails.addAll(three.mails);
+        b.bodies.addAll(two.bodies);
+        b.bodies.addAll(three.bodies);
+        b.joins.addAll(two.joins);
+        b.joins.addAll(three.joins);
+
+        OutboxPlan.overlay(pending, b, n -> labelIds.get(n.toLowerCase()));
+
+        assertEquals(2, b.mails.size());
+        assertEquals("edited", b.mails.get(0).subject);
+        assertEquals("new body", b.bodies.get(0).content);
+        assertEquals(new TreeSet<>(Arrays.asList("1>drafts", "2>work")), joins(b));
+        assertEquals(Collections.singletonList("3"), b.deletedMailIds);
+    }
+
+    @Test
+    public void addingSpamFlagsTheMailLikeTheServer() {
+        labelIds.put("spam", "s1");
+        enqueue(op(OutboxEntity.ADD_LABEL, "1", "s1", null));
+        enqueue(op(OutboxEntity.ADD_LABEL, "2", "work", null));
+        SyncBatch b = mail("1", "inbox");
+        b.mails.addAll(mail("2").mails);
+
+        OutboxPlan.overlay(pending, b, n -> labelIds.get(n.toLowerCase()));
+
+        assertTrue(b.mails.get(0).isSpam);
+        assertFalse(b.mails.get(1).isSpam);
+    }
+
+    @Test
+    public void editWithAnUnknownLabelKeepsTheMailsLabels() {
+        enqueue(op(OutboxEntity.EDIT, "1", null, compose(null, null, null, "Nowhere")));
+        SyncBatch b = mail("1", "inbox");
+        OutboxPlan.overlay(pending, b, n -> null);
+        assertEquals(Collections.singleton("1>inbox"), joins(b));
+    }
+
+    @Test
+    public void aFullCatalogKeepsLabelsNotCreatedYet() {
+        enqueue(op(OutboxEntity.CREATE_LABEL, "local:l", "Work", null));
+        enqueue(op(OutboxEntity.RENAME_LABEL, "home", "House", null));
+        enqueue(op(OutboxEntity.DELETE_LABEL, "old", null, null));
+        SyncBatch b = new SyncBatch();
+        b.replaceLabels = true;
+        b.labels.add(new LabelEntity("home", "Home"));
+        b.labels.add(new LabelEntity("old", "Old"));
+
+        OutboxPlan.overlay(pending, b, n -> null);
+
+        Map<String, String> names = new HashMap<>();
+        for (LabelEntity e : b.labels) names.put(e.id, e.name);
+        Map<String, String> expected = new HashMap<>();
+        expected.put("home", "House");
+        expected.put("local:l", "Work");
+        assertEquals(expected, names);
+    }
+
+    @Test
+    public void placeholderIsListedUnderSentUnlessADraft() {
+        labelIds.put("sent", "sent");
+        labelIds.put("drafts", "drafts");
+        labelIds.put("work", "w1");
+        OutboxEntity send = op(OutboxEntity.SEND, "local:1", null, compose("a@x", "hi", "body", "Work"));
+        send.createdAt = 1234;
+        SyncBatch b = OutboxPlan.placeholder(send, n -> labelIds.get(n.toLowerCase()));
+        assertEquals("local:1", b.mails.get(0).id);
+        assertEquals(1234, b.mails.get(0).dateSentMillis);
+        assertEquals("body", b.bodies.get(0).content);
+        assertEquals(new TreeSet<>(Arrays.asList("local:1>sent", "local:1>w1")), joins(b));
+
+        OutboxEntity draft = op(OutboxEntity.SEND, "local:2", null, compose(null, "d", "", "Drafts"));
+        assertEquals(Collections.singleton("local:2>drafts"),
+                joins(OutboxPlan.placeholder(draft, n -> labelIds.get(n.toLowerCase()))));
+    }
+
+    // ----- outcome, backoff -----
+
+    @Test
+    public void outcomes() {
+        assertEquals(OutboxPlan.Outcome.DONE, OutboxPlan.outcome(OutboxEntity.SEND, 201));
+        assertEquals(OutboxPlan.Outcome.DONE, OutboxPlan.outcome(OutboxEntity.DELETE, 204));
+        assertEquals(OutboxPlan.Outcome.DONE, OutboxPlan.outcome(OutboxEntity.DELETE, 404));
+        assertEquals(OutboxPlan.Outcome.DONE, OutboxPlan.outcome(OutboxEntity.REMOVE_LABEL, 404));
+        assertEquals(OutboxPlan.Outcome.REFUSED, OutboxPlan.outcome(OutboxEntity.EDIT, 404));
+        assertEquals(OutboxPlan.Outcome.REFUSED, OutboxPlan.outcome(OutboxEntity.CREATE_LABEL, 409));
+        assertEquals(OutboxPlan.Outcome.REFUSED, OutboxPlan.outcome(OutboxEntity.EDIT, 400));
+        assertEquals(OutboxPlan.Outcome.RETRY, OutboxPlan.outcome(OutboxEntity.SEND, 401));
+        assertEquals(OutboxPlan.Outcome.RETRY, OutboxPlan.outcome(OutboxEntity.SEND, 429));
+        assertEquals(OutboxPlan.Outcome.RETRY, OutboxPlan.outcome(OutboxEntity.SEND, 503));
+    }
+
+    @Test
+    public void onlySendsAndEditsNeedASyncAfterwards() {
+        assertTrue(OutboxPlan.needsSync(OutboxEntity.SEND));
+        assertTrue(OutboxPlan.needsSync(OutboxEntity.EDIT));
+        assertFalse(OutboxPlan.needsSync(OutboxEntity.ADD_LABEL));
+        assertFalse(OutboxPlan.needsSync(OutboxEntity.REMOVE_LABEL));
+        assertFalse(OutboxPlan.needsSync(OutboxEntity.DELETE));
+        assertFalse(OutboxPlan.needsSync(OutboxEntity.CREATE_LABEL));
+    }
+
+    @Test
+    public void backoffGrowsWithJitterUpToTheCap() {
+        Random random = new Random(42);
+        long previousCap = 0;
+        for (int attempts = 1; attempts <= 12; attempts++) {
+            long cap = Math.min(OutboxPlan.MAX_BACKOFF_MS, OutboxPlan.BASE_BACKOFF_MS << (attempts - 1));
+            assertTrue(cap >= previousCap);
+            for (int i = 0; i < 100; i++) {
+                long d = OutboxPlan.backoff(attempts, random);
+                assertTrue(d >= cap / 2 && d <= cap);
+            }
+            previousCap = cap;
+        }
+        assertTrue(OutboxPlan.backoff(1000, random) <= OutboxPlan.MAX_BACKOFF_MS);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.gmail_android.repository;
+
+import com.example.gmail_android.entities.MailEntity;
+import com.example.gmail_android.entities.MailSearchHit;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SearchRankerTest {
+    private static final long NOW = 1_760_000_000_000L;
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Test
+    public void subjectHitOutranksBodyHit() {
+        MailSearchHit inSubject = hit("s", NOW, new int[] { 1, 0, 0, 0 });
+        MailSearchHit inBody = hit("b", NOW, new int[] { 0, 0, 0, 1 });
+        assertEquals(Arrays.asList("s", "b"), ids(SearchRanker.rank(Arrays.asList(inBody, inSubject), NOW)));
+    }
+
+    @Test
+    public void newerWinsAtEqualRelevance() {
+        MailSearchHit old = hit("old", NOW - 90 * DAY, new int[] { 1, 0, 0, 0 });
+        MailSearchHit fresh = hit("new", NOW - DAY, new int[] { 1, 0, 0, 0 });
+        assertEquals(Arrays.asList("new", "old"), ids(SearchRanker.rank(Arrays.asList(old, fresh), NOW)));
+    }
+
+    @Test
+    public void strongRelevanceBeatsRecency() {
+        MailSearchHit old = hit("old", NOW - 365 * DAY, new int[] { 4, 0, 0, 6 });
+        MailSearchHit fresh = hit("new", NOW, new int[] { 0, 0, 0, 1 });
+        assertEquals(Arrays.asList("old", "new"), ids(SearchRanker.rank(Arrays.asList(fresh, old), NOW)));
+    }
+
+    @Test
+    public void recencyBoostHalvesEveryHalfLife() {
+        double now = SearchRanker.recency(NOW, NOW);
+        double halfLife = SearchRanker.recency(NOW - (long) (SearchRanker.HALF_LIFE_DAYS * DAY), NOW);
+        assertEquals(1 + SearchRanker.RECENCY_BOOST, now, 1e-9);
+        assertEquals(1 + SearchRanker.RECENCY_BOOST / 2, halfLife, 1e-9);
+    }
+
+    @Test
+    public void missingMatchInfoScoresZero() {
+        assertEquals(0, SearchRanker.bm25(null), 0);
+        assertEquals(0, SearchRanker.bm25(new byte[4]), 0);
+    }
+
+    // one phrase over the 4 MailFts columns; tf per column, in a 1000-doc index.
+    private static MailSearchHit hit(String id, long date, int[] tf) {
+        int cols = 4;
+        ByteBuffer b = ByteBuffer.allocate(4 * (3 + 2 * cols + 3 * cols)).order(ByteOrder.nativeOrder());
+        b.putInt(1).putInt(cols).putInt(1000);
+        for (int c = 0; c < cols; c++) b.putInt(c == 3 ? 200 : 6);   // avg tokens per column
+        for (int c = 0; c < cols; c++) b.putInt(c == 3 ? 200 : 6);   // tokens in this row
+        for (int c = 0; c < cols; c++) b.putInt(tf[c]).putInt(tf[c] * 20).putInt(20);
+
+        MailSearchHit h = new MailSearchHit();
+        h.mail = new MailEntity(id);
+        h.mail.dateSentMillis = date;
+        h.matchInfo = b.array();
+        return h;
+    }
+
+    private static List<String> ids(List<MailSearchHit> ranked) {
+        String[] out = new String[ranked.size()];
+        for (int i = 0; i < out.length; i++) out[i] = ranked.get(i).mail.id;
+        return Arrays.asList(out);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.gmail_android.repository;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SingleFlightTest {
+    // runs tasks only when drained, like a busy single-thread executor.
+    private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+    private final Executor io = queue::add;
+    private final SingleFlight flights = new SingleFlight();
+    private final List<String> runs = new ArrayList<>();
+
+    @Test
+    public void queuedRequestsJoinTheQueuedRun() {
+        assertTrue(flights.run("inbox", io, f -> runs.add("inbox")));
+        assertFalse(flights.run("inbox", io, f -> runs.add("inbox")));
+        assertFalse(flights.run("inbox", io, f -> runs.add("inbox")));
+        drain();
+        assertEquals(Arrays.asList("inbox"), runs);
+        assertEquals(1, flights.started());
+        assertEquals(2, flights.coalesced());
+        assertFalse(flights.isInFlight("inbox"));
+    }
+
+    @Test
+    public void keysAreIndependent() {
+        flights.run("inbox", io, f -> runs.add("inbox"));
+        flights.run("label:work", io, f -> runs.add("label:work"));
+        flights.run("label:work", io, f -> runs.add("label:work"));
+        drain();
+        assertEquals(Arrays.asList("inbox", "label:work"), runs);
+        assertEquals(1, flights.coalesced());
+    }
+
+    @Test
+    public void requestsWhileRunningShareOneFollowUp() {
+        flights.run("inbox", io, f -> {
+            runs.add("inbox");
+            if (runs.size() == 1) {
+                // arrive while the first run is fetching
+                assertTrue(flights.run("inbox", io, g -> runs.add("late")));
+                assertFalse(flights.run("inbox", io, g -> runs.add("late")));
+            }
+        });
+        drain();
+        assertEquals(Arrays.asList("inbox", "inbox"), runs);
+        assertEquals(2, flights.started());
+        assertEquals(1, flights.coalesced());
+        assertFalse(flights.isInFlight("inbox"));
+    }
+
+    @Test
+    public void keyIsReleasedWhenWorkFails() {
+        flights.run("mail:1", io, f -> { throw new IllegalStateException("offline"); });
+        try {
+            drain();
+            fail();
+        } catch (IllegalStateException expected) {
+            assertFalse(flights.isInFlight("mail:1"));
+        }
+        assertTrue(flights.run("mail:1", io, f -> runs.add("mail:1")));
+        drain();
+        assertEquals(Arrays.asList("mail:1"), runs);
+    }
+
+    @Test
+    public void cancelledQueuedRunNeverStarts() {
+        flights.run("label:a", io, f -> runs.add("a"));
+        flights.cancel("label:a");
+        assertFalse(flights.isInFlight("label:a"));
+        // asking again starts a new run instead of joining the cancelled one
+        assertTrue(flights.run("label:a", io, f -> runs.add("a again")));
+        drain();
+        assertEquals(Arrays.asList("a again"), runs);
+        assertEquals(1, flights.cancelled());
+    }
+
+    @Test
+    public void cancellingARunningFlightAbortsItsCall() {
+        List<String> aborted = new ArrayList<>();
+        flights.run("label:a", io, f -> {
+            f.onCancel(() -> aborted.add("call"));
+            flights.cancel("label:a"); // the user switched labels mid-download
+            assertTrue(f.isCancelled());
+            // a new request for the key while the cancelled run finishes
+            flights.run("label:a", io, g -> runs.add("fresh"));
+        });
+        drain();
+        assertEquals(Arrays.asList("call"), aborted);
+        assertEquals(Arrays.asList("fresh"), runs);
+        assertFalse(flights.isInFlight("label:a"));
+    }
+
+    @Test
+    public void inlineExecutorRunsEveryRequest() {
+        for (int i = 0; i < 3; i++) flights.run("inbox", Runnable::run, f -> runs.add("inbox"));
+        assertEquals(3, runs.size());
+        assertEquals(0, flights.coalesced());
+    }
+
+    private void drain() {
+        Runnable r;
+        while ((r = queue.poll()) != null) r.run();
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.gmail_android.repository;
+
+import android.content.Context;
+import androidx.room.RoomDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.example.gmail_android.dao.AppDatabase;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+// end-to-end sync on a plain JVM (Robolectric, SQLite in-process): the real MailRepository ->
+// MailApi -> Room path against LocalMailServer filled by SyntheticMailbox. Each operation starts
+// from an empty database:
+//   refreshInbox    catch-up from cursor "0": every mail arrives through /mails/changes
+//   refreshByLabel  one page of a popular label (the server pages by 50)
+//   refreshSearch   one page of matches
+// Reported per operation: time to first emission (first commit that writes `mails`, i.e. when
+// an open list would re-query), total time, write transactions and statements, and peak heap
+// growth. Heap growth includes the stand-in's response buffer (reported as responseKB);
+// the client itself streams the body.
+// Configured by system properties (see app/build.gradle.kts):
+//   syncBench.sizes=1000,10000,100000  syncBench.latencyMs=80  syncBench.bytesPerSecond=500000
+//   syncBench.out=<csv file to append results to>
+@RunWith(AndroidJUnit4.class)
+@Config(sdk = 34)
+public class SyncBenchmark {
+    private static final int LABELS = 24;
+    private static final long SEED = 42;
+
+    private final Context ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+    @Test
+    public void syncPaths() throws Exception {
+        long latencyMs = Long.getLong("syncBench.latencyMs", 0);
+        long bytesPerSecond = Long.getLong("syncBench.bytesPerSecond", 0);
+        for (String size : System.getProperty("syncBench.sizes", "1000").split(",")) {
+            int n = Integer.parseInt(size.trim());
+            LocalMailServer server = new LocalMailServer();
+            new SyntheticMailbox(n, LABELS, SEED).fill(server);
+            server.setNetwork(latencyMs, bytesPerSecond);
+            server.start();
+            try {
+                Run inbox = run("refreshInbox", n, server, repo -> {
+                    SyncStateStore.saveCursor(ctx, "0");
+                    repo.refreshInbox();
+                });
+                assertEquals(n, inbox.stored);
+                Run label = run("refreshByLabel", n, server,
+                        repo -> repo.refreshByLabel(SyntheticMailbox.labelId(1)));
+                assertTrue(label.stored > 0);
+                Run search = run("refreshSearch", n, server,
+                        repo -> repo.refreshSearch(SyntheticMailbox.SEARCH_TERM));
+                assertTrue(search.stored > 0);
+            } finally {
+                server.shutdown();
+                SyncStateStore.clear(ctx);
+            }
+        }
+    }
+
+    private Run run(String op, int n, LocalMailServer server, Consumer<MailRepository> action)
+            throws IOException {
+        Meter meter = new Meter();
+        AppDatabase db = AppDatabase.inMemoryBuilder(ctx).setQueryCallback(meter, Runnable::run).build();
+        try {
+            db.getOpenHelper().getWritableDatabase(); // schema is created before timing starts
+            // io inline: the refresh is complete when the call returns
+            MailRepository repo = new MailRepository(ctx, server.api(), db, Runnable::run);
+
+            HeapSampler heap = new HeapSampler();
+            heap.start();
+            meter.start();
+            action.accept(repo);
+            Run r = new Run();
+            r.totalMs = meter.elapsedMs();
+            r.firstEmissionMs = meter.firstEmissionMs;
+            r.transactions = meter.transactions;
+            r.writes = meter.writes;
+            r.peakHeapGrowthKb = heap.finish() / 1024;
+            r.stored = db.mailDao().countMails();
+            report(op, n, server.lastResponseBytes(), r);
+            return r;
+        } finally {
+            db.close();
+        }
+    }
+
+    private static void report(String op, int n, long responseBytes, Run r) throws IOException {
+        System.out.println(String.format(Locale.ROOT,
+                "SyncBench op=%s mails=%d stored=%d responseKB=%d firstEmissionMs=%.1f totalMs=%.1f"
+                        + " transactions=%d writeStatements=%d peakHeapGrowthKB=%d",
+                op, n, r.stored, responseBytes / 1024, r.firstEmissionMs, r.totalMs,
+                r.transactions, r.writes, r.peakHeapGrowthKb));
+        String out = System.getProperty("syncBench.out");
+        if (out == null) return;
+        File file = new File(out);
+        File dir = file.getParentFile();
+        if (dir != null) dir.mkdirs();
+        try (Writer w = new FileWriter(file, true)) {
+            w.write(String.format(Locale.ROOT, "%s,%d,%d,%d,%.1f,%.1f,%d,%d,%d%n",
+                    op, n, r.stored, responseBytes, r.firstEmissionMs, r.totalMs,
+                    r.transactions, r.writes, r.peakHeapGrowthKb));
+        }
+    }
+
+    private static final class Run {
+        int stored;
+        double firstEmissionMs = -1;
+        double totalMs;
+        int transactions;
+        int writes;
+        long peakHeapGrowthKb;
+    }
+
+    // counts what the repository sends to SQLite; called inline on the writing thread.
+    private static final class Meter implements RoomDatabase.QueryCallback {
+        private volatile long t0 = -1;
+        private boolean mailsWritten;
+        int transactions;
+        int writes;
+        double firstEmissionMs = -1;
+
+        void start() {
+            t0 = System.nanoTime();
+        }
+
+        double elapsedMs() {
+            return (System.nanoTime() - t0) / 1e6;
+        }
+
+        @Override
+        public void onQuery(String sql, List<Object> args) {
+            if (t0 < 0) return;
+            if (sql.startsWith("BEGIN")) {
+                transactions++;
+            } else if (sql.startsWith("INSERT") || sql.startsWith("UPDATE")
+                    || sql.startsWith("DELETE") || sql.startsWith("REPLACE")) {
+                writes++;
+                if (sql.contains("`mails`") || sql.contains(" mails ")) mailsWritten = true;
+            } else if (sql.startsWith("END TRANSACTION") && mailsWritten && firstEmissionMs < 0) {
+                firstEmissionMs = elapsedMs();
+            }
+        }
+    }
+
+    // samples used heap every few milliseconds; returns the peak growth over the starting value.
+    private static final class HeapSampler extends Thread {
+        private final Runtime rt = Runtime.getRuntime();
+        private volatile boolean running = true;
+        private final long base;
+        private long peak;
+
+        HeapSampler() {
+            setDaemon(true);
+            System.gc();
+            base = used();
+            peak = base;
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                peak = Math.max(peak, used());
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        long finish() {
+            running = false;
+            try {
+                join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Math.max(0, Math.max(peak, used()) - base);
+        }
+
+        private long used() {
+            return rt.totalMemory() - rt.freeMemory();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.gmail_android.viewmodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SearchDebouncerTest {
+    private final FakeTimer timer = new FakeTimer();
+    private final List<String> events = new ArrayList<>();
+    private final SearchDebouncer search = new SearchDebouncer(timer, new SearchDebouncer.Target() {
+        @Override public void showLocal(String q) { events.add("local " + q); }
+        @Override public void searchServer(String q) { events.add("server " + q); }
+        @Override public void cancelServer() { events.add("cancel"); }
+    });
+
+    @Test
+    public void typingAWordIssuesOneServerCall() {
+        type("invoice", 80); // 80 ms between keystrokes: faster than either delay
+        timer.advance(SearchDebouncer.REMOTE_DELAY_MS);
+        assertEquals(Arrays.asList("local invoice", "server invoice"), withoutCancels());
+        assertEquals(7, search.keystrokes());
+        assertEquals(1, search.serverCalls());
+    }
+
+    @Test
+    public void shortPauseShowsLocalResultsOnly() {
+        type("inv", 50);
+        timer.advance(SearchDebouncer.LOCAL_DELAY_MS);
+        assertEquals(Arrays.asList("local inv"), withoutCancels());
+        type("inv oice", 50); // the user continues before the server delay
+        timer.advance(SearchDebouncer.REMOTE_DELAY_MS);
+        assertEquals(Arrays.asList("local inv", "local inv oice", "server inv oice"), withoutCancels());
+    }
+
+    @Test
+    public void eachChangeCancelsTheRunningServerSearch() {
+        search.onQueryChanged("tax");
+        timer.advance(SearchDebouncer.REMOTE_DELAY_MS);
+        events.clear();
+        search.onQueryChanged("taxi");
+        assertEquals("cancel", events.get(0));
+        search.onQueryChanged("taxi "); // same query once trimmed: nothing to do
+        assertEquals(1, events.size());
+    }
+
+    @Test
+    public void submitSearchesAtOnce() {
+        search.onQueryChanged("re");
+        search.submit("report");
+        assertEquals(Arrays.asList("local report", "server report"), withoutCancels());
+        timer.advance(SearchDebouncer.REMOTE_DELAY_MS);
+        assertEquals(2, withoutCancels().size()); // nothing left scheduled
+    }
+
+    @Test
+    public void clearingShowsTheInboxAndResetsCounters() {
+        type("abc", 10);
+        search.onQueryChanged("");
+        timer.advance(SearchDebouncer.REMOTE_DELAY_MS);
+        assertEquals(Arrays.asList("local "), withoutCancels());
+        assertEquals(0, search.keystrokes());
+        assertEquals(0, search.serverCalls());
+    }
+
+    @Test
+    public void latencyIsMeasuredFromTheLastChange() {
+        type("abc", 40);
+        timer.advance(SearchDebouncer.LOCAL_DELAY_MS + 5);
+        assertEquals(-1, search.resultsShown("ab")); // superseded query
+        assertEquals(SearchDebouncer.LOCAL_DELAY_MS + 5, search.resultsShown("abc"));
+        assertEquals(-1, search.resultsShown("abc")); // counted once
+    }
+
+    private void type(String text, long gapMs) {
+        for (int i = 1; i <= text.length(); i++) {
+            search.onQueryChanged(text.substring(0, i));
+            if (i < text.length()) timer.advance(gapMs);
+        }
+    }
+
+    private List<String> withoutCancels() {
+        List<String> out = new ArrayList<>(events);
+        out.removeIf("cancel"::equals);
+        return out;
+    }
+
+    // a manual clock: tasks run when advance() passes their time.
+    private static final class FakeTimer implements SearchDebouncer.Timer {
+        private final List<long[]> times = new ArrayList<>();
+        private final List<Runnable> tasks = new ArrayList<>();
+        private long now;
+
+        @Override
+        public Runnable schedule(Runnable task, long delayMs) {
+            long[] at = { now + delayMs };
+            times.add(at);
+            tasks.add(task);
+            return () -> {
+                int i = times.indexOf(at);
+                if (i >= 0) {
+                    times.remove(i);
+                    tasks.remove(i);
+                }
+            };
+        }
+
+        @Override
+        public long now() {
+            return now;
+        }
+
+        void advance(long ms) {
+            long end = now + ms;
+            while (true) {
+                int next = -1;
+                for (int i = 0; i < times.size(); i++) {
+                    if (times.get(i)[0] <= end && (next < 0 || times.get(i)[0] < times.get(next)[0])) next = i;
+                }
+                if (next < 0) break;
+                now = times.remove(next)[0];
+                tasks.remove(next).run();
+            }
+            now = end;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+// JMH micro-benchmarks for the :core hot paths (mapping, date parsing, list diffing, Gson, label filters).
+//   ./gradlew :benchmarks:jmh
+// Reports throughput (ops/s) and, through the gc profiler, allocation rate and bytes per op;
+// results are written to build/results/jmh/results.json for comparison between runs.
+// Narrow a run with -PjmhIncludes=DiffBenchmark.
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+dependencies {
+    jmh(project(":core"))
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    benchmarkMode.set(listOf("thrpt"))
+    timeUnit.set("s")
+    warmupIterations.set(3)
+    warmup.set("2s")
+    iterations.set(5)
+    timeOnIteration.set("2s")
+    fork.set(1)
+    profilers.set(listOf("gc"))
+    resultFormat.set("JSON")
+    (findProperty("jmhIncludes") as String?)?.let { includes.set(listOf(it)) }
+}
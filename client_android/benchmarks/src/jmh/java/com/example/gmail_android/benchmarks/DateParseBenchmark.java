@@ -0,0 +1,48 @@
+package com.example.gmail_android.benchmarks;
+
+import com.example.gmail_android.repository.IsoDates;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// IsoDates.parseMillis over the forms the server sends; one op is one parsed value.
+@State(Scope.Benchmark)
+public class DateParseBenchmark {
+    private static final int N = 1024;
+
+    private final String[] iso = new String[N];
+    private final String[] offsets = new String[N];
+    private final String[] epoch = new String[N];
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < N; i++) {
+            iso[i] = Payloads.isoDate(i);
+            offsets[i] = iso[i].substring(0, 19) + (i % 2 == 0 ? "+02:00" : "-0530");
+            epoch[i] = Long.toString(1_700_000_000L + i * 977L);
+        }
+    }
+
+    @Benchmark @OperationsPerInvocation(N)
+    public long isoUtc() {
+        return parseAll(iso);
+    }
+
+    @Benchmark @OperationsPerInvocation(N)
+    public long isoWithOffset() {
+        return parseAll(offsets);
+    }
+
+    @Benchmark @OperationsPerInvocation(N)
+    public long epochSeconds() {
+        return parseAll(epoch);
+    }
+
+    private static long parseAll(String[] values) {
+        long sum = 0;
+        for (String v : values) sum += IsoDates.parseMillis(v);
+        return sum;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.gmail_android.benchmarks;
+
+import com.example.gmail_android.entities.LabelEntity;
+import com.example.gmail_android.entities.MailWithLabels;
+import java.util.ArrayList;
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// the adapters' DiffUtil callbacks over a full list re-emission: every row of the new list is
+// compared with the old one at the same position (what DiffUtil does for an unchanged order),
+// with fresh objects as Room returns them. One op is one whole list.
+@State(Scope.Benchmark)
+public class DiffBenchmark {
+    @Param({"10000"})
+    public int size;
+
+    // every n-th subject edited; 0 = nothing changed
+    @Param({"0", "10"})
+    public int editEvery;
+
+    private List<MailWithLabels> before;
+    private List<MailWithLabels> after;
+    private List<LabelEntity> labelsBefore;
+    private List<LabelEntity> labelsAfter;
+
+    @Setup
+    public void setUp() {
+        before = Payloads.rows(size);
+        after = Payloads.edited(before, editEvery);
+        labelsBefore = new ArrayList<>();
+        labelsAfter = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            labelsBefore.add(new LabelEntity("label" + i, "Label " + i));
+            String name = editEvery > 0 && i % editEvery == 0 ? "Renamed " + i : "Label " + i;
+            labelsAfter.add(new LabelEntity("label" + i, name));
+        }
+    }
+
+    @Benchmark
+    public int mailRows() {
+        int changed = 0;
+        for (int i = 0; i < size; i++) {
+            MailWithLabels a = before.get(i), b = after.get(i);
+            if (!MailWithLabels.sameItem(a, b) || !MailWithLabels.sameContents(a, b)) changed++;
+        }
+        return changed;
+    }
+
+    @Benchmark
+    public int labels() {
+        int changed = 0;
+        for (int i = 0; i < labelsBefore.size(); i++) {
+            LabelEntity a = labelsBefore.get(i), b = labelsAfter.get(i);
+            if (!LabelEntity.sameItem(a, b) || !LabelEntity.sameContents(a, b)) changed++;
+        }
+        return changed;
+    }
+}
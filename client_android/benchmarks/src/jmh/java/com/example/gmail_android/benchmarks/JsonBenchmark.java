@@ -0,0 +1,52 @@
+package com.example.gmail_android.benchmarks;
+
+import com.example.gmail_android.interfaces.MailApi;
+import com.example.gmail_android.repository.MailStream;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Gson deserialization of a MailDto list: the whole-list read the Retrofit converter does,
+// against MailStream, which hands the mails on in FLUSH_SIZE batches. One op is one response.
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+    private static final MediaType JSON = MediaType.get("application/json");
+    private static final Gson GSON = new Gson();
+    private static final Type MAIL_LIST = new TypeToken<List<MailApi.MailDto>>() { }.getType();
+
+    @Param({"50", "1000"})
+    public int mails;
+
+    private byte[] body;
+
+    @Setup
+    public void setUp() {
+        body = Payloads.mailsJson(mails).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<MailApi.MailDto> wholeList() throws IOException {
+        try (Reader in = new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8)) {
+            return GSON.fromJson(in, MAIL_LIST);
+        }
+    }
+
+    @Benchmark
+    public MailStream.Result streamed(Blackhole bh) throws IOException {
+        return new MailStream(bh::consume).readList(ResponseBody.create(body, JSON));
+    }
+}
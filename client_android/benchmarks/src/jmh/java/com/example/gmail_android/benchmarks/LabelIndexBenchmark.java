@@ -0,0 +1,60 @@
+package com.example.gmail_android.benchmarks;
+
+import com.example.gmail_android.repository.LabelExpr;
+import com.example.gmail_android.repository.LabelIndex;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// boolean label filters over the in-memory bitmap index: the first page of a three-label
+// filter, its total, and the per-label counts within it. `size` mails carry 1-4 of 50 labels,
+// a few labels on most mails (inbox, work) and a long tail on few.
+@State(Scope.Benchmark)
+public class LabelIndexBenchmark {
+    @Param({"100000"})
+    public int size;
+
+    private LabelIndex index;
+    private LabelExpr filter;
+
+    @Setup
+    public void setUp() {
+        Random r = new Random(7);
+        index = new LabelIndex();
+        for (int i = 0; i < size; i++) {
+            List<String> labels = new ArrayList<>(4);
+            if (r.nextInt(10) < 8) labels.add("inbox");
+            if (r.nextInt(10) < 3) labels.add("work");
+            if (r.nextInt(20) == 0) labels.add("spam");
+            labels.add("label" + (int) Math.abs(r.nextGaussian() * 12) % 50);
+            index.put("m" + i, 1_700_000_000_000L + i * 60_000L, labels);
+        }
+        filter = LabelExpr.parse("work AND (inbox OR label3) NOT spam");
+    }
+
+    @Benchmark
+    public List<LabelIndex.Key> firstPage() {
+        return index.page(filter, Long.MAX_VALUE, "", 50);
+    }
+
+    @Benchmark
+    public int count() {
+        return index.count(filter);
+    }
+
+    @Benchmark
+    public Map<String, Integer> countsWithinFilter() {
+        return index.countsWithin(filter);
+    }
+
+    @Benchmark
+    public LabelExpr parse() {
+        return LabelExpr.parse("work AND (inbox OR label3) NOT spam");
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.gmail_android.benchmarks;
+
+import com.example.gmail_android.dao.SyncBatch;
+import com.example.gmail_android.entities.LabelEntity;
+import com.example.gmail_android.interfaces.MailApi;
+import com.example.gmail_android.repository.MailMapper;
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+// DTO -> entity mapping of one sync response, and the label catalog / id normalization.
+// One op is one whole payload; the mapper is reused, as MailRepository keeps one.
+@State(Scope.Benchmark)
+public class MappingBenchmark {
+    @Param({"50", "1000"})
+    public int mails;
+
+    private final MailMapper mapper = new MailMapper();
+    private List<MailApi.MailDto> payload;
+    private List<MailApi.LabelDto> catalog;
+
+    @Setup
+    public void setUp() {
+        payload = Payloads.mailDtos(mails);
+        catalog = Payloads.labelDtos(64);
+    }
+
+    @Benchmark
+    public SyncBatch toBatch() {
+        return mapper.toBatch(payload, null);
+    }
+
+    @Benchmark
+    public List<LabelEntity> labelCatalog() {
+        return mapper.labels(catalog);
+    }
+
+    @Benchmark
+    public void normalizeLabelIds(Blackhole bh) {
+        for (MailApi.MailDto d : payload) {
+            for (MailApi.LabelDto l : d.labels) bh.consume(LabelEntity.normId(l.id));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.gmail_android.benchmarks;
+
+import com.example.gmail_android.entities.LabelEntity;
+import com.example.gmail_android.entities.MailEntity;
+import com.example.gmail_android.entities.MailWithLabels;
+import com.example.gmail_android.interfaces.MailApi;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+// synthetic server data shaped like a real mailbox: 200 senders, 8 labels, 2 labels per mail,
+// ISO dates with millis. Deterministic, so runs are comparable.
+final class Payloads {
+    private Payloads() { }
+
+    static final int SENDERS = 200;
+    static final int LABELS = 8;
+
+    private static final Gson GSON = new Gson();
+
+    // a GET /mails response body with n mails.
+    static String mailsJson(int n) {
+        StringBuilder sb = new StringBuilder(n * 320).append('[');
+        for (int i = 0; i < n; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"id\":\"").append(mailId(i))
+                    .append("\",\"from\":\"user").append(i % SENDERS).append("@bloomly.com\"")
+                    .append(",\"to\":\"me@bloomly.com\"")
+                    .append(",\"subject\":\"Subject ").append(i).append('"')
+                    .append(",\"content\":\"Hello,\\n\\nthis is mail number ").append(i)
+                    .append(" with a short body.\"")
+                    .append(",\"dateSent\":\"").append(isoDate(i)).append('"')
+                    .append(",\"labels\":[");
+            for (int l = 0; l < 2; l++) {
+                int label = (i + l) % LABELS;
+                if (l > 0) sb.append(',');
+                sb.append("{\"id\":\"").append(l == 0 ? "Label" : " label").append(label)
+                        .append("\",\"name\":\"Label ").append(label).append("\"}");
+            }
+            sb.append("],\"spam\":false}");
+        }
+        return sb.append(']').toString();
+    }
+
+    // the same mails as Gson parses them (fresh strings per mail, as on the wire).
+    static List<MailApi.MailDto> mailDtos(int n) {
+        return GSON.fromJson(mailsJson(n), new TypeToken<List<MailApi.MailDto>>() { }.getType());
+    }
+
+    // the label catalog with ids in mixed case and padding, as the server may send them.
+    static List<MailApi.LabelDto> labelDtos(int n) {
+        List<MailApi.LabelDto> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            MailApi.LabelDto d = new MailApi.LabelDto();
+            d.id = (i % 2 == 0 ? " Label" : "LABEL") + i + (i % 3 == 0 ? " " : "");
+            d.name = " Label " + i;
+            out.add(d);
+        }
+        return out;
+    }
+
+    static String mailId(int i) {
+        return "65a1b2c3d4e5f6" + String.format(Locale.ROOT, "%010d", i);
+    }
+
+    static String isoDate(int i) {
+        return String.format(Locale.ROOT, "2024-%02d-%02dT%02d:%02d:%02d.%03dZ",
+                i % 12 + 1, i % 28 + 1, i % 24, i % 60, (i * 7) % 60, i % 1000);
+    }
+
+    // inbox list items as the adapter receives them (labels shared, as MailLists builds them).
+    static List<MailWithLabels> rows(int n) {
+        LabelEntity[] labels = new LabelEntity[LABELS];
+        for (int l = 0; l < LABELS; l++) labels[l] = new LabelEntity("label" + l, "Label " + l);
+        List<MailWithLabels> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            MailEntity m = new MailEntity(mailId(i));
+            m.fromEmail = "user" + (i % SENDERS) + "@bloomly.com";
+            m.toEmail = "me@bloomly.com";
+            m.subject = "Subject " + i;
+            m.dateSentMillis = 1_700_000_000_000L - i * 60_000L;
+            MailWithLabels r = new MailWithLabels();
+            r.mail = m;
+            r.labels = Arrays.asList(labels[i % LABELS], labels[(i + 1) % LABELS]);
+            out.add(r);
+        }
+        return out;
+    }
+
+    // a copy of rows with fresh objects and every `every`-th subject changed (0: none).
+    static List<MailWithLabels> edited(List<MailWithLabels> rows, int every) {
+        List<MailWithLabels> out = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            MailEntity src = rows.get(i).mail;
+            MailEntity m = new MailEntity(new String(src.id));
+            m.fromEmail = new String(src.fromEmail);
+            m.toEmail = src.toEmail;
+            m.subject = every > 0 && i % every == 0 ? src.subject + " (edited)" : new String(src.subject);
+            m.dateSentMillis = src.dateSentMillis;
+            MailWithLabels r = new MailWithLabels();
+            r.mail = m;
+            r.labels = rows.get(i).labels;
+            out.add(r);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,27 @@
+// plain-JVM part of the client: DTOs, Room entities and the sync mapping/parsing logic.
+// No Android classes, so its tests and the :benchmarks module run on a desktop JVM.
+plugins {
+    `java-library`
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+dependencies {
+    // entity annotations only (room-runtime stays in :app)
+    api("androidx.room:room-common:2.7.2")
+    api("androidx.annotation:annotation:1.9.1")
+
+    // Retrofit + Gson + OkHttp (MailApi, streaming reads)
+    api("com.squareup.retrofit2:retrofit:2.11.0")
+    api("com.google.code.gson:gson:2.10.1")
+    api("com.squareup.okhttp3:okhttp:4.12.0")
+
+    testImplementation(libs.junit)
+}
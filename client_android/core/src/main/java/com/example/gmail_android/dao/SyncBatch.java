@@ -0,0 +1,36 @@
+package com.example.gmail_android.dao;
+
+import com.example.gmail_android.entities.LabelEntity;
+import com.example.gmail_android.entities.MailBodyEntity;
+import com.example.gmail_android.entities.MailEntity;
+import com.example.gmail_android.entities.MailLabelCrossRef;
+import java.util.ArrayList;
+import java.util.List;
+
+// one parsed sync result, written to Room by SyncDao.apply in a single transaction.
+public class SyncBatch {
+    // `mails` is the whole mailbox: every other local mail is deleted (full refresh).
+    public boolean replaceAll;
+    // `labels` is the whole label catalog: every other local label is deleted.
+    public boolean replaceLabels;
+    // set for server search results: `mails` are this query's hits (a SearchResultEntity key).
+    // Mails not stored yet are kept as search-only; stored ones are not changed to it.
+    public String searchQuery;
+    // when the search ran (System.currentTimeMillis()), for evicting old results.
+    public long searchedAt;
+    // mails removed on the server (tombstones).
+    public final List<String> deletedMailIds = new ArrayList<>();
+    // mails to insert or update; their joins are replaced by the ones in `joins`.
+    public final List<MailEntity> mails = new ArrayList<>();
+    // labels referenced by the mails, or a full catalog.
+    public final List<LabelEntity> labels = new ArrayList<>();
+    // mail ↔ label joins for `mails`.
+    public final List<MailLabelCrossRef> joins = new ArrayList<>();
+    // bodies of `mails`, one per mail.
+    public final List<MailBodyEntity> bodies = new ArrayList<>();
+
+    public boolean isEmpty() {
+        return !replaceAll && !replaceLabels && deletedMailIds.isEmpty() && mails.isEmpty()
+                && labels.isEmpty() && joins.isEmpty() && bodies.isEmpty();
+    }
+}
@@ -27,5 +27,18 @@ public class LabelEntity {
         this.id = id;
         this.name = name;
     }
-}
 
+    // label ids are stored trimmed and lower-cased, so lookups compare them as-is.
+    public static String normId(String s) {
+        return s == null ? null : s.trim().toLowerCase(java.util.Locale.ROOT);
+    }
+
+    // list diffing (LabelAdapter's DiffUtil callback).
+    public static boolean sameItem(LabelEntity a, LabelEntity b) {
+        return a.id.equals(b.id);
+    }
+
+    public static boolean sameContents(LabelEntity a, LabelEntity b) {
+        return a.name.equals(b.name);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.gmail_android.entities;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.PrimaryKey;
+
+// full body of a mail, kept out of `mails` so list queries never read it.
+// Loaded only for the details/compose screens (MailDetails).
+@Entity(
+        tableName = "mail_bodies",
+        // delete the body with its mail.
+        foreignKeys = @ForeignKey(entity = MailEntity.class, parentColumns = "id",
+                childColumns = "id", onDelete = ForeignKey.CASCADE)
+)
+public class MailBodyEntity {
+
+    // id of the mail this body belongs to.
+    @PrimaryKey @NonNull
+    public String id = "";
+    // email body content.
+    public String content = "";
+
+    // no argument constructor required by Room.
+    public MailBodyEntity() { }
+
+    public MailBodyEntity(@NonNull String id, String content) {
+        this.id = id;
+        this.content = content;
+    }
+}
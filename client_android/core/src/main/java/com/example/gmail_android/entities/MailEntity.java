@@ -0,0 +1,190 @@
+package com.example.gmail_android.entities;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// represents an email message stored in the database.
+// (dateSentMillis, id) is the list order; the index lets paged queries seek instead of scan.
+// (isSpam, dateSentMillis, id) does the same for an is:spam search (SearchQuery).
+// threadId finds a conversation's mails when its `threads` row is recomputed.
+@Entity(tableName = "mails", indices = {@Index(value = {"dateSentMillis", "id"}),
+        @Index(value = {"isSpam", "dateSentMillis", "id"}), @Index("threadId")})
+public class MailEntity {
+
+    // primary key for the mail, cannot be null.
+    @PrimaryKey @NonNull
+    public String id = "";
+    // sender email address.
+    public String fromEmail = "";
+    // recipient email address.
+    public String toEmail   = "";
+    // email subject.
+    public String subject   = "";
+    // start of the body for list rows; the body itself is in mail_bodies.
+    public String snippet   = "";
+
+    // sent date/time, defaults to 0 if not set.
+    public long dateSentMillis;
+    // indicates if the mail is spam, defaults to false if not set.
+    public boolean isSpam;
+
+    // true while the mail is known only from server search results: list queries skip it, and
+    // it is evicted with its last search result (SearchResultEntity). A sync that delivers it
+    // again clears the flag.
+    @ColumnInfo(defaultValue = "0")
+    public boolean searchOnly;
+
+    // the conversation the mail belongs to (threadIdOf), set when the mail is mapped.
+    public String threadId;
+
+    // hash of the synced columns and label ids, used to skip unchanged rows on re-sync.
+    @ColumnInfo(defaultValue = "0")
+    public long contentHash;
+
+    // no argument constructor required by Room.
+    public MailEntity() { }
+
+    // constructor to initialize with a specific mail ID.
+    public MailEntity(@NonNull String id) {
+        this.id = id;
+    }
+
+    // max length of `snippet`.
+    public static final int SNIPPET_LENGTH = 120;
+
+    // the body with runs of whitespace collapsed, cut to SNIPPET_LENGTH characters.
+    public static String snippetOf(String content) {
+        if (content == null) return "";
+        StringBuilder sb = new StringBuilder(Math.min(content.length(), SNIPPET_LENGTH));
+        boolean space = false;
+        for (int i = 0; i < content.length() && sb.length() < SNIPPET_LENGTH; i++) {
+            char c = content.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+                continue;
+            }
+            if (space) {
+                if (sb.length() + 1 >= SNIPPET_LENGTH) break;
+                sb.append(' ');
+                space = false;
+            }
+            sb.append(c);
+        }
+        // don't end on half of a surrogate pair
+        int n = sb.length();
+        if (n > 0 && Character.isHighSurrogate(sb.charAt(n - 1))) sb.setLength(n - 1);
+        return sb.toString();
+    }
+
+    // conversation key: the subject without reply/forward prefixes, and the set of addresses
+    // on the mail (sender and recipients, in any order, so a reply lands in the same thread).
+    // Hashed to 16 hex digits. A mail without a subject is a thread of its own.
+    public static String threadIdOf(String id, String subject, String fromEmail, String toEmail) {
+        String topic = threadSubject(subject);
+        if (topic.isEmpty()) return "m:" + id;
+        List<String> people = new ArrayList<>();
+        addresses(fromEmail, people);
+        addresses(toEmail, people);
+        Collections.sort(people);
+        long h = mix(FNV_OFFSET, topic);
+        String last = null;
+        for (String p : people) {
+            if (!p.equals(last)) h = mix(h, p);
+            last = p;
+        }
+        String hex = Long.toHexString(h);
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    // "Re: Fwd: RE:  Lunch  plans" → "lunch plans": reply and forward prefixes (also the German
+    // and Nordic ones, and counted forms like "Re[2]:") removed, whitespace collapsed, lower case.
+    public static String threadSubject(String subject) {
+        if (subject == null) return "";
+        String s = subject.trim();
+        boolean stripped = true;
+        while (stripped) {
+            stripped = false;
+            int colon = s.indexOf(':');
+            if (colon > 0 && colon <= 8) {
+                String prefix = s.substring(0, colon).trim().toLowerCase(java.util.Locale.ROOT);
+                int bracket = prefix.indexOf('[');
+                if (bracket > 0 && prefix.endsWith("]")) prefix = prefix.substring(0, bracket).trim();
+                if (REPLY_PREFIXES.contains(prefix)) {
+                    s = s.substring(colon + 1).trim();
+                    stripped = true;
+                }
+            }
+        }
+        StringBuilder sb = new StringBuilder(s.length());
+        boolean space = false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+                continue;
+            }
+            if (space) sb.append(' ');
+            space = false;
+            sb.append(Character.toLowerCase(c));
+        }
+        return sb.toString();
+    }
+
+    private static final java.util.Set<String> REPLY_PREFIXES = new java.util.HashSet<>(
+            java.util.Arrays.asList("re", "fw", "fwd", "aw", "wg", "sv", "vs", "antw"));
+
+    // adds the lower-cased addresses of a "a@x, b@y" field.
+    private static void addresses(String field, List<String> out) {
+        if (field == null) return;
+        int start = 0;
+        for (int i = 0; i <= field.length(); i++) {
+            if (i == field.length() || field.charAt(i) == ',' || field.charAt(i) == ';') {
+                String a = field.substring(start, i).trim().toLowerCase(java.util.Locale.ROOT);
+                if (!a.isEmpty()) out.add(a);
+                start = i + 1;
+            }
+        }
+    }
+
+    // 64-bit FNV-1a over the synced columns, the body and the mail's label ids (order-insensitive).
+    public long computeContentHash(String content, List<String> labelIds) {
+        long h = FNV_OFFSET;
+        h = mix(h, fromEmail);
+        h = mix(h, toEmail);
+        h = mix(h, subject);
+        h = mix(h, content);
+        h = mix(h, dateSentMillis);
+        h = mix(h, isSpam ? 1 : 0);
+        List<String> sorted = new ArrayList<>(labelIds);
+        Collections.sort(sorted);
+        for (String lid : sorted) h = mix(h, lid);
+        return h;
+    }
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static long mix(long h, String s) {
+        if (s == null) return (h ^ 0xff) * FNV_PRIME;
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * FNV_PRIME;
+        }
+        return (h ^ 0xfe) * FNV_PRIME; // field separator
+    }
+
+    private static long mix(long h, long v) {
+        for (int i = 0; i < 8; i++) {
+            h = (h ^ (v & 0xff)) * FNV_PRIME;
+            v >>>= 8;
+        }
+        return h;
+    }
+}
+
+
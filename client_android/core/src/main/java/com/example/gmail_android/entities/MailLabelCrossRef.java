@@ -18,13 +18,17 @@ import androidx.room.Index;
                         childColumns="labelId", onDelete = ForeignKey.CASCADE)
         },
         // Add indexes to improve query performance.
-        indices = {@Index("mailId"), @Index("labelId")}
+        // (labelId, dateSentMillis, mailId) is a label list in list order: label queries read it
+        // as a covering range instead of scanning mails and sorting.
+        indices = {@Index("mailId"), @Index(value = {"labelId", "dateSentMillis", "mailId"})}
 )
 public class MailLabelCrossRef {
     // id of the mail.
     @NonNull public String mailId = "";
     // id of the label.
     @NonNull public String labelId = "";
+    // copy of the mail's dateSentMillis, set by SyncDao.apply; orders the label index.
+    public long dateSentMillis;
 
     // no argument constructor required by Room.
     public MailLabelCrossRef() { }
@@ -0,0 +1,43 @@
+package com.example.gmail_android.entities;
+
+import androidx.room.Embedded;
+import androidx.room.Ignore;
+import androidx.room.Junction;
+import androidx.room.Relation;
+import java.util.List;
+import java.util.Objects;
+
+// represents a mail entity with its labels(many to many).
+public class MailWithLabels {
+    @Embedded
+    public MailEntity mail;
+
+    // List of labels associated with the mail.
+    @Relation(
+            parentColumn = "id",
+            entity = LabelEntity.class,
+            entityColumn = "id",
+            associateBy = @Junction(
+                    value = MailLabelCrossRef.class,
+                    parentColumn = "mailId",
+                    entityColumn = "labelId"
+            )
+    )
+    public List<LabelEntity> labels;
+
+    // mails in the row's conversation when the list is threaded (the row shows the latest).
+    @Ignore
+    public int messageCount = 1;
+
+    // list diffing (MailAdapter's DiffUtil callback): same row, and same visible contents.
+    public static boolean sameItem(MailWithLabels a, MailWithLabels b) {
+        return a.mail.id.equals(b.mail.id);
+    }
+
+    public static boolean sameContents(MailWithLabels a, MailWithLabels b) {
+        return a.mail.dateSentMillis == b.mail.dateSentMillis
+                && a.messageCount == b.messageCount
+                && Objects.equals(a.mail.subject, b.mail.subject)
+                && Objects.equals(a.mail.fromEmail, b.mail.fromEmail);
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.gmail_android.interfaces;
+
+import com.google.gson.annotations.SerializedName;
+import java.util.List;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.http.*;
+
+public interface MailApi {
+
+    // Mail lists and changes are read as a stream (MailStream): a JSON array of MailDto,
+    // or a ChangesDto object. @Streaming hands the body over before it has fully arrived.
+
+    // Inbox + single mail. Lists are pages of 50, newest first; `before` is
+    // PageKey.toCursor() of the last mail already loaded (null → first page).
+    @Streaming
+    @GET("mails")
+    Call<ResponseBody> getInbox(@Query("before") String before);
+
+    @GET("mails/{id}")
+    Call<MailDto> getMail(@Path("id") String id);
+
+    // Delta sync: what changed since the cursor (null cursor → full snapshot).
+    // Never repeated for the same cursor, so not worth a place in the HTTP cache.
+    @Streaming
+    @Headers("Cache-Control: no-store")
+    @GET("mails/changes")
+    Call<ResponseBody> getChanges(@Query("since") String since);
+
+    // Search in the search box syntax (SearchQuery.toString()); tz is the device's offset from
+    // UTC in minutes, the time zone of the days in after: and before:.
+    @Streaming
+    @Headers("Cache-Control: no-store")
+    @GET("mails/search/{q}")
+    Call<ResponseBody> search(@Path("q") String q, @Query("before") String before, @Query("tz") int tz);
+
+    @Streaming
+    @GET("mails/label/{labelId}")
+    Call<ResponseBody> getByLabel(@Path("labelId") String labelId, @Query("before") String before);
+
+    // Changes below are sent by the app's outbox with an Idempotency-Key (null: none), so the
+    // server answers a retried request with the first answer instead of applying it again.
+    // Compose / edit / delete message
+    @POST("mails")
+    Call<MailDto> send(@Header("Idempotency-Key") String key, @Body ComposeRequest req);
+
+    @PATCH("mails/{id}")
+    Call<MailDto> edit(@Header("Idempotency-Key") String key, @Path("id") String id, @Body EditRequest req);
+
+    @DELETE("mails/{id}")
+    Call<ResponseBody> delete(@Header("Idempotency-Key") String key, @Path("id") String id);
+
+    // Label on a specific mail
+    @POST("mails/{id}/labels/{labelId}")
+    Call<ResponseBody> addLabel(@Header("Idempotency-Key") String key, @Path("id") String mailId,
+                                @Path("labelId") String labelId);
+
+    @DELETE("mails/{id}/labels/{labelId}")
+    Call<ResponseBody> removeLabel(@Header("Idempotency-Key") String key, @Path("id") String mailId,
+                                   @Path("labelId") String labelId);
+
+    // Label catalog
+    @GET("labels")
+    Call<List<LabelDto>> getLabels();
+
+    // Create / rename / delete label
+    @POST("labels")
+    Call<LabelDto> createLabel(@Header("Idempotency-Key") String key, @Body CreateLabelRequest req);
+
+    @PATCH("labels/{id}")
+    Call<LabelDto> renameLabel(@Header("Idempotency-Key") String key, @Path("id") String id,
+                               @Body RenameLabelRequest req);
+
+    @DELETE("labels/{id}")
+    Call<ResponseBody> deleteLabel(@Header("Idempotency-Key") String key, @Path("id") String id);
+
+    // Me
+    @GET("users/{id}")
+    retrofit2.Call<com.example.gmail_android.entities.User> getUser(@Path("id") int id);
+
+    // auth-based current user (like React)
+    @GET("users/me")
+    Call<com.example.gmail_android.entities.User> getMe();
+
+    // ===== DTOs =====
+    class LabelDto { public String id; public String name; }
+
+    class CreateLabelRequest { public String name; public CreateLabelRequest(String n){ name = n; } }
+
+    class RenameLabelRequest { public String name; public RenameLabelRequest(String n){ name = n; } }
+
+    class MailDto {
+        public String id;
+        public String from;
+        public String to;
+        public String subject;
+        public String content;
+        @SerializedName("dateSent") public String dateSent;
+        public List<LabelDto> labels;
+        public boolean spam;
+    }
+
+    // body of GET mails/changes (read field by field by MailStream).
+    class ChangesDto {
+        public String cursor;
+        public boolean full;              // true → replace local mails with `mails`
+        public List<MailDto> mails;       // created or changed since the cursor
+        public List<String> deleted;      // ids deleted or hidden since the cursor
+    }
+
+    class ComposeRequest {
+        @SerializedName("toEmail") public String toEmail;
+        public String subject;
+        public String content;
+        public List<String> labels;
+    }
+
+    class EditRequest {
+        @SerializedName("toEmail") public String toEmail;
+        public String subject;
+        public String content;
+        public List<String> labels;
+    }
+
+    class UserDto {
+        public String id;
+        @SerializedName(value = "image") public String avatarUrl;
+        public String email;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,460 @@
+package com.example.gmail_android.repository;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// compressed set of non-negative ints, roaring-style: values are grouped by their high 16 bits,
+// and each group is stored as a sorted char[] while it has at most ARRAY_MAX values (2 bytes per
+// value), or as a 65536-bit long[] once it is denser (8 KB, any number of values). Set
+// operations work group by group on the primitive arrays; nothing is boxed.
+// Not thread-safe; LabelIndex guards its bitmaps.
+public final class IntBitmap {
+    static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+
+    // sorted high halves, their containers (char[] or long[]) and cardinalities, n in use
+    private char[] keys;
+    private Object[] containers;
+    private int[] cards;
+    private int n;
+
+    public IntBitmap() {
+        this(4);
+    }
+
+    private IntBitmap(int capacity) {
+        keys = new char[capacity];
+        containers = new Object[capacity];
+        cards = new int[capacity];
+    }
+
+    public boolean add(int x) {
+        char hi = (char) (x >>> 16);
+        char lo = (char) x;
+        int i = find(hi);
+        if (i < 0) {
+            i = -i - 1;
+            insertAt(i, hi, new char[4], 0);
+        }
+        Object c = containers[i];
+        if (c instanceof long[]) {
+            long[] bits = (long[]) c;
+            long before = bits[lo >>> 6];
+            bits[lo >>> 6] = before | (1L << lo);
+            if (before == bits[lo >>> 6]) return false;
+            cards[i]++;
+            return true;
+        }
+        char[] arr = (char[]) c;
+        int card = cards[i];
+        int at = Arrays.binarySearch(arr, 0, card, lo);
+        if (at >= 0) return false;
+        at = -at - 1;
+        if (card == ARRAY_MAX) {
+            long[] bits = toBits(arr, card);
+            bits[lo >>> 6] |= 1L << lo;
+            containers[i] = bits;
+        } else {
+            if (card == arr.length) containers[i] = arr = Arrays.copyOf(arr, Math.min(ARRAY_MAX, card * 2));
+            System.arraycopy(arr, at, arr, at + 1, card - at);
+            arr[at] = lo;
+        }
+        cards[i] = card + 1;
+        return true;
+    }
+
+    public boolean remove(int x) {
+        int i = find((char) (x >>> 16));
+        if (i < 0) return false;
+        char lo = (char) x;
+        Object c = containers[i];
+        if (c instanceof long[]) {
+            long[] bits = (long[]) c;
+            long before = bits[lo >>> 6];
+            bits[lo >>> 6] = before & ~(1L << lo);
+            if (before == bits[lo >>> 6]) return false;
+            if (--cards[i] == ARRAY_MAX) containers[i] = toArray(bits, ARRAY_MAX);
+            return true;
+        }
+        char[] arr = (char[]) c;
+        int card = cards[i];
+        int at = Arrays.binarySearch(arr, 0, card, lo);
+        if (at < 0) return false;
+        System.arraycopy(arr, at + 1, arr, at, card - at - 1);
+        if (--cards[i] == 0) removeAt(i);
+        return true;
+    }
+
+    public boolean contains(int x) {
+        int i = find((char) (x >>> 16));
+        if (i < 0) return false;
+        char lo = (char) x;
+        Object c = containers[i];
+        if (c instanceof long[]) return (((long[]) c)[lo >>> 6] & (1L << lo)) != 0;
+        return Arrays.binarySearch((char[]) c, 0, cards[i], lo) >= 0;
+    }
+
+    public int cardinality() {
+        int total = 0;
+        for (int i = 0; i < n; i++) total += cards[i];
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    // the largest value <= x, or -1.
+    public int previous(int x) {
+        if (x < 0) return -1;
+        char hi = (char) (x >>> 16);
+        int i = find(hi);
+        if (i >= 0) {
+            int lo = previousIn(containers[i], cards[i], (char) x);
+            if (lo >= 0) return (hi << 16) | lo;
+            i--;
+        } else {
+            i = -i - 2;
+        }
+        if (i < 0) return -1;
+        return (keys[i] << 16) | last(containers[i], cards[i]);
+    }
+
+    // calls action for every value, in ascending order.
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < n; i++) {
+            int base = keys[i] << 16;
+            Object c = containers[i];
+            if (c instanceof long[]) {
+                long[] bits = (long[]) c;
+                for (int w = 0; w < WORDS; w++) {
+                    long word = bits[w];
+                    while (word != 0) {
+                        action.accept(base | (w << 6) | Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                char[] arr = (char[]) c;
+                for (int j = 0; j < cards[i]; j++) action.accept(base | arr[j]);
+            }
+        }
+    }
+
+    public IntBitmap copy() {
+        IntBitmap out = new IntBitmap(Math.max(4, n));
+        for (int i = 0; i < n; i++) {
+            Object c = containers[i];
+            out.append(keys[i], c instanceof long[] ? ((long[]) c).clone()
+                    : Arrays.copyOf((char[]) c, cards[i]), cards[i]);
+        }
+        return out;
+    }
+
+    // ----- set operations; the arguments are not changed -----
+
+    public static IntBitmap and(IntBitmap a, IntBitmap b) {
+        IntBitmap out = new IntBitmap(Math.max(4, Math.min(a.n, b.n)));
+        int i = 0;
+        int j = 0;
+        while (i < a.n && j < b.n) {
+            if (a.keys[i] < b.keys[j]) i++;
+            else if (a.keys[i] > b.keys[j]) j++;
+            else {
+                out.appendIfAny(a.keys[i], and(a.containers[i], a.cards[i], b.containers[j], b.cards[j]));
+                i++;
+                j++;
+            }
+        }
+        return out;
+    }
+
+    public static IntBitmap or(IntBitmap a, IntBitmap b) {
+        IntBitmap out = new IntBitmap(Math.max(4, a.n + b.n));
+        int i = 0;
+        int j = 0;
+        while (i < a.n || j < b.n) {
+            if (j == b.n || (i < a.n && a.keys[i] < b.keys[j])) {
+                out.appendCopy(a, i++);
+            } else if (i == a.n || a.keys[i] > b.keys[j]) {
+                out.appendCopy(b, j++);
+            } else {
+                out.appendIfAny(a.keys[i], or(a.containers[i], a.cards[i], b.containers[j], b.cards[j]));
+                i++;
+                j++;
+            }
+        }
+        return out;
+    }
+
+    // the values of a that are not in b.
+    public static IntBitmap andNot(IntBitmap a, IntBitmap b) {
+        IntBitmap out = new IntBitmap(Math.max(4, a.n));
+        int j = 0;
+        for (int i = 0; i < a.n; i++) {
+            while (j < b.n && b.keys[j] < a.keys[i]) j++;
+            if (j < b.n && b.keys[j] == a.keys[i]) {
+                out.appendIfAny(a.keys[i], andNot(a.containers[i], a.cards[i], b.containers[j], b.cards[j]));
+            } else {
+                out.appendCopy(a, i);
+            }
+        }
+        return out;
+    }
+
+    // |a ∩ b| without building the intersection (per-label counts within a filter).
+    public static int andCardinality(IntBitmap a, IntBitmap b) {
+        int total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.n && j < b.n) {
+            if (a.keys[i] < b.keys[j]) i++;
+            else if (a.keys[i] > b.keys[j]) j++;
+            else {
+                total += andCount(a.containers[i], a.cards[i], b.containers[j], b.cards[j]);
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    // ----- containers -----
+    // A container operation returns a container holding its cardinality in the returned Result.
+
+    private static final class Result {
+        final Object container;
+        final int card;
+
+        Result(Object container, int card) {
+            this.container = container;
+            this.card = card;
+        }
+    }
+
+    private static Result and(Object a, int ca, Object b, int cb) {
+        if (a instanceof long[] && b instanceof long[]) {
+            long[] x = (long[]) a;
+            long[] y = (long[]) b;
+            long[] bits = new long[WORDS];
+            int card = 0;
+            for (int w = 0; w < WORDS; w++) card += Long.bitCount(bits[w] = x[w] & y[w]);
+            return bits(bits, card);
+        }
+        if (a instanceof long[]) return and(b, cb, a, ca);
+        char[] x = (char[]) a;
+        char[] out = new char[Math.min(ca, b instanceof long[] ? ca : cb)];
+        int k = 0;
+        if (b instanceof long[]) {
+            long[] y = (long[]) b;
+            for (int i = 0; i < ca; i++) if ((y[x[i] >>> 6] & (1L << x[i])) != 0) out[k++] = x[i];
+        } else {
+            char[] y = (char[]) b;
+            int i = 0;
+            int j = 0;
+            while (i < ca && j < cb) {
+                if (x[i] < y[j]) i++;
+                else if (x[i] > y[j]) j++;
+                else {
+                    out[k++] = x[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return new Result(out, k);
+    }
+
+    private static int andCount(Object a, int ca, Object b, int cb) {
+        if (a instanceof long[] && b instanceof long[]) {
+            long[] x = (long[]) a;
+            long[] y = (long[]) b;
+            int card = 0;
+            for (int w = 0; w < WORDS; w++) card += Long.bitCount(x[w] & y[w]);
+            return card;
+        }
+        if (a instanceof long[]) return andCount(b, cb, a, ca);
+        char[] x = (char[]) a;
+        int k = 0;
+        if (b instanceof long[]) {
+            long[] y = (long[]) b;
+            for (int i = 0; i < ca; i++) if ((y[x[i] >>> 6] & (1L << x[i])) != 0) k++;
+            return k;
+        }
+        char[] y = (char[]) b;
+        int i = 0;
+        int j = 0;
+        while (i < ca && j < cb) {
+            if (x[i] < y[j]) i++;
+            else if (x[i] > y[j]) j++;
+            else {
+                k++;
+                i++;
+                j++;
+            }
+        }
+        return k;
+    }
+
+    private static Result or(Object a, int ca, Object b, int cb) {
+        if (a instanceof long[] || b instanceof long[]) {
+            long[] bits = a instanceof long[] ? ((long[]) a).clone() : toBits((char[]) a, ca);
+            if (b instanceof long[]) {
+                long[] y = (long[]) b;
+                for (int w = 0; w < WORDS; w++) bits[w] |= y[w];
+            } else {
+                char[] y = (char[]) b;
+                for (int j = 0; j < cb; j++) bits[y[j] >>> 6] |= 1L << y[j];
+            }
+            int card = 0;
+            for (long word : bits) card += Long.bitCount(word);
+            return bits(bits, card);
+        }
+        char[] x = (char[]) a;
+        char[] y = (char[]) b;
+        char[] out = new char[ca + cb];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < ca || j < cb) {
+            if (j == cb || (i < ca && x[i] < y[j])) out[k++] = x[i++];
+            else if (i == ca || x[i] > y[j]) out[k++] = y[j++];
+            else {
+                out[k++] = x[i++];
+                j++;
+            }
+        }
+        return k > ARRAY_MAX ? new Result(toBits(out, k), k) : new Result(out, k);
+    }
+
+    private static Result andNot(Object a, int ca, Object b, int cb) {
+        if (a instanceof long[]) {
+            long[] bits = ((long[]) a).clone();
+            if (b instanceof long[]) {
+                long[] y = (long[]) b;
+                for (int w = 0; w < WORDS; w++) bits[w] &= ~y[w];
+            } else {
+                char[] y = (char[]) b;
+                for (int j = 0; j < cb; j++) bits[y[j] >>> 6] &= ~(1L << y[j]);
+            }
+            int card = 0;
+            for (long word : bits) card += Long.bitCount(word);
+            return bits(bits, card);
+        }
+        char[] x = (char[]) a;
+        char[] out = new char[ca];
+        int k = 0;
+        if (b instanceof long[]) {
+            long[] y = (long[]) b;
+            for (int i = 0; i < ca; i++) if ((y[x[i] >>> 6] & (1L << x[i])) == 0) out[k++] = x[i];
+        } else {
+            char[] y = (char[]) b;
+            int j = 0;
+            for (int i = 0; i < ca; i++) {
+                while (j < cb && y[j] < x[i]) j++;
+                if (j == cb || y[j] != x[i]) out[k++] = x[i];
+            }
+        }
+        return new Result(out, k);
+    }
+
+    // a bitmap result, as an array container if it is sparse enough.
+    private static Result bits(long[] bits, int card) {
+        return card <= ARRAY_MAX ? new Result(toArray(bits, card), card) : new Result(bits, card);
+    }
+
+    private static long[] toBits(char[] arr, int card) {
+        long[] bits = new long[WORDS];
+        for (int i = 0; i < card; i++) bits[arr[i] >>> 6] |= 1L << arr[i];
+        return bits;
+    }
+
+    private static char[] toArray(long[] bits, int card) {
+        char[] arr = new char[card];
+        int k = 0;
+        for (int w = 0; w < WORDS; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                arr[k++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return arr;
+    }
+
+    // the largest low half <= lo in the container, or -1.
+    private static int previousIn(Object c, int card, char lo) {
+        if (c instanceof long[]) {
+            long[] bits = (long[]) c;
+            int w = lo >>> 6;
+            long word = bits[w] & (-1L >>> (63 - (lo & 63)));
+            while (true) {
+                if (word != 0) return (w << 6) | (63 - Long.numberOfLeadingZeros(word));
+                if (--w < 0) return -1;
+                word = bits[w];
+            }
+        }
+        char[] arr = (char[]) c;
+        int at = Arrays.binarySearch(arr, 0, card, lo);
+        if (at >= 0) return arr[at];
+        at = -at - 2;
+        return at >= 0 ? arr[at] : -1;
+    }
+
+    private static int last(Object c, int card) {
+        if (c instanceof long[]) return previousIn(c, card, (char) 0xFFFF);
+        return ((char[]) c)[card - 1];
+    }
+
+    // ----- the key table -----
+
+    private int find(char hi) {
+        // keys are few (one per 65536 values): binary search
+        int low = 0;
+        int high = n - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] < hi) low = mid + 1;
+            else if (keys[mid] > hi) high = mid - 1;
+            else return mid;
+        }
+        return -(low + 1);
+    }
+
+    private void insertAt(int i, char hi, Object container, int card) {
+        if (n == keys.length) {
+            int cap = keys.length * 2;
+            keys = Arrays.copyOf(keys, cap);
+            containers = Arrays.copyOf(containers, cap);
+            cards = Arrays.copyOf(cards, cap);
+        }
+        System.arraycopy(keys, i, keys, i + 1, n - i);
+        System.arraycopy(containers, i, containers, i + 1, n - i);
+        System.arraycopy(cards, i, cards, i + 1, n - i);
+        keys[i] = hi;
+        containers[i] = container;
+        cards[i] = card;
+        n++;
+    }
+
+    private void removeAt(int i) {
+        System.arraycopy(keys, i + 1, keys, i, n - i - 1);
+        System.arraycopy(containers, i + 1, containers, i, n - i - 1);
+        System.arraycopy(cards, i + 1, cards, i, n - i - 1);
+        containers[--n] = null;
+    }
+
+    private void append(char hi, Object container, int card) {
+        insertAt(n, hi, container, card);
+    }
+
+    private void appendIfAny(char hi, Result r) {
+        if (r.card > 0) append(hi, r.container, r.card);
+    }
+
+    private void appendCopy(IntBitmap from, int i) {
+        Object c = from.containers[i];
+        append(from.keys[i], c instanceof long[] ? ((long[]) c).clone()
+                : Arrays.copyOf((char[]) c, from.cards[i]), from.cards[i]);
+    }
+}
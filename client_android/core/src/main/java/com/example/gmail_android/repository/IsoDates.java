@@ -0,0 +1,149 @@
+package com.example.gmail_android.repository;
+
+// parses the server's dateSent values without regexes or SimpleDateFormat. Stateless, so one
+// shared parser is safe on any thread and nothing is allocated per call.
+// Accepted forms (surrounding whitespace is ignored):
+//   epoch seconds or millis: "1700000000", "1700000000123"
+//   ISO-8601: yyyy-MM-dd['T'|' 'HH:mm[:ss[.fraction]]][Z|±HH[:mm]|±HHmm]
+// Without an offset the time is UTC. Anything else parses to 0.
+public final class IsoDates {
+    private IsoDates() { }
+
+    // larger epoch values are millis, smaller ones seconds (as before).
+    private static final long MAX_EPOCH_SECONDS = 9_999_999_999L;
+    private static final long DAY_MS = 86_400_000L;
+
+    public static long parseMillis(String s) {
+        if (s == null) return 0L;
+        int start = 0, end = s.length();
+        while (start < end && s.charAt(start) <= ' ') start++;
+        while (end > start && s.charAt(end - 1) <= ' ') end--;
+        if (start == end) return 0L;
+
+        if (isEpoch(s, start, end)) {
+            boolean negative = s.charAt(start) == '-';
+            int i = negative ? start + 1 : start;
+            if (end - i > 18) return 0L; // out of long range
+            long v = 0;
+            for (; i < end; i++) v = v * 10 + (s.charAt(i) - '0');
+            if (negative) v = -v;
+            return v > MAX_EPOCH_SECONDS ? v : v * 1000L;
+        }
+        return parseIso(s, start, end);
+    }
+
+    private static boolean isEpoch(String s, int start, int end) {
+        int i = s.charAt(start) == '-' ? start + 1 : start;
+        if (i == end) return false;
+        for (; i < end; i++) if (!isDigit(s.charAt(i))) return false;
+        return true;
+    }
+
+    private static long parseIso(String s, int start, int end) {
+        int p = start;
+        // yyyy-MM-dd
+        if (end - p < 10 || s.charAt(p + 4) != '-' || s.charAt(p + 7) != '-') return 0L;
+        int year = digits(s, p, 4), month = digits(s, p + 5, 2), day = digits(s, p + 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) return 0L;
+        p += 10;
+
+        int hour = 0, minute = 0, second = 0, millis = 0;
+        if (p < end && (s.charAt(p) == 'T' || s.charAt(p) == 't' || s.charAt(p) == ' ')) {
+            // HH:mm
+            if (end - p < 6 || s.charAt(p + 3) != ':') return 0L;
+            hour = digits(s, p + 1, 2);
+            minute = digits(s, p + 4, 2);
+            if (hour < 0 || hour > 23 || minute < 0 || minute > 59) return 0L;
+            p += 6;
+            // :ss
+            if (p < end && s.charAt(p) == ':') {
+                if (end - p < 3) return 0L;
+                second = digits(s, p + 1, 2);
+                if (second < 0 || second > 59) return 0L;
+                p += 3;
+                // .fraction (any number of digits; milliseconds are kept)
+                if (p < end && (s.charAt(p) == '.' || s.charAt(p) == ',')) {
+                    p++;
+                    int digits = 0;
+                    while (p < end && isDigit(s.charAt(p))) {
+                        if (digits < 3) millis = millis * 10 + (s.charAt(p) - '0');
+                        digits++;
+                        p++;
+                    }
+                    if (digits == 0) return 0L;
+                    for (int d = digits; d < 3; d++) millis *= 10;
+                }
+            }
+        }
+
+        long offsetMs = 0;
+        if (p < end) {
+            char c = s.charAt(p);
+            if ((c == 'Z' || c == 'z') && p + 1 == end) {
+                p++;
+            } else if (c == '+' || c == '-') {
+                int rest = end - p - 1;
+                int oh, om = 0;
+                if (rest == 2) {
+                    oh = digits(s, p + 1, 2);
+                } else if (rest == 4) {
+                    oh = digits(s, p + 1, 2);
+                    om = digits(s, p + 3, 2);
+                } else if (rest == 5 && s.charAt(p + 3) == ':') {
+                    oh = digits(s, p + 1, 2);
+                    om = digits(s, p + 4, 2);
+                } else {
+                    return 0L;
+                }
+                if (oh < 0 || oh > 18 || om < 0 || om > 59) return 0L;
+                offsetMs = (oh * 60L + om) * 60_000L;
+                if (c == '-') offsetMs = -offsetMs;
+                p = end;
+            } else {
+                return 0L;
+            }
+        }
+        if (p != end) return 0L;
+
+        long local = epochDay(year, month, day) * DAY_MS
+                + ((hour * 60L + minute) * 60L + second) * 1000L + millis;
+        return local - offsetMs;
+    }
+
+    // days since 1970-01-01 of a proleptic Gregorian date (H. Hinnant's days_from_civil).
+    public static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146_097 + doe - 719_468;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4: case 6: case 9: case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    // value of n decimal digits at s[from], or -1 if any of them is not a digit.
+    private static int digits(String s, int from, int n) {
+        int v = 0;
+        for (int i = from; i < from + n; i++) {
+            char c = s.charAt(i);
+            if (!isDigit(c)) return -1;
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
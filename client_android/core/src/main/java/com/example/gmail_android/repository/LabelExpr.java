@@ -0,0 +1,255 @@
+package com.example.gmail_android.repository;
+
+import com.example.gmail_android.entities.LabelEntity;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+// a boolean filter over labels, evaluated against a LabelIndex:
+//   work AND important NOT spam      (NOT between two terms means AND NOT)
+//   work important -spam             (the same: terms side by side are ANDed, - negates)
+//   (work OR "side project") -label:spam
+// Operators are upper-case words; anything else is a label id, normalized like the stored
+// ones (LabelEntity.normId). Parsing is lenient like the search box: unbalanced parentheses
+// and dangling operators are ignored, so every input filters something or is empty.
+public abstract class LabelExpr {
+
+    // the mails matching this filter. The result may be one of the index's own bitmaps:
+    // read it under the index lock and don't change it.
+    abstract IntBitmap eval(LabelIndex index);
+
+    // canonical form: parse(toString()) is an equal filter.
+    @Override
+    public abstract String toString();
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof LabelExpr && o.toString().equals(toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    // a single label.
+    public static LabelExpr label(String labelId) {
+        return new Label(LabelEntity.normId(labelId));
+    }
+
+    // the filter in `input`, or null when it names no label.
+    public static LabelExpr parse(String input) {
+        return parse(input, Function.identity());
+    }
+
+    // the same, with each term (normalized) mapped to a label id by idOf, as when the user
+    // types label names; a null from idOf keeps the term as the id.
+    public static LabelExpr parse(String input, Function<String, String> idOf) {
+        if (input == null) return null;
+        return new Parser(tokens(input), idOf).all();
+    }
+
+    // ----- nodes -----
+
+    private static final class Label extends LabelExpr {
+        final String id;
+
+        Label(String id) {
+            this.id = id;
+        }
+
+        @Override IntBitmap eval(LabelIndex index) {
+            return index.label(id);
+        }
+
+        @Override public String toString() {
+            return isWord(id) ? id : "\"" + id + "\"";
+        }
+    }
+
+    private static final class And extends LabelExpr {
+        final LabelExpr left;
+        final LabelExpr right;
+
+        And(LabelExpr left, LabelExpr right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override IntBitmap eval(LabelIndex index) {
+            // x AND NOT y is one andNot instead of a complement and an and
+            if (right instanceof Not) return IntBitmap.andNot(left.eval(index), ((Not) right).inner.eval(index));
+            return IntBitmap.and(left.eval(index), right.eval(index));
+        }
+
+        @Override public String toString() {
+            return "(" + left + " AND " + right + ")";
+        }
+    }
+
+    private static final class Or extends LabelExpr {
+        final LabelExpr left;
+        final LabelExpr right;
+
+        Or(LabelExpr left, LabelExpr right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override IntBitmap eval(LabelIndex index) {
+            return IntBitmap.or(left.eval(index), right.eval(index));
+        }
+
+        @Override public String toString() {
+            return "(" + left + " OR " + right + ")";
+        }
+    }
+
+    private static final class Not extends LabelExpr {
+        final LabelExpr inner;
+
+        Not(LabelExpr inner) {
+            this.inner = inner;
+        }
+
+        @Override IntBitmap eval(LabelIndex index) {
+            return IntBitmap.andNot(index.allMails(), inner.eval(index));
+        }
+
+        @Override public String toString() {
+            return "NOT " + inner;
+        }
+    }
+
+    // ----- parsing -----
+
+    private static final String OPEN = "(";
+    private static final String CLOSE = ")";
+    private static final String NEGATE = "-";
+
+    // operator tokens are kept as-is; labels are normalized and prefixed with a quote mark
+    // so a label named "and" or "(" never reads as an operator.
+    private static List<String> tokens(String s) {
+        List<String> out = new ArrayList<>();
+        int i = 0;
+        int n = s.length();
+        while (i < n) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')') {
+                out.add(String.valueOf(c));
+                i++;
+            } else if (c == '-') { // only at the start of a term: "side-project" is one label
+                out.add(NEGATE);
+                i++;
+            } else {
+                int start = i;
+                String label;
+                if (s.startsWith("label:", i)) start = i += 6;
+                if (i < n && s.charAt(i) == '"') {
+                    int end = s.indexOf('"', i + 1);
+                    if (end < 0) end = n;
+                    label = s.substring(i + 1, end);
+                    i = Math.min(n, end + 1);
+                } else {
+                    while (i < n && !Character.isWhitespace(s.charAt(i)) && s.charAt(i) != '(' && s.charAt(i) != ')') i++;
+                    label = s.substring(start, i);
+                    if (label.equals("AND") || label.equals("OR") || label.equals("NOT")) {
+                        out.add(label);
+                        continue;
+                    }
+                }
+                label = LabelEntity.normId(label);
+                if (!label.isEmpty()) out.add("\"" + label);
+            }
+        }
+        return out;
+    }
+
+    private static boolean isLabel(String token) {
+        return token.startsWith("\"");
+    }
+
+    // a label that prints without quotes and reads back as itself.
+    private static boolean isWord(String id) {
+        if (id.isEmpty() || id.startsWith("-") || id.startsWith("label:")) return false;
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (Character.isWhitespace(c) || c == '(' || c == ')' || c == '"') return false;
+        }
+        // operators are upper-case and ids lower-case, so ids never collide with them
+        return true;
+    }
+
+    // recursive descent; each level returns null when it found no label.
+    //   or    := and ("OR" and)*
+    //   and   := unary (["AND"] unary)*      ("NOT" x in this position is AND NOT x)
+    //   unary := ("NOT" | "-") unary | "(" or ")" | label
+    private static final class Parser {
+        private final List<String> tokens;
+        private final Function<String, String> idOf;
+        private int pos;
+
+        Parser(List<String> tokens, Function<String, String> idOf) {
+            this.tokens = tokens;
+            this.idOf = idOf;
+        }
+
+        // the whole input; a stray ")" is skipped and what follows is ANDed on.
+        LabelExpr all() {
+            LabelExpr left = or();
+            while (pos < tokens.size()) {
+                pos++;
+                LabelExpr right = or();
+                left = left == null ? right : right == null ? left : new And(left, right);
+            }
+            return left;
+        }
+
+        LabelExpr or() {
+            LabelExpr left = and();
+            while (peek("OR")) {
+                pos++;
+                LabelExpr right = and();
+                left = left == null ? right : right == null ? left : new Or(left, right);
+            }
+            return left;
+        }
+
+        LabelExpr and() {
+            LabelExpr left = unary();
+            while (pos < tokens.size() && !peek(CLOSE) && !peek("OR")) {
+                if (peek("AND")) pos++;
+                LabelExpr right = unary();
+                left = left == null ? right : right == null ? left : new And(left, right);
+            }
+            return left;
+        }
+
+        LabelExpr unary() {
+            if (pos >= tokens.size() || peek(CLOSE)) return null;
+            String t = tokens.get(pos++);
+            if (t.equals("NOT") || t.equals(NEGATE)) {
+                LabelExpr inner = unary();
+                if (inner == null) return null;
+                return inner instanceof Not ? ((Not) inner).inner : new Not(inner);
+            }
+            if (t.equals(OPEN)) {
+                LabelExpr inner = or();
+                if (peek(CLOSE)) pos++;
+                return inner;
+            }
+            if (isLabel(t)) {
+                String term = t.substring(1);
+                String id = idOf.apply(term);
+                return new Label(id == null ? term : LabelEntity.normId(id));
+            }
+            return null; // AND / OR with nothing before it
+        }
+
+        private boolean peek(String token) {
+            return pos < tokens.size() && tokens.get(pos).equals(token);
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package com.example.gmail_android.repository;
+
+import com.example.gmail_android.dao.SyncBatch;
+import com.example.gmail_android.entities.LabelEntity;
+import com.example.gmail_android.entities.MailEntity;
+import com.example.gmail_android.entities.MailLabelCrossRef;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// in-memory label → mails index for boolean label filters ("work AND important NOT spam")
+// and per-label counts. Each stored mail gets an ordinal, and each label an IntBitmap of
+// the ordinals carrying it, so a filter is a few bitmap operations instead of a query.
+// Ordinals follow list order (dateSentMillis, id), so a page is read from the top of the
+// result bitmap downwards. Mails that arrive out of order are appended and the ordinals
+// are reassigned (compact) before the next page is read.
+// Holds synced mails only; search-only mails are not in any list. All methods are synchronized.
+public final class LabelIndex {
+
+    // position of a mail in list order; page() results.
+    public static final class Key {
+        public final long date;
+        public final String id;
+
+        Key(long date, String id) {
+            this.date = date;
+            this.id = id;
+        }
+    }
+
+    // ordinal → mail. Removed ordinals keep their id and date (the arrays stay sorted while
+    // `ordered`) and are only missing from `all`.
+    private String[] ids = new String[64];
+    private long[] dates = new long[64];
+    private int size;
+    private boolean ordered = true;
+    // id → latest ordinal + 1 (0 = free), open addressing with linear probing.
+    private int[] slots = new int[128];
+    private IntBitmap all = new IntBitmap();
+    private final Map<String, IntBitmap> labels = new HashMap<>();
+    private long version;
+
+    // ----- writes -----
+
+    // sets the mail's date and labels (normalized ids), adding it if it is new.
+    public synchronized void put(String mailId, long date, Collection<String> labelIds) {
+        int ord = ordinal(mailId);
+        if (ord >= 0 && all.contains(ord) && dates[ord] == date) {
+            clearLabels(ord);
+        } else {
+            if (ord >= 0) unlink(ord);
+            ord = append(mailId, date);
+        }
+        for (String l : labelIds) bitmap(l, true).add(ord);
+        version++;
+    }
+
+    public synchronized void remove(String mailId) {
+        int ord = ordinal(mailId);
+        if (ord < 0 || !all.contains(ord)) return;
+        unlink(ord);
+        version++;
+    }
+
+    public synchronized boolean contains(String mailId) {
+        int ord = ordinal(mailId);
+        return ord >= 0 && all.contains(ord);
+    }
+
+    // the label was deleted (its joins cascade away).
+    public synchronized void removeLabel(String labelId) {
+        if (labels.remove(labelId) != null) version++;
+    }
+
+    // a full snapshot ended: drops every mail not in `keep`.
+    public synchronized void retainOnly(Set<String> keep) {
+        IntBitmap gone = new IntBitmap();
+        all.forEach(ord -> {
+            if (!keep.contains(ids[ord])) gone.add(ord);
+        });
+        if (gone.isEmpty()) return;
+        gone.forEach(this::unlink);
+        version++;
+    }
+
+    // mirrors SyncDao.apply for a batch it has just written. Search batches only change mails
+    // already listed; their other mails are stored as search-only.
+    public synchronized void apply(SyncBatch b) {
+        if (b.replaceAll) {
+            Set<String> keep = new HashSet<>();
+            for (MailEntity m : b.mails) keep.add(m.id);
+            retainOnly(keep);
+        }
+        for (String id : b.deletedMailIds) remove(id);
+        if (b.replaceLabels) {
+            Set<String> keep = new HashSet<>();
+            for (LabelEntity l : b.labels) keep.add(l.id);
+            Iterator<String> it = labels.keySet().iterator();
+            while (it.hasNext()) {
+                if (!keep.contains(it.next())) {
+                    it.remove();
+                    version++;
+                }
+            }
+        }
+        if (b.mails.isEmpty()) return;
+        Map<String, List<String>> labelsByMail = new HashMap<>();
+        for (MailLabelCrossRef j : b.joins) {
+            List<String> l = labelsByMail.get(j.mailId);
+            if (l == null) labelsByMail.put(j.mailId, l = new ArrayList<>(4));
+            l.add(j.labelId);
+        }
+        for (MailEntity m : b.mails) {
+            if (b.searchQuery != null && !contains(m.id)) continue;
+            List<String> l = labelsByMail.get(m.id);
+            put(m.id, m.dateSentMillis, l != null ? l : new ArrayList<>());
+        }
+    }
+
+    // bumped by every change; lists observe it to re-read their page.
+    public synchronized long version() {
+        return version;
+    }
+
+    // ----- reads -----
+
+    // the ordinals of the mails matching the expression (a new bitmap, the caller's to keep).
+    public synchronized IntBitmap select(LabelExpr expr) {
+        return expr.eval(this).copy();
+    }
+
+    public synchronized int count(String labelId) {
+        IntBitmap b = labels.get(labelId);
+        return b == null ? 0 : b.cardinality();
+    }
+
+    public synchronized int count(LabelExpr expr) {
+        return expr.eval(this).cardinality();
+    }
+
+    // how many of the mails matching the expression carry each label (label id → count),
+    // for labels with at least one.
+    public synchronized Map<String, Integer> countsWithin(LabelExpr expr) {
+        IntBitmap within = expr.eval(this);
+        Map<String, Integer> out = new HashMap<>();
+        for (Map.Entry<String, IntBitmap> e : labels.entrySet()) {
+            int n = IntBitmap.andCardinality(within, e.getValue());
+            if (n > 0) out.put(e.getKey(), n);
+        }
+        return out;
+    }
+
+    public synchronized int size() {
+        return all.cardinality();
+    }
+
+    // up to n mails matching the expression strictly below (date, id), newest first.
+    public synchronized List<Key> page(LabelExpr expr, long date, String id, int n) {
+        compactIfNeeded();
+        IntBitmap set = expr.eval(this);
+        List<Key> out = new ArrayList<>(Math.min(n, 64));
+        int ord = set.previous(lowerBound(date, id) - 1);
+        while (ord >= 0 && out.size() < n) {
+            out.add(new Key(dates[ord], ids[ord]));
+            ord = set.previous(ord - 1);
+        }
+        return out;
+    }
+
+    // up to n mails matching the expression at or above (date, id), newest first; all of them
+    // for n < 0.
+    public synchronized List<Key> pageFrom(LabelExpr expr, long floorDate, String floorId, int n) {
+        compactIfNeeded();
+        IntBitmap set = expr.eval(this);
+        List<Key> out = new ArrayList<>();
+        int floor = lowerBound(floorDate, floorId);
+        int ord = set.previous(size - 1);
+        while (ord >= floor && (n < 0 || out.size() < n)) {
+            out.add(new Key(dates[ord], ids[ord]));
+            ord = set.previous(ord - 1);
+        }
+        return out;
+    }
+
+    // reassigns ordinals in list order without gaps; bitmaps shrink to the live mails.
+    public synchronized void compact() {
+        int live = all.cardinality();
+        int[] order = new int[live];
+        int[] k = {0};
+        all.forEach(ord -> order[k[0]++] = ord);
+        sort(order, new int[live], 0, live);
+        int[] remap = new int[size];
+        String[] newIds = new String[Math.max(64, live * 2)];
+        long[] newDates = new long[newIds.length];
+        IntBitmap newAll = new IntBitmap();
+        for (int i = 0; i < live; i++) {
+            remap[order[i]] = i;
+            newIds[i] = ids[order[i]];
+            newDates[i] = dates[order[i]];
+            newAll.add(i);
+        }
+        for (Map.Entry<String, IntBitmap> e : labels.entrySet()) {
+            IntBitmap moved = new IntBitmap();
+            e.getValue().forEach(ord -> moved.add(remap[ord]));
+            e.setValue(moved);
+        }
+        ids = newIds;
+        dates = newDates;
+        size = live;
+        all = newAll;
+        ordered = true;
+        slots = new int[tableSize(live)];
+        for (int i = 0; i < live; i++) link(ids[i], i);
+    }
+
+    // before reading in order: after out-of-order appends, or once most ordinals are dead.
+    private void compactIfNeeded() {
+        if (!ordered || size - all.cardinality() > Math.max(1024, size / 2)) compact();
+    }
+
+    // merge sort of ordinals by list order, without boxing them.
+    private void sort(int[] a, int[] tmp, int from, int to) {
+        if (to - from < 2) return;
+        int mid = (from + to) >>> 1;
+        sort(a, tmp, from, mid);
+        sort(a, tmp, mid, to);
+        if (before(a[mid - 1], a[mid])) return; // already in order (the common case)
+        System.arraycopy(a, from, tmp, from, to - from);
+        int i = from;
+        int j = mid;
+        for (int out = from; out < to; out++) {
+            if (j == to || (i < mid && !before(tmp[j], tmp[i]))) a[out] = tmp[i++];
+            else a[out] = tmp[j++];
+        }
+    }
+
+    private boolean before(int a, int b) {
+        return compare(dates[a], ids[a], dates[b], ids[b]) < 0;
+    }
+
+    // ----- package-private, for LabelExpr (called under the lock) -----
+
+    IntBitmap allMails() {
+        return all;
+    }
+
+    IntBitmap label(String labelId) {
+        return bitmap(labelId, false);
+    }
+
+    // ----- internals -----
+
+    private static final IntBitmap EMPTY = new IntBitmap();
+
+    private IntBitmap bitmap(String labelId, boolean create) {
+        IntBitmap b = labels.get(labelId);
+        if (b == null) {
+            if (!create) return EMPTY;
+            labels.put(labelId, b = new IntBitmap());
+        }
+        return b;
+    }
+
+    private void clearLabels(int ord) {
+        Iterator<IntBitmap> it = labels.values().iterator();
+        while (it.hasNext()) {
+            IntBitmap b = it.next();
+            if (b.remove(ord) && b.isEmpty()) it.remove();
+        }
+    }
+
+    private void unlink(int ord) {
+        clearLabels(ord);
+        all.remove(ord);
+    }
+
+    private int append(String mailId, long date) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            dates = Arrays.copyOf(dates, size * 2);
+        }
+        if (size > 0 && compare(date, mailId, dates[size - 1], ids[size - 1]) < 0) ordered = false;
+        int ord = size++;
+        ids[ord] = mailId;
+        dates[ord] = date;
+        all.add(ord);
+        if (size * 2 > slots.length) {
+            slots = new int[slots.length * 2];
+            // the latest ordinal of an id wins: link in ordinal order
+            for (int i = 0; i < size; i++) link(ids[i], i);
+        } else {
+            link(mailId, ord);
+        }
+        return ord;
+    }
+
+    private int ordinal(String mailId) {
+        int mask = slots.length - 1;
+        for (int i = mix(mailId.hashCode()) & mask; ; i = (i + 1) & mask) {
+            int s = slots[i];
+            if (s == 0) return -1;
+            if (ids[s - 1].equals(mailId)) return s - 1;
+        }
+    }
+
+    private void link(String mailId, int ord) {
+        int mask = slots.length - 1;
+        for (int i = mix(mailId.hashCode()) & mask; ; i = (i + 1) & mask) {
+            int s = slots[i];
+            if (s == 0 || ids[s - 1].equals(mailId)) {
+                slots[i] = ord + 1;
+                return;
+            }
+        }
+    }
+
+    private static int mix(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSize(int n) {
+        return Math.max(128, Integer.highestOneBit(Math.max(1, n) * 2) * 2);
+    }
+
+    // first ordinal at or above (date, id); ordinals must be in order.
+    private int lowerBound(long date, String id) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(dates[mid], ids[mid], date, id) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static int compare(long da, String ia, long db, String ib) {
+        if (da != db) return Long.compare(da, db);
+        return ia.compareTo(ib);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.gmail_android.repository;
+
+import com.example.gmail_android.dao.SyncBatch;
+import com.example.gmail_android.entities.LabelEntity;
+import com.example.gmail_android.entities.MailBodyEntity;
+import com.example.gmail_android.entities.MailEntity;
+import com.example.gmail_android.entities.MailLabelCrossRef;
+import com.example.gmail_android.interfaces.MailApi;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// the one place MailApi DTOs become Room rows. A batch holds a MailEntity and a MailBodyEntity
+// per mail, one LabelEntity per label id (shared by all its joins) and the joins.
+// Strings that repeat across mails (label ids and names, addresses) are interned in a pool that
+// lives as long as the mapper, so a sync keeps one copy of each instead of one per mail.
+// The repository keeps one mapper; calls are synchronized, so any thread may use it.
+public final class MailMapper {
+    // the pool is dropped once it holds this many strings (a mailbox has far fewer values).
+    public static final int POOL_LIMIT = 4096;
+
+    private final HashMap<String, String> pool = new HashMap<>();
+
+    // mails → batch (upsert only). fallbackLabel (normalized) is attached to mails the
+    // server sent without labels.
+    public synchronized SyncBatch toBatch(List<MailApi.MailDto> dtos, String fallbackLabel) {
+        SyncBatch batch = new SyncBatch();
+        Map<String, LabelEntity> labels = new LinkedHashMap<>();
+        for (MailApi.MailDto d : dtos) {
+            if (d == null || d.id == null) continue;
+            MailEntity m = new MailEntity(d.id);
+            m.fromEmail = intern(d.from);
+            m.toEmail = intern(d.to);
+            m.subject = d.subject;
+            m.snippet = MailEntity.snippetOf(d.content);
+            m.isSpam = d.spam;
+            m.dateSentMillis = IsoDates.parseMillis(d.dateSent);
+            m.threadId = MailEntity.threadIdOf(m.id, m.subject, m.fromEmail, m.toEmail);
+            batch.mails.add(m);
+            batch.bodies.add(new MailBodyEntity(m.id, d.content));
+
+            if (d.labels != null) {
+                for (MailApi.LabelDto l : d.labels) {
+                    LabelEntity e = label(l, labels);
+                    if (e != null) batch.joins.add(new MailLabelCrossRef(m.id, e.id));
+                }
+            } else if (fallbackLabel != null) {
+                LabelEntity e = labels.get(fallbackLabel);
+                if (e == null) labels.put(fallbackLabel, e = new LabelEntity(fallbackLabel, fallbackLabel));
+                batch.joins.add(new MailLabelCrossRef(m.id, e.id));
+            }
+        }
+        // only the labels referenced by these mails (for FK integrity)
+        batch.labels.addAll(labels.values());
+        return batch;
+    }
+
+    public synchronized SyncBatch toBatch(MailApi.MailDto dto) {
+        return toBatch(Collections.singletonList(dto), null);
+    }
+
+    // the label catalog (GET /labels), one entity per id.
+    public synchronized List<LabelEntity> labels(List<MailApi.LabelDto> dtos) {
+        Map<String, LabelEntity> labels = new LinkedHashMap<>();
+        for (MailApi.LabelDto l : dtos) label(l, labels);
+        return new ArrayList<>(labels.values());
+    }
+
+    // the batch's entity for a label dto (created on first use), or null for a dto without id.
+    private LabelEntity label(MailApi.LabelDto l, Map<String, LabelEntity> labels) {
+        if (l == null || l.id == null) return null;
+        String id = intern(LabelEntity.normId(l.id));
+        LabelEntity e = labels.get(id);
+        if (e == null) {
+            String name = l.name != null ? intern(l.name.trim()) : id; // tidy name
+            labels.put(id, e = new LabelEntity(id, name));
+        }
+        return e;
+    }
+
+    // the pooled copy of s.
+    String intern(String s) {
+        if (s == null) return null;
+        String pooled = pool.get(s);
+        if (pooled != null) return pooled;
+        if (pool.size() >= POOL_LIMIT) pool.clear();
+        pool.put(s, s);
+        return s;
+    }
+}
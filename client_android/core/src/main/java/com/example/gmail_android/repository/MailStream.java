@@ -0,0 +1,124 @@
+package com.example.gmail_android.repository;
+
+import com.example.gmail_android.interfaces.MailApi;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import okhttp3.ResponseBody;
+
+// streaming reader for mail list responses. The body is parsed with a JsonReader one MailDto
+// at a time and handed to the sink every FLUSH_SIZE mails, while the rest is still downloading,
+// so at most one batch of DTOs is in memory (plus the ids seen, for the final deletes).
+public final class MailStream {
+    // one list page (MailPager.PAGE_SIZE): the first page of a refresh is visible as soon as
+    // it has arrived.
+    public static final int FLUSH_SIZE = 50;
+
+    // writes one batch of mails (called on the reading thread).
+    public interface Sink {
+        void write(List<MailApi.MailDto> mails);
+    }
+
+    // what a response contained, besides the mails already written.
+    public static final class Result {
+        public int mails;
+        public final Set<String> seen = new HashSet<>();
+        // changes responses only
+        public String cursor;
+        public boolean full;
+        public final List<String> deleted = new ArrayList<>();
+    }
+
+    // same configuration as the Retrofit converter in ApiClient.
+    private static final Gson GSON = new Gson();
+    private static final TypeAdapter<MailApi.MailDto> MAIL = GSON.getAdapter(MailApi.MailDto.class);
+
+    private final Sink sink;
+
+    public MailStream(Sink sink) {
+        this.sink = sink;
+    }
+
+    // a JSON array of mails (GET /mails, /mails/search, /mails/label).
+    public Result readList(ResponseBody body) throws IOException {
+        Result r = new Result();
+        try (JsonReader in = GSON.newJsonReader(body.charStream())) {
+            readMails(in, r);
+        }
+        return r;
+    }
+
+    // a MailApi.ChangesDto object (GET /mails/changes); fields may come in any order.
+    public Result readChanges(ResponseBody body) throws IOException {
+        Result r = new Result();
+        try (JsonReader in = GSON.newJsonReader(body.charStream())) {
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "cursor":
+                        r.cursor = nextStringOrNull(in);
+                        break;
+                    case "full":
+                        if (in.peek() == JsonToken.NULL) in.nextNull();
+                        else r.full = in.nextBoolean();
+                        break;
+                    case "mails":
+                        readMails(in, r);
+                        break;
+                    case "deleted":
+                        if (in.peek() == JsonToken.NULL) {
+                            in.nextNull();
+                            break;
+                        }
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            String id = nextStringOrNull(in);
+                            if (id != null) r.deleted.add(id);
+                        }
+                        in.endArray();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+        }
+        return r;
+    }
+
+    private void readMails(JsonReader in, Result r) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return;
+        }
+        List<MailApi.MailDto> batch = new ArrayList<>(FLUSH_SIZE);
+        in.beginArray();
+        while (in.hasNext()) {
+            MailApi.MailDto d = MAIL.read(in);
+            if (d == null || d.id == null) continue;
+            r.mails++;
+            r.seen.add(d.id);
+            batch.add(d);
+            if (batch.size() == FLUSH_SIZE) {
+                sink.write(batch);
+                batch = new ArrayList<>(FLUSH_SIZE);
+            }
+        }
+        in.endArray();
+        if (!batch.isEmpty()) sink.write(batch);
+    }
+
+    private static String nextStringOrNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+}
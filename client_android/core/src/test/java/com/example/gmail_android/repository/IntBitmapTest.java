@@ -0,0 +1,105 @@
+package com.example.gmail_android.repository;
+
+import java.util.BitSet;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class IntBitmapTest {
+
+    @Test
+    public void addRemoveContains() {
+        IntBitmap b = new IntBitmap();
+        assertTrue(b.add(7));
+        assertFalse(b.add(7));
+        assertTrue(b.add(70_000));
+        assertTrue(b.contains(7));
+        assertTrue(b.contains(70_000));
+        assertFalse(b.contains(8));
+        assertEquals(2, b.cardinality());
+        assertTrue(b.remove(7));
+        assertFalse(b.remove(7));
+        assertEquals(1, b.cardinality());
+    }
+
+    @Test
+    public void containersSwitchAtTheArrayLimit() {
+        IntBitmap b = new IntBitmap();
+        for (int i = 0; i <= IntBitmap.ARRAY_MAX; i++) b.add(i * 2);
+        assertEquals(IntBitmap.ARRAY_MAX + 1, b.cardinality());
+        assertTrue(b.contains(IntBitmap.ARRAY_MAX * 2));
+        assertFalse(b.contains(1));
+        b.remove(0);
+        b.remove(2);
+        assertEquals(IntBitmap.ARRAY_MAX - 1, b.cardinality());
+        assertTrue(b.contains(4));
+        assertEquals(8188, b.previous(8189));
+    }
+
+    @Test
+    public void previousWalksDownAcrossContainers() {
+        IntBitmap b = new IntBitmap();
+        b.add(3);
+        b.add(65_540);
+        b.add(200_000);
+        assertEquals(200_000, b.previous(Integer.MAX_VALUE));
+        assertEquals(65_540, b.previous(199_999));
+        assertEquals(3, b.previous(65_539));
+        assertEquals(-1, b.previous(2));
+        assertEquals(-1, b.previous(-1));
+    }
+
+    @Test
+    public void setOperationsMatchBitSet() {
+        Random r = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            // mixes sparse (array) and dense (bitmap) containers
+            BitSet x = random(r, round % 3 == 0 ? 0.6 : 0.01);
+            BitSet y = random(r, round % 2 == 0 ? 0.5 : 0.02);
+            IntBitmap a = of(x);
+            IntBitmap b = of(y);
+
+            BitSet and = (BitSet) x.clone();
+            and.and(y);
+            BitSet or = (BitSet) x.clone();
+            or.or(y);
+            BitSet andNot = (BitSet) x.clone();
+            andNot.andNot(y);
+
+            assertSame(and, IntBitmap.and(a, b));
+            assertSame(or, IntBitmap.or(a, b));
+            assertSame(andNot, IntBitmap.andNot(a, b));
+            assertEquals(and.cardinality(), IntBitmap.andCardinality(a, b));
+            // the arguments are left as they were
+            assertSame(x, a);
+            assertSame(y, b);
+        }
+    }
+
+    private static BitSet random(Random r, double density) {
+        BitSet s = new BitSet();
+        for (int i = 0; i < 200_000; i++) if (r.nextDouble() < density) s.set(i);
+        return s;
+    }
+
+    private static IntBitmap of(BitSet s) {
+        IntBitmap b = new IntBitmap();
+        for (int i = s.nextSetBit(0); i >= 0; i = s.nextSetBit(i + 1)) b.add(i);
+        return b;
+    }
+
+    private static void assertSame(BitSet expected, IntBitmap actual) {
+        BitSet got = new BitSet();
+        int[] last = {-1};
+        actual.forEach(v -> {
+            assertTrue("ascending", v > last[0]);
+            last[0] = v;
+            got.set(v);
+        });
+        assertEquals(expected, got);
+        assertEquals(expected.cardinality(), actual.cardinality());
+        int top = expected.length() - 1;
+        assertEquals(top, actual.previous(Integer.MAX_VALUE));
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.gmail_android.repository;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class IsoDatesTest {
+    private static final long T = Instant.parse("2024-03-05T14:07:09.123Z").toEpochMilli();
+
+    @Test
+    public void serverFormat() {
+        assertEquals(T, IsoDates.parseMillis("2024-03-05T14:07:09.123Z"));
+    }
+
+    @Test
+    public void fractionVariants() {
+        assertEquals(T - 123, IsoDates.parseMillis("2024-03-05T14:07:09Z"));
+        assertEquals(T - 23, IsoDates.parseMillis("2024-03-05T14:07:09.1Z"));
+        assertEquals(T, IsoDates.parseMillis("2024-03-05T14:07:09.123456789Z"));
+        assertEquals(T - 9_123, IsoDates.parseMillis("2024-03-05T14:07Z"));
+    }
+
+    @Test
+    public void offsets() {
+        assertEquals(T, IsoDates.parseMillis("2024-03-05T16:07:09.123+02:00"));
+        assertEquals(T, IsoDates.parseMillis("2024-03-05T08:37:09.123-0530"));
+        assertEquals(T, IsoDates.parseMillis("2024-03-05T17:07:09.123+03"));
+        assertEquals(T, IsoDates.parseMillis("2024-03-05T14:07:09.123")); // no offset → UTC
+    }
+
+    @Test
+    public void dateOnlyAndSpaceSeparator() {
+        assertEquals(Instant.parse("2024-03-05T00:00:00Z").toEpochMilli(), IsoDates.parseMillis("2024-03-05"));
+        assertEquals(T, IsoDates.parseMillis(" 2024-03-05 14:07:09.123Z\n"));
+    }
+
+    @Test
+    public void epochSecondsAndMillis() {
+        assertEquals(1_700_000_000_000L, IsoDates.parseMillis("1700000000"));
+        assertEquals(1_700_000_000_123L, IsoDates.parseMillis("1700000000123"));
+        assertEquals(-86_400_000L, IsoDates.parseMillis("-86400"));
+    }
+
+    @Test
+    public void invalidIsZero() {
+        String[] bad = { null, "", "  ", "yesterday", "2024-13-01", "2023-02-29", "2024-03-05T25:00",
+                "2024-03-05T14:07:09.Z", "2024-03-05T14:07:09+5", "2024-03-05T14:07:09Zjunk",
+                "99999999999999999999", "-" };
+        for (String s : bad) assertEquals(s, 0L, IsoDates.parseMillis(s));
+    }
+
+    @Test
+    public void leapDayAndCenturies() {
+        assertEquals(Instant.parse("2024-02-29T12:00:00Z").toEpochMilli(), IsoDates.parseMillis("2024-02-29T12:00:00Z"));
+        assertEquals(Instant.parse("2000-02-29T00:00:00Z").toEpochMilli(), IsoDates.parseMillis("2000-02-29T00:00:00Z"));
+        assertEquals(0L, IsoDates.parseMillis("1900-02-29T00:00:00Z"));
+        assertEquals(Instant.parse("1969-12-31T23:59:59.999Z").toEpochMilli(),
+                IsoDates.parseMillis("1969-12-31T23:59:59.999Z"));
+    }
+
+    @Test
+    public void agreesWithJavaTime() {
+        Random rnd = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            long ms = (long) (rnd.nextDouble() * 4_102_444_800_000L); // 1970..2100
+            int offsetMin = (rnd.nextInt(27) - 12) * 60 + (rnd.nextBoolean() ? 30 : 0);
+            OffsetDateTime t = Instant.ofEpochMilli(ms).atOffset(java.time.ZoneOffset.ofTotalSeconds(offsetMin * 60));
+            String iso = t.format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX"));
+            assertEquals(iso, ms, IsoDates.parseMillis(iso));
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.gmail_android.repository;
+
+import com.example.gmail_android.dao.SyncBatch;
+import com.example.gmail_android.entities.LabelEntity;
+import com.example.gmail_android.entities.MailEntity;
+import com.example.gmail_android.entities.MailLabelCrossRef;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LabelIndexTest {
+    private LabelIndex index;
+
+    @Before
+    public void setUp() {
+        index = new LabelIndex();
+        index.put("1", 1_000, Arrays.asList("work", "important"));
+        index.put("2", 2_000, Arrays.asList("work", "spam"));
+        index.put("3", 3_000, Arrays.asList("work", "important"));
+        index.put("4", 4_000, Collections.singletonList("personal"));
+        index.put("5", 5_000, Collections.emptyList());
+    }
+
+    @Test
+    public void booleanFilters() {
+        assertEquals(ids("3", "1"), page("work AND important NOT spam"));
+        assertEquals(ids("3", "1"), page("work important -spam"));
+        assertEquals(ids("4", "3", "2", "1"), page("work OR personal"));
+        assertEquals(ids("5", "4"), page("NOT work"));
+        assertEquals(ids("4", "3", "1"), page("(important OR personal) -label:spam"));
+        assertEquals(ids(), page("unknown"));
+    }
+
+    @Test
+    public void counts() {
+        assertEquals(3, index.count("work"));
+        assertEquals(2, index.count(LabelExpr.parse("work -spam")));
+        Map<String, Integer> within = index.countsWithin(LabelExpr.parse("work"));
+        assertEquals(Integer.valueOf(2), within.get("important"));
+        assertEquals(Integer.valueOf(1), within.get("spam"));
+        assertNull(within.get("personal"));
+    }
+
+    @Test
+    public void pagesAreKeysetCursors() {
+        List<LabelIndex.Key> first = index.page(LabelExpr.parse("work"), Long.MAX_VALUE, "", 2);
+        assertEquals("3", first.get(0).id);
+        assertEquals("2", first.get(1).id);
+        LabelIndex.Key last = first.get(1);
+        List<LabelIndex.Key> next = index.page(LabelExpr.parse("work"), last.date, last.id, 2);
+        assertEquals(1, next.size());
+        assertEquals("1", next.get(0).id);
+        List<LabelIndex.Key> window = index.pageFrom(LabelExpr.parse("work"), 2_000, "2", -1);
+        assertEquals(2, window.size());
+    }
+
+    @Test
+    public void outOfOrderAndMovedMailsKeepListOrder() {
+        index.put("0", 500, Collections.singletonList("work"));       // older than everything
+        index.put("4", 6_000, Collections.singletonList("work"));     // re-dated, labels changed
+        index.remove("2");
+        assertEquals(ids("4", "3", "1", "0"), page("work"));
+        assertEquals(ids(), page("personal"));
+        index.compact();
+        assertEquals(ids("4", "3", "1", "0"), page("work"));
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    public void syncBatchesAreMirrored() {
+        SyncBatch b = new SyncBatch();
+        b.mails.add(mail("6", 6_000));
+        b.joins.add(new MailLabelCrossRef("6", "work"));
+        b.mails.add(mail("3", 3_000)); // lost its labels
+        b.deletedMailIds.add("1");
+        index.apply(b);
+        assertEquals(ids("6", "2"), page("work"));
+
+        // a search batch only touches listed mails
+        SyncBatch search = new SyncBatch();
+        search.searchQuery = "q";
+        search.mails.add(mail("7", 7_000));
+        search.joins.add(new MailLabelCrossRef("7", "work"));
+        search.mails.add(mail("2", 2_000));
+        search.joins.add(new MailLabelCrossRef("2", "important"));
+        index.apply(search);
+        assertFalse(index.contains("7"));
+        assertEquals(ids("2"), page("important"));
+
+        SyncBatch catalog = new SyncBatch();
+        catalog.replaceLabels = true;
+        catalog.labels.add(new LabelEntity("work", "Work"));
+        index.apply(catalog);
+        assertEquals(ids(), page("important"));
+
+        index.retainOnly(new HashSet<>(ids("6")));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void versionChangesWithEveryWrite() {
+        long v = index.version();
+        index.put("9", 9_000, Collections.emptyList());
+        assertTrue(index.version() > v);
+        v = index.version();
+        index.remove("nope");
+        assertEquals(v, index.version());
+    }
+
+    @Test
+    public void expressionsParseLeniently() {
+        assertEquals("((work AND important) AND NOT spam)",
+                LabelExpr.parse("work AND important NOT spam").toString());
+        assertEquals("((work OR \"side project\") AND NOT spam)",
+                LabelExpr.parse("(Work OR \"Side Project\") -label:spam").toString());
+        assertEquals("side-project", LabelExpr.parse("side-project").toString());
+        assertEquals("work", LabelExpr.parse("work AND").toString());
+        assertEquals("(work AND personal)", LabelExpr.parse("(work )) personal").toString());
+        assertEquals("work", LabelExpr.parse("NOT NOT work").toString());
+        assertNull(LabelExpr.parse(" () - AND "));
+        LabelExpr e = LabelExpr.parse("a OR b c -d");
+        assertEquals(e, LabelExpr.parse(e.toString()));
+    }
+
+    @Test
+    public void namesAreResolvedToIds() {
+        Map<String, String> ids = new HashMap<>();
+        ids.put("work", "64A1");
+        ids.put("side project", "64b2");
+        assertEquals("(64a1 AND NOT 64b2)",
+                LabelExpr.parse("Work -\"Side Project\"", ids::get).toString());
+        // an unknown name stays as typed, so ids still work
+        assertEquals("(64a1 OR 64c3)", LabelExpr.parse("work OR 64C3", ids::get).toString());
+    }
+
+    @Test
+    public void manyMailsMatchABruteForceFilter() {
+        LabelIndex big = new LabelIndex();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            List<String> labels = new ArrayList<>();
+            if (i % 2 == 0) labels.add("even");
+            if (i % 3 == 0) labels.add("three");
+            if (i % 7 == 0) labels.add("seven");
+            // dates collide and arrive shuffled
+            big.put(String.format("%05d", (i * 7919) % 20_000), (i * 7919 % 20_000) / 10, labels);
+        }
+        for (int i = 19_999; i >= 0 && expected.size() < 100; i--) {
+            int source = -1;
+            for (int j = 0; j < 20_000; j++) if ((j * 7919) % 20_000 == i) source = j;
+            if (source % 2 == 0 && source % 3 == 0 && source % 7 != 0) expected.add(String.format("%05d", i));
+        }
+        List<String> got = new ArrayList<>();
+        for (LabelIndex.Key k : big.page(LabelExpr.parse("even three -seven"), Long.MAX_VALUE, "", 100)) {
+            got.add(k.id);
+        }
+        assertEquals(expected, got);
+    }
+
+    private List<String> page(String expr) {
+        List<String> out = new ArrayList<>();
+        LabelExpr e = LabelExpr.parse(expr);
+        for (LabelIndex.Key k : index.page(e, Long.MAX_VALUE, "", 100)) out.add(k.id);
+        return out;
+    }
+
+    private static MailEntity mail(String id, long date) {
+        MailEntity m = new MailEntity(id);
+        m.dateSentMillis = date;
+        return m;
+    }
+
+    private static List<String> ids(String... ids) {
+        return Arrays.asList(ids);
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.gmail_android.repository;
+
+import com.example.gmail_android.dao.SyncBatch;
+import com.example.gmail_android.entities.LabelEntity;
+import com.example.gmail_android.entities.MailEntity;
+import com.example.gmail_android.entities.MailLabelCrossRef;
+import com.example.gmail_android.interfaces.MailApi;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+// mapping a 10k-mail payload: the old per-call loop (regex + new SimpleDateFormat per mail,
+// no interning) against MailMapper. Prints median wall time and bytes allocated per mapping.
+public class MailMapperBenchmark {
+    private static final int MAILS = 10_000;
+    private static final int RUNS = 9;
+
+    @Test
+    public void tenThousandMails() {
+        List<MailApi.MailDto> payload = payload();
+        MailMapper mapper = new MailMapper();
+
+        long[] legacy = measure(() -> legacyBatch(payload));
+        long[] mapped = measure(() -> mapper.toBatch(payload, null));
+        System.out.println("MailMapperBench mails=" + MAILS
+                + " legacy: medianMicros=" + legacy[0] + " allocBytes=" + legacy[1]
+                + " | mapper: medianMicros=" + mapped[0] + " allocBytes=" + mapped[1]);
+
+        SyncBatch a = legacyBatch(payload);
+        SyncBatch b = mapper.toBatch(payload, null);
+        for (int i = 0; i < MAILS; i++) {
+            assertEquals(a.mails.get(i).dateSentMillis, b.mails.get(i).dateSentMillis);
+        }
+        assertEquals(a.joins.size(), b.joins.size());
+    }
+
+    // {median micros, bytes allocated by the last run (-1 if the JVM can't tell)}
+    private static long[] measure(Supplier<SyncBatch> map) {
+        for (int i = 0; i < 3; i++) map.get(); // warm-up
+        long[] micros = new long[RUNS];
+        long bytes = -1;
+        for (int r = 0; r < RUNS; r++) {
+            long b0 = allocatedBytes();
+            long t0 = System.nanoTime();
+            map.get();
+            micros[r] = (System.nanoTime() - t0) / 1000;
+            long b1 = allocatedBytes();
+            bytes = b0 < 0 ? -1 : b1 - b0;
+        }
+        Arrays.sort(micros);
+        return new long[] { micros[RUNS / 2], bytes };
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean t = ManagementFactory.getThreadMXBean();
+        if (t instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) t).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    // 200 senders, 8 labels, ids and addresses freshly allocated per mail as a JSON parser would.
+    private static List<MailApi.MailDto> payload() {
+        List<MailApi.MailDto> out = new ArrayList<>(MAILS);
+        for (int i = 0; i < MAILS; i++) {
+            MailApi.MailDto d = new MailApi.MailDto();
+            d.id = "65a1b2c3d4e5f6" + String.format(Locale.ROOT, "%010d", i);
+            d.from = new String("user" + (i % 200) + "@bloomly.com");
+            d.to = new String("me@bloomly.com");
+            d.subject = "Subject " + i;
+            d.content = "Hello,\n\nthis is mail number " + i + " with a short body.";
+            d.dateSent = String.format(Locale.ROOT, "2024-%02d-%02dT%02d:%02d:%02d.%03dZ",
+                    i % 12 + 1, i % 28 + 1, i % 24, i % 60, (i * 7) % 60, i % 1000);
+            d.labels = new ArrayList<>();
+            for (int l = 0; l < 2; l++) {
+                MailApi.LabelDto dto = new MailApi.LabelDto();
+                dto.id = new String("label" + ((i + l) % 8));
+                dto.name = new String("Label " + ((i + l) % 8));
+                d.labels.add(dto);
+            }
+            out.add(d);
+        }
+        return out;
+    }
+
+    // the mapping loop MailRepository used before MailMapper.
+    private static SyncBatch legacyBatch(List<MailApi.MailDto> body) {
+        SyncBatch batch = new SyncBatch();
+        Map<String, LabelEntity> labelMap = new LinkedHashMap<>();
+        for (MailApi.MailDto d : body) {
+            MailEntity m = new MailEntity();
+            m.id = d.id;
+            m.fromEmail = d.from;
+            m.toEmail = d.to;
+            m.subject = d.subject;
+            m.snippet = MailEntity.snippetOf(d.content);
+            m.isSpam = d.spam;
+            m.dateSentMillis = legacyParseMillis(d.dateSent);
+            batch.mails.add(m);
+            for (MailApi.LabelDto L : d.labels) {
+                String lid = L.id.trim().toLowerCase(Locale.ROOT);
+                LabelEntity e = labelMap.get(lid);
+                if (e == null) {
+                    e = new LabelEntity();
+                    e.id = lid;
+                    e.name = L.name.trim();
+                    labelMap.put(lid, e);
+                }
+                MailLabelCrossRef ref = new MailLabelCrossRef();
+                ref.mailId = m.id;
+                ref.labelId = lid;
+                batch.joins.add(ref);
+            }
+        }
+        batch.labels.addAll(labelMap.values());
+        return batch;
+    }
+
+    private static long legacyParseMillis(String dateSent) {
+        if (dateSent == null || dateSent.isEmpty()) return 0L;
+        String s = dateSent.trim();
+        if (s.matches("^-?\\d+$")) {
+            long v = Long.parseLong(s);
+            return (v > 9_999_999_999L) ? v : v * 1000L;
+        }
+        try {
+            java.text.SimpleDateFormat f =
+                    new java.text.SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+            f.setTimeZone(java.util.TimeZone.getTimeZone("UTC"));
+            return f.parse(s).getTime();
+        } catch (Exception ignore) {
+            return 0L;
+        }
+    }
+}
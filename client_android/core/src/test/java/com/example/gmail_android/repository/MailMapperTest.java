@@ -0,0 +1,125 @@
+package com.example.gmail_android.repository;
+
+import com.example.gmail_android.dao.SyncBatch;
+import com.example.gmail_android.entities.LabelEntity;
+import com.example.gmail_android.entities.MailEntity;
+import com.example.gmail_android.entities.MailLabelCrossRef;
+import com.example.gmail_android.interfaces.MailApi;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MailMapperTest {
+    private final MailMapper mapper = new MailMapper();
+
+    @Test
+    public void mapsMailBodyAndJoins() {
+        SyncBatch b = mapper.toBatch(Collections.singletonList(
+                dto("m1", "a@bloomly.com", label(" INBOX ", "Inbox"), label("Work", " Work "))), null);
+        assertEquals(1, b.mails.size());
+        assertEquals("a@bloomly.com", b.mails.get(0).fromEmail);
+        assertEquals(1_700_000_000_000L, b.mails.get(0).dateSentMillis);
+        assertEquals("hello there", b.mails.get(0).snippet);
+        assertEquals("hello   there", b.bodies.get(0).content);
+        assertEquals(Arrays.asList("inbox", "work"), labelIds(b.joins));
+        assertEquals("Work", b.labels.get(1).name);
+    }
+
+    @Test
+    public void repliesAndForwardsShareAThreadKey() {
+        String first = MailEntity.threadIdOf("m1", "Quarterly  report", "a@bloomly.com", "b@bloomly.com, c@bloomly.com");
+        assertEquals(first, MailEntity.threadIdOf("m2", "RE: Fwd: quarterly report",
+                "c@bloomly.com", "B@bloomly.com; a@bloomly.com"));
+        assertEquals(first, MailEntity.threadIdOf("m3", "Re[2]: AW: Quarterly report ",
+                "b@bloomly.com", "a@bloomly.com,c@bloomly.com"));
+        assertEquals(16, first.length());
+        // other people, or another subject: another conversation
+        assertNotEquals(first, MailEntity.threadIdOf("m4", "Re: Quarterly report", "d@bloomly.com", "a@bloomly.com"));
+        assertNotEquals(first, MailEntity.threadIdOf("m5", "Quarterly reports", "a@bloomly.com",
+                "b@bloomly.com, c@bloomly.com"));
+        // a subject that is only a prefix is no topic: the mail is a thread of its own
+        assertEquals("m:m6", MailEntity.threadIdOf("m6", "Re: ", "a@bloomly.com", "b@bloomly.com"));
+        // only leading prefixes are stripped
+        assertEquals("report: re: q3", MailEntity.threadSubject("Re: Report: Re: Q3"));
+    }
+
+    @Test
+    public void mappedMailsCarryTheirThread() {
+        SyncBatch b = mapper.toBatch(Collections.singletonList(dto("m1", "a@bloomly.com")), null);
+        MailEntity m = b.mails.get(0);
+        assertEquals(MailEntity.threadIdOf("m1", m.subject, m.fromEmail, m.toEmail), m.threadId);
+    }
+
+    @Test
+    public void labelsAreSharedAcrossTheBatch() {
+        SyncBatch b = mapper.toBatch(Arrays.asList(
+                dto("m1", "a@bloomly.com", label("inbox", "Inbox")),
+                dto("m2", "a@bloomly.com", label("INBOX", "Inbox"))), null);
+        assertEquals(1, b.labels.size());
+        assertSame(b.joins.get(0).labelId, b.joins.get(1).labelId);
+    }
+
+    @Test
+    public void repeatedStringsAreInterned() {
+        MailApi.MailDto a = dto("m1", new String("a@bloomly.com"), label(new String("inbox"), "Inbox"));
+        MailApi.MailDto b = dto("m2", new String("a@bloomly.com"), label(new String("inbox"), "Inbox"));
+        SyncBatch first = mapper.toBatch(Collections.singletonList(a), null);
+        SyncBatch second = mapper.toBatch(Collections.singletonList(b), null); // a later batch
+        assertSame(first.mails.get(0).fromEmail, second.mails.get(0).fromEmail);
+        assertSame(first.labels.get(0).id, second.labels.get(0).id);
+    }
+
+    @Test
+    public void fallbackLabelOnlyForMailsWithoutLabels() {
+        MailApi.MailDto bare = dto("m1", "a@bloomly.com");
+        bare.labels = null;
+        SyncBatch b = mapper.toBatch(Arrays.asList(bare, dto("m2", "a@bloomly.com", label("work", "Work"))), "promo");
+        assertEquals(Arrays.asList("promo", "work"), labelIds(b.joins));
+        assertEquals(2, b.labels.size());
+    }
+
+    @Test
+    public void dtosWithoutIdsAreSkipped() {
+        MailApi.LabelDto noId = label(null, "x");
+        SyncBatch b = mapper.toBatch(Arrays.asList(dto(null, "a@bloomly.com"), dto("m1", "a", noId)), null);
+        assertEquals(1, b.mails.size());
+        assertTrue(b.joins.isEmpty());
+        assertTrue(b.labels.isEmpty());
+    }
+
+    @Test
+    public void labelCatalog() {
+        List<LabelEntity> l = mapper.labels(Arrays.asList(label("Inbox", null), label("inbox", "Dup"), null));
+        assertEquals(1, l.size());
+        assertEquals("inbox", l.get(0).id);
+        assertEquals("inbox", l.get(0).name);
+    }
+
+    private static MailApi.MailDto dto(String id, String from, MailApi.LabelDto... labels) {
+        MailApi.MailDto d = new MailApi.MailDto();
+        d.id = id;
+        d.from = from;
+        d.to = "me@bloomly.com";
+        d.subject = "subject";
+        d.content = "hello   there";
+        d.dateSent = "2023-11-14T22:13:20.000Z";
+        d.labels = Arrays.asList(labels);
+        return d;
+    }
+
+    private static MailApi.LabelDto label(String id, String name) {
+        MailApi.LabelDto l = new MailApi.LabelDto();
+        l.id = id;
+        l.name = name;
+        return l;
+    }
+
+    private static List<String> labelIds(List<MailLabelCrossRef> joins) {
+        String[] out = new String[joins.size()];
+        for (int i = 0; i < out.length; i++) out[i] = joins.get(i).labelId;
+        return Arrays.asList(out);
+    }
+}
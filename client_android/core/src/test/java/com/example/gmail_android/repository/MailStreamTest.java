@@ -0,0 +1,75 @@
+package com.example.gmail_android.repository;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MailStreamTest {
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    private final List<Integer> flushes = new ArrayList<>();
+    private final MailStream stream = new MailStream(dtos -> flushes.add(dtos.size()));
+
+    @Test
+    public void listIsWrittenInFixedSizeBatches() throws IOException {
+        int n = MailStream.FLUSH_SIZE * 2 + 7;
+        MailStream.Result r = stream.readList(body(mails(n)));
+        assertEquals(Arrays.asList(MailStream.FLUSH_SIZE, MailStream.FLUSH_SIZE, 7), flushes);
+        assertEquals(n, r.mails);
+        assertEquals(n, r.seen.size());
+    }
+
+    @Test
+    public void changesFieldsInAnyOrder() throws IOException {
+        String json = "{\"deleted\":[\"x\",null,\"y\"],\"mails\":" + mails(3)
+                + ",\"extra\":{\"a\":[1,2]},\"full\":true,\"cursor\":\"c-9\"}";
+        MailStream.Result r = stream.readChanges(body(json));
+        assertEquals("c-9", r.cursor);
+        assertTrue(r.full);
+        assertEquals(Arrays.asList("x", "y"), r.deleted);
+        assertEquals(Arrays.asList(3), flushes);
+    }
+
+    @Test
+    public void nullListsAndMailsWithoutIdAreSkipped() throws IOException {
+        MailStream.Result r = stream.readChanges(body(
+                "{\"cursor\":null,\"full\":null,\"mails\":[{\"subject\":\"no id\"},null],\"deleted\":null}"));
+        assertNull(r.cursor);
+        assertFalse(r.full);
+        assertEquals(0, r.mails);
+        assertTrue(flushes.isEmpty());
+    }
+
+    @Test
+    public void batchesAreWrittenBeforeTheBodyEnds() {
+        // a body cut off mid-way: the complete batches before the cut are already written
+        String all = mails(MailStream.FLUSH_SIZE * 3);
+        try {
+            stream.readList(body(all.substring(0, all.length() * 3 / 4)));
+            fail("truncated body should not parse");
+        } catch (IOException expected) {
+            assertEquals(Arrays.asList(MailStream.FLUSH_SIZE, MailStream.FLUSH_SIZE), flushes);
+        }
+    }
+
+    private static ResponseBody body(String json) {
+        return ResponseBody.create(json, JSON);
+    }
+
+    private static String mails(int n) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < n; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"id\":\"m").append(i).append("\",\"from\":\"a@bloomly.com\",\"subject\":\"s")
+                    .append(i).append("\",\"dateSent\":\"2024-01-01T00:00:00.000Z\",")
+                    .append("\"labels\":[{\"id\":\"inbox\",\"name\":\"Inbox\"}],\"spam\":false}");
+        }
+        return sb.append(']').toString();
+    }
+}
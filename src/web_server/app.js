@@ -6,6 +6,7 @@ const app     = express();
 
 const connectDB = require('./utils/db');
 const TCP       = require('./utils/TCPclient');
+const idempotency = require('./utils/idempotency');
 
 // --- MIDDLEWARES ---
 
@@ -19,7 +20,8 @@ app.use(express.json({ limit: '2mb' }));
 app.use(cors({
   origin: 'http://localhost:3001',
   methods: ['GET','POST','PUT','PATCH','DELETE','OPTIONS'],
-  allowedHeaders: ['Content-Type','Authorization']
+  allowedHeaders: ['Content-Type','Authorization','Idempotency-Key'],
+  exposedHeaders: ['Idempotent-Replayed']
 }));
 
 // --- ROUTERS ---
@@ -47,9 +49,10 @@ const defaultHashFuncs    = (process.env.BF_HASHES || '1,2').split(',');
     app.use('/api/users',   usersRouter);
     app.use('/api/tokens',  tokensRouter);
 
-    // 4) Mount protected routes (controllers call getAuthenticatedUser)
-    app.use('/api/mails',     mailsRouter);
-    app.use('/api/labels',    labelsRouter);
+    // 4) Mount protected routes (controllers call getAuthenticatedUser);
+    //    changes to mails and labels may be retried with an Idempotency-Key
+    app.use('/api/mails',     idempotency, mailsRouter);
+    app.use('/api/labels',    idempotency, labelsRouter);
     app.use('/api/blacklist', blacklistRouter);
     app.use('/api/config',    configRouter);
 
@@ -13,28 +13,60 @@ const { extractLinks } = require('../utils/linkExtraction');
 const { checkLinks }  = require('../utils/TCPclient');
 
 /**
- * GET /api/mails
- * Returns the latest 50 mails visible to the current user.
+ * GET /api/mails?before=<cursor>
+ * Returns a page of 50 mails visible to the current user, newest first.
+ * `before` is "<dateSent millis>_<id>" of the last mail already shown; omit it for the first page.
  */
 exports.getInbox = async (req, res) => {
   const user = await getAuthenticatedUser(req, res);
   if (!user) return;
 
-  const inbox = await Mail.getLatestMailsForUser(user._id);
+  const inbox = await Mail.getLatestMailsForUser(user._id, req.query.before);
   const filteredInbox = inbox.map(
-    ({ mailId, from, to, subject, content, dateSent, labels }) => ({
+    ({ mailId, from, to, subject, content, dateSent, labels, isSpam }) => ({
       id: mailId,
       from,
       to,
       subject,
       content,
       dateSent,
-      labels
+      labels,
+      spam: !!isSpam
     })
   );
   res.json(filteredInbox);
 };
 
+/**
+ * GET /api/mails/changes?since=<cursor>
+ * Delta sync: mails created/changed and ids deleted since the cursor.
+ * Without a cursor, returns the latest 50 mails with full = true.
+ */
+exports.getChanges = async (req, res) => {
+  const user = await getAuthenticatedUser(req, res);
+  if (!user) return;
+
+  const { cursor, full, mails, deleted } =
+    await Mail.getMailChangesForUser(user._id, req.query.since);
+  res.json({
+    cursor,
+    full,
+    mails: mails.map(
+      ({ mailId, from, to, subject, content, dateSent, labels, isSpam }) => ({
+        id: mailId,
+        from,
+        to,
+        subject,
+        content,
+        dateSent,
+        labels,
+        spam: !!isSpam
+      })
+    ),
+    deleted
+  });
+};
+
 /**
  * POST /api/mails
  * Composes and sends (or drafts) a new mail.
@@ -146,7 +178,7 @@ exports.getMailById = async (req, res) => {
   if (!user._id.equals(mail.senderId) && isDraft)
     return res.status(403).json({ error: 'Mail is still a draft' });
 
-  const { from, to, subject, content, labels, dateSent } = mail;
+  const { from, to, subject, content, labels, dateSent, isSpam } = mail;
   res.json({
     id,
     from,
@@ -154,7 +186,8 @@ exports.getMailById = async (req, res) => {
     subject,
     content,
     dateSent,
-    labels: labels.map(({ id: lId, name }) => ({ id: lId, name }))
+    labels: labels.map(({ id: lId, name }) => ({ id: lId, name })),
+    spam: !!isSpam
   });
 };
 
@@ -265,16 +298,18 @@ exports.deleteMailById = async (req, res) => {
 };
 
 /**
- * GET /api/mails/search/:query
- * Search for mails by text (subject/content) for current user.
- * Always returns the latest 50 matches, with their labels.
+ * GET /api/mails/search/:query?before=<cursor>&tz=<minutes east of UTC>
+ * Search the current user's mails: words, "phrases", from:, to:, label:, after:,
+ * before:, is:spam and -negation (see utils/searchQuery). `tz` places the days
+ * of after:/before: in the client's time zone (default UTC).
+ * Returns a page of 50 matches, newest first, with their labels.
  */
 exports.searchMails = async (req, res) => {
   const user = await getAuthenticatedUser(req, res);
   if (!user) return;
 
   const { query } = req.params;
-  const matched = await Mail.searchMails(query, user._id);
+  const matched = await Mail.searchMails(query, user._id, req.query.before, req.query.tz);
   const latest50 = matched.sort((a, b) => b.dateSent - a.dateSent).slice(0, 50);
 
   const payload = await Promise.all(
@@ -295,7 +330,8 @@ exports.searchMails = async (req, res) => {
         subject: mail.subject,
         content: mail.content,
         dateSent: mail.dateSent,
-        labels: filteredLabels
+        labels: filteredLabels,
+        spam: !!mail.isSpam
       };
     })
   );
@@ -303,9 +339,9 @@ exports.searchMails = async (req, res) => {
 };
 
 /*
- * Fetch all mails for the current user that are tagged with a specific label.
+ * Fetch a page of mails for the current user that are tagged with a specific label.
  * Used for sidebar label view (e.g. show all mails in "Work" label).
- * Route: GET /api/mails/label/:labelId
+ * Route: GET /api/mails/label/:labelId?before=<cursor>
  */
 exports.getMailsByLabel = async (req, res) => {
   const user = await getAuthenticatedUser(req, res);
@@ -315,7 +351,7 @@ exports.getMailsByLabel = async (req, res) => {
   if (!labelId) return res.status(400).json({ error: 'labelId is required' });
 
   // Find all mails (sent or received) by the user that have the labelId in their labelIds array
-  const mails = await Mail.getMailsByLabel(labelId, user._id);
+  const mails = await Mail.getMailsByLabel(labelId, user._id, req.query.before);
 
   // Standardize the payload
   const payload = mails.map(mail => ({
@@ -325,7 +361,8 @@ exports.getMailsByLabel = async (req, res) => {
     subject: mail.subject,
     content: mail.content,
     dateSent: mail.dateSent,
-    labels: mail.labels || [] // Already populated by the service
+    labels: mail.labels || [], // Already populated by the service
+    spam: !!mail.isSpam
   }));
 
   res.json(payload);
@@ -1,9 +1,19 @@
 require('dotenv').config();
+const crypto       = require('crypto');
 const jwt          = require('jsonwebtoken');
 const bcrypt       = require('bcrypt');
 const userService  = require('../services/users');
 const tokenService = require('../services/tokens');
 
+/**
+ * Sign a JWT with a random jwtid (jti), so two tokens signed for the same user
+ * in the same second still differ (tokens.token is unique).
+ */
+function sign(payload) {
+  return jwt.sign(payload, process.env.JWT_SECRET,
+    { expiresIn: process.env.JWT_EXPIRES_IN, jwtid: crypto.randomUUID() });
+}
+
 /**
  * POST /api/tokens
  * Authenticate and issue a JWT; store it for logout support.
@@ -21,7 +31,7 @@ exports.login = async (req, res) => {
     if (!ok) return res.status(401).json({ error: 'Invalid credentials' });
 
     const payload = { sub: user._id, email: user.email };
-    const token   = jwt.sign(payload, process.env.JWT_SECRET, { expiresIn: process.env.JWT_EXPIRES_IN });
+    const token   = sign(payload);
     await tokenService.storeToken(user._id, token);
 
     res.json({ token, expiresIn: process.env.JWT_EXPIRES_IN });
@@ -30,3 +40,48 @@ exports.login = async (req, res) => {
     res.status(500).json({ error: 'Internal server error' });
   }
 };
+
+/**
+ * POST /api/tokens/refresh
+ * Exchange the Bearer token for a new one, so a client can renew its session
+ * before (or just after) it expires instead of sending the user back to login.
+ * The token must still be in the store (not logged out). An expired one is
+ * accepted for JWT_REFRESH_GRACE_SECONDS (default 7 days) after its expiry.
+ * The token is rotated: the old one is revoked JWT_ROTATION_OVERLAP_SECONDS
+ * (default 30) later, so requests already sent with it still succeed, and it
+ * can't be refreshed again. Logout of the new token thus ends the session.
+ */
+exports.refresh = async (req, res) => {
+  try {
+    const authHeader = req.headers.authorization;
+    if (!authHeader?.startsWith('Bearer ')) {
+      return res.status(401).json({ error: 'Missing or invalid Authorization header' });
+    }
+    const oldToken = authHeader.slice(7).trim();
+
+    const userId = await tokenService.getUserByToken(oldToken);
+    if (!userId) return res.status(403).json({ error: 'Token is invalid or has been revoked' });
+
+    let payload;
+    try {
+      payload = jwt.verify(oldToken, process.env.JWT_SECRET, { ignoreExpiration: true });
+    } catch (err) {
+      return res.status(403).json({ error: 'Token invalid' });
+    }
+    const grace = parseInt(process.env.JWT_REFRESH_GRACE_SECONDS) || 7 * 24 * 3600;
+    if (payload.exp && payload.exp + grace < Math.floor(Date.now() / 1000)) {
+      return res.status(403).json({ error: 'Session expired' });
+    }
+
+    const token = sign({ sub: payload.sub, email: payload.email });
+    const overlap = parseInt(process.env.JWT_ROTATION_OVERLAP_SECONDS) || 30;
+    if (!(await tokenService.rotateToken(oldToken, userId, token, overlap))) {
+      return res.status(403).json({ error: 'Token has already been refreshed' });
+    }
+
+    res.json({ token, expiresIn: process.env.JWT_EXPIRES_IN });
+  } catch (err) {
+    console.error('[AuthController.refresh]', err);
+    res.status(500).json({ error: 'Internal server error' });
+  }
+};
@@ -0,0 +1,21 @@
+// src/models/idempotency.js
+const mongoose = require('mongoose')
+const { Schema, model, Types } = mongoose
+
+// The answer to a change request sent with an Idempotency-Key, so a client retrying it
+// (its first attempt timed out, the connection dropped) gets the same answer instead of the
+// change being applied twice. Kept for 24h, longer than a client retries.
+const idempotencySchema = new Schema({
+  key:       { type: String, required: true },
+  user:      { type: Types.ObjectId, ref: 'User', required: true },
+  method:    { type: String, required: true },
+  path:      { type: String, required: true },
+  done:      { type: Boolean, default: false },   // false while the first attempt runs
+  status:    { type: Number },
+  body:      { type: Schema.Types.Mixed },
+  createdAt: { type: Date, default: Date.now, expires: '24h' }
+}, { versionKey: false });
+
+idempotencySchema.index({ user: 1, key: 1 }, { unique: true });
+
+module.exports = model('IdempotencyRecord', idempotencySchema)
@@ -16,7 +16,13 @@ const mailSchema = new Schema({
   dateSent:    { type: Date, default: Date.now },
   hiddenFrom:  [{ type: Types.ObjectId, ref: 'User' }],
   isSpam:      { type: Boolean, default: false }
-}, { versionKey: false });
+}, { versionKey: false, timestamps: true });
+
+// Delta sync reads changes in updatedAt order.
+mailSchema.index({ updatedAt: 1 });
+// Paged lists: one index per side of the sender/receiver $or, in page order.
+mailSchema.index({ senderId: 1, dateSent: -1, mailId: -1 });
+mailSchema.index({ receiverId: 1, dateSent: -1, mailId: -1 });
 
 // Export only Mongoose model
 module.exports = model('Mail', mailSchema)
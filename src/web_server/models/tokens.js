@@ -10,7 +10,12 @@ const tokenSchema = new Schema({
   token: { type: String, required: true, unique: true, index: true },
 
   // Creation time, automatically expires (TTL) after 30 days
-  createdAt: { type: Date, default: Date.now, expires: '30d' }
+  createdAt: { type: Date, default: Date.now, expires: '30d' },
+
+  // Set when the token is exchanged for a new one (refresh): it stays usable
+  // until then, so requests already sent with it still succeed, and is removed
+  // (TTL) once it has passed
+  revokeAt: { type: Date, default: null, expires: 0 }
 }, {
   versionKey: false
 });
@@ -0,0 +1,13 @@
+// src/models/tombstones.js
+const mongoose = require('mongoose')
+const { Schema, model, Types } = mongoose
+
+// Tombstone for a hard-deleted mail, so delta sync clients learn about the delete.
+// Expires after 30 days; a client with an older cursor gets a full resync.
+const tombstoneSchema = new Schema({
+  mailId:    { type: Number, required: true },
+  userIds:   [{ type: Types.ObjectId, ref: 'User', index: true }],
+  deletedAt: { type: Date, default: Date.now, expires: '30d' }
+}, { versionKey: false });
+
+module.exports = model('MailTombstone', tombstoneSchema)
@@ -2,10 +2,13 @@ const express = require('express');
 const router  = express.Router();
 const controller    = require('../controllers/mails');
 
-// GET  /api/mails/search/:query
+// GET  /api/mails/search/:query?before=<cursor>&tz=<minutes>
 router.get('/search/:query', controller.searchMails);
 
-// GET  /api/mails/label/:labelId
+// GET  /api/mails/changes?since=<cursor>
+router.get('/changes', controller.getChanges);
+
+// GET  /api/mails/label/:labelId?before=<cursor>
 router.get('/label/:labelId', controller.getMailsByLabel);
 
 // GET  /api/mails
@@ -5,4 +5,7 @@ const controller    = require('../controllers/tokens');
 // POST /api/tokens
 router.post('/', controller.login);
 
+// POST /api/tokens/refresh
+router.post('/refresh', controller.refresh);
+
 module.exports = router;
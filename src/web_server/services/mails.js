@@ -1,8 +1,10 @@
 const mongoose         = require('mongoose');
 const Mail             = require('../models/mails');
+const MailTombstone    = require('../models/tombstones');
 const labelService     = require('./labels');
 const blacklistService = require('./blacklist');
 const { extractLinks } = require('../utils/linkExtraction');
+const { parseSearchQuery, words, escapeRegex } = require('../utils/searchQuery');
 
 /**
  * Generates the next sequential mailId for legacy compatibility.
@@ -17,19 +19,40 @@ async function getNextMailId() {
   return result.seq;
 }
 
+// Mails per page for the inbox, label and search lists.
+const PAGE_SIZE = 50;
+// Keyset order shared by every paged list; ties on dateSent are broken by mailId.
+const PAGE_SORT = { dateSent: -1, mailId: -1 };
+
 /**
- * Fetches the latest 50 mails for a given user (sent or received, not hidden).
+ * Parses a page cursor "<dateSent epoch millis>_<mailId>" (the last mail of the previous page).
+ * Returns a filter matching only mails strictly older in PAGE_SORT order, or null if absent/invalid.
  */
-async function getLatestMailsForUser(userId) {
+function beforeFilter(before) {
+  if (!before) return null;
+  const [ms, id] = String(before).split('_');
+  const date = new Date(Number(ms));
+  const mailId = Number(id);
+  if (Number.isNaN(date.getTime()) || !Number.isFinite(mailId)) return null;
+  return { $or: [{ dateSent: { $lt: date } }, { dateSent: date, mailId: { $lt: mailId } }] };
+}
+
+/**
+ * Fetches one page (50) of the newest mails for a given user (sent or received, not hidden).
+ * With a `before` cursor, returns the page that follows it.
+ */
+async function getLatestMailsForUser(userId, before) {
   if (!userId) throw new Error('userId is required');
   const u = new mongoose.Types.ObjectId(userId);
 
-  const docs = await Mail.find({
-    $and: [
-      { $or: [{ senderId: u }, { receiverId: u }] },
-      { hiddenFrom: { $ne: u } }
-    ]
-  }).sort({ dateSent: -1 }).limit(50).lean();
+  const and = [
+    { $or: [{ senderId: u }, { receiverId: u }] },
+    { hiddenFrom: { $ne: u } }
+  ];
+  const page = beforeFilter(before);
+  if (page) and.push(page);
+
+  const docs = await Mail.find({ $and: and }).sort(PAGE_SORT).limit(PAGE_SIZE).lean();
 
   return Promise.all(docs.map(async mail => {
     const labels = await Promise.all(
@@ -44,6 +67,80 @@ async function getLatestMailsForUser(userId) {
   }));
 }
 
+// Clock-skew window re-read on every delta; applying a change twice is harmless.
+const CHANGES_OVERLAP_MS = 5000;
+// Same as the tombstone TTL: older cursors may have missed deletes.
+const CHANGES_MAX_AGE_MS = 30 * 24 * 60 * 60 * 1000;
+
+// Mails saved before timestamps were enabled have no updatedAt; backfill once per process.
+let backfillDone = null;
+function backfillUpdatedAt() {
+  if (!backfillDone) {
+    backfillDone = Mail.updateMany(
+      { updatedAt: { $exists: false } },
+      [{ $set: { updatedAt: '$dateSent', createdAt: '$dateSent' } }],
+      { timestamps: false }
+    ).catch(err => {
+      backfillDone = null;
+      throw err;
+    });
+  }
+  return backfillDone;
+}
+
+/**
+ * Returns what changed for a user since a cursor (epoch millis as a string).
+ * Without a usable cursor, returns the latest 50 mails and full = true,
+ * meaning the client should replace its local copy.
+ * Otherwise returns mails created/changed since then and ids deleted or hidden since then.
+ */
+async function getMailChangesForUser(userId, since) {
+  if (!userId) throw new Error('userId is required');
+  const u = new mongoose.Types.ObjectId(userId);
+  const now = Date.now();
+  const sinceMs = Number(since);
+
+  await backfillUpdatedAt();
+
+  if (!since || !Number.isFinite(sinceMs) || sinceMs < now - CHANGES_MAX_AGE_MS) {
+    const mails = await getLatestMailsForUser(userId);
+    return { cursor: String(now), full: true, mails, deleted: [] };
+  }
+
+  const from = new Date(sinceMs - CHANGES_OVERLAP_MS);
+  const docs = await Mail.find({
+    $or: [{ senderId: u }, { receiverId: u }],
+    updatedAt: { $gt: from }
+  }).sort({ updatedAt: 1 }).lean();
+
+  const deleted = [];
+  const changed = [];
+  for (const mail of docs) {
+    if ((mail.hiddenFrom || []).some(id => id.equals(u))) deleted.push(String(mail.mailId));
+    else changed.push(mail);
+  }
+
+  const tombstones = await MailTombstone.find({
+    userIds: u,
+    deletedAt: { $gt: from }
+  }).lean();
+  for (const t of tombstones) deleted.push(String(t.mailId));
+
+  const mails = await Promise.all(changed.map(async mail => {
+    const labels = await Promise.all(
+      (mail.labelIds || []).map(id =>
+        labelService.getLabelById({ id, userId: u })
+      )
+    );
+    return {
+      ...mail,
+      labels: labels.filter(Boolean).map(l => ({ id: l._id, name: l.name }))
+    };
+  }));
+
+  return { cursor: String(now), full: false, mails, deleted };
+}
+
 /**
  * Creates and saves a mail (sent or draft).
  * Drafts: allow empty fields as long as at least one of (to, subject, content) is non-empty.
@@ -193,10 +290,18 @@ async function updateMailById(mailId, updates = {}) {
 
 /**
  * Hard-delete a mail by its mailId (not _id!).
+ * Leaves a tombstone so delta sync clients drop it too.
  */
 async function deleteMailById(mailId) {
   if (!mailId) throw new Error('Mail id is required');
-  return Mail.findOneAndDelete({ mailId: Number(mailId) }).lean();
+  const deleted = await Mail.findOneAndDelete({ mailId: Number(mailId) }).lean();
+  if (deleted) {
+    await MailTombstone.create({
+      mailId: deleted.mailId,
+      userIds: [deleted.senderId, deleted.receiverId].filter(Boolean)
+    });
+  }
+  return deleted;
 }
 
 /**
@@ -212,25 +317,82 @@ async function deleteMailByIdForUser(mailId, userId) {
   ).lean();
 }
 
+// fields a word or phrase of a search is looked for in
+const SEARCHED_FIELDS = ['subject', 'content', 'from', 'to'];
+
+// case-insensitive match of the pattern `re` in any of `fields`
+function matchIn(fields, re) {
+  return { $or: fields.map(field => ({ [field]: { $regex: re, $options: 'i' } })) };
+}
+
 /**
- * Simple full-text search over subject/content for a user's mails.
+ * The filter for one parsed search term (utils/searchQuery), or null when it can't match
+ * anything (a label the user doesn't have). `labels` are the user's labels; `tzOffset`
+ * is the client's offset from UTC in minutes, for the start of a day.
  */
-async function searchMails(query, userId) {
+function termFilter(t, labels, tzOffset) {
+  let f;
+  switch (t.field) {
+    case 'text':
+      // every word, each in any of the searched fields
+      f = { $and: words(t.value).map(w => matchIn(SEARCHED_FIELDS, escapeRegex(w))) };
+      break;
+    case 'phrase': {
+      // the words in order, separated by anything that isn't a letter or digit
+      const re = words(t.value).map(escapeRegex).join('[^\\p{L}\\p{N}]+');
+      f = matchIn(SEARCHED_FIELDS, re);
+      break;
+    }
+    case 'from':
+    case 'to':
+      f = { $and: words(t.value).map(w => matchIn([t.field], escapeRegex(w))) };
+      break;
+    case 'label': {
+      const label = labels.find(l => String(l._id).toLowerCase() === t.value || l.name.toLowerCase() === t.value);
+      if (!label) return t.negated ? {} : null;
+      return t.negated ? { labelIds: { $ne: label._id } } : { labelIds: label._id };
+    }
+    case 'before':
+    case 'after': {
+      const { y, m, d } = t.value;
+      const day = new Date(Date.UTC(y, m - 1, d) - tzOffset * 60 * 1000);
+      // -before:d is on or after d, -after:d is before d
+      const onOrAfter = (t.field === 'after') !== t.negated;
+      return { dateSent: onOrAfter ? { $gte: day } : { $lt: day } };
+    }
+    case 'spam':
+      return t.negated ? { isSpam: { $ne: true } } : { isSpam: true };
+  }
+  return t.negated ? { $nor: [f] } : f;
+}
+
+/**
+ * Searches a user's mails with the client's query syntax (utils/searchQuery): words and
+ * phrases (case-insensitive, in subject, content or addresses), from:, to:, label:, after:,
+ * before:, is:spam and "-" negation; all terms must hold. `tzOffset` (minutes east of UTC)
+ * places after:/before: days in the client's time zone.
+ * Returns one page (50) of matches, newest first; `before` is the page cursor.
+ */
+async function searchMails(query, userId, before, tzOffset = 0) {
   if (!userId) throw new Error('userId is required');
   const u = new mongoose.Types.ObjectId(userId);
-  const q = (query || '').trim();
-  if (!q) return [];
+  const terms = parseSearchQuery(query);
+  if (!terms.length) return [];
+
+  const labels = terms.some(t => t.field === 'label') ? await labelService.getAllLabelsByUser(userId) : [];
+  const and = [
+    { $or: [{ senderId: u }, { receiverId: u }] },
+    { hiddenFrom: { $ne: u } }
+  ];
+  for (const t of terms) {
+    const f = termFilter(t, labels, Number(tzOffset) || 0);
+    if (!f) return [];
+    if (Object.keys(f).length) and.push(f);
+  }
+  const page = beforeFilter(before);
+  if (page) and.push(page);
 
-  const docs = await Mail.find({
-    $and: [
-      { $or: [{ senderId: u }, { receiverId: u }] },
-      { hiddenFrom: { $ne: u } },
-      { $or: [
-        { subject: { $regex: q, $options: 'i' } },
-        { content: { $regex: q, $options: 'i' } }
-      ]}
-    ]
-  }).lean();
+  const docs = await Mail.find({ $and: and }).sort(PAGE_SORT).limit(PAGE_SIZE).lean();
 
   return Promise.all(docs.map(async mail => {
     const labels = await Promise.all(
@@ -254,18 +416,24 @@ async function markMailAsSpamById(mailId) {
 }
 
 /**
- * Fetch all mails for user that have a specific labelId (for sidebar label view).
+ * Fetch one page (50) of the user's mails that have a specific labelId (for sidebar label view).
+ * `before` is the page cursor.
  */
-async function getMailsByLabel(labelId, userId) {
+async function getMailsByLabel(labelId, userId, before) {
   if (!labelId || !userId) throw new Error('labelId and userId are required');
   const u = new mongoose.Types.ObjectId(userId);
 
-  const docs = await Mail.find({
-    labelIds: new mongoose.Types.ObjectId(labelId),
-    $or: [{ senderId: u }, { receiverId: u }],
-    hiddenFrom: { $ne: u }
-  })
-    .sort({ dateSent: -1 })
+  const and = [
+    { labelIds: new mongoose.Types.ObjectId(labelId) },
+    { $or: [{ senderId: u }, { receiverId: u }] },
+    { hiddenFrom: { $ne: u } }
+  ];
+  const page = beforeFilter(before);
+  if (page) and.push(page);
+
+  const docs = await Mail.find({ $and: and })
+    .sort(PAGE_SORT)
+    .limit(PAGE_SIZE)
     .lean();
 
   return Promise.all(
@@ -363,6 +531,7 @@ async function removeLabelFromMail(mailId, labelId, userId) {
 
 module.exports = {
   getLatestMailsForUser,
+  getMailChangesForUser,
   createMail,
   getMailById,
   updateMailById,
@@ -1,5 +1,10 @@
 const Token = require('../models/tokens');
 
+// Tokens not replaced yet, or replaced but still in their overlap window
+function live(jwtToken) {
+  return { token: jwtToken, $or: [{ revokeAt: null }, { revokeAt: { $gt: new Date() } }] };
+}
+
 /**
  * Store a JWT token for logout/session invalidation.
  */
@@ -13,7 +18,7 @@ async function storeToken(userId, jwtToken) {
  */
 async function isValidToken(jwtToken) {
   if (!jwtToken) return false;
-  return !!(await Token.exists({ token: jwtToken }));
+  return !!(await Token.exists(live(jwtToken)));
 }
 
 /**
@@ -29,13 +34,28 @@ async function removeToken(jwtToken) {
  */
 async function getUserByToken(jwtToken) {
   if (!jwtToken) return null;
-  const doc = await Token.findOne({ token: jwtToken }).lean();
+  const doc = await Token.findOne(live(jwtToken)).lean();
   return doc ? doc.user : null;
 }
 
+/**
+ * Replace a JWT by a new one (refresh). The old token is revoked after
+ * overlapSeconds. Returns false, storing nothing, when the old token was
+ * already replaced: each token can be refreshed only once.
+ */
+async function rotateToken(oldToken, userId, newToken, overlapSeconds) {
+  if (!oldToken || !userId || !newToken) throw new Error('tokens and userId are required');
+  const revokeAt = new Date(Date.now() + overlapSeconds * 1000);
+  const old = await Token.findOneAndUpdate({ token: oldToken, revokeAt: null }, { $set: { revokeAt } });
+  if (!old) return false;
+  await Token.create({ user: userId, token: newToken });
+  return true;
+}
+
 module.exports = {
   storeToken,
   isValidToken,
   removeToken,
-  getUserByToken
+  getUserByToken,
+  rotateToken
 };
@@ -0,0 +1,69 @@
+const Idempotency  = require('../models/idempotency');
+const tokenService = require('../services/tokens');
+
+// a first attempt still marked as running after this long died with its process
+const STALE_MS = 60 * 1000;
+
+/**
+ * Idempotency-Key support for change requests (POST/PATCH/PUT/DELETE).
+ * The first request with a key runs normally and its answer is stored (unless it failed with
+ * a 5xx, which may be retried); a repeat of it gets the stored answer back, marked with
+ * `Idempotent-Replayed: true`, without running again. Requests without a key, reads, and
+ * requests without a valid session are passed through untouched (the controllers reject those).
+ */
+async function idempotency(req, res, next) {
+  const key = req.get('Idempotency-Key');
+  if (!key || req.method === 'GET' || req.method === 'HEAD' || req.method === 'OPTIONS') return next();
+  try {
+    const authHeader = req.headers.authorization;
+    const user = authHeader?.startsWith('Bearer ')
+      ? await tokenService.getUserByToken(authHeader.slice(7).trim())
+      : null;
+    if (!user) return next();
+
+    const method = req.method;
+    const path   = req.originalUrl.split('?')[0];
+    let record;
+    try {
+      record = await Idempotency.create({ key, user, method, path });
+    } catch (err) {
+      if (err.code !== 11000) throw err;
+      const prior = await Idempotency.findOne({ user, key }).lean();
+      if (!prior) return next(); // expired in between
+      if (prior.method !== method || prior.path !== path) {
+        return res.status(422).json({ error: 'Idempotency-Key was used for another request' });
+      }
+      if (prior.done) {
+        res.set('Idempotent-Replayed', 'true');
+        return prior.body === undefined || prior.body === null
+          ? res.sendStatus(prior.status)
+          : res.status(prior.status).json(prior.body);
+      }
+      if (Date.now() - new Date(prior.createdAt).getTime() < STALE_MS) {
+        // still running: ask the client to come back for the answer
+        res.set('Retry-After', '2');
+        return res.status(503).json({ error: 'A request with this Idempotency-Key is in progress' });
+      }
+      await Idempotency.deleteOne({ _id: prior._id });
+      record = await Idempotency.create({ key, user, method, path });
+    }
+
+    let body;
+    const json = res.json.bind(res);
+    res.json = (obj) => {
+      body = obj;
+      return json(obj);
+    };
+    res.on('finish', () => {
+      const saved = res.statusCode >= 500
+        ? Idempotency.deleteOne({ _id: record._id })
+        : Idempotency.updateOne({ _id: record._id }, { done: true, status: res.statusCode, body });
+      saved.catch(err => console.error('[IDEMPOTENCY]', err.message));
+    });
+    next();
+  } catch (err) {
+    next(err);
+  }
+}
+
+module.exports = idempotency;
@@ -0,0 +1,112 @@
+/**
+ * Parses a search query in the form the Android client sends (its SearchQuery.toString()).
+ * Terms are ANDed; a leading "-" negates one:
+ *   invoice  "big deal"            words and exact phrases (subject, content, addresses)
+ *   from:dana  to:me@bloomly.com   words in the sender / recipient address
+ *   label:work                     a label, by id or by name
+ *   after:2024/03/01 before:2024-04-01   sent on or after / before the start of a day
+ *   is:spam
+ * Anything else ("foo:bar", "before:soon") is searched as words, like the client does.
+ * Returns [{ field, value, negated }] with field one of text, phrase, from, to, label,
+ * before, after, spam; dates as { y, m, d }.
+ */
+function parseSearchQuery(input) {
+  const terms = [];
+  const s = String(input || '');
+  const n = s.length;
+  let i = 0;
+  while (i < n) {
+    if (/\s/.test(s[i])) { i++; continue; }
+    let negated = false;
+    if (s[i] === '-' && i + 1 < n && !/\s/.test(s[i + 1])) {
+      negated = true;
+      i++;
+    }
+    if (s[i] === '"') {
+      const end = closingQuote(s, i + 1);
+      addText(terms, 'phrase', s.slice(i + 1, end), negated);
+      i = Math.min(n, end + 1);
+      continue;
+    }
+    const start = i;
+    while (i < n && !/\s/.test(s[i]) && s[i] !== ':') i++;
+    const field = i < n && s[i] === ':' ? FIELDS[s.slice(start, i).toLowerCase()] : undefined;
+    if (!field) {
+      // a plain word, or an unknown "x:y" read as words
+      while (i < n && !/\s/.test(s[i])) i++;
+      addText(terms, 'text', s.slice(start, i), negated);
+      continue;
+    }
+    let value;
+    if (i + 1 < n && s[i + 1] === '"') {
+      const end = closingQuote(s, i + 2);
+      value = s.slice(i + 2, end);
+      i = Math.min(n, end + 1);
+    } else {
+      const from = ++i;
+      while (i < n && !/\s/.test(s[i])) i++;
+      value = s.slice(from, i);
+    }
+    if (!addOperator(terms, field, value.trim(), negated)) {
+      addText(terms, 'text', s.slice(start, i), negated);
+    }
+  }
+  return terms;
+}
+
+const FIELDS = { from: 'from', to: 'to', label: 'label', before: 'before', after: 'after', is: 'spam' };
+
+function closingQuote(s, from) {
+  const end = s.indexOf('"', from);
+  return end < 0 ? s.length : end;
+}
+
+// false if the value doesn't fit the operator
+function addOperator(terms, field, value, negated) {
+  switch (field) {
+    case 'from':
+    case 'to':
+      if (!words(value).length) return false;
+      break;
+    case 'label':
+      if (!value) return false;
+      value = value.toLowerCase();
+      break;
+    case 'before':
+    case 'after': {
+      const p = value.split(/[/-]/);
+      if (p.length !== 3 || p[0].length !== 4 || !p.every(x => /^\d+$/.test(x))) return false;
+      const [y, m, d] = p.map(Number);
+      if (m < 1 || m > 12 || d < 1 || d > 31) return false;
+      value = { y, m, d };
+      break;
+    }
+    case 'spam':
+      if (value.toLowerCase() !== 'spam') return false;
+      break;
+  }
+  terms.push({ field, value, negated });
+  return true;
+}
+
+function addText(terms, field, value, negated) {
+  const v = value.trim();
+  if (!words(v).length) return; // nothing searchable: punctuation, a lone quote
+  terms.push({ field, value: v, negated });
+}
+
+/**
+ * The words of a term: runs of letters and digits, lower-cased.
+ */
+function words(s) {
+  return String(s || '').toLowerCase().match(/[\p{L}\p{N}]+/gu) || [];
+}
+
+/**
+ * Escapes text for use inside a regular expression.
+ */
+function escapeRegex(s) {
+  return s.replace(/[.*+?^${}()|[\]\\]/g, '\\$&');
+}
+
+module.exports = { parseSearchQuery, words, escapeRegex };